@@ -4,8 +4,10 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 import javax.swing.AbstractAction;
 import mars.assembler.Assembler;
+import mars.assembler.ElfLoader;
 import mars.assembler.MacroPool;
 import mars.assembler.SourceLine;
 import mars.assembler.SymbolTable;
@@ -13,6 +15,7 @@ import mars.assembler.TokenList;
 import mars.assembler.Tokenizer;
 import mars.mips.hardware.RegisterFile;
 import mars.simulator.BackStepper;
+import mars.simulator.ReverseExecution;
 import mars.simulator.Simulator;
 
 /*
@@ -182,6 +185,17 @@ public class MIPSprogram {
         return backStepper;
     }
 
+    /**
+     * Releases the BackStepper of this program, if any, when it is about to be
+     * replaced or this program is.
+     */
+    public void closeBackStepper() {
+        if (backStepper != null) {
+            backStepper.close();
+            backStepper = null;
+        }
+    }
+
     /**
      * Returns SymbolTable associated with this program. It is created at
      * assembly time, and stores local labels (those not declared using .globl
@@ -257,7 +271,9 @@ public class MIPSprogram {
 
     /**
      * Prepares the given list of files for assembly. This involves reading and
-     * tokenizing all the source files. There may be only one.
+     * tokenizing all the source files. There may be only one. Files are read
+     * and tokenized in parallel, on the common fork-join pool; if several fail,
+     * the error reported is that of the first failing one in list order.
      *
      * @param filenames ArrayList containing the source file name(s) in no
      * particular order
@@ -280,10 +296,31 @@ public class MIPSprogram {
             filenames.add(0, exceptionHandler);
             leadFilePosition = 1;
         }
-        for (String fname : filenames) {
-            MIPSprogram preparee = (fname.equals(leadFilename)) ? this : new MIPSprogram();
-            preparee.readSource(fname);
-            preparee.tokenize();
+        ArrayList<MIPSprogram> preparees = new ArrayList<>();
+        for (String fname : filenames)
+            preparees.add((fname.equals(leadFilename)) ? this : new MIPSprogram());
+        // Files are independent of each other until assembly
+        MachineContext context = MachineContext.current();
+        ProcessingException[] failures = new ProcessingException[preparees.size()];
+        IntStream.range(0, preparees.size()).parallel().forEach(i -> {
+            try {
+                context.call(() -> {
+                    preparees.get(i).readSource(filenames.get(i));
+                    preparees.get(i).tokenize();
+                    return null;
+                });
+            }
+            catch (ProcessingException e) {
+                failures[i] = e;
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        for (ProcessingException failure : failures)
+            if (failure != null)
+                throw failure;
+        for (MIPSprogram preparee : preparees) {
             // I want "this" MIPSprogram to be the first in the list...except for exception handler
             if (preparee == this && MIPSprogramsToAssemble.size() > 0)
                 MIPSprogramsToAssemble.add(leadFilePosition, preparee);
@@ -334,20 +371,43 @@ public class MIPSprogram {
      */
     public ErrorList assemble(ArrayList<MIPSprogram> MIPSprogramsToAssemble, boolean extendedAssemblerEnabled,
             boolean warningsAreErrors) throws ProcessingException {
-        backStepper = null;
+        closeBackStepper();
         Assembler asm = new Assembler();
         machineList = asm.assemble(MIPSprogramsToAssemble, extendedAssemblerEnabled, warningsAreErrors);
         backStepper = new BackStepper();
+        ReverseExecution.getInstance().reset();
         return asm.getErrorList();
     }
 
+    /**
+     * Loads a prebuilt ELF32 MIPS executable in place of assembling source
+     * files, see {@link ElfLoader}. The program counter is left alone: set it
+     * to the entry point returned.
+     *
+     * @param file String containing name of the executable file.
+     * @return address of the first instruction to be executed, as given by the
+     * executable.
+     * @throws ProcessingException Will throw exception if the file cannot be
+     * read or loaded.
+     */
+    public int load(String file) throws ProcessingException {
+        filename = file;
+        sourceList = new ArrayList<>();
+        closeBackStepper();
+        ElfLoader loader = new ElfLoader();
+        machineList = loader.load(file);
+        backStepper = new BackStepper();
+        ReverseExecution.getInstance().reset();
+        return loader.getEntryPoint();
+    }
+
     /**
      * Simulates execution of the MIPS program. Program must have already been
      * assembled. Begins simulation at beginning of text segment and continues
      * to completion.
      *
      * @param breakPoints integer array of breakpoints (PC addresses). Can be
-     * null.
+     * null to keep the breakpoints currently set in memory.
      * @return true if execution completed and false otherwise
      * @throws ProcessingException Will throw exception if errors occurred while
      * simulating.
@@ -379,7 +439,8 @@ public class MIPSprogram {
      * continues until stopped, paused, maximum steps exceeded, or exception
      * occurs.
      *
-     * @param breakPoints int array of breakpoints (PC addresses). Can be null.
+     * @param breakPoints int array of breakpoints (PC addresses). Can be null
+     * to keep the breakpoints currently set in memory.
      * @param maxSteps maximum number of instruction executions. Default -1
      * means no maximum.
      * @param a the GUI component responsible for this call (GO normally). set
@@ -0,0 +1,337 @@
+package mars;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import mars.assembler.SymbolTable;
+import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.RegisterFile;
+import mars.simulator.DelayedBranch;
+import mars.simulator.ReverseExecution;
+import mars.simulator.Simulator;
+import mars.util.SystemIO;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * The state of one simulated MIPS machine: memory, registers of the CPU and
+ * coprocessors, pending delayed branch, open files, random number streams, the
+ * program being worked with and the global symbol table, and the simulator
+ * running it.
+ * <p>
+ * The static API of the classes holding this state ({@link Memory#getInstance()},
+ * {@link RegisterFile}, {@link Main#getProgram()} and so on) works on the
+ * context {@link #current() current} for the calling thread.  That is the
+ * {@link #getDefault() default context}, used by the GUI and command line,
+ * unless the thread is running a task through {@link #run(Runnable)} or
+ * {@link #call(Callable)} of another context.  The simulator thread runs in the
+ * context that started it.  So, several programs can be assembled and simulated
+ * at the same time within one JVM, each in a context of its own:
+ * <pre>
+ * MachineContext machine = new MachineContext();
+ * machine.run(() -&gt; {
+ *     MIPSprogram program = new MIPSprogram();
+ *     ...
+ *     program.simulate(maxSteps);
+ * });
+ * </pre>
+ * The instruction set, settings, memory configuration and console streams
+ * are shared by all contexts.  Memory observers, tools and the GUI work with
+ * the default context only.
+ *
+ * @author Project2100
+ */
+public final class MachineContext {
+
+    private static final MachineContext DEFAULT = new MachineContext();
+    private static final ThreadLocal<MachineContext> CURRENT = ThreadLocal.withInitial(() -> DEFAULT);
+
+    // Set once any thread runs a task in a context, until then every thread is
+    // in the default one and current() need not look at the thread local.  Plain
+    // field: a thread binding a context sees its own write, and others reading
+    // a stale false are in the default context anyway.
+    private static boolean bound = false;
+
+    private final Object lock = new Object();
+    private final Memory memory;
+    private final RegisterFile.State registerFile;
+    private final Coprocessor0.State coprocessor0;
+    private final Coprocessor1.State coprocessor1;
+    private final DelayedBranch.State delayedBranch;
+    private final SystemIO.FileIOData files;
+    private final ReverseExecution reverseExecution;
+    private final HashMap<Integer, Random> randomStreams = new HashMap<>();
+    private SymbolTable symbolTable;
+    private MIPSprogram program;
+    private Simulator simulator;
+
+    /**
+     * Creates a new machine, with cleared memory and registers at their reset
+     * values.
+     */
+    public MachineContext() {
+        registerFile = new RegisterFile.State();
+        coprocessor0 = new Coprocessor0.State();
+        coprocessor1 = new Coprocessor1.State();
+        delayedBranch = new DelayedBranch.State();
+        files = new SystemIO.FileIOData();
+        reverseExecution = new ReverseExecution(this);
+        memory = new Memory();
+        symbolTable = new SymbolTable("global");
+    }
+
+    /**
+     * Creates a new machine in the state of the given snapshot, typically one
+     * of another machine, which the new one then runs independently of.
+     *
+     * @param snapshot the snapshot to start from
+     * @see #restore(Snapshot)
+     */
+    public MachineContext(Snapshot snapshot) {
+        this();
+        restore(snapshot);
+    }
+
+    /**
+     * @return the context used by threads not running a task in another one
+     */
+    public static MachineContext getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the context of the calling thread
+     */
+    public static MachineContext current() {
+        return bound ? CURRENT.get() : DEFAULT;
+    }
+
+    /**
+     * Runs the given task on the calling thread, in this context.
+     *
+     * @param task the task to run
+     */
+    public void run(Runnable task) {
+        if (this == current()) {
+            task.run();
+            return;
+        }
+        MachineContext previous = enter();
+        try {
+            task.run();
+        }
+        finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Runs the given task on the calling thread, in this context.
+     *
+     * @param <T> the type of the task result
+     * @param task the task to run
+     * @return the task result
+     * @throws Exception if the task throws one
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        if (this == current())
+            return task.call();
+        MachineContext previous = enter();
+        try {
+            return task.call();
+        }
+        finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Takes a snapshot of this machine: its memory, the registers of the CPU
+     * and coprocessors, the program and the symbol table. Memory is not copied
+     * but shared with the snapshot, see {@link Memory#snapshot()}, so this is
+     * cheap enough to do after assembly and restore for every run.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        synchronized (lock) {
+            Snapshot[] snapshot = new Snapshot[1];
+            run(() -> snapshot[0] = new Snapshot(memory.snapshot(), RegisterFile.saveRegisters(),
+                    Coprocessor0.saveRegisters(), Coprocessor1.saveRegisters(), program, symbolTable));
+            return snapshot[0];
+        }
+    }
+
+    /**
+     * Puts this machine back in the state of the given snapshot, taken of this
+     * or another machine. Observers of memory and registers are not notified.
+     * Note that the program, and with it its back stepper, is shared with the
+     * machine the snapshot was taken of.
+     *
+     * @param snapshot the snapshot to restore
+     * @throws IllegalArgumentException if the snapshot was taken under another
+     * memory configuration
+     */
+    public void restore(Snapshot snapshot) {
+        synchronized (lock) {
+            run(() -> {
+                memory.restore(snapshot.memory);
+                RegisterFile.restoreRegisters(snapshot.registers);
+                Coprocessor0.restoreRegisters(snapshot.coprocessor0Registers);
+                Coprocessor1.restoreRegisters(snapshot.coprocessor1Registers);
+            });
+            program = snapshot.program;
+            symbolTable = snapshot.symbolTable;
+        }
+    }
+
+    private MachineContext enter() {
+        bound = true;
+        MachineContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * Returns the lock guarding memory and registers of this machine; the one
+     * of the default context is {@link Main#memoryAndRegistersLock}.
+     *
+     * @return the lock object
+     */
+    public Object getLock() {
+        return lock;
+    }
+
+    /**
+     * @return the memory of this machine
+     */
+    public Memory getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return the program being worked with in this machine, possibly null
+     */
+    public MIPSprogram getProgram() {
+        return program;
+    }
+
+    /**
+     * @param program the program to be worked with in this machine; the one it
+     * replaces loses its back steps
+     */
+    public void setProgram(MIPSprogram program) {
+        if (this.program != null && this.program != program)
+            this.program.closeBackStepper();
+        this.program = program;
+    }
+
+    /**
+     * @return the global symbol table of this machine
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * @param symbolTable the global symbol table of this machine
+     */
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * Returns the simulator of this machine, creating it on first use.
+     *
+     * @return the simulator
+     */
+    public synchronized Simulator getSimulator() {
+        if (simulator == null)
+            simulator = new Simulator();
+        return simulator;
+    }
+
+    /**
+     * @return the execution history of this machine
+     */
+    public ReverseExecution getReverseExecution() {
+        return reverseExecution;
+    }
+
+    // State of the classes below, opaque outside of them
+    public RegisterFile.State getRegisterFileState() {
+        return registerFile;
+    }
+
+    public Coprocessor0.State getCoprocessor0State() {
+        return coprocessor0;
+    }
+
+    public Coprocessor1.State getCoprocessor1State() {
+        return coprocessor1;
+    }
+
+    public DelayedBranch.State getDelayedBranchState() {
+        return delayedBranch;
+    }
+
+    public SystemIO.FileIOData getFiles() {
+        return files;
+    }
+
+    public HashMap<Integer, Random> getRandomStreams() {
+        return randomStreams;
+    }
+
+    /**
+     * State of a machine at the time of a {@link MachineContext#snapshot()}.
+     * A snapshot is immutable, and may be restored any number of times, into
+     * any machine.
+     */
+    public static final class Snapshot {
+
+        private final Memory.Snapshot memory;
+        private final int[] registers;
+        private final int[] coprocessor0Registers;
+        private final int[] coprocessor1Registers;
+        private final MIPSprogram program;
+        private final SymbolTable symbolTable;
+
+        private Snapshot(Memory.Snapshot memory, int[] registers, int[] coprocessor0Registers,
+                int[] coprocessor1Registers, MIPSprogram program, SymbolTable symbolTable) {
+            this.memory = memory;
+            this.registers = registers;
+            this.coprocessor0Registers = coprocessor0Registers;
+            this.coprocessor1Registers = coprocessor1Registers;
+            this.program = program;
+            this.symbolTable = symbolTable;
+        }
+    }
+}
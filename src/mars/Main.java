@@ -73,23 +73,20 @@ public class Main {
      */
     public static InstructionSet instructionSet;
     /**
-     * the program currently being worked with. Used by GUI only, not command
-     * line.
-     */
-    public static MIPSprogram program;
-    /**
-     * Symbol table for file currently being assembled.
-     */
-    public static SymbolTable symbolTable;
-    /**
-     * Simulated MIPS memory component.
+     * Simulated MIPS memory component of the default machine.
+     *
+     * @deprecated Refers to the default machine only; use
+     * {@link Memory#getInstance()} for the memory of the current one.
+     * @see MachineContext
      */
-    public static Memory memory = Memory.getInstance();
+    @Deprecated
+    public static final Memory memory = MachineContext.getDefault().getMemory();
     /**
      * Lock variable used at head of synchronized block to guard MIPS memory and
-     * registers
+     * registers of the default machine. The simulator holds the lock of the
+     * machine it runs, see {@link MachineContext#getLock()}.
      */
-    public static final Object memoryAndRegistersLock = new Object();
+    public static final Object memoryAndRegistersLock = MachineContext.getDefault().getLock();
     /**
      * Flag to determine whether or not to produce internal debugging
      * information.
@@ -118,6 +115,11 @@ public class Main {
      * Flag that indicates whether or not instructionSet has been initialized.
      */
     private static boolean initialized = false;
+    /**
+     * Wall clock times (ms) at which initialization started and ended, for
+     * reporting startup time.
+     */
+    private static long initializeStart, initializeEnd;
     /**
      * The GUI being used (if any) with this simulator.
      */
@@ -143,6 +145,11 @@ public class Main {
      * Maximum length of scrolled message window (MARS Messages and Run I/O)
      */
     public static final int maximumMessageCharacters;
+    /**
+     * Whether Run I/O text beyond the maximum length is kept in a temporary
+     * file, so that it can still be saved
+     */
+    public static final boolean spillRunOutput;
     /**
      * Maximum number of assembler errors produced by one assemble operation
      */
@@ -174,6 +181,7 @@ public class Main {
                 .collect(Collectors.toCollection(ArrayList::new)));
 
         maximumMessageCharacters = getIntegerProperty(configProps, "MessageLimit", 1000000);
+        spillRunOutput = Boolean.parseBoolean(configProps.getProperty("RunIOSpill", "false").trim());
         maximumErrorMessages = getIntegerProperty(configProps, "ErrorLimit", 200);
         maximumBacksteps = getIntegerProperty(configProps, "BackstepLimit", 1000);
 
@@ -227,17 +235,37 @@ public class Main {
      */
     public static void initialize() {
         if (!initialized) {
+            initializeStart = System.currentTimeMillis();
             Thread.setDefaultUncaughtExceptionHandler(Main.exHandler);
             logger.setLevel(debug ? Level.INFO : Level.WARNING);
             settings = new Settings();
             instructionSet = new InstructionSet();
             instructionSet.populate();
-            symbolTable = new SymbolTable("global");
             initialized = true;
             debug = false;
+            initializeEnd = System.currentTimeMillis();
         }
     }
 
+    /**
+     * Get the wall clock time at which initialization started.
+     *
+     * @return time in milliseconds since the epoch, 0 if not yet initialized
+     */
+    public static long getInitializeStart() {
+        return initializeStart;
+    }
+
+    /**
+     * Get the wall clock time at which initialization (settings and
+     * instruction set) ended.
+     *
+     * @return time in milliseconds since the epoch, 0 if not yet initialized
+     */
+    public static long getInitializeEnd() {
+        return initializeEnd;
+    }
+
     // Read and return integer property value for given file and property name.
     // Default value is returned if property file or name not found.
     private static int getIntegerProperty(Properties propertiesFile, String propertyName, int defaultValue) {
@@ -298,9 +326,40 @@ public class Main {
      * @return true if backstepping is permitted, false otherwise.
      */
     public static boolean isBackSteppingEnabled() {
+        MIPSprogram program = getProgram();
         return program != null && program.getBackStepper() != null && program.getBackStepper().enabled();
     }
 
+    /**
+     * Returns the program currently being worked with in the current machine.
+     * Used by GUI only, not command line.
+     *
+     * @return the program, or null if none
+     * @see MachineContext
+     */
+    public static MIPSprogram getProgram() {
+        return MachineContext.current().getProgram();
+    }
+
+    /**
+     * Sets the program currently being worked with in the current machine.
+     *
+     * @param program the program
+     */
+    public static void setProgram(MIPSprogram program) {
+        MachineContext.current().setProgram(program);
+    }
+
+    /**
+     * Returns the global symbol table of the current machine, where globally
+     * visible labels of the files being assembled are kept.
+     *
+     * @return the global symbol table
+     */
+    public static SymbolTable getSymbolTable() {
+        return MachineContext.current().getSymbolTable();
+    }
+
     /**
      * Read any syscall number assignment overrides from configuration file.
      *
@@ -340,7 +399,7 @@ public class Main {
             //
             // NOTE 151016 - This seems to actually slow down startup - removing
 //            MarsSplashScreen.showSplash(2000);
-            memory.configure(Memory.getConfigByName(StringSettings.MEMORY_CONFIGURATION.get()));
+            Memory.getInstance().configure(Memory.getConfigByName(StringSettings.MEMORY_CONFIGURATION.get()));
             EventQueue.invokeLater(() -> {
                 settings.AWTinit();
                 Thread.setDefaultUncaughtExceptionHandler(exHandler);
@@ -4,10 +4,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Observable;
-import java.util.Observer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import mars.assembler.ElfLoader;
 import mars.mips.dump.DumpFormat;
 import mars.mips.dump.DumpFormatLoader;
 import mars.mips.hardware.AccessNotice;
@@ -17,7 +22,9 @@ import mars.mips.hardware.InvalidRegisterAccessException;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.MemoryAccessNotice;
 import mars.mips.hardware.RegisterFile;
+import mars.mips.hardware.TransientNoticeObserver;
 import mars.settings.BooleanSettings;
+import mars.settings.IntegerSettings;
 import mars.simulator.ProgramArgumentList;
 import mars.util.Binary;
 import mars.util.FilenameFinder;
@@ -68,6 +75,8 @@ public class MarsLaunch {
      * occurs.<br>
      * ascii -- display memory or register contents interpreted as ASCII b --
      * brief - do not display register/memory address along with contents<br>
+     * bc -- Block Compilation - compile frequently executed basic blocks to JVM
+     * code. Implies pe.<br>
      * d -- print debugging statements<br>
      * da -- both a and d<br>
      * db -- MIPS delayed branching is enabled.<br>
@@ -81,7 +90,10 @@ public class MarsLaunch {
      * are <tt>Binary</tt>, <tt>HexText</tt>, <tt>BinaryText</tt>.<br>
      * h -- display help. Use by itself and with no filename</br>
      * hex -- display memory or register contents in hexadecimal (default)<br>
-     * ic -- display count of MIPS basic instructions 'executed'"); mc -- set
+     * ic -- display count of MIPS basic instructions 'executed'");<br>
+     * le<n> -- hold the memory and registers lock for up to <n> instructions at a
+     * time (locking epoch). Default is 1000.<br>
+     * mc -- set
      * memory configuration. Option has 1 argument, e.g.<br>
      * <tt>mc &lt;config$gt;</tt>, where &lt;config$gt; is <tt>Default</tt><br>
      * for the MARS default 32-bit address space, <tt>CompactDataAtZero</tt>
@@ -96,12 +108,15 @@ public class MarsLaunch {
      * np -- No Pseudo-instructions allowed ("ne" will work also).<br>
      * p -- Project mode - assemble all files in the same directory as given
      * file.<br>
+     * pe -- Predecoded Execution - run common integer instructions through the
+     * predecoded engine.<br>
      * se<n> -- terminate MARS with integer exit code <n> if a simulation (run)
      * error occurs.<br>
      * sm -- Start execution at Main - Execution will start at program statement
      * globally labeled main.<br>
      * smc -- Self Modifying Code - Program can write and branch to either text
      * or data segment<br>
+     * st -- display Startup Time: JVM launch, MARS initialization and assembly<br>
      * we -- assembler Warnings will be considered Errors<br>
      * <n> -- where <n> is an integer maximum count of steps to simulate.<br>
      * If 0, negative or not specified, there is no maximum.<br>
@@ -130,7 +145,11 @@ public class MarsLaunch {
     private boolean warningsAreErrors; // Whether assembler warnings should be considered errors.
     private boolean startAtMain; // Whether to start execution at statement labeled 'main' 
     private boolean countInstructions; // Whether to count and report number of instructions executed 
+    private boolean displayStartupTime; // Whether to report time spent before the program could run
     private boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
+    private boolean predecodedExecution; // Whether to run through the predecoded execution engine
+    private boolean blockCompilation; // Whether the predecoded engine compiles hot basic blocks
+    private int lockEpochLength; // Max number of instructions executed per acquisition of memoryAndRegistersLock
     private static final String rangeSeparator = "-";
     private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
     private static final int DECIMAL = 0; // memory and register display format
@@ -142,6 +161,7 @@ public class MarsLaunch {
     private MIPSprogram code;
     private int maxSteps;
     private int instructionCount;
+    private long assembleTime; // ms spent tokenizing and assembling
     private PrintStream out; // stream for display of command line output
     private ArrayList<String[]> dumpTriples = null; // each element holds 3 arguments for dump option
     private ArrayList<String> programArgumentList; // optional program args for MIPS program (becomes argc, argv)
@@ -165,14 +185,18 @@ public class MarsLaunch {
         warningsAreErrors = false;
         startAtMain = false;
         countInstructions = false;
+        displayStartupTime = false;
         selfModifyingCode = false;
+        predecodedExecution = false;
+        blockCompilation = false;
+        lockEpochLength = 1000;
         instructionCount = 0;
         assembleErrorExitCode = 0;
         simulateErrorExitCode = 0;
         registerDisplayList = new ArrayList<>();
         memoryDisplayList = new ArrayList<>();
         filenameList = new ArrayList<>();
-        Main.memory.configure(Memory.defaultConfig);
+        Memory.getInstance().configure(Memory.defaultConfig);
         // do NOT use Globals.program for command line MARS -- it triggers 'backstep' log.
         code = new MIPSprogram();
         maxSteps = -1;
@@ -183,6 +207,7 @@ public class MarsLaunch {
                 displayRegistersPostMortem();
                 displayMemoryPostMortem();
             }
+            displayStartupTime();
             dumpSegments();
         }
         System.exit(Main.exitCode);
@@ -190,60 +215,81 @@ public class MarsLaunch {
 
     /////////////////////////////////////////////////////////////
     // Perform any specified dump operations.  See "dump" option.
+    // Dumps only read memory, so they are written in parallel, each from a
+    // thread working in this machine context.  Their messages are still
+    // printed in the order the dumps were given.
     //
     private void dumpSegments() {
 
-        (new DumpFormatLoader()).loadDumpFormats();
         if (dumpTriples == null)
             return;
+        (new DumpFormatLoader()).loadDumpFormats();
 
-        for (String[] triple : dumpTriples) {
-            File file = new File(triple[2]);
-            int[] segInfo = Memory.getSegmentBounds(triple[0]);
-            // If not segment name, see if it is address range instead.  DPS 14-July-2008
-            if (segInfo == null)
-                try {
-                    String[] memoryRange = checkMemoryAddressRange(triple[0]);
-                    segInfo = new int[2];
-                    segInfo[0] = Binary.stringToInt(memoryRange[0]); // low end of range
-                    segInfo[1] = Binary.stringToInt(memoryRange[1]); // high end of range
-                }
-                catch (NumberFormatException nfe) {
-                    segInfo = null;
-                }
-                catch (NullPointerException npe) {
-                    segInfo = null;
-                }
-            if (segInfo == null) {
-                out.println("Error while attempting to save dump, segment/address-range " + triple[0] + " is invalid!");
-                continue;
+        MachineContext context = MachineContext.current();
+        ExecutorService dumpers = Executors.newFixedThreadPool(
+                Math.min(dumpTriples.size(), Runtime.getRuntime().availableProcessors()));
+        ArrayList<Future<String>> messages = new ArrayList<>(dumpTriples.size());
+        for (String[] triple : dumpTriples)
+            messages.add(dumpers.submit(() -> context.call(() -> dumpSegment(triple))));
+        dumpers.shutdown();
+        for (Future<String> message : messages)
+            try {
+                if (message.get() != null)
+                    out.println(message.get());
             }
-            DumpFormat format = DumpFormatLoader.fromCommandDescriptor(triple[1]);
-            if (format == null) {
-                out.println("Error while attempting to save dump, format " + triple[1] + " was not found!");
-                continue;
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-            try {
-                int highAddress = Main.memory.getAddressOfFirstNull(segInfo[0], segInfo[1]) - Memory.WORD_LENGTH_BYTES;
-                if (highAddress < segInfo[0]) {
-                    out.println("This segment has not been written to, there is nothing to dump.");
-                    continue;
-                }
-                format.dumpMemoryRange(file, segInfo[0], highAddress);
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
             }
-            catch (FileNotFoundException e) {
-                out.println("Error while attempting to save dump, file " + file + " was not found!");
-                continue;
+    }
+
+    /////////////////////////////////////////////////////////////
+    // Perform one dump operation, given its 3 arguments.  Returns the
+    // message to be printed, null if none.
+    //
+    private String dumpSegment(String[] triple) {
+        File file = new File(triple[2]);
+        int[] segInfo = Memory.getSegmentBounds(triple[0]);
+        // If not segment name, see if it is address range instead.  DPS 14-July-2008
+        if (segInfo == null)
+            try {
+                String[] memoryRange = checkMemoryAddressRange(triple[0]);
+                segInfo = new int[2];
+                segInfo[0] = Binary.stringToInt(memoryRange[0]); // low end of range
+                segInfo[1] = Binary.stringToInt(memoryRange[1]); // high end of range
             }
-            catch (AddressErrorException e) {
-                out.println("Error while attempting to save dump, file " + file + "!  Could not access address: " + e.getAddress() + "!");
-                continue;
+            catch (NumberFormatException nfe) {
+                segInfo = null;
             }
-            catch (IOException e) {
-                out.println("Error while attempting to save dump, file " + file + "!  Disk IO failed!");
-                continue;
+            catch (NullPointerException npe) {
+                segInfo = null;
             }
+        if (segInfo == null)
+            return "Error while attempting to save dump, segment/address-range " + triple[0] + " is invalid!";
+        DumpFormat format = DumpFormatLoader.fromCommandDescriptor(triple[1]);
+        if (format == null)
+            return "Error while attempting to save dump, format " + triple[1] + " was not found!";
+        try {
+            int highAddress = Memory.getInstance().getAddressOfFirstNull(segInfo[0], segInfo[1]) - Memory.WORD_LENGTH_BYTES;
+            if (highAddress < segInfo[0])
+                return "This segment has not been written to, there is nothing to dump.";
+            format.dumpMemoryRange(file, segInfo[0], highAddress);
+        }
+        catch (FileNotFoundException e) {
+            return "Error while attempting to save dump, file " + file + " was not found!";
+        }
+        catch (AddressErrorException e) {
+            return "Error while attempting to save dump, file " + file + "!  Could not access address: " + e.getAddress() + "!";
+        }
+        catch (IOException e) {
+            return "Error while attempting to save dump, file " + file + "!  Disk IO failed!";
         }
+        return null;
     }
 
     //////////////////////////////////////////////////////////////////////
@@ -314,7 +360,7 @@ public class MarsLaunch {
                     argsOK = false;
                 }
                 else
-                    Main.memory.configure(config);
+                    Memory.getInstance().configure(config);
                 continue;
             }
             // Set MARS exit code for assemble error
@@ -328,6 +374,18 @@ public class MarsLaunch {
                     // Let it fall thru and get handled by catch-all
                 }
             }
+            // Set locking epoch length
+            if (args[i].toLowerCase().indexOf("le") == 0) {
+                String s = args[i].substring(2);
+                try {
+                    lockEpochLength = Integer.parseInt(s);
+                    if (lockEpochLength > 0)
+                        continue;
+                }
+                catch (NumberFormatException nfe) {
+                    // Let it fall thru and get handled by catch-all
+                }
+            }
             // Set MARS exit code for simulate error
             if (args[i].toLowerCase().indexOf("se") == 0) {
                 String s = args[i].substring(2);
@@ -393,10 +451,22 @@ public class MarsLaunch {
                 selfModifyingCode = true;
                 continue;
             }
+            if (args[i].toLowerCase().equals("pe")) {
+                predecodedExecution = true;
+                continue;
+            }
+            if (args[i].toLowerCase().equals("bc")) {
+                blockCompilation = true;
+                continue;
+            }
             if (args[i].toLowerCase().equals("ic")) { // added 19-Jul-2012 DPS
                 countInstructions = true;
                 continue;
             }
+            if (args[i].toLowerCase().equals("st")) {
+                displayStartupTime = true;
+                continue;
+            }
 
             if (args[i].indexOf("$") == 0) {
                 if (RegisterFile.getUserRegister(args[i]) == null
@@ -455,39 +525,19 @@ public class MarsLaunch {
         try {
             BooleanSettings.DELAYED_BRANCHING.setNoPersist(delayedBranching);
             BooleanSettings.SELF_MODIFYING_CODE.setNoPersist(selfModifyingCode);
+            BooleanSettings.PREDECODED_EXECUTION.setNoPersist(predecodedExecution);
+            BooleanSettings.BLOCK_COMPILATION.setNoPersist(blockCompilation);
+            BooleanSettings.START_AT_MAIN.setNoPersist(startAtMain);
+            IntegerSettings.LOCK_EPOCH_LENGTH.setNoPersist(lockEpochLength);
             File mainFile = new File(filenameList.get(0)).getAbsoluteFile();// First file is "main" file
-            ArrayList<String> filesToAssemble;
-            if (assembleProject) {
-                filesToAssemble = FilenameFinder.getFilenameList(mainFile.getParent(), Main.fileExtensions);
-                if (filenameList.size() > 1) {
-                    // Using "p" project option PLUS listing more than one filename on command line.
-                    // Add the additional files, avoiding duplicates.
-                    filenameList.remove(0); // first one has already been processed
-                    ArrayList<String> moreFilesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
-                    // Remove any duplicates then merge the two lists.
-                    for (int index2 = 0; index2 < moreFilesToAssemble.size(); index2++)
-                        for (int index1 = 0; index1 < filesToAssemble.size(); index1++)
-                            if (filesToAssemble.get(index1).equals(moreFilesToAssemble.get(index2))) {
-                                moreFilesToAssemble.remove(index2);
-                                index2--; // adjust for left shift in moreFilesToAssemble...
-                                break;    // break out of inner loop...
-                            }
-                    filesToAssemble.addAll(moreFilesToAssemble);
-                }
+            long assembleStart = System.currentTimeMillis();
+            if (ElfLoader.isElfFile(mainFile.getPath())) {
+                // A prebuilt executable is loaded as is, there is nothing to assemble.
+                RegisterFile.initializeProgramCounter(code.load(mainFile.getPath()));
+                assembleTime = System.currentTimeMillis() - assembleStart;
             }
             else
-                filesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
-            if (Main.debug)
-                out.println("--------  TOKENIZING BEGINS  -----------");
-            ArrayList MIPSprogramsToAssemble
-                    = code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);
-            if (Main.debug)
-                out.println("--------  ASSEMBLY BEGINS  -----------");
-            // Added logic to check for warnings and print if any. DPS 11/28/06
-            ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
-            if (warnings != null && warnings.warningsOccurred())
-                out.println(warnings.generateWarningReport());
-            RegisterFile.initializeProgramCounter(startAtMain); // DPS 3/9/09
+                assembleFiles(mainFile, assembleStart);
             if (simulate) {
                 // store program args (if any) in MIPS memory
                 new ProgramArgumentList(programArgumentList).storeProgramArguments();
@@ -511,6 +561,45 @@ public class MarsLaunch {
         return programRan;
     }
 
+    //////////////////////////////////////////////////////////////////////
+    // Assemble the main file, and the others given or those of its directory
+    // in project mode, then point the program counter at the start.
+    private void assembleFiles(File mainFile, long assembleStart) throws ProcessingException {
+        ArrayList<String> filesToAssemble;
+        if (assembleProject) {
+            filesToAssemble = FilenameFinder.getFilenameList(mainFile.getParent(), Main.fileExtensions);
+            if (filenameList.size() > 1) {
+                // Using "p" project option PLUS listing more than one filename on command line.
+                // Add the additional files, avoiding duplicates.
+                filenameList.remove(0); // first one has already been processed
+                ArrayList<String> moreFilesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
+                // Remove any duplicates then merge the two lists.
+                for (int index2 = 0; index2 < moreFilesToAssemble.size(); index2++)
+                    for (int index1 = 0; index1 < filesToAssemble.size(); index1++)
+                        if (filesToAssemble.get(index1).equals(moreFilesToAssemble.get(index2))) {
+                            moreFilesToAssemble.remove(index2);
+                            index2--; // adjust for left shift in moreFilesToAssemble...
+                            break;    // break out of inner loop...
+                        }
+                filesToAssemble.addAll(moreFilesToAssemble);
+            }
+        }
+        else
+            filesToAssemble = FilenameFinder.getFilenameList(filenameList, FilenameFinder.MATCH_ALL_EXTENSIONS);
+        if (Main.debug)
+            out.println("--------  TOKENIZING BEGINS  -----------");
+        ArrayList MIPSprogramsToAssemble
+                = code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);
+        if (Main.debug)
+            out.println("--------  ASSEMBLY BEGINS  -----------");
+        // Added logic to check for warnings and print if any. DPS 11/28/06
+        ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+        assembleTime = System.currentTimeMillis() - assembleStart;
+        if (warnings != null && warnings.warningsOccurred())
+            out.println(warnings.generateWarningReport());
+        RegisterFile.initializeProgramCounter(startAtMain); // DPS 3/9/09
+    }
+
     //////////////////////////////////////////////////////////////////////
     // Check for memory address subrange.  Has to be two integers separated
     // by "-"; no embedded spaces.  e.g. 0x00400000-0x00400010
@@ -539,8 +628,8 @@ public class MarsLaunch {
     // DPS 19 July 2012
     private void establishObserver() {
         if (countInstructions) try {
-            Main.memory.addObserver(
-                    new Observer() {
+            Memory.getInstance().addObserver(
+                    new TransientNoticeObserver() {
                         private int lastAddress = 0;
 
                         @Override
@@ -576,6 +665,17 @@ public class MarsLaunch {
             out.println("\n" + instructionCount);
     }
 
+    //////////////////////////////////////////////////////////////////////
+    // Displays time spent before the program could run, see "st" option.
+    private void displayStartupTime() {
+        if (!displayStartupTime)
+            return;
+        long launch = ManagementFactory.getRuntimeMXBean().getStartTime();
+        out.println("\nStartup: " + (Main.getInitializeStart() - launch) + " ms JVM launch, "
+                + (Main.getInitializeEnd() - Main.getInitializeStart()) + " ms initialization, "
+                + assembleTime + " ms assembly");
+    }
+
     //////////////////////////////////////////////////////////////////////
     // Displays requested register or registers   			
     private void displayRegistersPostMortem() {
@@ -689,11 +789,11 @@ public class MarsLaunch {
                 try {
                     // Allow display of binary text segment (machine code) DPS 14-July-2008
                     if (Memory.inTextSegment(addr) || Memory.inKernelTextSegment(addr)) {
-                        Integer iValue = Main.memory.getRawWordOrNull(addr);
+                        Integer iValue = Memory.getInstance().getRawWordOrNull(addr);
                         value = (iValue == null) ? 0 : iValue.intValue();
                     }
                     else
-                        value = Main.memory.getWord(addr);
+                        value = Memory.getInstance().getWord(addr);
                     out.print(formatIntForDisplay(value) + "\t");
                 }
                 catch (AddressErrorException aee) {
@@ -749,6 +849,7 @@ public class MarsLaunch {
         out.println("  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.");
         out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
         out.println("      b  -- brief - do not display register/memory address along with contents");
+        out.println("     bc  -- Block Compilation - compile frequently executed code to JVM code (implies pe)");
         out.println("      d  -- display MARS debugging statements");
         out.println("     db  -- MIPS delayed branching is enabled");
         out.println("    dec  -- display memory or register contents in decimal.");
@@ -761,6 +862,8 @@ public class MarsLaunch {
         out.println("      h  -- display this help.  Use by itself with no filename.");
         out.println("    hex  -- display memory or register contents in hexadecimal (default)");
         out.println("     ic  -- display count of MIPS basic instructions 'executed'");
+        out.println("  le<n>  -- hold the memory and registers lock for up to <n> instructions at a time");
+        out.println("            (ended early by syscalls and memory mapped I/O).  Default is 1000.");
         out.println("     mc <config>  -- set memory configuration.  Argument <config> is");
         out.println("            case-sensitive and possible values are: Default for the default");
         out.println("            32-bit address space, CompactDataAtZero for a 32KB memory with");
@@ -771,9 +874,11 @@ public class MarsLaunch {
         out.println("     nc  -- do not display copyright notice (for cleaner redirected/piped output).");
         out.println("     np  -- use of pseudo instructions and formats not permitted");
         out.println("      p  -- Project mode - assemble all files in the same directory as given file.");
+        out.println("     pe  -- Predecoded Execution - run common integer instructions through a faster engine");
         out.println("  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.");
         out.println("     sm  -- start execution at statement with global label main, if defined");
         out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+        out.println("     st  -- display Startup Time: JVM launch, MARS initialization and assembly");
         out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
         out.println("            If 0, negative or not specified, there is no maximum.");
         out.println(" $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose ");
@@ -791,6 +896,9 @@ public class MarsLaunch {
         out.println("If more than one filename is listed, the first is assumed to be the main");
         out.println("unless the global statement label 'main' is defined in one of the files.");
         out.println("Exception handler not automatically assembled.  Add it to the file list.");
+        out.println("If the main file is an ELF32 MIPS executable, such as one written by the");
+        out.println("ELF dump format, it is loaded as is: nothing is assembled, and execution");
+        out.println("starts at its entry point.");
         out.println("Options used here do not affect MARS Settings menu values and vice versa.");
     }
 
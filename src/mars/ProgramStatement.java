@@ -53,7 +53,7 @@ public class ProgramStatement {
     private MIPSprogram sourceMIPSprogram;
     private String source, basicAssemblyStatement, machineStatement;
     private TokenList originalTokenList, strippedTokenList;
-    private BasicStatementList basicStatementList;
+    private volatile BasicStatementList basicStatementList;
     private int[] operands;
     private int numOperands;
     private Instruction instruction;
@@ -129,32 +129,12 @@ public class ProgramStatement {
         }
         else {
             this.operands = new int[4];
-            this.numOperands = 0;
             this.instruction = instr;
-
-            String opandCodes = "fst";
-            String fmt = instr.getOperationMask();
-            BasicInstructionFormat instrFormat = instr.getInstructionFormat();
-            int numOps = 0;
-            for (int i = 0; i < opandCodes.length(); i++) {
-                int code = opandCodes.charAt(i);
-                int j = fmt.indexOf(code);
-                if (j >= 0) {
-                    int k0 = 31 - fmt.lastIndexOf(code);
-                    int k1 = 31 - j;
-                    int opand = (binaryStatement >> k0) & ((1 << (k1 - k0 + 1)) - 1);
-                    if (instrFormat.equals(BasicInstructionFormat.I_BRANCH_FORMAT) && numOps == 2)
-                        opand = opand << 16 >> 16;
-                    else if (instrFormat.equals(BasicInstructionFormat.J_FORMAT) && numOps == 0)
-                        opand |= (textAddress >> 2) & 0x3C000000;
-                    this.operands[numOps] = opand;
-                    numOps++;
-                }
-            }
-            this.numOperands = numOps;
+            this.numOperands = instr.decodeOperands(binaryStatement, textAddress, this.operands);
         }
         this.altered = false;
-        this.basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, instr, operands, numOperands);
+        // Built on demand: most such statements are executed, never displayed.
+        this.basicStatementList = null;
     }
 
     /////////////////////////////////////////////////////////////////////////////
@@ -522,7 +502,15 @@ public class ProgramStatement {
      *
      */
     public String getPrintableBasicAssemblyStatement() {
-        return basicStatementList.toString();
+        BasicStatementList list = basicStatementList;
+        if (list == null) {
+            // statement from binary code; no instruction if invalid
+            list = buildBasicStatementListFromBinaryCode(binaryStatement,
+                    (instruction instanceof BasicInstruction) ? (BasicInstruction) instruction : null,
+                    operands, numOperands);
+            basicStatementList = list;
+        }
+        return list.toString();
     }
 
     /**
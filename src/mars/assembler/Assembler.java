@@ -188,8 +188,8 @@ public class Assembler {
         externAddress = Memory.externBaseAddress;
         currentFileDataSegmentForwardReferences = new DataSegmentForwardReferences();
         accumulatedDataSegmentForwardReferences = new DataSegmentForwardReferences();
-        Main.symbolTable.clear();
-        Main.memory.clear();
+        Main.getSymbolTable().clear();
+        Memory.getInstance().clear();
         this.machineList = new ArrayList<>();
         this.errors = new ErrorList();
         if (Main.debug)
@@ -262,7 +262,7 @@ public class Assembler {
         // Have processed all source files. Attempt to resolve any remaining forward label
         // references from global symbol table. Those that remain unresolved are undefined
         // and require error message.
-        accumulatedDataSegmentForwardReferences.resolve(Main.symbolTable);
+        accumulatedDataSegmentForwardReferences.resolve(Main.getSymbolTable());
         accumulatedDataSegmentForwardReferences.generateErrorMessages(errors);
 
         // Throw collection of errors accumulated through the first pass.
@@ -370,7 +370,7 @@ public class Assembler {
             if (Main.debug)
                 System.out.println(statement);
             try {
-                Main.memory.setStatement(statement.getAddress(), statement);
+                Memory.getInstance().setStatement(statement.getAddress(), statement);
             }
             catch (AddressErrorException e) {
                 Token t = statement.getOriginalTokenList().get(0);
@@ -598,7 +598,7 @@ public class Assembler {
     // alternate compact translation.
     private boolean compactTranslationCanBeApplied(ProgramStatement statement) {
         return (statement.getInstruction() instanceof ExtendedInstruction
-                && Main.memory.usingCompactMemoryConfiguration() && ((ExtendedInstruction) statement
+                && Memory.getInstance().usingCompactMemoryConfiguration() && ((ExtendedInstruction) statement
                 .getInstruction()).hasCompactTranslation());
     }
 
@@ -822,8 +822,8 @@ public class Assembler {
                 }
                 int size = Binary.stringToInt(tokens.get(2).getValue());
                 // If label already in global symtab, do nothing. If not, add it right now.
-                if (Main.symbolTable.getAddress(tokens.get(1).getValue()) == SymbolTable.NOT_FOUND) {
-                    Main.symbolTable.addSymbol(tokens.get(1), this.externAddress,
+                if (Main.getSymbolTable().getAddress(tokens.get(1).getValue()) == SymbolTable.NOT_FOUND) {
+                    Main.getSymbolTable().addSymbol(tokens.get(1), this.externAddress,
                             Symbol.DATA_SYMBOL, errors);
                     this.externAddress += size;
                 }
@@ -876,13 +876,13 @@ public class Assembler {
                 errors.add(new ErrorMessage(fileCurrentlyBeingAssembled, label.getSourceLine(),
                         label.getStartPos(), "\"" + label.getValue()
                         + "\" declared global label but not defined."));
-            else if (Main.symbolTable.getAddress(label.getValue()) != SymbolTable.NOT_FOUND)
+            else if (Main.getSymbolTable().getAddress(label.getValue()) != SymbolTable.NOT_FOUND)
                 errors.add(new ErrorMessage(fileCurrentlyBeingAssembled, label.getSourceLine(),
                         label.getStartPos(), "\"" + label.getValue()
                         + "\" already defined as global in a different file."));
             else {
                 fileCurrentlyBeingAssembled.getLocalSymbolTable().removeSymbol(label);
-                Main.symbolTable.addSymbol(label, symtabEntry.getAddress(),
+                Main.getSymbolTable().addSymbol(label, symtabEntry.getAddress(),
                         symtabEntry.getType(), errors);
             }
         }
@@ -977,11 +977,20 @@ public class Assembler {
                 if (this.autoAlign)
                     this.dataAddress
                             .set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
-                for (int i = 0; i < repetitions; i++)
+                for (int i = 0; i < repetitions; i++) {
+                    int valueAddress = this.dataAddress.get();
+                    int messageCount = errors.getErrorMessages().size();
                     if (directive.isIntegerDirective())
                         storeInteger(valueToken, directive, errors);
                     else
                         storeRealNumber(valueToken, directive, errors);
+                    // A constant stored without complaint is the same every time: copy
+                    // it over the remaining repetitions in one go.
+                    if (i == 0 && repetitions > 1 && valueToken.getType() != TokenType.IDENTIFIER
+                            && errors.getErrorMessages().size() == messageCount
+                            && replicateDataValue(valueAddress, repetitions))
+                        break;
+                }
             } // WHAT ABOUT .KDATA SEGMENT?
             /**
              * *************************************************************************
@@ -1055,7 +1064,7 @@ public class Assembler {
              */
             else {
                 try {
-                    Main.memory.set(this.textAddress.get(), value, lengthInBytes);
+                    Memory.getInstance().set(this.textAddress.get(), value, lengthInBytes);
                 }
                 catch (AddressErrorException e) {
                     errors.add(new ErrorMessage(token.getSourceMIPSprogram(),
@@ -1148,6 +1157,8 @@ public class Assembler {
                         + "\" is not a valid character string"));
             else {
                 String quote = token.getValue();
+                byte[] bytes = new byte[quote.length() - 1];
+                int length = 0;
                 char theChar;
                 for (int j = 1; j < quote.length() - 1; j++) {
                     theChar = quote.charAt(j);
@@ -1188,27 +1199,28 @@ public class Assembler {
                             // codes...
                         }
                     }
-                    try {
-                        Main.memory.set(this.dataAddress.get(), (int) theChar,
-                                DataTypes.CHAR_SIZE);
-                    }
-                    catch (AddressErrorException e) {
-                        errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token
-                                .getSourceLine(), token.getStartPos(), "\""
-                                + this.dataAddress.get() + "\" is not a valid data segment address"));
-                    }
-                    this.dataAddress.increment(DataTypes.CHAR_SIZE);
+                    bytes[length++] = (byte) theChar;
                 }
-                if (direct == Directive.ASCIIZ) {
-                    try {
-                        Main.memory.set(this.dataAddress.get(), 0, DataTypes.CHAR_SIZE);
-                    }
-                    catch (AddressErrorException e) {
-                        errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token
-                                .getSourceLine(), token.getStartPos(), "\""
-                                + this.dataAddress.get() + "\" is not a valid data segment address"));
+                if (direct == Directive.ASCIIZ)
+                    bytes[length++] = 0;
+                // Store the whole string at once; should that fail, go over it byte
+                // by byte to report each address that is not valid.
+                try {
+                    Memory.getInstance().setBytes(this.dataAddress.get(), bytes, 0, length);
+                    this.dataAddress.increment(length * DataTypes.CHAR_SIZE);
+                }
+                catch (AddressErrorException e) {
+                    for (int j = 0; j < length; j++) {
+                        try {
+                            Memory.getInstance().set(this.dataAddress.get(), bytes[j], DataTypes.CHAR_SIZE);
+                        }
+                        catch (AddressErrorException ae) {
+                            errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token
+                                    .getSourceLine(), token.getStartPos(), "\""
+                                    + this.dataAddress.get() + "\" is not a valid data segment address"));
+                        }
+                        this.dataAddress.increment(DataTypes.CHAR_SIZE);
                     }
-                    this.dataAddress.increment(DataTypes.CHAR_SIZE);
                 }
             }
         }
@@ -1235,7 +1247,7 @@ public class Assembler {
         if (this.autoAlign)
             this.dataAddress.set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
         try {
-            Main.memory.set(this.dataAddress.get(), value, lengthInBytes);
+            Memory.getInstance().set(this.dataAddress.get(), value, lengthInBytes);
         }
         catch (AddressErrorException e) {
             errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token
@@ -1248,6 +1260,33 @@ public class Assembler {
         return address;
     }
 
+    // //////////////////////////////////////////////////////////////////////////////////
+    // Repeats the value just stored at the given address until there are the given
+    // number of copies, doubling the copied range each time, and advances the data
+    // address past them. Returns false, leaving the data address alone, if they
+    // would not all fit into the segment, or if an observer watches them: it is to
+    // see each value stored, as the per-element path does.
+    private boolean replicateDataValue(int address, int repetitions) {
+        int valueLength = this.dataAddress.get() - address;
+        long totalLength = (long) valueLength * repetitions;
+        long lastAddress = address + totalLength - 1;
+        if (lastAddress > Integer.MAX_VALUE
+                || !(Memory.inDataSegment(address) && Memory.inDataSegment((int) lastAddress)
+                || Memory.inKernelDataSegment(address) && Memory.inKernelDataSegment((int) lastAddress))
+                || Memory.getInstance().isObserved(address, (int) lastAddress))
+            return false;
+        try {
+            for (long copied = valueLength; copied < totalLength; copied *= 2)
+                Memory.getInstance().copy(address, address + (int) copied,
+                        (int) Math.min(copied, totalLength - copied));
+        }
+        catch (AddressErrorException e) {
+            return false;
+        }
+        this.dataAddress.increment((int) totalLength - valueLength);
+        return true;
+    }
+
     // //////////////////////////////////////////////////////////////////////////////////
     // Writes the given double value into current data segment address. Works
     // only for DOUBLE floating
@@ -1258,7 +1297,7 @@ public class Assembler {
         if (this.autoAlign)
             this.dataAddress.set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
         try {
-            Main.memory.setDouble(this.dataAddress.get(), value);
+            Memory.getInstance().setDouble(this.dataAddress.get(), value);
         }
         catch (AddressErrorException e) {
             errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token
@@ -1418,7 +1457,7 @@ public class Assembler {
                 if (labelAddress != SymbolTable.NOT_FOUND) {
                     // patch address has to be valid b/c we already stored there...
                     try {
-                        Main.memory.set(entry.patchAddress, labelAddress, entry.length);
+                        Memory.getInstance().set(entry.patchAddress, labelAddress, entry.length);
                     }
                     catch (AddressErrorException aee) {
                     }
@@ -0,0 +1,277 @@
+package mars.assembler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import mars.ErrorList;
+import mars.ErrorMessage;
+import mars.Main;
+import mars.ProcessingException;
+import mars.ProgramStatement;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
+import mars.util.Binary;
+import mars.util.SystemIO;
+
+/*
+ Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * Loads a prebuilt ELF32 MIPS executable straight into memory, in place of
+ * assembling source files. Each loadable segment lying in the text or kernel
+ * text segment becomes one ProgramStatement per word, built from the machine
+ * code alone; any other loadable segment is copied into memory as bytes, the
+ * part not in the file being zeroed. Global and weak symbols of the symbol
+ * table, if any, go into the global symbol table.
+ * <p>
+ * Both byte orders are accepted: memory is switched to that of the
+ * executable. The segments must fit the current memory configuration, as
+ * with <code>.text</code> and <code>.data</code> address operands.
+ *
+ * @see mars.mips.dump.ElfDumpFormat
+ */
+public class ElfLoader {
+
+    // Values of the ELF header, program headers, section headers and symbols
+    // used by MARS.  Shared with the ELF dump format.
+    public static final byte[] ELF_MAGIC = {0x7f, 'E', 'L', 'F'};
+    public static final int ELFCLASS32 = 1;
+    public static final int ELFDATA2LSB = 1;
+    public static final int ELFDATA2MSB = 2;
+    public static final int EV_CURRENT = 1;
+    public static final int ET_EXEC = 2;
+    public static final int EM_MIPS = 8;
+    public static final int EF_MIPS_ARCH_32 = 0x50000000;
+    public static final int PT_LOAD = 1;
+    public static final int PF_X = 1;
+    public static final int PF_W = 2;
+    public static final int PF_R = 4;
+    public static final int SHT_PROGBITS = 1;
+    public static final int SHT_SYMTAB = 2;
+    public static final int SHT_STRTAB = 3;
+    public static final int SHF_WRITE = 1;
+    public static final int SHF_ALLOC = 2;
+    public static final int SHF_EXECINSTR = 4;
+    public static final int SHN_UNDEF = 0;
+    public static final int SHN_ABS = 0xfff1;
+    public static final int STB_GLOBAL = 1;
+    public static final int STB_WEAK = 2;
+    public static final int STT_NOTYPE = 0;
+    public static final int STT_OBJECT = 1;
+    public static final int STT_SECTION = 3;
+    public static final int STT_FILE = 4;
+    public static final int ELF_HEADER_SIZE = 52;
+    public static final int PROGRAM_HEADER_SIZE = 32;
+    public static final int SECTION_HEADER_SIZE = 40;
+    public static final int SYMBOL_SIZE = 16;
+
+    private String filename;
+    private ByteBuffer image;
+    private int entryPoint;
+    private ArrayList<ProgramStatement> machineList;
+
+    /**
+     * Tells whether a file is an ELF file, from its first bytes.
+     *
+     * @param filename name of the file.
+     * @return true if the file starts with the ELF magic number, false if not
+     * or if it cannot be read.
+     */
+    public static boolean isElfFile(String filename) {
+        byte[] magic = new byte[ELF_MAGIC.length];
+        try (InputStream in = Files.newInputStream(Paths.get(filename))) {
+            return in.readNBytes(magic, 0, magic.length) == magic.length
+                    && Arrays.equals(magic, ELF_MAGIC);
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads an executable into memory, replacing whatever program was there.
+     * Open files are closed, as a new assembly would.
+     *
+     * @param filename name of the ELF file.
+     * @return the ProgramStatements loaded, sorted by address.
+     * @throws ProcessingException if the file cannot be read, is not an ELF32
+     * MIPS executable, or holds a segment memory cannot take.
+     */
+    public ArrayList<ProgramStatement> load(String filename) throws ProcessingException {
+        this.filename = filename;
+        try {
+            image = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+        }
+        catch (IOException e) {
+            throw error(e.toString());
+        }
+        machineList = new ArrayList<>();
+        try {
+            readHeader();
+            Main.getSymbolTable().clear();
+            Memory.getInstance().clear();
+            int programHeaders = image.getInt(28);
+            int programHeaderSize = image.getShort(42) & 0xFFFF;
+            int programHeaderCount = image.getShort(44) & 0xFFFF;
+            for (int i = 0; i < programHeaderCount; i++) {
+                int header = programHeaders + i * programHeaderSize;
+                if (image.getInt(header) == PT_LOAD)
+                    loadSegment(image.getInt(header + 4), image.getInt(header + 8),
+                            image.getInt(header + 16), image.getInt(header + 20));
+            }
+            loadSymbols();
+        }
+        catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw error("file is truncated or corrupt");
+        }
+        SystemIO.resetFiles();
+        machineList.sort((s1, s2) -> Integer.compareUnsigned(s1.getAddress(), s2.getAddress()));
+        return machineList;
+    }
+
+    /**
+     * @return address of the first instruction to be executed, as given by the
+     * executable last loaded.
+     */
+    public int getEntryPoint() {
+        return entryPoint;
+    }
+
+    private void readHeader() throws ProcessingException {
+        for (int i = 0; i < ELF_MAGIC.length; i++)
+            if (image.get(i) != ELF_MAGIC[i])
+                throw error("not an ELF file");
+        if (image.get(4) != ELFCLASS32)
+            throw error("not a 32-bit ELF file");
+        if (image.get(5) == ELFDATA2LSB)
+            image.order(ByteOrder.LITTLE_ENDIAN);
+        else if (image.get(5) == ELFDATA2MSB)
+            image.order(ByteOrder.BIG_ENDIAN);
+        else
+            throw error("unknown byte order");
+        if (image.getShort(16) != ET_EXEC)
+            throw error("not an executable file");
+        if (image.getShort(18) != EM_MIPS)
+            throw error("not a MIPS executable");
+        entryPoint = image.getInt(24);
+        Memory.getInstance().setByteOrder((image.order() == ByteOrder.LITTLE_ENDIAN)
+                ? Memory.LITTLE_ENDIAN
+                : Memory.BIG_ENDIAN);
+    }
+
+    // Text segment words become statements, anything else is copied as is.
+    private void loadSegment(int offset, int address, int fileSize, int memorySize)
+            throws ProcessingException {
+        if (fileSize < 0 || memorySize < 0 || offset < 0 || offset > image.capacity() - fileSize)
+            throw error("segment at " + Binary.intToHexString(address) + " is truncated or corrupt");
+        Memory memory = Memory.getInstance();
+        try {
+            if (Memory.inTextSegment(address) || Memory.inKernelTextSegment(address)) {
+                if (address % Memory.WORD_LENGTH_BYTES != 0)
+                    throw error("text segment at " + Binary.intToHexString(address) + " is not word aligned");
+                int words = (Math.max(fileSize, memorySize) + Memory.WORD_LENGTH_BYTES - 1) / Memory.WORD_LENGTH_BYTES;
+                machineList.ensureCapacity(machineList.size() + words);
+                for (int i = 0; i < words; i++) {
+                    int at = i * Memory.WORD_LENGTH_BYTES;
+                    int word = 0;
+                    if (at + Memory.WORD_LENGTH_BYTES <= fileSize)
+                        word = image.getInt(offset + at);
+                    else
+                        // partial last word, completed with zeroes
+                        for (int b = 0; b < Memory.WORD_LENGTH_BYTES && at + b < fileSize; b++)
+                            word |= (image.get(offset + at + b) & 0xFF) << ((image.order() == ByteOrder.BIG_ENDIAN) ? 24 - 8 * b : 8 * b);
+                    ProgramStatement statement = new ProgramStatement(word, address + at);
+                    memory.setStatement(address + at, statement);
+                    machineList.add(statement);
+                }
+            }
+            else {
+                memory.setBytes(address, image.array(), offset, fileSize);
+                byte[] zeroes = new byte[Math.min(memorySize - fileSize, 4096)];
+                for (int at = fileSize; at < memorySize; at += zeroes.length)
+                    memory.setBytes(address + at, zeroes, 0, Math.min(zeroes.length, memorySize - at));
+            }
+        }
+        catch (AddressErrorException e) {
+            throw error("segment at " + Binary.intToHexString(address) + " does not fit in memory: address "
+                    + Binary.intToHexString(e.getAddress()) + " is not available");
+        }
+    }
+
+    private void loadSymbols() {
+        int sections = image.getInt(32);
+        int sectionHeaderSize = image.getShort(46) & 0xFFFF;
+        int sectionCount = image.getShort(48) & 0xFFFF;
+        SymbolTable globals = Main.getSymbolTable();
+        ErrorList ignored = new ErrorList();
+        for (int i = 0; i < sectionCount; i++) {
+            int header = sections + i * sectionHeaderSize;
+            if (image.getInt(header + 4) != SHT_SYMTAB)
+                continue;
+            int symbols = image.getInt(header + 16);
+            int symbolSize = image.getInt(header + 36);
+            int count = (symbolSize == 0) ? 0 : image.getInt(header + 20) / symbolSize;
+            int strings = image.getInt(sections + image.getInt(header + 24) * sectionHeaderSize + 16);
+            for (int s = 0; s < count; s++) {
+                int symbol = symbols + s * symbolSize;
+                int bind = (image.get(symbol + 12) & 0xFF) >> 4;
+                int type = image.get(symbol + 12) & 0xF;
+                int section = image.getShort(symbol + 14) & 0xFFFF;
+                if (bind != STB_GLOBAL && bind != STB_WEAK || type == STT_SECTION || type == STT_FILE
+                        || section == SHN_UNDEF)
+                    continue;
+                String name = readString(strings + image.getInt(symbol));
+                int address = image.getInt(symbol + 4);
+                if (name.isEmpty() || globals.getSymbol(name) != null)
+                    continue;
+                globals.addSymbol(new Token(TokenType.IDENTIFIER, name, null, 0, 0), address,
+                        !(Memory.inTextSegment(address) || Memory.inKernelTextSegment(address)), ignored);
+            }
+        }
+    }
+
+    // A null-terminated string of a string table
+    private String readString(int offset) {
+        int end = offset;
+        while (image.get(end) != 0)
+            end++;
+        return new String(image.array(), offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private ProcessingException error(String message) {
+        ErrorList errors = new ErrorList();
+        errors.add(new ErrorMessage(filename, 0, 0, "Cannot load executable: " + message));
+        return new ProcessingException(errors);
+    }
+}
@@ -82,7 +82,9 @@ public class Symbol {
     }
 
     /**
-     * Sets (replaces) the address of the the Symbol.
+     * Sets (replaces) the address of the the Symbol. Symbols in a SymbolTable
+     * are moved with SymbolTable.fixSymbolTableAddress, which keeps its
+     * address index up to date.
      *
      * @param newAddress The revised address of the Symbol.
      */
@@ -1,6 +1,8 @@
 package mars.assembler;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 import mars.ErrorList;
 import mars.ErrorMessage;
 import mars.Main;
@@ -33,7 +35,9 @@ import mars.Main;
  (MIT license, http://www.opensource.org/licenses/mit-license.html)
  */
 /**
- * Creates a table of Symbol objects.
+ * Creates a table of Symbol objects. Symbols are kept in a hash map by name and
+ * in a sorted index by address, so that lookups either way do not scan the
+ * table.
  *
  * @author Jason Bumgarner, Jason Shrewsbury
  * @version June 2003
@@ -43,7 +47,10 @@ public class SymbolTable {
 
     private static String startLabel = "main";
     private final String filename;
-    private ArrayList<Symbol> table;
+    // Symbols by name, in the order they were added
+    private LinkedHashMap<String, Symbol> table;
+    // Symbols by address; each list is in the order the symbols were added
+    private TreeMap<Integer, ArrayList<Symbol>> addressIndex;
     // Note -1 is legal 32 bit address (0xFFFFFFFF) but it is the high address in 
     // kernel address space so highly unlikely that any symbol will have this as 
     // its associated address!
@@ -57,7 +64,7 @@ public class SymbolTable {
      */
     public SymbolTable(String filename) {
         this.filename = filename;
-        this.table = new ArrayList<>();
+        clear();
     }
 
     /**
@@ -75,7 +82,8 @@ public class SymbolTable {
             errors.add(new ErrorMessage(token.getSourceMIPSprogram(), token.getSourceLine(), token.getStartPos(), "label \"" + label + "\" already defined"));
         else {
             Symbol s = new Symbol(label, address, b);
-            table.add(s);
+            table.put(label, s);
+            addressIndex.computeIfAbsent(address, k -> new ArrayList<>()).add(s);
             if (Main.debug)
                 System.out.println("The symbol " + label + " with address " + address + " has been added to the " + this.filename + " symbol table.");
         }
@@ -91,13 +99,12 @@ public class SymbolTable {
      */
     public void removeSymbol(Token token) {
         String label = token.getValue();
-        for (int i = 0; i < table.size(); i++)
-            if (table.get(i).getName().equals(label)) {
-                table.remove(i);
-                if (Main.debug)
-                    System.out.println("The symbol " + label + " has been removed from the " + this.filename + " symbol table.");
-                break;
-            }
+        Symbol s = table.remove(label);
+        if (s != null) {
+            unindex(s);
+            if (Main.debug)
+                System.out.println("The symbol " + label + " has been removed from the " + this.filename + " symbol table.");
+        }
     }
 
     /**
@@ -109,9 +116,8 @@ public class SymbolTable {
      *
      */
     public int getAddress(String s) {
-        for (Symbol sym : table)
-            if (sym.getName().equals(s)) return sym.getAddress();
-        return NOT_FOUND;
+        Symbol sym = table.get(s);
+        return (sym == null) ? NOT_FOUND : sym.getAddress();
     }
 
     /**
@@ -126,7 +132,7 @@ public class SymbolTable {
      */
     public int getAddressLocalOrGlobal(String s) {
         int address = this.getAddress(s);
-        return (address == NOT_FOUND) ? Main.symbolTable.getAddress(s) : address;
+        return (address == NOT_FOUND) ? Main.getSymbolTable().getAddress(s) : address;
     }
 
     /**
@@ -138,9 +144,7 @@ public class SymbolTable {
      *
      */
     public Symbol getSymbol(String s) {
-        for (Symbol sym : table)
-            if (sym.getName().equals(s)) return sym;
-        return null;
+        return table.get(s);
     }
 
     /**
@@ -159,9 +163,13 @@ public class SymbolTable {
         catch (NumberFormatException e) {
             return null;
         }
-        for (Symbol sym : table)
-            if (sym.getAddress() == address) return sym;
-        return null;
+        return getSymbolGivenAddress(address);
+    }
+
+    // First symbol added with the given address, null if none
+    private Symbol getSymbolGivenAddress(int address) {
+        ArrayList<Symbol> symbols = addressIndex.get(address);
+        return (symbols == null) ? null : symbols.get(0);
     }
 
     /**
@@ -175,7 +183,7 @@ public class SymbolTable {
      */
     public Symbol getSymbolGivenAddressLocalOrGlobal(String s) {
         Symbol sym = this.getSymbolGivenAddress(s);
-        return (sym == null) ? Main.symbolTable.getSymbolGivenAddress(s) : sym;
+        return (sym == null) ? Main.getSymbolTable().getSymbolGivenAddress(s) : sym;
     }
 
     /**
@@ -185,9 +193,7 @@ public class SymbolTable {
      *
      */
     public ArrayList<Symbol> getDataSymbols() {
-        ArrayList<Symbol> list = new ArrayList<>();
-        for (Symbol sym : table) if (sym.getType()) list.add(sym);
-        return list;
+        return getSymbols(Symbol.DATA_SYMBOL);
     }
 
     /**
@@ -197,9 +203,7 @@ public class SymbolTable {
      *
      */
     public ArrayList<Symbol> getTextSymbols() {
-        ArrayList<Symbol> list = new ArrayList<>();
-        for (Symbol table1 : table) if (!table1.getType()) list.add(table1);
-        return list;
+        return getSymbols(Symbol.TEXT_SYMBOL);
     }
 
     /**
@@ -209,9 +213,7 @@ public class SymbolTable {
      *
      */
     public ArrayList<Symbol> getAllSymbols() {
-        ArrayList<Symbol> list = new ArrayList<>();
-        for (Symbol table1 : table) list.add(table1);
-        return list;
+        return new ArrayList<>(table.values());
     }
 
     /**
@@ -225,11 +227,12 @@ public class SymbolTable {
     }
 
     /**
-     * Creates a fresh arrayList for a new table.
+     * Creates fresh collections for a new table.
      *
      */
     public void clear() {
-        table = new ArrayList<>();
+        table = new LinkedHashMap<>();
+        addressIndex = new TreeMap<>();
     }
 
     /**
@@ -242,11 +245,30 @@ public class SymbolTable {
      * its address updated to this value. Does nothing if none do.
      */
     public void fixSymbolTableAddress(int originalAddress, int replacementAddress) {
-        Symbol label = getSymbolGivenAddress(Integer.toString(originalAddress));
-        while (label != null) {
+        ArrayList<Symbol> labels = addressIndex.remove(originalAddress);
+        if (labels == null)
+            return;
+        for (Symbol label : labels)
             label.setAddress(replacementAddress);
-            label = getSymbolGivenAddress(Integer.toString(originalAddress));
-        }
+        addressIndex.computeIfAbsent(replacementAddress, k -> new ArrayList<>()).addAll(labels);
+    }
+
+    // Symbols of the given type, in the order they were added.  Built from the
+    // table on each call rather than kept in lists of their own, which removing
+    // a symbol would have to search.
+    private ArrayList<Symbol> getSymbols(boolean type) {
+        ArrayList<Symbol> symbols = new ArrayList<>();
+        for (Symbol s : table.values())
+            if (s.getType() == type)
+                symbols.add(s);
+        return symbols;
+    }
+
+    // Remove a symbol from the address index
+    private void unindex(Symbol s) {
+        ArrayList<Symbol> symbols = addressIndex.get(s.getAddress());
+        if (symbols != null && symbols.remove(s) && symbols.isEmpty())
+            addressIndex.remove(s.getAddress());
     }
 
     /**
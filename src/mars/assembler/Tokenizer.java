@@ -3,6 +3,7 @@ package mars.assembler;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import mars.ErrorList;
 import mars.ErrorMessage;
@@ -60,6 +61,24 @@ public class Tokenizer {
     private ErrorList errors;
     private MIPSprogram sourceMIPSprogram;
     private HashMap<String, String> equivalents; // DPS 11-July-2012
+    // Tokens of the lines of recently tokenized files as of their last
+    // tokenization, by line content, so that unchanged lines need not be scanned
+    // again when a file open in the editor is reassembled after an edit.  Only
+    // kept when running the GUI, and only for the MAX_CACHED_FILES files
+    // tokenized last.  A file's entry is taken out when it is tokenized again and
+    // only put back if that succeeds, and is dropped when the file is closed
+    // (see forgetFile).  Guarded by its own lock.
+    private static final int MAX_CACHED_FILES = 16;
+    private static final Map<String, HashMap<String, TokenList>> lineCache = new LinkedHashMap<String, HashMap<String, TokenList>>(MAX_CACHED_FILES, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HashMap<String, TokenList>> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+    // Lines of the file being tokenized, cached before and during this tokenization
+    private HashMap<String, TokenList> cachedLines, usedLines;
     // The 8 escaped characters are: single quote, double quote, backslash, newline (linefeed),
     // tab, backspace, return, form feed.  The characters and their corresponding decimal codes:
     private static final String escapedCharacters = "'\"\\ntbrf0";
@@ -97,6 +116,14 @@ public class Tokenizer {
     public ArrayList<TokenList> tokenize(MIPSprogram p) throws ProcessingException {
         sourceMIPSprogram = p;
         equivalents = new HashMap<>(); // DPS 11-July-2012
+        if (p.getFilename() != null) {
+            synchronized (lineCache) {
+                cachedLines = lineCache.remove(p.getFilename());
+            }
+            if (cachedLines == null)
+                cachedLines = new HashMap<>();
+            usedLines = new HashMap<>();
+        }
         ArrayList<TokenList> tokenList = new ArrayList<>();
         //ArrayList source = p.getSourceList();
         ArrayList<SourceLine> source = processIncludes(p, new HashMap<>()); // DPS 9-Jan-2013
@@ -115,11 +142,31 @@ public class Tokenizer {
             if (sourceLine.length() > 0 && !sourceLine.equals(currentLineTokens.getProcessedLine()))
                 source.set(i, new SourceLine(currentLineTokens.getProcessedLine(), source.get(i).getMIPSprogram(), source.get(i).getLineNumber()));
         }
+        if (usedLines != null) {
+            // Only keep the lines still in the file, and only for the editor
+            if (Main.getGUI() != null)
+                synchronized (lineCache) {
+                    lineCache.put(p.getFilename(), usedLines);
+                }
+            cachedLines = usedLines = null;
+        }
         if (errors.errorsOccurred())
             throw new ProcessingException(errors);
         return tokenList;
     }
 
+    /**
+     * Discards the tokens kept for the lines of the given file, to be called
+     * once it is no longer going to be reassembled, e.g. when it is closed.
+     *
+     * @param filename name of the file, as given to the MIPSprogram read from it
+     */
+    public static void forgetFile(String filename) {
+        synchronized (lineCache) {
+            lineCache.remove(filename);
+        }
+    }
+
     // pre-pre-processing pass through source code to process any ".include" directives.
     // When one is encountered, the contents of the included file are inserted at that 
     // point.  If no .include statements, the return value is a new array list but
@@ -289,10 +336,47 @@ public class Tokenizer {
      *
      */
     public TokenList tokenizeLine(MIPSprogram program, int lineNum, String theLine, boolean doEqvSubstitutes) {
-        TokenType tokenType;
-        TokenList result = new TokenList();
         if (theLine.length() == 0)
-            return result;
+            return new TokenList();
+        TokenList result = (usedLines == null)
+                ? scanLine(program, lineNum, theLine)
+                : scanLineCached(program, lineNum, theLine);
+        if (doEqvSubstitutes)
+            result = processEqv(program, lineNum, theLine, result); // DPS 11-July-2012
+        return result;
+    }
+
+    // Scans a line as tokenizeLine() does, reusing the tokens of an identical line
+    // of the same file if it was scanned before.  Lines with lexical errors are not
+    // cached, so that their errors are reported every time.
+    private TokenList scanLineCached(MIPSprogram program, int lineNum, String theLine) {
+        TokenList cached = usedLines.get(theLine);
+        if (cached == null)
+            cached = cachedLines.get(theLine);
+        if (cached != null) {
+            usedLines.put(theLine, cached);
+            return copyTokens(cached, program, lineNum);
+        }
+        int problems = errors.errorCount() + errors.warningCount();
+        TokenList result = scanLine(program, lineNum, theLine);
+        if (errors.errorCount() + errors.warningCount() == problems)
+            usedLines.put(theLine, copyTokens(result, program, lineNum));
+        return result;
+    }
+
+    // Copy of a token list, with tokens placed at the given program and line
+    private static TokenList copyTokens(TokenList tokens, MIPSprogram program, int lineNum) {
+        TokenList copy = new TokenList();
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            copy.add(new Token(token.getType(), token.getValue(), program, lineNum, token.getStartPos()));
+        }
+        return copy;
+    }
+
+    // Breaks up a non-empty line into tokens, see tokenizeLine().
+    private TokenList scanLine(MIPSprogram program, int lineNum, String theLine) {
+        TokenList result = new TokenList();
         // will be faster to work with char arrays instead of strings
         char c;
         char[] line = theLine.toCharArray();
@@ -450,8 +534,6 @@ public class Tokenizer {
             this.processCandidateToken(token, program, lineNum, theLine, tokenPos, tokenStartPos, result);
             tokenPos = 0;
         }
-        if (doEqvSubstitutes)
-            result = processEqv(program, lineNum, theLine, result); // DPS 11-July-2012
         return result;
     }
 
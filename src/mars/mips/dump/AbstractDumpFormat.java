@@ -41,6 +41,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
     public abstract class AbstractDumpFormat implements DumpFormat {
    
+   /**
+   *  Line separator, as written by PrintStream's println() method.
+   */
+      protected static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+   /**
+   *  Digit characters, indexed by value.  The binary digits are the first two.
+   */
+      protected static final byte[] LOWER_CASE_DIGITS = "0123456789abcdef".getBytes();
+      protected static final byte[] UPPER_CASE_DIGITS = "0123456789ABCDEF".getBytes();
+   
+      private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+   
       private String name, commandDescriptor, description,  extension;
    	
    	/**
@@ -115,4 +127,62 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public abstract void dumpMemoryRange(File file, int firstAddress, int lastAddress)
 		    throws AddressErrorException, IOException;
    
+   /**
+   *  Iterate over the memory range being dumped a block of words at a time.
+   *  Like the dump itself, iteration stops before the first word that holds
+   *  nothing (see Memory.getRawWordOrNull()).
+   *
+   *  @param firstAddress first memory address to dump.  Must be on word boundary.
+   *  @param lastAddress last memory address to dump.
+   *  @return iterator over the populated blocks of the range.
+   */
+       protected static Memory.WordBlocks getWordBlocks(int firstAddress, int lastAddress) {
+         return Memory.getInstance().getWordBlocks(firstAddress, lastAddress);
+      }
+   
+   /**
+   *  Open the file a dump is written to, with a large buffer:  formats write
+   *  whole lines or blocks at a time.
+   *
+   *  @param  file  File in which to store MIPS memory contents.
+   *  @return buffered stream writing to the file.
+   *  @throws IOException if the file cannot be opened.
+   */
+       protected static OutputStream openDumpFile(File file) throws IOException {
+         return new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE);
+      }
+   
+   /**
+   *  Write a value as a fixed number of digits, most significant first and
+   *  zero-padded, into a line being built.
+   *
+   *  @param line array holding the line.
+   *  @param at index in line of the first digit.
+   *  @param value value to be written; only its low-order digits are.
+   *  @param count number of digits.
+   *  @param bits number of bits per digit:  4 for hexadecimal, 1 for binary.
+   *  @param digits digit characters, see LOWER_CASE_DIGITS.
+   *  @return index in line following the last digit.
+   */
+       protected static int putDigits(byte[] line, int at, int value, int count, int bits, byte[] digits) {
+         int mask = (1 << bits) - 1;
+         for (int i = at + count - 1; i >= at; i--) {
+            line[i] = digits[value & mask];
+            value >>>= bits;
+         }
+         return at + count;
+      }
+   
+   /**
+   *  Write the line separator into a line being built.
+   *
+   *  @param line array holding the line.
+   *  @param at index in line of the separator.
+   *  @return index in line following the separator.
+   */
+       protected static int putLineSeparator(byte[] line, int at) {
+         System.arraycopy(LINE_SEPARATOR, 0, line, at, LINE_SEPARATOR.length);
+         return at + LINE_SEPARATOR.length;
+      }
+   
    }
\ No newline at end of file
@@ -1,6 +1,5 @@
    package mars.mips.dump;
 
-   import mars.util.Binary;
    import mars.Main;
    import mars.mips.hardware.*;
    import java.io.*;
@@ -61,7 +60,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	*  followed by single-character code, e.g. \t for tab, \0 for null.
 	*  Non-printing character (control code,
 	*  values above 127) is rendered as a period (.).  Written
-	*  using PrintStream's println() method.
+	*  a memory block of lines at a time.
    *  Adapted by Pete Sanderson from code written by Greg Gibeling.
    *
    *  @param  file  File in which to store MIPS memory contents.  
@@ -74,14 +73,29 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
-         PrintStream out = new PrintStream(new FileOutputStream(file));
-         String string = null;
+         // The characters of each byte value, as Binary.intToAscii() renders them.
+         byte[][] characters = new byte[256][];
+         int widest = 0;
+         for (int b = 0; b < characters.length; b++) {
+            characters[b] = ((b < Main.ASCII_TABLE.length) ? Main.ASCII_TABLE[b] : Main.ASCII_NON_PRINT).getBytes();
+            widest = Math.max(widest, characters[b].length);
+         }
+         OutputStream out = openDumpFile(file);
+         Memory.WordBlocks blocks = getWordBlocks(firstAddress, lastAddress);
+         int[] words = blocks.getWords();
+         byte[] text = new byte[words.length * (Memory.WORD_LENGTH_BYTES * widest + LINE_SEPARATOR.length)];
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               Integer temp = Main.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               out.println(Binary.intToAscii(temp.intValue()));
+            while (blocks.next()) {
+               int at = 0;
+               for (int w = 0; w < blocks.getLength(); w++) {
+                  for (int shift = 24; shift >= 0; shift -= 8) {
+                     byte[] character = characters[(words[w] >>> shift) & 0xFF];
+                     System.arraycopy(character, 0, text, at, character.length);
+                     at += character.length;
+                  }
+                  at = putLineSeparator(text, at);
+               }
+               out.write(text, 0, at);
             }
          } 
          finally { 
@@ -1,6 +1,5 @@
    package mars.mips.dump;
 
-   import mars.Main;
    import mars.mips.hardware.*;
    import java.io.*;
 /*
@@ -51,9 +50,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    
    /**
-   *  Write MIPS memory contents in pure binary format.  One byte at a time
-	*  using PrintStream's write() method.  Adapted by Pete Sanderson from
-	*  code written by Greg Gibeling.
+   *  Write MIPS memory contents in pure binary format.  Written a memory
+	*  block at a time, each word least significant byte first.  Adapted by
+	*  Pete Sanderson from code written by Greg Gibeling.
 	*
    *  @param  file  File in which to store MIPS memory contents.  
    *  @param firstAddress first (lowest) memory address to dump.  In bytes but
@@ -65,15 +64,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
-         PrintStream out = new PrintStream(new FileOutputStream(file));
+         OutputStream out = openDumpFile(file);
+         Memory.WordBlocks blocks = getWordBlocks(firstAddress, lastAddress);
+         int[] words = blocks.getWords();
+         byte[] bytes = new byte[words.length * Memory.WORD_LENGTH_BYTES];
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               Integer temp = Main.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               int word = temp.intValue();
-               for (int i = 0; i < 4; i++) 
-                  out.write((word >>> (i << 3)) & 0xFF);
+            while (blocks.next()) {
+               for (int w = 0; w < blocks.getLength(); w++) 
+                  for (int i = 0; i < 4; i++) 
+                     bytes[(w << 2) + i] = (byte) (words[w] >>> (i << 3));
+               out.write(bytes, 0, blocks.getLength() * Memory.WORD_LENGTH_BYTES);
             }
          } 
          finally { 
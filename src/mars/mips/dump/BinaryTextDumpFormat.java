@@ -1,6 +1,5 @@
    package mars.mips.dump;
 
-   import mars.Main;
    import mars.mips.hardware.*;
    import java.io.*;
 /*
@@ -53,7 +52,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    /**
    *  Write MIPS memory contents in binary text format.  Each line of
    *  text contains one memory word written as 32 '0' and '1' characters.  Written
-   *  using PrintStream's println() method.
+   *  a memory block of lines at a time.
    *  Adapted by Pete Sanderson from code written by Greg Gibeling.
    *
    *  @param  file  File in which to store MIPS memory contents.  
@@ -66,18 +65,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
-         PrintStream out = new PrintStream(new FileOutputStream(file));
-         String string = null;
+         OutputStream out = openDumpFile(file);
+         Memory.WordBlocks blocks = getWordBlocks(firstAddress, lastAddress);
+         int[] words = blocks.getWords();
+         byte[] text = new byte[words.length * (32 + LINE_SEPARATOR.length)];
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               Integer temp = Main.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               string = Integer.toBinaryString(temp.intValue());
-               while (string.length() < 32) {
-                  string = '0' + string;
+            while (blocks.next()) {
+               int at = 0;
+               for (int w = 0; w < blocks.getLength(); w++) {
+                  at = putDigits(text, at, words[w], 32, 1, LOWER_CASE_DIGITS);
+                  at = putLineSeparator(text, at);
                }
-               out.println(string);
+               out.write(text, 0, at);
             }
          } 
          finally { 
@@ -0,0 +1,322 @@
+package mars.mips.dump;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import mars.Main;
+import mars.assembler.ElfLoader;
+import mars.assembler.Symbol;
+import mars.assembler.SymbolTable;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.RegisterFile;
+import mars.settings.BooleanSettings;
+
+/*
+ Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Dump the program in memory as an ELF32 MIPS executable, in the byte order
+ * of memory. Each of the text, data, kernel text and kernel data segments
+ * holding anything becomes a loadable segment with a section of its own, and
+ * the global symbols are written to a symbol table. The executable can be
+ * loaded back, in place of assembling, by {@link mars.assembler.ElfLoader}.
+ *
+ * @see mars.assembler.ElfLoader
+ */
+public class ElfDumpFormat extends AbstractDumpFormat {
+
+    private static final int PAGE_SIZE = 4096;
+    private static final byte[] ZEROES = new byte[PAGE_SIZE];
+
+    /**
+     * Constructor. File extension is "elf".
+     */
+    public ElfDumpFormat() {
+        super("ELF32 executable", "ELF", "Written as ELF32 MIPS executable", "elf");
+    }
+
+    /**
+     * Write the program in memory as an ELF32 executable. An executable holds
+     * the whole program, so the range given is not used: each segment is
+     * written from its first word holding anything up to its last one (see
+     * Memory.getRawWordOrNull()), with zeroes for the words holding nothing.
+     * The data segment is searched from its base address, so that the .extern
+     * area and what the program stored around $gp are kept.
+     * The entry point is the global label
+     * main if execution is set to start there, the program counter's initial
+     * value otherwise.
+     *
+     * @param file File in which to store MIPS memory contents.
+     * @param firstAddress first (lowest) memory address to dump. Not used.
+     * @param lastAddress last (highest) memory address to dump. Not used.
+     * @throws AddressErrorException if a segment cannot be read.
+     * @throws IOException if error occurs during file output.
+     */
+    @Override
+    public void dumpMemoryRange(File file, int firstAddress, int lastAddress)
+            throws AddressErrorException, IOException {
+        ByteOrder order = (Memory.getInstance().getByteOrder() == Memory.LITTLE_ENDIAN)
+                ? ByteOrder.LITTLE_ENDIAN
+                : ByteOrder.BIG_ENDIAN;
+        ArrayList<Segment> segments = new ArrayList<>();
+        addSegment(segments, ".text", Memory.textBaseAddress, Memory.textLimitAddress, false);
+        addSegment(segments, ".data", Memory.dataSegmentBaseAddress, Memory.dataSegmentLimitAddress, true);
+        addSegment(segments, ".ktext", Memory.kernelTextBaseAddress, Memory.kernelTextLimitAddress, false);
+        addSegment(segments, ".kdata", Memory.kernelDataBaseAddress, Memory.kernelDataSegmentLimitAddress, true);
+        ArrayList<Symbol> symbols = Main.getSymbolTable().getAllSymbols();
+
+        // Section names and symbol names
+        StringTable sectionNames = new StringTable();
+        for (Segment segment : segments)
+            segment.name = sectionNames.add(segment.section);
+        int symtabName = sectionNames.add(".symtab");
+        int strtabName = sectionNames.add(".strtab");
+        int shstrtabName = sectionNames.add(".shstrtab");
+        StringTable symbolNames = new StringTable();
+
+        // Layout: headers, segments each at an offset congruent to its address
+        // modulo the page size, symbol table, string tables, section headers.
+        int offset = ElfLoader.ELF_HEADER_SIZE + segments.size() * ElfLoader.PROGRAM_HEADER_SIZE;
+        for (Segment segment : segments) {
+            offset += (segment.address - offset) & (PAGE_SIZE - 1);
+            segment.offset = offset;
+            offset += segment.size;
+        }
+        int symtabOffset = (offset + 3) & ~3;
+        int symtabSize = (symbols.size() + 1) * ElfLoader.SYMBOL_SIZE;
+        ByteBuffer tables = ByteBuffer.allocate(symtabSize).order(order);
+        tables.position(ElfLoader.SYMBOL_SIZE); // symbol 0 is undefined
+        for (Symbol symbol : symbols) {
+            int type = (symbol.getType() == Symbol.DATA_SYMBOL) ? ElfLoader.STT_OBJECT : ElfLoader.STT_NOTYPE;
+            int section = ElfLoader.SHN_ABS;
+            for (int i = 0; i < segments.size(); i++)
+                if (segments.get(i).holds(symbol.getAddress()))
+                    section = i + 1;
+            tables.putInt(symbolNames.add(symbol.getName()))
+                    .putInt(symbol.getAddress())
+                    .putInt(0)
+                    .put((byte) (ElfLoader.STB_GLOBAL << 4 | type))
+                    .put((byte) 0)
+                    .putShort((short) section);
+        }
+        int strtabOffset = symtabOffset + symtabSize;
+        int shstrtabOffset = strtabOffset + symbolNames.size();
+        int sectionHeadersOffset = (shstrtabOffset + sectionNames.size() + 3) & ~3;
+        int sectionCount = segments.size() + 4;
+
+        int main = Main.getSymbolTable().getAddress(SymbolTable.getStartLabel());
+        int entry = (BooleanSettings.START_AT_MAIN.isSet() && main != SymbolTable.NOT_FOUND
+                && (Memory.inTextSegment(main) || Memory.inKernelTextSegment(main)))
+                ? main
+                : RegisterFile.getProgramCounterRegister().getResetValue();
+
+        int headersSize = ElfLoader.ELF_HEADER_SIZE + segments.size() * ElfLoader.PROGRAM_HEADER_SIZE;
+        ByteBuffer headers = ByteBuffer.allocate(headersSize).order(order);
+        headers.put(ElfLoader.ELF_MAGIC)
+                .put((byte) ElfLoader.ELFCLASS32)
+                .put((byte) ((order == ByteOrder.LITTLE_ENDIAN) ? ElfLoader.ELFDATA2LSB : ElfLoader.ELFDATA2MSB))
+                .put((byte) ElfLoader.EV_CURRENT)
+                .position(16);
+        headers.putShort((short) ElfLoader.ET_EXEC)
+                .putShort((short) ElfLoader.EM_MIPS)
+                .putInt(ElfLoader.EV_CURRENT)
+                .putInt(entry)
+                .putInt(ElfLoader.ELF_HEADER_SIZE)
+                .putInt(sectionHeadersOffset)
+                .putInt(ElfLoader.EF_MIPS_ARCH_32)
+                .putShort((short) ElfLoader.ELF_HEADER_SIZE)
+                .putShort((short) ElfLoader.PROGRAM_HEADER_SIZE)
+                .putShort((short) segments.size())
+                .putShort((short) ElfLoader.SECTION_HEADER_SIZE)
+                .putShort((short) sectionCount)
+                .putShort((short) (sectionCount - 1));
+        for (Segment segment : segments)
+            headers.putInt(ElfLoader.PT_LOAD)
+                    .putInt(segment.offset)
+                    .putInt(segment.address)
+                    .putInt(segment.address)
+                    .putInt(segment.size)
+                    .putInt(segment.size)
+                    .putInt(segment.writable ? ElfLoader.PF_R | ElfLoader.PF_W : ElfLoader.PF_R | ElfLoader.PF_X)
+                    .putInt(PAGE_SIZE);
+
+        ByteBuffer sections = ByteBuffer.allocate(sectionCount * ElfLoader.SECTION_HEADER_SIZE).order(order);
+        sections.position(ElfLoader.SECTION_HEADER_SIZE); // section 0 is undefined
+        for (Segment segment : segments)
+            putSectionHeader(sections, segment.name, ElfLoader.SHT_PROGBITS,
+                    ElfLoader.SHF_ALLOC | (segment.writable ? ElfLoader.SHF_WRITE : ElfLoader.SHF_EXECINSTR),
+                    segment.address, segment.offset, segment.size, 0, 0, Memory.WORD_LENGTH_BYTES, 0);
+        putSectionHeader(sections, symtabName, ElfLoader.SHT_SYMTAB, 0, 0, symtabOffset, symtabSize,
+                segments.size() + 2, 1, Memory.WORD_LENGTH_BYTES, ElfLoader.SYMBOL_SIZE);
+        putSectionHeader(sections, strtabName, ElfLoader.SHT_STRTAB, 0, 0, strtabOffset, symbolNames.size(), 0, 0, 1, 0);
+        putSectionHeader(sections, shstrtabName, ElfLoader.SHT_STRTAB, 0, 0, shstrtabOffset, sectionNames.size(),
+                0, 0, 1, 0);
+
+        OutputStream out = openDumpFile(file);
+        try {
+            out.write(headers.array());
+            long written = headers.capacity();
+            for (Segment segment : segments) {
+                written += pad(out, segment.offset - written);
+                // runs of words holding something, with zeroes in between
+                long address = segment.address;
+                long end = address + segment.size;
+                while (address < end) {
+                    int runEnd = Memory.getInstance().getAddressOfFirstNull((int) address, (int) end);
+                    if (runEnd == address) {
+                        long next = Math.min(skip(address), end);
+                        written += pad(out, next - address);
+                        address = next;
+                        continue;
+                    }
+                    Memory.WordBlocks blocks = getWordBlocks((int) address, runEnd - Memory.WORD_LENGTH_BYTES);
+                    int[] words = blocks.getWords();
+                    ByteBuffer bytes = ByteBuffer.allocate(words.length * Memory.WORD_LENGTH_BYTES).order(order);
+                    IntBuffer view = bytes.asIntBuffer();
+                    while (blocks.next()) {
+                        view.clear();
+                        view.put(words, 0, blocks.getLength());
+                        out.write(bytes.array(), 0, blocks.getLength() * Memory.WORD_LENGTH_BYTES);
+                        written += blocks.getLength() * Memory.WORD_LENGTH_BYTES;
+                    }
+                    address = runEnd;
+                }
+            }
+            written += pad(out, symtabOffset - written);
+            out.write(tables.array());
+            symbolNames.writeTo(out);
+            sectionNames.writeTo(out);
+            written += tables.capacity() + symbolNames.size() + sectionNames.size();
+            pad(out, sectionHeadersOffset - written);
+            out.write(sections.array());
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    // A segment is written if it holds anything, from its first word holding
+    // something up to its last one.
+    private static void addSegment(ArrayList<Segment> segments, String section, int base, int limit,
+            boolean writable) throws AddressErrorException {
+        int start = base, end = base;
+        for (long address = base; address < limit;) {
+            int runEnd = Memory.getInstance().getAddressOfFirstNull((int) address, limit);
+            if (runEnd == address)
+                address = skip(address);
+            else {
+                if (end == base)
+                    start = (int) address;
+                address = end = runEnd;
+            }
+        }
+        if (end != base)
+            segments.add(new Segment(section, start, end - start, writable));
+    }
+
+    // Next address that may hold something, after one holding nothing: in the
+    // text segments the next word, elsewhere the next memory block.
+    private static long skip(long address) {
+        return (Memory.inTextSegment((int) address) || Memory.inKernelTextSegment((int) address))
+                ? address + Memory.WORD_LENGTH_BYTES
+                : (address | (PAGE_SIZE - 1)) + 1;
+    }
+
+    private static void putSectionHeader(ByteBuffer sections, int name, int type, int flags, int address,
+            int offset, int size, int link, int info, int alignment, int entrySize) {
+        sections.putInt(name)
+                .putInt(type)
+                .putInt(flags)
+                .putInt(address)
+                .putInt(offset)
+                .putInt(size)
+                .putInt(link)
+                .putInt(info)
+                .putInt(alignment)
+                .putInt(entrySize);
+    }
+
+    private static long pad(OutputStream out, long length) throws IOException {
+        for (long left = length; left > 0; left -= ZEROES.length)
+            out.write(ZEROES, 0, (int) Math.min(left, ZEROES.length));
+        return length;
+    }
+
+    private static final class Segment {
+
+        private final String section;
+        private final int address;
+        private final int size;
+        private final boolean writable;
+        private int name;
+        private int offset;
+
+        private Segment(String section, int address, int size, boolean writable) {
+            this.section = section;
+            this.address = address;
+            this.size = size;
+            this.writable = writable;
+        }
+
+        private boolean holds(int address) {
+            return Integer.compareUnsigned(address - this.address, size) < 0;
+        }
+    }
+
+    // An ELF string table: null-terminated strings, after an empty one.
+    private static final class StringTable {
+
+        private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+
+        private StringTable() {
+            strings.write(0);
+        }
+
+        private int add(String string) {
+            int index = strings.size();
+            strings.writeBytes(string.getBytes(StandardCharsets.UTF_8));
+            strings.write(0);
+            return index;
+        }
+
+        private int size() {
+            return strings.size();
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            strings.writeTo(out);
+        }
+    }
+}
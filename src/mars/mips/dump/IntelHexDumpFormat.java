@@ -1,6 +1,5 @@
    package mars.mips.dump;
 
-   import mars.Main;
    import mars.mips.hardware.*;
    import java.io.*;
 
@@ -33,38 +32,34 @@
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress)
           throws AddressErrorException, IOException {
-            PrintStream out = new PrintStream(new FileOutputStream(file));
-            String string = null;
+            OutputStream out = openDumpFile(file);
+            Memory.WordBlocks blocks = getWordBlocks(firstAddress, lastAddress);
+            int[] words = blocks.getWords();
+            byte[] text = new byte[words.length * (23 + LINE_SEPARATOR.length)];
             try {
-               for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                  Integer temp = Main.memory.getRawWordOrNull(address);
-                  if (temp == null) 
-                     break;
-                  string = Integer.toHexString(temp.intValue());
-                  while (string.length() < 8) {
-                     string = '0' + string;
+               while (blocks.next()) {
+                  int at = 0;
+                  for (int w = 0; w < blocks.getLength(); w++) {
+                     int value = words[w];
+                     int offset = blocks.getAddress() + w * Memory.WORD_LENGTH_BYTES - firstAddress;
+                     int checksum = 4 + (0xFF & offset) + (0xFF & (offset >> 8))
+                        + (0xFF & value) + (0xFF & (value >> 8)) + (0xFF & (value >> 16)) + (0xFF & (value >> 24));
+                     checksum = ~(checksum % 256) + 1;
+                     text[at++] = ':';
+                     text[at++] = '0';
+                     text[at++] = '4';
+                     // at least 4 digits, more once the offset no longer fits
+                     at = putDigits(text, at, offset, Math.max(4, (35 - Integer.numberOfLeadingZeros(offset)) / 4), 4, UPPER_CASE_DIGITS);
+                     text[at++] = '0';
+                     text[at++] = '0';
+                     at = putDigits(text, at, value, 8, 4, UPPER_CASE_DIGITS);
+                     at = putDigits(text, at, checksum, 2, 4, UPPER_CASE_DIGITS);
+                     at = putLineSeparator(text, at);
                   }
-                  String addr = Integer.toHexString(address-firstAddress);
-                  while (addr.length() < 4) {
-                     addr = '0' + addr;
-                  }
-                  String chksum;
-                  int tmp_chksum = 0;
-                  tmp_chksum += 4;
-                  tmp_chksum += 0xFF & (address-firstAddress);
-                  tmp_chksum += 0xFF & ((address-firstAddress)>>8);
-                  tmp_chksum += 0xFF & temp.intValue();
-                  tmp_chksum += 0xFF & (temp.intValue()>>8);
-                  tmp_chksum += 0xFF & (temp.intValue()>>16);
-                  tmp_chksum += 0xFF & (temp.intValue()>>24);
-                  tmp_chksum = tmp_chksum % 256;
-                  tmp_chksum = ~tmp_chksum + 1;
-                  chksum = Integer.toHexString(0xFF & tmp_chksum);
-                  if(chksum.length()==1) chksum = '0' + chksum;
-                  String finalstr = ":04"+addr+"00"+string+chksum;
-                  out.println(finalstr.toUpperCase());
+                  out.write(text, 0, at);
                }
-               out.println(":00000001FF");
+               out.write(":00000001FF".getBytes());
+               out.write(LINE_SEPARATOR);
             } 
             finally { 
                out.close(); 
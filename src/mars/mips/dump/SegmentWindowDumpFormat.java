@@ -1,6 +1,5 @@
 package mars.mips.dump;
 
-import mars.Main;
 import mars.ProgramStatement;
 import mars.util.Binary;
 import mars.mips.hardware.*;
@@ -38,8 +37,8 @@ import mars.settings.BooleanSettings;
  *
  * Dump MIPS memory contents in Segment Window format. Each line of text output
  * resembles the Text Segment Window or Data Segment Window depending on which
- * segment is selected for the dump. Written using PrintStream's println()
- * method. Each line of Text Segment Window represents one word of text segment
+ * segment is selected for the dump. Written through a buffer, whole lines at
+ * a time. Each line of Text Segment Window represents one word of text segment
  * memory. The line includes (1) address, (2) machine code in hex, (3) basic
  * instruction, (4) source line. Each line of Data Segment Window represents 8
  * words of data segment memory. The line includes address of first word for
@@ -63,8 +62,8 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
     /**
      * Write MIPS memory contents in Segment Window format. Each line of text
      * output resembles the Text Segment Window or Data Segment Window depending
-     * on which segment is selected for the dump. Written using PrintStream's
-     * println() method.
+     * on which segment is selected for the dump. Written through a buffer,
+     * whole lines at a time.
      *
      * @param file File in which to store MIPS memory contents.
      * @param firstAddress first (lowest) memory address to dump. In bytes but
@@ -79,31 +78,36 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
     public void dumpMemoryRange(File file, int firstAddress, int lastAddress)
             throws AddressErrorException, IOException {
 
-        PrintStream out = new PrintStream(new FileOutputStream(file));
+        OutputStream out = openDumpFile(file);
+        Memory.WordBlocks blocks = getWordBlocks(firstAddress, lastAddress);
+        int[] words = blocks.getWords();
 
         boolean hexAddresses = BooleanSettings.DISPLAY_ADDRESSES_IN_HEX.isSet();
 
         // If address in data segment, print in same format as Data Segment Window
         if (Memory.inDataSegment(firstAddress)) {
             boolean hexValues = BooleanSettings.DISPLAY_VALUES_IN_HEX.isSet();
+            // A row is only written once its 8 values are complete.
+            byte[] row = new byte[ROW_LENGTH + LINE_SEPARATOR.length];
             int offset = 0;
-            String string = "";
+            int at = 0;
             try {
-                for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                    if (offset % 8 == 0)
-                        string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "    ";
-                    offset++;
-                    Integer temp = Main.memory.getRawWordOrNull(address);
-                    if (temp == null)
-                        break;
-                    string += ((hexValues)
-                            ? Binary.intToHexString(temp)
-                            : ("           " + temp).substring(temp.toString().length())) + " ";
-                    if (offset % 8 == 0) {
-                        out.println(string);
-                        string = "";
+                while (blocks.next())
+                    for (int w = 0; w < blocks.getLength(); w++) {
+                        if (offset % 8 == 0) {
+                            int address = blocks.getAddress() + w * Memory.WORD_LENGTH_BYTES;
+                            at = (hexAddresses) ? putHex(row, 0, address) : putDecimal(row, 0, address & 0xFFFFFFFFL, 0);
+                            for (int i = 0; i < 4; i++)
+                                row[at++] = ' ';
+                        }
+                        offset++;
+                        at = (hexValues) ? putHex(row, at, words[w]) : putDecimal(row, at, words[w], 11);
+                        row[at++] = ' ';
+                        if (offset % 8 == 0) {
+                            at = putLineSeparator(row, at);
+                            out.write(row, 0, at);
+                        }
                     }
-                }
             }
             finally {
                 out.close();
@@ -111,35 +115,64 @@ public class SegmentWindowDumpFormat extends AbstractDumpFormat {
             return;
         }
 
-        if (!Memory.inTextSegment(firstAddress))
+        if (!Memory.inTextSegment(firstAddress)) {
+            out.close();
             return;
+        }
         // If address in text segment, print in same format as Text Segment Window
-        out.println(" Address    Code        Basic                     Source");
+        PrintStream text = new PrintStream(out);
+        text.println(" Address    Code        Basic                     Source");
       	//           12345678901234567890123456789012345678901234567890
         //                    1         2         3         4         5
-        out.println();
+        text.println();
         String string;
         try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "  ";
-                Integer temp = Main.memory.getRawWordOrNull(address);
-                if (temp == null)
-                    break;
-                string += Binary.intToHexString(temp) + "  ";
-                try {
-                    ProgramStatement ps = Main.memory.getStatement(address);
-                    string += (ps.getPrintableBasicAssemblyStatement() + "                      ").substring(0, 22);
-                    string += ((("".equals(ps.getSource())) ? "" : Integer.toString(ps.getSourceLine())) + "     ").substring(0, 5);
-                    string += ps.getSource();
-                }
-                catch (AddressErrorException aee) {
+            while (blocks.next())
+                for (int w = 0; w < blocks.getLength(); w++) {
+                    int address = blocks.getAddress() + w * Memory.WORD_LENGTH_BYTES;
+                    string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)) + "  ";
+                    string += Binary.intToHexString(words[w]) + "  ";
+                    try {
+                        ProgramStatement ps = Memory.getInstance().getStatementNoNotify(address);
+                        string += (ps.getPrintableBasicAssemblyStatement() + "                      ").substring(0, 22);
+                        string += ((("".equals(ps.getSource())) ? "" : Integer.toString(ps.getSourceLine())) + "     ").substring(0, 5);
+                        string += ps.getSource();
+                    }
+                    catch (AddressErrorException aee) {
+                    }
+                    text.println(string);
                 }
-                out.println(string);
-            }
         }
         finally {
-            out.close();
+            text.close();
         }
     }
 
+    // Longest row of the Data Segment Window: address, 4 spaces, and 8 values
+    // of at most 11 characters each followed by a space.
+    private static final int ROW_LENGTH = 10 + 4 + 8 * 12;
+
+    // Writes a value as Binary.intToHexString() does, into a row being built.
+    private static int putHex(byte[] row, int at, int value) {
+        row[at++] = '0';
+        row[at++] = 'x';
+        return putDigits(row, at, value, 8, 4, LOWER_CASE_DIGITS);
+    }
+
+    // Writes a value in decimal, right-aligned with spaces to the given width,
+    // into a row being built.
+    private static int putDecimal(byte[] row, int at, long value, int width) {
+        long magnitude = Math.abs(value);
+        int length = (value < 0) ? 2 : 1;
+        for (long rest = magnitude / 10; rest != 0; rest /= 10)
+            length++;
+        for (; width > length; width--)
+            row[at++] = ' ';
+        if (value < 0)
+            row[at] = '-';
+        int end = at + length;
+        for (int i = end - 1; i >= at + ((value < 0) ? 1 : 0); i--, magnitude /= 10)
+            row[i] = (byte) ('0' + magnitude % 10);
+        return end;
+    }
 }
@@ -54,6 +54,13 @@ public abstract class AccessNotice {
 		accessType = type;
 		thread = Thread.currentThread();
 	}
+	
+	/** Reuse this notice for a new access by the current thread.  Only called
+	 *  from within this package, for notices that observers do not retain. */
+	void reset(int type) {
+		accessType = type;
+		thread = Thread.currentThread();
+	}
 	/** Get the access type: READ or WRITE.  
 	 * @return Access type, either AccessNotice.READ or AccessNotice.WRITE
 	 */
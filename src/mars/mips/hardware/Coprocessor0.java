@@ -1,5 +1,6 @@
    package mars.mips.hardware;
    import mars.Main;
+   import mars.MachineContext;
    import java.util.*;
 
 /*
@@ -49,12 +50,24 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 		// bit 1 (exception level) not set, bit 0 (interrupt enable) set.
 		public static final int DEFAULT_STATUS_VALUE = 0x0000FF11;
 		
-      private static Register [] registers = 
-          { new Register("$8 (vaddr)", 8, 0),  
-            new Register("$12 (status)", 12, DEFAULT_STATUS_VALUE),
-         	new Register("$13 (cause)", 13, 0),  
-         	new Register("$14 (epc)", 14, 0)
-           };
+      /**
+       *  The registers of one machine, see mars.MachineContext.  The static methods
+       *  of this class work on those of the current machine.
+       */
+       public static final class State {
+         private final int[] values = new int[4];
+
+         private final Register [] registers = 
+             { new Register("$8 (vaddr)", 8, 0, values, 0),  
+               new Register("$12 (status)", 12, DEFAULT_STATUS_VALUE, values, 1),
+            	new Register("$13 (cause)", 13, 0, values, 2),  
+            	new Register("$14 (epc)", 14, 0, values, 3)
+              };
+      }
+
+       private static State state() {
+         return MachineContext.current().getCoprocessor0State();
+      }
         												  
    	 
    	/**
@@ -62,10 +75,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/	 
    		 
        public static void showRegisters(){
-         for (int i=0; i< registers.length; i++){
-            System.out.println("Name: " + registers[i].getName());
-            System.out.println("Number: " + registers[i].getNumber());
-            System.out.println("Value: " + registers[i].getValue());	
+         State s = state();
+         for (int i=0; i< s.registers.length; i++){
+            System.out.println("Name: " + s.registers[i].getName());
+            System.out.println("Number: " + s.registers[i].getNumber());
+            System.out.println("Value: " + s.registers[i].getValue());	
             System.out.println(""); 
          }
       }
@@ -78,11 +92,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int updateRegister(String n, int val){
+         State s = state();
 		   int oldValue = 0;
-         for (int i=0; i< registers.length; i++){
-            if(("$"+registers[i].getNumber()).equals(n) || registers[i].getName().equals(n)) {
-				   oldValue = registers[i].getValue();
-               registers[i].setValue(val);
+         for (int i=0; i< s.registers.length; i++){
+            if(("$"+s.registers[i].getNumber()).equals(n) || s.registers[i].getName().equals(n)) {
+				   oldValue = s.registers[i].getValue();
+               s.registers[i].setValue(val);
                break;
             }
          }
@@ -96,12 +111,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 		  *   @return old value in register prior to update
    	  **/
        public static int updateRegister(int num, int val){
+         State s = state();
          int old = 0;
-         for (int i=0; i< registers.length; i++){
-            if(registers[i].getNumber()== num) {
+         for (int i=0; i< s.registers.length; i++){
+            if(s.registers[i].getNumber()== num) {
                old = (Main.isBackSteppingEnabled())
-                        ? Main.program.getBackStepper().addCoprocessor0Restore(num,registers[i].setValue(val))
-                  		: registers[i].setValue(val);
+                        ? Main.getProgram().getBackStepper().addCoprocessor0Restore(num,s.registers[i].setValue(val))
+                  		: s.registers[i].setValue(val);
                break;
             }
          }
@@ -116,9 +132,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int getValue(int num){
-         for (int i=0; i< registers.length; i++){
-            if(registers[i].getNumber()== num) {
-               return registers[i].getValue();
+         State s = state();
+         for (int i=0; i< s.registers.length; i++){
+            if(s.registers[i].getNumber()== num) {
+               return s.registers[i].getValue();
             }
          }
          return 0;
@@ -131,9 +148,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    		  **/	
       		
        public static int getNumber(String n){
-         for (int i=0; i< registers.length; i++){
-            if(("$"+registers[i].getNumber()).equals(n) || registers[i].getName().equals(n)) {
-               return registers[i].getNumber();
+         State s = state();
+         for (int i=0; i< s.registers.length; i++){
+            if(("$"+s.registers[i].getNumber()).equals(n) || s.registers[i].getName().equals(n)) {
+               return s.registers[i].getNumber();
             }
          } 
          return -1;     
@@ -145,7 +163,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static Register[] getRegisters(){
-         return registers;
+         State s = state();
+         return s.registers;
       }
 
       
@@ -158,8 +177,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int getRegisterPosition(Register r){
-         for (int i=0; i< registers.length; i++){
-            if(registers[i]==r) {
+         State s = state();
+         for (int i=0; i< s.registers.length; i++){
+            if(s.registers[i]==r) {
                return i;
             }
          } 
@@ -173,9 +193,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static Register getRegister(String rname) {
-         for (int i=0; i< registers.length; i++){
-            if(("$"+registers[i].getNumber()).equals(rname) || registers[i].getName().equals(rname)) {
-               return registers[i];
+         State s = state();
+         for (int i=0; i< s.registers.length; i++){
+            if(("$"+s.registers[i].getNumber()).equals(rname) || s.registers[i].getName().equals(rname)) {
+               return s.registers[i];
             }
          } 
          return null;
@@ -187,18 +208,41 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static void resetRegisters(){
-         for(int i=0; i< registers.length; i++){
-            registers[i].resetValue();
+         State s = state();
+         for(int i=0; i< s.registers.length; i++){
+            s.registers[i].resetValue();
          }
       }
+
+   	/**
+   	  *  Copies the values of the registers, for a later restoreRegisters().
+   	  *  Observers are not notified.
+   	  *
+   	  *  @return the register values
+   	  **/
+       public static int[] saveRegisters(){
+         return state().values.clone();
+      }
+   
+   	/**
+   	  *  Sets the registers back to values copied by saveRegisters().  Like
+   	  *  resetRegisters(), observers are not notified.
+   	  *
+   	  *  @param values the register values
+   	  **/
+       public static void restoreRegisters(int[] values){
+         State s = state();
+         System.arraycopy(values, 0, s.values, 0, s.values.length);
+      }
       
       /**
    	 *  Each individual register is a separate object and Observable.  This handy method
    	 *  will add the given Observer to each one.  
    	 */
        public static void addRegistersObserver(Observer observer) {
-         for (int i=0; i<registers.length; i++) {
-            registers[i].addObserver(observer);
+         State s = state();
+         for (int i=0; i<s.registers.length; i++) {
+            s.registers[i].addObserver(observer);
          }
       }
       
@@ -207,8 +251,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  will delete the given Observer from each one.  
    	 */
        public static void deleteRegistersObserver(Observer observer) {
-         for (int i=0; i<registers.length; i++) {
-            registers[i].deleteObserver(observer);
+         State s = state();
+         for (int i=0; i<s.registers.length; i++) {
+            s.registers[i].deleteObserver(observer);
          }
       }
 
@@ -1,6 +1,7 @@
    package mars.mips.hardware;
    import mars.util.*;
    import mars.Main;
+   import mars.MachineContext;
    import java.util.*;
 
 /*
@@ -48,26 +49,39 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 // storing into registers, and reassembled upon retrieval.
 
     public  class Coprocessor1 {
-      private static Register [] registers = 
-          { new Register("$f0", 0, 0),  new Register("$f1", 1, 0),
-         	new Register("$f2", 2, 0),  new Register("$f3", 3, 0),
-         	new Register("$f4", 4, 0),  new Register("$f5", 5, 0),
-         	new Register("$f6", 6, 0),  new Register("$f7", 7, 0),
-         	new Register("$f8", 8, 0),  new Register("$f9", 9, 0),
-         	new Register("$f10", 10, 0),new Register("$f11", 11, 0), 
-         	new Register("$f12", 12, 0),new Register("$f13", 13, 0),
-         	new Register("$f14", 14, 0),new Register("$f15", 15, 0),
-         	new Register("$f16", 16, 0),new Register("$f17", 17, 0),
-         	new Register("$f18", 18, 0),new Register("$f19", 19, 0),
-         	new Register("$f20", 20, 0),new Register("$f21", 21, 0),
-         	new Register("$f22", 22, 0),new Register("$f23", 23, 0),
-         	new Register("$f24", 24, 0),new Register("$f25", 25, 0),
-         	new Register("$f26", 26, 0),new Register("$f27", 27, 0),
-         	new Register("$f28", 28, 0),new Register("$f29", 29, 0),
-         	new Register("$f30", 30, 0),new Register("$f31", 31, 0)
-           };
-   	// The 8 condition flags will be stored in bits 0-7 for flags 0-7.
-      private static Register condition = new Register("cf",32, 0);	 
+      /**
+       *  The registers of one machine, see mars.MachineContext.  The static methods
+       *  of this class work on those of the current machine.
+       */
+       public static final class State {
+         private final int[] values = new int[33];
+
+         private final Register [] registers = 
+             { new Register("$f0", 0, 0, values, 0),  new Register("$f1", 1, 0, values, 1),
+            	new Register("$f2", 2, 0, values, 2),  new Register("$f3", 3, 0, values, 3),
+            	new Register("$f4", 4, 0, values, 4),  new Register("$f5", 5, 0, values, 5),
+            	new Register("$f6", 6, 0, values, 6),  new Register("$f7", 7, 0, values, 7),
+            	new Register("$f8", 8, 0, values, 8),  new Register("$f9", 9, 0, values, 9),
+            	new Register("$f10", 10, 0, values, 10),new Register("$f11", 11, 0, values, 11), 
+            	new Register("$f12", 12, 0, values, 12),new Register("$f13", 13, 0, values, 13),
+            	new Register("$f14", 14, 0, values, 14),new Register("$f15", 15, 0, values, 15),
+            	new Register("$f16", 16, 0, values, 16),new Register("$f17", 17, 0, values, 17),
+            	new Register("$f18", 18, 0, values, 18),new Register("$f19", 19, 0, values, 19),
+            	new Register("$f20", 20, 0, values, 20),new Register("$f21", 21, 0, values, 21),
+            	new Register("$f22", 22, 0, values, 22),new Register("$f23", 23, 0, values, 23),
+            	new Register("$f24", 24, 0, values, 24),new Register("$f25", 25, 0, values, 25),
+            	new Register("$f26", 26, 0, values, 26),new Register("$f27", 27, 0, values, 27),
+            	new Register("$f28", 28, 0, values, 28),new Register("$f29", 29, 0, values, 29),
+            	new Register("$f30", 30, 0, values, 30),new Register("$f31", 31, 0, values, 31)
+              };
+      	// The 8 condition flags will be stored in bits 0-7 for flags 0-7.
+         private final Register condition = new Register("cf",32, 0, values, 32);
+      }
+
+       private static State state() {
+         return MachineContext.current().getCoprocessor1State();
+      }
+
       private static int numConditionFlags = 8;
    	
    	/**
@@ -75,11 +89,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/	 
    		 
        public static void showRegisters(){
-         for (int i=0; i< registers.length; i++){
+         State s = state();
+         for (int i=0; i< s.registers.length; i++){
           
-            System.out.println("Name: " + registers[i].getName());
-            System.out.println("Number: " + registers[i].getNumber());
-            System.out.println("Value: " + registers[i].getValue());	
+            System.out.println("Name: " + s.registers[i].getName());
+            System.out.println("Number: " + s.registers[i].getNumber());
+            System.out.println("Value: " + s.registers[i].getValue());	
             System.out.println(""); 
          }
       }
@@ -102,8 +117,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	  
        public static void setRegisterToFloat(int reg, float val){
-         if(reg >= 0 && reg < registers.length) {
-            registers[reg].setValue(Float.floatToRawIntBits(val));
+         State s = state();
+         if(reg >= 0 && reg < s.registers.length) {
+            s.registers[reg].setValue(Float.floatToRawIntBits(val));
          }
       }
    
@@ -127,8 +143,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	  
        public static void setRegisterToInt(int reg, int val){
-         if(reg >= 0 && reg < registers.length) {
-            registers[reg].setValue(val);
+         State s = state();
+         if(reg >= 0 && reg < s.registers.length) {
+            s.registers[reg].setValue(val);
          }
       }
    
@@ -144,12 +161,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        public static void setRegisterPairToDouble(int reg, double val) 
                                     throws InvalidRegisterAccessException {
+         State s = state();
          if (reg % 2 != 0) {
             throw new InvalidRegisterAccessException();
          } 
          long bits = Double.doubleToRawLongBits(val); 
-         registers[reg+1].setValue(Binary.highOrderLongToInt(bits));  // high order 32 bits
-         registers[reg].setValue(Binary.lowOrderLongToInt(bits)); // low order 32 bits
+         s.registers[reg+1].setValue(Binary.highOrderLongToInt(bits));  // high order 32 bits
+         s.registers[reg].setValue(Binary.lowOrderLongToInt(bits)); // low order 32 bits
       }
    
    
@@ -179,11 +197,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        public static void setRegisterPairToLong(int reg, long val) 
                                     throws InvalidRegisterAccessException {
+         State s = state();
          if (reg % 2 != 0) {
             throw new InvalidRegisterAccessException();
          } 
-         registers[reg+1].setValue(Binary.highOrderLongToInt(val));  // high order 32 bits
-         registers[reg].setValue(Binary.lowOrderLongToInt(val)); // low order 32 bits
+         s.registers[reg+1].setValue(Binary.highOrderLongToInt(val));  // high order 32 bits
+         s.registers[reg].setValue(Binary.lowOrderLongToInt(val)); // low order 32 bits
       }
    
    
@@ -210,9 +229,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static float getFloatFromRegister(int reg){
+         State s = state();
          float result = 0F;
-         if(reg >= 0 && reg < registers.length) {
-            result = Float.intBitsToFloat(registers[reg].getValue());
+         if(reg >= 0 && reg < s.registers.length) {
+            result = Float.intBitsToFloat(s.registers[reg].getValue());
          }
          return result;
       }
@@ -236,9 +256,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int getIntFromRegister(int reg){
+         State s = state();
          int result = 0;
-         if(reg >= 0 && reg < registers.length) {
-            result = registers[reg].getValue();
+         if(reg >= 0 && reg < s.registers.length) {
+            result = s.registers[reg].getValue();
          }
          return result;
       }
@@ -264,11 +285,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        public static double getDoubleFromRegisterPair(int reg) 
                                     throws InvalidRegisterAccessException {
+         State s = state();
          double result = 0.0;
          if (reg % 2 != 0) {
             throw new InvalidRegisterAccessException();
          } 
-         long bits = Binary.twoIntsToLong(registers[reg+1].getValue(),registers[reg].getValue());
+         long bits = Binary.twoIntsToLong(s.registers[reg+1].getValue(),s.registers[reg].getValue());
          return Double.longBitsToDouble(bits);
       }
    
@@ -296,11 +318,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
        public static long getLongFromRegisterPair(int reg) 
                                     throws InvalidRegisterAccessException {
+         State s = state();
          double result = 0.0;
          if (reg % 2 != 0) {
             throw new InvalidRegisterAccessException();
          } 
-         return Binary.twoIntsToLong(registers[reg+1].getValue(),registers[reg].getValue());
+         return Binary.twoIntsToLong(s.registers[reg+1].getValue(),s.registers[reg].getValue());
       }
    
    
@@ -326,12 +349,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	  
        public static int updateRegister(int num, int val){
+         State s = state();
          int old = 0;
-         for (int i=0; i< registers.length; i++){
-            if(registers[i].getNumber()== num) {
+         for (int i=0; i< s.registers.length; i++){
+            if(s.registers[i].getNumber()== num) {
                old = (Main.isBackSteppingEnabled())
-                        ? Main.program.getBackStepper().addCoprocessor1Restore(num,registers[i].setValue(val))
-                  		: registers[i].setValue(val);
+                        ? Main.getProgram().getBackStepper().addCoprocessor1Restore(num,s.registers[i].setValue(val))
+                  		: s.registers[i].setValue(val);
                break;
             }
          }
@@ -347,7 +371,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int getValue(int num){
-         return registers[num].getValue();
+         State s = state();
+         return s.registers[num].getValue();
       }
       		
       	/**
@@ -357,10 +382,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    		  **/	
       		
        public static int getRegisterNumber(String n){
+         State s = state();
          int j=-1;
-         for (int i=0; i< registers.length; i++){
-            if(registers[i].getName().equals(n)) {
-               j= registers[i].getNumber();
+         for (int i=0; i< s.registers.length; i++){
+            if(s.registers[i].getName().equals(n)) {
+               j= s.registers[i].getNumber();
                break;
             }
          } 
@@ -373,7 +399,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static Register[] getRegisters(){
-         return registers;
+         State s = state();
+         return s.registers;
       }
       
    	/**
@@ -383,11 +410,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static Register getRegister(String rName) {
+         State s = state();
          Register reg = null;
          if (rName.charAt(0) == '$' && rName.length() > 1 && rName.charAt(1) == 'f') {
             try {
                    // check for register number 0-31.
-               reg = registers[Binary.stringToInt(rName.substring(2))];    // KENV 1/6/05
+               reg = s.registers[Binary.stringToInt(rName.substring(2))];    // KENV 1/6/05
             }
                 catch (Exception e) {
                    // handles both NumberFormat and ArrayIndexOutOfBounds
@@ -403,10 +431,32 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static void resetRegisters(){
-         for(int i=0; i < registers.length; i++)
-            registers[i].resetValue();
+         State s = state();
+         for(int i=0; i < s.registers.length; i++)
+            s.registers[i].resetValue();
          clearConditionFlags();
       }
+
+   	/**
+   	  *  Copies the values of the registers, including the condition flags, for
+   	  *  a later restoreRegisters().  Observers are not notified.
+   	  *
+   	  *  @return the register values
+   	  **/
+       public static int[] saveRegisters(){
+         return state().values.clone();
+      }
+   
+   	/**
+   	  *  Sets the registers back to values copied by saveRegisters().  Like
+   	  *  resetRegisters(), observers are not notified.
+   	  *
+   	  *  @param values the register values
+   	  **/
+       public static void restoreRegisters(int[] values){
+         State s = state();
+         System.arraycopy(values, 0, s.values, 0, s.values.length);
+      }
       
    
       /**
@@ -414,8 +464,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  will add the given Observer to each one.  
    	 */
        public static void addRegistersObserver(Observer observer) {
-         for (int i=0; i<registers.length; i++) {
-            registers[i].addObserver(observer);
+         State s = state();
+         for (int i=0; i<s.registers.length; i++) {
+            s.registers[i].addObserver(observer);
          }
       }
 
@@ -425,8 +476,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  will delete the given Observer from each one.  
    	 */
        public static void deleteRegistersObserver(Observer observer) {
-         for (int i=0; i<registers.length; i++) {
-            registers[i].deleteObserver(observer);
+         State s = state();
+         for (int i=0; i<s.registers.length; i++) {
+            s.registers[i].deleteObserver(observer);
          }
       }
    	
@@ -437,16 +489,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  @return previous flag setting (0 or 1)
    	 */
        public static int setConditionFlag(int flag) {
+         State s = state();
          int old = 0;
          if (flag >= 0 && flag < numConditionFlags) {
             old = getConditionFlag(flag);
-            condition.setValue(Binary.setBit(condition.getValue(),flag));
+            s.condition.setValue(Binary.setBit(s.condition.getValue(),flag));
             if (Main.isBackSteppingEnabled())
                if (old==0) {
-                  Main.program.getBackStepper().addConditionFlagClear(flag);
+                  Main.getProgram().getBackStepper().addConditionFlagClear(flag);
                } 
                else {
-                  Main.program.getBackStepper().addConditionFlagSet(flag);
+                  Main.getProgram().getBackStepper().addConditionFlagSet(flag);
                }
          }
          return old;
@@ -459,16 +512,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  @return previous flag setting (0 or 1)
    	 */
        public static int clearConditionFlag(int flag) {
+         State s = state();
          int old = 0;
          if (flag >= 0 && flag < numConditionFlags) {
             old = getConditionFlag(flag);
-            condition.setValue(Binary.clearBit(condition.getValue(),flag));
+            s.condition.setValue(Binary.clearBit(s.condition.getValue(),flag));
             if (Main.isBackSteppingEnabled())
                if (old==0) {
-                  Main.program.getBackStepper().addConditionFlagClear(flag);
+                  Main.getProgram().getBackStepper().addConditionFlagClear(flag);
                } 
                else {
-                  Main.program.getBackStepper().addConditionFlagSet(flag);
+                  Main.getProgram().getBackStepper().addConditionFlagSet(flag);
                }
          }
          return old;
@@ -482,9 +536,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  @return 0 if condition is false, 1 if condition is true
    	 */
        public static int getConditionFlag(int flag) {
+         State s = state();
          if (flag < 0 || flag >= numConditionFlags) 
             flag = 0;
-         return Binary.bitValue(condition.getValue(), flag);
+         return Binary.bitValue(s.condition.getValue(), flag);
       }		
    	
    	
@@ -494,7 +549,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  @return array of int condition flags
    	 */
        public static int getConditionFlags() {
-         return condition.getValue();
+         State s = state();
+         return s.condition.getValue();
       }	
    	
    	
@@ -503,7 +559,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *
    	 */
        public static void clearConditionFlags() {
-         condition.setValue(0);  // sets all 32 bits to 0.
+         State s = state();
+         s.condition.setValue(0);  // sets all 32 bits to 0.
       }		
    	
       /**
@@ -511,7 +568,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *
    	 */
        public static void setConditionFlags() {
-         condition.setValue(-1);  // sets all 32 bits to 1.
+         State s = state();
+         s.condition.setValue(-1);  // sets all 32 bits to 1.
       }	
    	
       /**
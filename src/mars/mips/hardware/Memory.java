@@ -1,5 +1,8 @@
 package mars.mips.hardware;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -7,9 +10,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.logging.Level;
+import mars.MachineContext;
 import mars.Main;
 import mars.ProgramStatement;
 import mars.mips.instructions.Instruction;
@@ -84,8 +89,6 @@ public final class Memory extends Observable {
     // bytes of space available without going indirect.
     private static final int BLOCK_LENGTH_WORDS = 1024;  // allocated blocksize 1024 ints == 4K bytes
     private static final int BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
-    private int[][] dataBlockTable;
-    private int[][] kernelDataBlockTable;
 
     // The stack is modeled similarly to the data segment.  It cannot share the same
     // data structure because the stack base address is very large.  To store it in the
@@ -101,7 +104,6 @@ public final class Memory extends Observable {
     // from desired address).  Thus as the address gets smaller the offset gets larger.
     // Everything else works the same, so it shares some private helper methods with
     // data segment algorithms.
-    private int[][] stackBlockTable;
 
     // Memory mapped I/O is simulated with a separate table using the same structure and
     // logic as data segment.  Memory is allocated in 4K byte blocks.  But since MMIO
@@ -113,7 +115,33 @@ public final class Memory extends Observable {
     // have unsigned types.  As long as the absolute address is correctly translated
     // into a table offset, this is of no concern.
     private static final int MMIO_TABLE_LENGTH = 16; // Each entry of table points to a 4K block.
-    private int[][] memoryMapBlockTable;
+
+    // The block tables described above now only size the data, stack, kernel data
+    // and memory mapped I/O segments.  Their contents are all kept in one page table
+    // indexed by address, like an MMU would: the 10 high bits of an address select
+    // a page table from the page directory, the next 10 bits a 4K byte page in that
+    // table.  Page tables and pages are still allocated on first write.  Since the
+    // stack is stored by address as well, it no longer needs "backward" addressing.
+    //
+    // In front of the page table sits a small direct-mapped TLB.  Each entry holds
+    // a recently used page along with the range of addresses in it known to be
+    // ordinary memory (no text, no memory mapped I/O), so that most loads and stores
+    // skip the segment checks altogether.
+    //
+    // Pages and page tables may be shared with snapshots of memory (see snapshot()),
+    // and are then copied on the first write.  ownedPages tells, for each page table
+    // this memory owns, which of its pages it owns; a null entry stands for a page
+    // table that is shared or missing.  Only owned pages make it into the TLB as
+    // writable.
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_TABLE_SHIFT = 22;
+    private static final int PAGE_TABLE_LENGTH = 1024;
+    private static final int PAGE_OFFSET_MASK = (1 << PAGE_SHIFT) - 1;
+    private int[][][] pageDirectory;
+    private boolean[][] ownedPages;
+
+    private static final int TLB_LENGTH = 16;
+    private final Translation[] tlb = new Translation[TLB_LENGTH];
 
     // I use a similar scheme for storing instructions.  MIPS text segment ranges from
     // 0x00400000 all the way to data segment (0x10000000) a range of about 250 MB!  So
@@ -124,6 +152,10 @@ public final class Memory extends Observable {
     private static final int TEXT_BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
     private ProgramStatement[][] textBlockTable;
     private ProgramStatement[][] kernelTextBlockTable;
+    // The text segment tables are shared with snapshots as a whole, and copied
+    // as a whole on the first statement stored, which only happens during a run
+    // with self-modifying code.
+    private boolean textShared;
 
     /**
      * MIPS word length in bytes.
@@ -143,9 +175,10 @@ public final class Memory extends Observable {
      */
     public static final boolean BIG_ENDIAN = false;
     /**
-     * Current setting for endian (default LITTLE_ENDIAN)
+     * Current setting for endian (default LITTLE_ENDIAN).  Each machine has its
+     * own, e.g. as set for the executable it loaded.
      */
-    private static boolean byteOrder = LITTLE_ENDIAN;
+    private boolean byteOrder = LITTLE_ENDIAN;
 
     /**
      * base address for (user) text segment: 0x00400000
@@ -226,7 +259,12 @@ public final class Memory extends Observable {
     public static int memoryMapLimitAddress = memoryMapBaseAddress
             + BLOCK_LENGTH_WORDS * MMIO_TABLE_LENGTH * WORD_LENGTH_BYTES;
 
-    public static int heapAddress;
+    // Next available heap address (see allocateBytesFromHeap()), one per machine
+    private int heapAddress;
+    // Files mapped into the heap (see mapFile()).  Their pages are read from the file
+    // when first accessed: getPage() creates missing pages of a mapping from it rather
+    // than zeroed.  The array is replaced, never modified, so that snapshots can share it.
+    private FileMapping[] fileMappings;
     /**
      * A mapping from segments names (like ".text") to the base and limit for
      * that segment.
@@ -257,7 +295,7 @@ public final class Memory extends Observable {
      */
     public static int[] getSegmentBounds(String segment) {
         Integer[] bounds = segmentBoundMap.get(segment);
-        return new int[] {bounds[0], bounds[1]};
+        return (bounds == null) ? null : new int[] {bounds[0], bounds[1]};
     }
 
     // Starting with MARS 3.7, the configuration can be changed.
@@ -272,8 +310,9 @@ public final class Memory extends Observable {
         configurations.add(new Configuration("CompactTextAtZero", "Compact, Text at Address 0", Configuration.textCompactConfigValues));
     }
 
-    // Memory current configuration
-    private Configuration currentConfig = defaultConfig;
+    // Memory current configuration, which like the segment addresses above is
+    // shared by the memories of all machines (see mars.MachineContext)
+    private static Configuration currentConfig = defaultConfig;
     
     /*
      * Config getter
@@ -333,25 +372,60 @@ public final class Memory extends Observable {
     final Collection<MemoryObservable> observables
             = Collections.synchronizedList(new ArrayList<MemoryObservable>());
 
-    private static final Memory instance = new Memory();
-
-    // Default constructor
-    private Memory() {
-        this(defaultConfig);
-    }
-    
-    // Constructor which takes a memory configuration as argument
-    private Memory(Memory.Configuration config) {
-        configure(config);
+    // Accesses do not search that collection, though.  Whenever it changes, its live
+    // observables are copied into an array sorted by low address, so a search can
+    // stop at the first range starting above the target address, and the 4K pages
+    // they cover are flagged in a bitmap (one bit per page, 128K bytes).  Accesses
+    // to pages nobody watches, which is nearly all of them while only a bitmap
+    // display or MMIO device is attached, are settled by a single bit test.
+    // The index is replaced, never modified, and the bitmap is only updated a word
+    // at a time over the pages of the range added or removed, then republished
+    // through its volatile field, so readers need no locking.
+    private static final int WATCHED_PAGES_LENGTH = 1 << (32 - PAGE_SHIFT - 6);
+    private volatile MemoryObservable[] observableIndex = new MemoryObservable[0];
+    private volatile long[] watchedPages = new long[WATCHED_PAGES_LENGTH];
+
+    // Notice handed to observers that declared not to retain it, refilled for each
+    // access.  Memory accesses are serialized by the lock of the machine (see
+    // mars.MachineContext.getLock()); the flag catches observers that access
+    // memory themselves while being notified.
+    private final MemoryAccessNotice reusableNotice = new MemoryAccessNotice(AccessNotice.READ, 0, 0, 0);
+    private boolean reusableNoticeInUse;
+
+    // Set whenever memory mapped I/O is accessed, so that the simulator can end
+    // its current locking epoch and let devices in.
+    private boolean memoryMapAccessed = false;
+
+    // Breakpoints of this machine, a flag for each word of the text segments
+    // laid out like the text block tables, user segment blocks first, and the
+    // number of flags set, so that free runs can skip breakpoint checks
+    // altogether.  They are kept by address rather than in the statements,
+    // which are shared with snapshots and the machines restored from them.
+    // They only change under this object's lock, since breakpoints are set from
+    // the GUI while the simulator holds the machine lock instead; a flag is
+    // always written before the count.
+    private final boolean[][] breakpointBlocks = new boolean[2 * TEXT_BLOCK_TABLE_LENGTH][];
+    private volatile int breakpointCount = 0;
+
+    /**
+     * Creates the memory of a new machine, cleared and laid out according to
+     * the current configuration. Use {@link #getInstance()} for the memory of
+     * the machine at hand.
+     *
+     * @see mars.MachineContext
+     */
+    public Memory() {
+        initialize();
     }
 
     /**
      * Memory instance getter
      *
-     * @return the {@code Memory} instance
+     * @return the {@code Memory} instance of the current machine
+     * @see mars.MachineContext#current()
      */
     public static Memory getInstance() {
-        return instance;
+        return MachineContext.current().getMemory();
     }
 
     /**
@@ -399,6 +473,7 @@ public final class Memory extends Observable {
         Main.logger.log(Level.INFO, "stackLimitAddress {0}", Binary.intToHexString(stackLimitAddress));
         Main.logger.log(Level.INFO, "memoryMapLimitAddress {0}", Binary.intToHexString(memoryMapLimitAddress));
         initialize();
+        System.gc(); // call garbage collector on any Table memory just deallocated. 	  
     }
 
     /**
@@ -414,13 +489,17 @@ public final class Memory extends Observable {
 
     private void initialize() {
         heapAddress = heapBaseAddress;
+        fileMappings = new FileMapping[0];
         textBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
-        dataBlockTable = new int[BLOCK_TABLE_LENGTH][]; // array of null int[] references
         kernelTextBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
-        kernelDataBlockTable = new int[BLOCK_TABLE_LENGTH][];
-        stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
-        memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
-        System.gc(); // call garbage collector on any Table memory just deallocated. 	  
+        pageDirectory = new int[PAGE_TABLE_LENGTH][][]; // array of null page table references
+        ownedPages = new boolean[PAGE_TABLE_LENGTH][];
+        textShared = false;
+        Arrays.fill(tlb, null);
+        synchronized (this) {
+            Arrays.fill(breakpointBlocks, null);
+            breakpointCount = 0;
+        }
     }
 
     /**
@@ -447,9 +526,109 @@ public final class Memory extends Observable {
         return result;
     }
 
+    /**
+     * Maps file contents into a fresh part of the heap, starting on a 4K page
+     * boundary. Nothing is copied until the program accesses the mapping: each
+     * page is read from the buffer the first time it is loaded from or stored
+     * to, so that the parts of a large file a program does not touch cost
+     * nothing. Bytes past the end of the buffer read as zero.
+     *
+     * @param buffer the file contents to map, from the first byte mapped
+     * @param length number of bytes mapped, possibly more than the buffer has
+     * @param writeBack whether the changes made by the program are to be
+     * written back to the buffer, by {@link #unmapFile(int, boolean)} or
+     * {@link #flushFileMappings()}
+     * @return address of the first byte mapped
+     * @throws IllegalArgumentException if length is not positive or exceeds
+     * available heap storage
+     */
+    public int mapFile(ByteBuffer buffer, int length, boolean writeBack) throws IllegalArgumentException {
+        return mapFile(buffer, length, writeBack, null);
+    }
+
+    /**
+     * Maps file contents into a fresh part of the heap, as
+     * {@link #mapFile(ByteBuffer, int, boolean)} does, keeping each page as
+     * first read from the buffer. Mapping the same buffer again with the same
+     * map reads those pages back from the map, as they were then, even though
+     * the buffer has been written to since.
+     *
+     * @param buffer the file contents to map, from the first byte mapped
+     * @param length number of bytes mapped, possibly more than the buffer has
+     * @param writeBack whether the changes made by the program are to be
+     * written back to the buffer
+     * @param pagesRead the pages read from the buffer so far, by offset in it;
+     * null to keep none
+     * @return address of the first byte mapped
+     * @throws IllegalArgumentException if length is not positive or exceeds
+     * available heap storage
+     */
+    public int mapFile(ByteBuffer buffer, int length, boolean writeBack, Map<Integer, int[]> pagesRead)
+            throws IllegalArgumentException {
+        if (length <= 0)
+            throw new IllegalArgumentException("request (" + length + ") is not a positive mapping length");
+        long address = ((long) heapAddress + PAGE_OFFSET_MASK) & ~PAGE_OFFSET_MASK;
+        long endAddress = (address + length + PAGE_OFFSET_MASK) & ~PAGE_OFFSET_MASK;
+        if (endAddress > dataSegmentLimitAddress)
+            throw new IllegalArgumentException("request (" + length + ") exceeds available heap storage");
+        FileMapping mapping = new FileMapping((int) address, (int) endAddress, heapAddress, buffer, writeBack,
+                pagesRead, byteOrder);
+        // heap given back by unmapFile() may still hold pages
+        dropPages(mapping.address, mapping.endAddress);
+        fileMappings = Arrays.copyOf(fileMappings, fileMappings.length + 1);
+        fileMappings[fileMappings.length - 1] = mapping;
+        heapAddress = mapping.endAddress;
+        return mapping.address;
+    }
+
+    /**
+     * Removes the file mapping starting at the given address. Its part of the
+     * heap reads as zero afterwards, and is given back if nothing was
+     * allocated from the heap after it.
+     *
+     * @param address address returned by {@link #mapFile(ByteBuffer, int, boolean)}
+     * @param writeBack false to leave out writing the changes back, even if
+     * the mapping was made to
+     * @return true if unmapped, false if no mapping starts at the address
+     */
+    public boolean unmapFile(int address, boolean writeBack) {
+        for (int i = 0; i < fileMappings.length; i++) {
+            FileMapping mapping = fileMappings[i];
+            if (mapping.address != address)
+                continue;
+            if (writeBack && mapping.writeBack)
+                writeBack(mapping);
+            FileMapping[] remaining = new FileMapping[fileMappings.length - 1];
+            System.arraycopy(fileMappings, 0, remaining, 0, i);
+            System.arraycopy(fileMappings, i + 1, remaining, i, remaining.length - i);
+            fileMappings = remaining;
+            dropPages(mapping.address, mapping.endAddress);
+            if (heapAddress == mapping.endAddress)
+                heapAddress = mapping.heapAddress;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes back the changes made to all file mappings made to be written
+     * back. The mappings stay in place, but are not written back any more:
+     * this is meant for the end of the program.
+     */
+    public void flushFileMappings() {
+        FileMapping[] flushed = fileMappings.clone();
+        for (int i = 0; i < flushed.length; i++)
+            if (flushed[i].writeBack) {
+                writeBack(flushed[i]);
+                flushed[i] = new FileMapping(flushed[i].address, flushed[i].endAddress,
+                        flushed[i].heapAddress, flushed[i].buffer, false, flushed[i].pagesRead, flushed[i].byteOrder);
+            }
+        fileMappings = flushed;
+    }
+
     /**
      * Set byte order to either LITTLE_ENDIAN or BIG_ENDIAN. Default is
-     * LITTLE_ENDIAN.
+     * LITTLE_ENDIAN. Only this machine's memory is affected.
      *
      * @param order either LITTLE_ENDIAN or BIG_ENDIAN
      */
@@ -466,6 +645,71 @@ public final class Memory extends Observable {
         return byteOrder;
     }
 
+    /**
+     * Takes a snapshot of the contents of memory, its byte order and the heap
+     * pointer, to be restored later, possibly many times and into other
+     * machines. Nothing is copied: pages are shared between this memory and the
+     * snapshot until this memory writes to them, and a page is copied on its
+     * first write.
+     * <p>
+     * The caller must hold the lock of this machine.
+     *
+     * @return the snapshot
+     * @see mars.MachineContext#snapshot()
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(currentConfig, pageDirectory.clone(),
+                textBlockTable, kernelTextBlockTable, heapAddress, fileMappings, byteOrder);
+        ownedPages = new boolean[PAGE_TABLE_LENGTH][];
+        textShared = true;
+        Arrays.fill(tlb, null);
+        return snapshot;
+    }
+
+    /**
+     * Sets the contents of memory, its byte order and the heap pointer back to
+     * those of the given snapshot. Like {@link #snapshot()}, nothing is copied:
+     * pages are shared with the snapshot until written to. Observers are not
+     * notified.
+     * Breakpoints belong to this memory and stay set at their addresses.
+     * <p>
+     * The caller must hold the lock of this machine.
+     *
+     * @param snapshot a snapshot of this or another memory
+     * @throws IllegalArgumentException if the snapshot was taken under another
+     * memory configuration
+     */
+    public void restore(Snapshot snapshot) {
+        if (snapshot.configuration != currentConfig)
+            throw new IllegalArgumentException("snapshot was taken under memory configuration "
+                    + snapshot.configuration.getName());
+        pageDirectory = snapshot.pageDirectory.clone();
+        ownedPages = new boolean[PAGE_TABLE_LENGTH][];
+        textBlockTable = snapshot.textBlockTable;
+        kernelTextBlockTable = snapshot.kernelTextBlockTable;
+        textShared = true;
+        heapAddress = snapshot.heapAddress;
+        byteOrder = snapshot.byteOrder;
+        fileMappings = snapshot.fileMappings;
+        Arrays.fill(tlb, null);
+    }
+
+    /**
+     * Tells whether anything was written to memory, or to the text segment,
+     * since the latest snapshot or restore.
+     *
+     * @return true if memory was written to, false otherwise
+     * @see #snapshot()
+     */
+    public boolean isWrittenSinceSnapshot() {
+        if (!textShared)
+            return true;
+        for (boolean[] owned : ownedPages)
+            if (owned != null)
+                return true;
+        return false;
+    }
+
     /**
      * ************************* THE SETTER METHODS **************************
      */
@@ -487,17 +731,19 @@ public final class Memory extends Observable {
         int oldValue = 0;
         if (Main.debug)
             System.out.println("memory[" + address + "] set to " + value + "(" + length + " bytes)");
-        int relativeByteAddress;
-        if (inDataSegment(address)) {
+        Translation translation = tlb[(address >>> PAGE_SHIFT) & (TLB_LENGTH - 1)];
+        if (translation != null && translation.writable && translation.covers(address))
+            // recently used page of ordinary memory
+            oldValue = storeOrFetchBytes(translation.page, address, length, value, STORE);
+        else if (inDataSegment(address)) {
             // in data segment.  Will write one byte at a time, w/o regard to boundaries.
-            relativeByteAddress = address - dataSegmentBaseAddress; // relative to data segment start, in bytes
-            oldValue = storeBytesInTable(dataBlockTable, relativeByteAddress, length, value);
+            oldValue = storeBytes(address, length, value);
+            translate(address, dataSegmentBaseAddress, dataSegmentLimitAddress - 1);
         }
         else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack.  Handle similarly to data segment write, except relative byte
-            // address calculated "backward" because stack addresses grow down from base.
-            relativeByteAddress = stackBaseAddress - address;
-            oldValue = storeBytesInTable(stackBlockTable, relativeByteAddress, length, value);
+            // in stack.  Handle similarly to data segment write.
+            oldValue = storeBytes(address, length, value);
+            translate(address, stackLimitAddress + 1, stackBaseAddress);
         }
         else if (inTextSegment(address))
             // Burch Mod (Jan 2013): replace throw with call to setStatement 
@@ -514,13 +760,13 @@ public final class Memory extends Observable {
                         Exceptions.ADDRESS_EXCEPTION_STORE, address);
         else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
-            relativeByteAddress = address - memoryMapBaseAddress;
-            oldValue = storeBytesInTable(memoryMapBlockTable, relativeByteAddress, length, value);
+            oldValue = storeBytes(address, length, value);
+            memoryMapAccessed = true;
         }
         else if (inKernelDataSegment(address)) {
             // in kernel data segment.  Will write one byte at a time, w/o regard to boundaries.
-            relativeByteAddress = address - kernelDataBaseAddress; // relative to data segment start, in bytes
-            oldValue = storeBytesInTable(kernelDataBlockTable, relativeByteAddress, length, value);
+            oldValue = storeBytes(address, length, value);
+            translate(address, kernelDataBaseAddress, kernelDataSegmentLimitAddress - 1);
         }
         else if (inKernelTextSegment(address))
             // DEVELOPER: PLEASE USE setStatement() TO WRITE TO KERNEL TEXT SEGMENT...
@@ -546,20 +792,26 @@ public final class Memory extends Observable {
      * @throws AddressErrorException If address is not on word boundary.
      */
     public int setRawWord(int address, int value) throws AddressErrorException {
-        int relative, oldValue = 0;
+        int oldValue = 0;
         if (address % WORD_LENGTH_BYTES != 0)
             throw new AddressErrorException("store address not aligned on word boundary ",
                     Exceptions.ADDRESS_EXCEPTION_STORE, address);
-        if (inDataSegment(address)) {
+        Translation translation = tlb[(address >>> PAGE_SHIFT) & (TLB_LENGTH - 1)];
+        if (translation != null && translation.writable && translation.covers(address)) {
+            // recently used page of ordinary memory
+            int offset = (address & PAGE_OFFSET_MASK) >> 2;
+            oldValue = translation.page[offset];
+            translation.page[offset] = value;
+        }
+        else if (inDataSegment(address)) {
             // in data segment
-            relative = (address - dataSegmentBaseAddress) >> 2; // convert byte address to words
-            oldValue = storeWordInTable(dataBlockTable, relative, value);
+            oldValue = storeWord(address, value);
+            translate(address, dataSegmentBaseAddress, dataSegmentLimitAddress - 1);
         }
         else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack.  Handle similarly to data segment write, except relative 
-            // address calculated "backward" because stack addresses grow down from base.
-            relative = (stackBaseAddress - address) >> 2; // convert byte address to words
-            oldValue = storeWordInTable(stackBlockTable, relative, value);
+            // in stack.  Handle similarly to data segment write.
+            oldValue = storeWord(address, value);
+            translate(address, stackLimitAddress + 1, stackBaseAddress);
         }
         else if (inTextSegment(address))
             // Burch Mod (Jan 2013): replace throw with call to setStatement 
@@ -576,13 +828,13 @@ public final class Memory extends Observable {
                         Exceptions.ADDRESS_EXCEPTION_STORE, address);
         else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
-            relative = (address - memoryMapBaseAddress) >> 2; // convert byte address to word
-            oldValue = storeWordInTable(memoryMapBlockTable, relative, value);
+            oldValue = storeWord(address, value);
+            memoryMapAccessed = true;
         }
         else if (inKernelDataSegment(address)) {
             // in data segment
-            relative = (address - kernelDataBaseAddress) >> 2; // convert byte address to words
-            oldValue = storeWordInTable(kernelDataBlockTable, relative, value);
+            oldValue = storeWord(address, value);
+            translate(address, kernelDataBaseAddress, kernelDataSegmentLimitAddress - 1);
         }
         else if (inKernelTextSegment(address))
             // DEVELOPER: PLEASE USE setStatement() TO WRITE TO KERNEL TEXT SEGMENT...
@@ -595,7 +847,7 @@ public final class Memory extends Observable {
                     Exceptions.ADDRESS_EXCEPTION_STORE, address);
         notifyAnyObservers(AccessNotice.WRITE, address, WORD_LENGTH_BYTES, value);
         if (Main.isBackSteppingEnabled())
-            Main.program.getBackStepper().addMemoryRestoreRawWord(address, oldValue);
+            Main.getProgram().getBackStepper().addMemoryRestoreRawWord(address, oldValue);
         return oldValue;
     }
 
@@ -614,7 +866,7 @@ public final class Memory extends Observable {
                     "store address not aligned on word boundary ",
                     Exceptions.ADDRESS_EXCEPTION_STORE, address);
         return (Main.isBackSteppingEnabled())
-                ? Main.program.getBackStepper().addMemoryRestoreWord(address, set(address, value, WORD_LENGTH_BYTES))
+                ? Main.getProgram().getBackStepper().addMemoryRestoreWord(address, set(address, value, WORD_LENGTH_BYTES))
                 : set(address, value, WORD_LENGTH_BYTES);
     }
 
@@ -633,7 +885,7 @@ public final class Memory extends Observable {
             throw new AddressErrorException("store address not aligned on halfword boundary ",
                     Exceptions.ADDRESS_EXCEPTION_STORE, address);
         return (Main.isBackSteppingEnabled())
-                ? Main.program.getBackStepper().addMemoryRestoreHalf(address, set(address, value, 2))
+                ? Main.getProgram().getBackStepper().addMemoryRestoreHalf(address, set(address, value, 2))
                 : set(address, value, 2);
     }
 
@@ -648,7 +900,7 @@ public final class Memory extends Observable {
      */
     public int setByte(int address, int value) throws AddressErrorException {
         return (Main.isBackSteppingEnabled())
-                ? Main.program.getBackStepper().addMemoryRestoreByte(address, set(address, value, 1))
+                ? Main.getProgram().getBackStepper().addMemoryRestoreByte(address, set(address, value, 1))
                 : set(address, value, 1);
     }
 
@@ -670,6 +922,109 @@ public final class Memory extends Observable {
         return Double.longBitsToDouble(Binary.twoIntsToLong(oldHighOrder, oldLowOrder));
     }
 
+    /**
+     * Writes the given bytes into consecutive Memory bytes, as a sequence of
+     * {@link #setByte(int, int)} calls would. When the whole range lies in the
+     * data segment, the stack or the kernel data segment and no observer
+     * watches it, the bytes are copied straight into the memory blocks;
+     * otherwise they are written one at a time, each with its own notice.
+     *
+     * @param address Address of the first Memory byte to be written.
+     * @param bytes Bytes to be stored.
+     * @param offset Index in bytes of the first byte to be stored.
+     * @param length Number of bytes to be stored.
+     * @throws AddressErrorException If a byte falls outside writable memory;
+     * the bytes before it have been written.
+     */
+    public void setBytes(int address, byte[] bytes, int offset, int length) throws AddressErrorException {
+        if (length <= 0)
+            return;
+        if (!inOrdinaryMemory(address, length) || isWatched(address, length)) {
+            for (int i = 0; i < length; i++)
+                setByte(address + i, bytes[offset + i]);
+            return;
+        }
+        boolean backStepping = Main.isBackSteppingEnabled();
+        int[] page = null;
+        for (int i = 0; i < length; i++) {
+            int byteAddress = address + i;
+            if (page == null || (byteAddress & PAGE_OFFSET_MASK) == 0)
+                page = getPage(byteAddress, true);
+            int word = (byteAddress & PAGE_OFFSET_MASK) >> 2;
+            if (backStepping && (i == 0 || (byteAddress & 3) == 0))
+                Main.getProgram().getBackStepper().addMemoryRestoreRawWord(byteAddress & ~3, page[word]);
+            int shift = byteShift(byteAddress);
+            page[word] = page[word] & ~(0xFF << shift) | (bytes[offset + i] & 0xFF) << shift;
+        }
+    }
+
+    /**
+     * Sets consecutive Memory bytes to the low order 8 bits of the given value,
+     * as a sequence of {@link #setByte(int, int)} calls would. Observers are
+     * notified as described for {@link #setBytes(int, byte[], int, int)}.
+     *
+     * @param address Address of the first Memory byte to be set.
+     * @param value Value to be stored. Only low order 8 bits used.
+     * @param length Number of bytes to be set.
+     * @throws AddressErrorException If a byte falls outside writable memory;
+     * the bytes before it have been set.
+     */
+    public void fill(int address, int value, int length) throws AddressErrorException {
+        if (length <= 0)
+            return;
+        if (!inOrdinaryMemory(address, length) || isWatched(address, length)) {
+            for (int i = 0; i < length; i++)
+                setByte(address + i, value);
+            return;
+        }
+        boolean backStepping = Main.isBackSteppingEnabled();
+        int pattern = (value & 0xFF) * 0x01010101; // same in either byte order
+        int end = address + length;
+        int byteAddress = address;
+        while (byteAddress != end) {
+            int[] page = getPage(byteAddress, true);
+            int pageEnd = (end - byteAddress > PAGE_OFFSET_MASK - (byteAddress & PAGE_OFFSET_MASK))
+                    ? (byteAddress | PAGE_OFFSET_MASK) + 1
+                    : end;
+            while (byteAddress != pageEnd) {
+                int word = (byteAddress & PAGE_OFFSET_MASK) >> 2;
+                if (backStepping)
+                    Main.getProgram().getBackStepper().addMemoryRestoreRawWord(byteAddress & ~3, page[word]);
+                if ((byteAddress & 3) == 0 && pageEnd - byteAddress >= WORD_LENGTH_BYTES) {
+                    page[word] = pattern;
+                    byteAddress += WORD_LENGTH_BYTES;
+                }
+                else
+                    do {
+                        int shift = byteShift(byteAddress);
+                        page[word] = page[word] & ~(0xFF << shift) | (pattern & 0xFF) << shift;
+                        byteAddress++;
+                    } while ((byteAddress & 3) != 0 && byteAddress != pageEnd);
+            }
+        }
+    }
+
+    /**
+     * Copies consecutive Memory bytes to another address. The ranges may
+     * overlap: the result is as if the source bytes were first read out with
+     * {@link #getBytes(int, byte[], int, int)} and then written with
+     * {@link #setBytes(int, byte[], int, int)}, which is also how observers
+     * are notified.
+     *
+     * @param sourceAddress Address of the first Memory byte to be copied.
+     * @param destinationAddress Address of the first Memory byte to be written.
+     * @param length Number of bytes to be copied.
+     * @throws AddressErrorException If a byte of either range falls outside
+     * memory; nothing has been written if it is a source byte.
+     */
+    public void copy(int sourceAddress, int destinationAddress, int length) throws AddressErrorException {
+        if (length <= 0)
+            return;
+        byte[] bytes = new byte[length];
+        getBytes(sourceAddress, bytes, 0, length);
+        setBytes(destinationAddress, bytes, 0, length);
+    }
+
     /**
      * Stores ProgramStatement in Text Segment.
      *
@@ -689,6 +1044,11 @@ public final class Memory extends Observable {
                     Exceptions.ADDRESS_EXCEPTION_STORE, address);
         if (Main.debug)
             System.out.println("memory[" + address + "] set to " + statement.getBinaryStatement());
+        if (textShared) {
+            textBlockTable = copyTextBlocks(textBlockTable);
+            kernelTextBlockTable = copyTextBlocks(kernelTextBlockTable);
+            textShared = false;
+        }
         if (inTextSegment(address))
             storeProgramStatement(address, statement, textBaseAddress, textBlockTable);
         else
@@ -716,22 +1076,25 @@ public final class Memory extends Observable {
     // Does the real work, but includes option to NOT notify observers.
     private int get(int address, int length, boolean notify) throws AddressErrorException {
         int value = 0;
-        int relativeByteAddress;
-        if (inDataSegment(address)) {
+        Translation translation = tlb[(address >>> PAGE_SHIFT) & (TLB_LENGTH - 1)];
+        if (translation != null && translation.covers(address))
+            // recently used page of ordinary memory
+            value = storeOrFetchBytes(translation.page, address, length, 0, FETCH);
+        else if (inDataSegment(address)) {
             // in data segment.  Will read one byte at a time, w/o regard to boundaries.
-            relativeByteAddress = address - dataSegmentBaseAddress; // relative to data segment start, in bytes
-            value = fetchBytesFromTable(dataBlockTable, relativeByteAddress, length);
+            value = fetchBytes(address, length);
+            translate(address, dataSegmentBaseAddress, dataSegmentLimitAddress - 1);
         }
         else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack. Similar to data, except relative address computed "backward"
-            relativeByteAddress = stackBaseAddress - address;
-            value = fetchBytesFromTable(stackBlockTable, relativeByteAddress, length);
+            // in stack. Similar to data.
+            value = fetchBytes(address, length);
+            translate(address, stackLimitAddress + 1, stackBaseAddress);
         }
 
         else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
-            relativeByteAddress = address - memoryMapBaseAddress;
-            value = fetchBytesFromTable(memoryMapBlockTable, relativeByteAddress, length);
+            value = fetchBytes(address, length);
+            memoryMapAccessed = true;
         }
         else if (inTextSegment(address))
             // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement 
@@ -745,8 +1108,8 @@ public final class Memory extends Observable {
                         Exceptions.ADDRESS_EXCEPTION_LOAD, address);
         else if (inKernelDataSegment(address)) {
             // in kernel data segment.  Will read one byte at a time, w/o regard to boundaries.
-            relativeByteAddress = address - kernelDataBaseAddress; // relative to data segment start, in bytes
-            value = fetchBytesFromTable(kernelDataBlockTable, relativeByteAddress, length);
+            value = fetchBytes(address, length);
+            translate(address, kernelDataBaseAddress, kernelDataSegmentLimitAddress - 1);
         }
         else if (inKernelTextSegment(address))
             // DEVELOPER: PLEASE USE getStatement() TO READ FROM KERNEL TEXT SEGMENT...
@@ -780,24 +1143,27 @@ public final class Memory extends Observable {
      */
     public int getRawWord(int address) throws AddressErrorException {
         int value = 0;
-        int relative;
         if (address % WORD_LENGTH_BYTES != 0)
             throw new AddressErrorException("address for fetch not aligned on word boundary",
                     Exceptions.ADDRESS_EXCEPTION_LOAD, address);
-        if (inDataSegment(address)) {
+        Translation translation = tlb[(address >>> PAGE_SHIFT) & (TLB_LENGTH - 1)];
+        if (translation != null && translation.covers(address))
+            // recently used page of ordinary memory
+            value = translation.page[(address & PAGE_OFFSET_MASK) >> 2];
+        else if (inDataSegment(address)) {
             // in data segment
-            relative = (address - dataSegmentBaseAddress) >> 2; // convert byte address to words
-            value = fetchWordFromTable(dataBlockTable, relative);
+            value = fetchWord(address);
+            translate(address, dataSegmentBaseAddress, dataSegmentLimitAddress - 1);
         }
         else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack. Similar to data, except relative address computed "backward"
-            relative = (stackBaseAddress - address) >> 2; // convert byte address to words
-            value = fetchWordFromTable(stackBlockTable, relative);
+            // in stack. Similar to data.
+            value = fetchWord(address);
+            translate(address, stackLimitAddress + 1, stackBaseAddress);
         }
         else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
-            relative = (address - memoryMapBaseAddress) >> 2;
-            value = fetchWordFromTable(memoryMapBlockTable, relative);
+            value = fetchWord(address);
+            memoryMapAccessed = true;
         }
         else if (inTextSegment(address))
             // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement 
@@ -812,8 +1178,8 @@ public final class Memory extends Observable {
                         Exceptions.ADDRESS_EXCEPTION_LOAD, address);
         else if (inKernelDataSegment(address)) {
             // in kernel data segment
-            relative = (address - kernelDataBaseAddress) >> 2; // convert byte address to words
-            value = fetchWordFromTable(kernelDataBlockTable, relative);
+            value = fetchWord(address);
+            translate(address, kernelDataBaseAddress, kernelDataSegmentLimitAddress - 1);
         }
         else if (inKernelTextSegment(address))
             // DEVELOPER: PLEASE USE getStatement() TO READ FROM KERNEL TEXT SEGMENT...
@@ -852,20 +1218,15 @@ public final class Memory extends Observable {
      */
     public Integer getRawWordOrNull(int address) throws AddressErrorException {
         Integer value = null;
-        int relative;
         if (address % WORD_LENGTH_BYTES != 0)
             throw new AddressErrorException("address for fetch not aligned on word boundary",
                     Exceptions.ADDRESS_EXCEPTION_LOAD, address);
-        if (inDataSegment(address)) {
+        if (inDataSegment(address))
             // in data segment
-            relative = (address - dataSegmentBaseAddress) >> 2; // convert byte address to words
-            value = fetchWordOrNullFromTable(dataBlockTable, relative);
-        }
-        else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack. Similar to data, except relative address computed "backward"
-            relative = (stackBaseAddress - address) >> 2; // convert byte address to words
-            value = fetchWordOrNullFromTable(stackBlockTable, relative);
-        }
+            value = fetchWordOrNull(address);
+        else if (address > stackLimitAddress && address <= stackBaseAddress)
+            // in stack. Similar to data.
+            value = fetchWordOrNull(address);
         else if (inTextSegment(address) || inKernelTextSegment(address))
             try {
                 value = (getStatementNoNotify(address) == null) ? null : getStatementNoNotify(address).getBinaryStatement();
@@ -873,11 +1234,9 @@ public final class Memory extends Observable {
             catch (AddressErrorException aee) {
                 value = null;
             }
-        else if (inKernelDataSegment(address)) {
+        else if (inKernelDataSegment(address))
             // in kernel data segment
-            relative = (address - kernelDataBaseAddress) >> 2; // convert byte address to words
-            value = fetchWordOrNullFromTable(kernelDataBlockTable, relative);
-        }
+            value = fetchWordOrNull(address);
         else
             // falls outside Mars addressing range
             throw new AddressErrorException("address out of range ", Exceptions.ADDRESS_EXCEPTION_LOAD, address);
@@ -892,7 +1251,9 @@ public final class Memory extends Observable {
      * instruction. Normally use this to find the end of the program. For data
      * segment, this represents the first block of simulated memory (block
      * length currently 4K words) that has not been referenced by an
-     * assembled/executing program.
+     * assembled/executing program. Allocated blocks are skipped whole. Like the
+     * iterators of {@link #getWordBlocks(int, int)}, this may be called from
+     * several threads at once.
      *
      * @param baseAddress lowest MIPS address to be searched; the starting point
      * @param limitAddress highest MIPS address to be searched
@@ -900,13 +1261,164 @@ public final class Memory extends Observable {
      * as described above.
      * @throws AddressErrorException if the base address is not on a word
      * boundary
+     * @see Memory#getWordBlocks(int, int)
      */
     public int getAddressOfFirstNull(int baseAddress, int limitAddress) throws AddressErrorException {
-        int address = baseAddress;
-        for (; address < limitAddress; address += Memory.WORD_LENGTH_BYTES)
-            if (getRawWordOrNull(address) == null)
-                break;
-        return address;
+        long address = baseAddress;
+        while (address < limitAddress) {
+            int available = ordinaryMemoryFrom((int) address);
+            if (available > 0 && (address & 3) == 0) {
+                // a whole allocated block at a time
+                int[] page;
+                synchronized (this) { // see WordBlocks.next()
+                    page = getPage((int) address, false);
+                }
+                if (page == null)
+                    break;
+                long next = address + Math.min(available, BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES - (address & PAGE_OFFSET_MASK));
+                address = (next < limitAddress) ? next
+                        : address + ((limitAddress - address + WORD_LENGTH_BYTES - 1) & -WORD_LENGTH_BYTES);
+            }
+            else {
+                if (getRawWordOrNull((int) address) == null)
+                    break;
+                address += Memory.WORD_LENGTH_BYTES;
+            }
+        }
+        return (int) address;
+    }
+
+    /**
+     * Reads consecutive raw words, as a sequence of
+     * {@link #getRawWordOrNull(int)} calls would, stopping before the first
+     * "null" word. Words of the data segment, the stack and the kernel data
+     * segment are copied a whole memory block at a time. Observers are not
+     * notified.
+     *
+     * @param address Address of the first word to be read. Must be on word
+     * boundary.
+     * @param words Array receiving the words.
+     * @param offset Index in words of the first word to be read into.
+     * @param length Maximum number of words to be read.
+     * @return number of words read, fewer than length if a "null" word or an
+     * address out of range was reached. If the very first address is out of
+     * range, the exception is thrown instead.
+     * @throws AddressErrorException If address is not on word boundary or out
+     * of range.
+     * @see Memory#getRawWordOrNull(int)
+     */
+    public int getRawWords(int address, int[] words, int offset, int length) throws AddressErrorException {
+        int count = 0;
+        while (count < length) {
+            int wordAddress = address + count * WORD_LENGTH_BYTES;
+            int available = ordinaryMemoryFrom(wordAddress) / WORD_LENGTH_BYTES;
+            if (available > 0 && (wordAddress & 3) == 0) {
+                int[] page = getPage(wordAddress, false);
+                if (page == null)
+                    break;
+                int word = (wordAddress & PAGE_OFFSET_MASK) >> 2;
+                int chunk = Math.min(Math.min(available, BLOCK_LENGTH_WORDS - word), length - count);
+                System.arraycopy(page, word, words, offset + count, chunk);
+                count += chunk;
+            }
+            else {
+                Integer value;
+                try {
+                    value = getRawWordOrNull(wordAddress);
+                }
+                catch (AddressErrorException e) {
+                    if (count == 0)
+                        throw e;
+                    break;
+                }
+                if (value == null)
+                    break;
+                words[offset + count++] = value;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Iterates over the raw words of an address range a block at a time, as
+     * {@link #getRawWords(int, int[], int, int)} reads them: iteration stops
+     * before the first "null" word. In the data segment, the stack and the
+     * kernel data segment, each block is a whole 4K memory block, or the part
+     * of one lying in the range. Observers are not notified.
+     * <p>
+     * Several iterators over the same memory may be used from different
+     * threads at once, as long as nothing else changes the memory meanwhile.
+     *
+     * @param firstAddress Address of the first word to be read. Must be on word
+     * boundary.
+     * @param lastAddress Address of the last word to be read.
+     * @return iterator positioned before the first block.
+     * @see Memory#getRawWordOrNull(int)
+     */
+    public WordBlocks getWordBlocks(int firstAddress, int lastAddress) {
+        return new WordBlocks(firstAddress, lastAddress);
+    }
+
+    /**
+     * Reads consecutive Memory bytes, as a sequence of {@link #getByte(int)}
+     * calls would. When the whole range lies in the data segment, the stack or
+     * the kernel data segment and no observer watches it, the bytes are copied
+     * straight out of the memory blocks; otherwise they are read one at a time,
+     * each with its own notice.
+     *
+     * @param address Address of the first Memory byte to be read.
+     * @param bytes Array receiving the bytes.
+     * @param offset Index in bytes of the first byte to be read into.
+     * @param length Number of bytes to be read.
+     * @throws AddressErrorException If a byte falls outside readable memory.
+     */
+    public void getBytes(int address, byte[] bytes, int offset, int length) throws AddressErrorException {
+        if (length <= 0)
+            return;
+        if (!inOrdinaryMemory(address, length) || isWatched(address, length)) {
+            for (int i = 0; i < length; i++)
+                bytes[offset + i] = (byte) getByte(address + i);
+            return;
+        }
+        int[] page = null;
+        for (int i = 0; i < length; i++) {
+            int byteAddress = address + i;
+            if (i == 0 || (byteAddress & PAGE_OFFSET_MASK) == 0)
+                page = getPage(byteAddress, false);
+            bytes[offset + i] = (page == null)
+                    ? 0
+                    : (byte) (page[(byteAddress & PAGE_OFFSET_MASK) >> 2] >> byteShift(byteAddress));
+        }
+    }
+
+    /**
+     * Counts the bytes of the null-terminated string starting at the given
+     * address, that is the bytes before the first null byte. Observers are not
+     * notified.
+     *
+     * @param address Address of the first byte of the string.
+     * @return number of bytes in the string, not counting the null byte.
+     * @throws AddressErrorException If the string runs into an address
+     * outside readable memory before ending.
+     */
+    public int getStringLength(int address) throws AddressErrorException {
+        int byteAddress = address;
+        while (true) {
+            int available = ordinaryMemoryFrom(byteAddress);
+            if (available == 0) {
+                if (get(byteAddress, 1, false) == 0)
+                    return byteAddress - address;
+                byteAddress++;
+                continue;
+            }
+            int[] page = getPage(byteAddress, false);
+            if (page == null)
+                return byteAddress - address;
+            int chunk = Math.min(available, PAGE_OFFSET_MASK + 1 - (byteAddress & PAGE_OFFSET_MASK));
+            for (int i = 0; i < chunk; i++, byteAddress++)
+                if ((page[(byteAddress & PAGE_OFFSET_MASK) >> 2] >> byteShift(byteAddress) & 0xFF) == 0)
+                    return byteAddress - address;
+        }
     }
 
     /**
@@ -1056,6 +1568,136 @@ public final class Memory extends Observable {
         return address;
     }
 
+    /**
+     * Tells whether memory mapped I/O has been accessed since the indication
+     * was last cleared.
+     *
+     * @return true if the memory mapped I/O segment was read or written
+     * @see #clearMemoryMapAccessed()
+     */
+    public boolean isMemoryMapAccessed() {
+        return memoryMapAccessed;
+    }
+
+    /**
+     * Clears the indication of memory mapped I/O accesses.
+     *
+     * @see #isMemoryMapAccessed()
+     */
+    public void clearMemoryMapAccessed() {
+        memoryMapAccessed = false;
+    }
+
+    /**
+     * Sets or clears the breakpoint on the statement stored at the given
+     * address. Breakpoints are kept by this memory in a table laid out like the
+     * text segment, so the simulator tests them with no search, and they may be
+     * changed at any time, including while a program runs. A breakpoint stays
+     * at its address when the statement there gets replaced.
+     *
+     * @param address text segment address of the statement
+     * @param set true to set the breakpoint, false to clear it
+     * @return true if there is a statement at that address, false otherwise
+     */
+    public synchronized boolean setBreakpoint(int address, boolean set) {
+        if (getStoredStatement(address) == null)
+            return false;
+        int index = breakpointIndex(address);
+        boolean[] block = breakpointBlocks[index / TEXT_BLOCK_LENGTH_WORDS];
+        if (block == null) {
+            if (!set)
+                return true;
+            block = breakpointBlocks[index / TEXT_BLOCK_LENGTH_WORDS] = new boolean[TEXT_BLOCK_LENGTH_WORDS];
+        }
+        if (block[index % TEXT_BLOCK_LENGTH_WORDS] != set) {
+            block[index % TEXT_BLOCK_LENGTH_WORDS] = set;
+            breakpointCount += set ? 1 : -1;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces all breakpoints with the given ones.
+     *
+     * @param addresses text segment addresses of the statements to break at,
+     * possibly empty
+     */
+    public synchronized void setBreakpoints(int[] addresses) {
+        if (breakpointCount > 0)
+            for (boolean[] block : breakpointBlocks)
+                if (block != null)
+                    Arrays.fill(block, false);
+        breakpointCount = 0;
+        for (int address : addresses)
+            setBreakpoint(address, true);
+    }
+
+    /**
+     * Tells whether a breakpoint is set at the given address.
+     *
+     * @param address any memory address
+     * @return true if a breakpoint is set at that address
+     */
+    public boolean isBreakpoint(int address) {
+        int index = breakpointIndex(address);
+        if (index < 0)
+            return false;
+        boolean[] block = breakpointBlocks[index / TEXT_BLOCK_LENGTH_WORDS];
+        return block != null && block[index % TEXT_BLOCK_LENGTH_WORDS];
+    }
+
+    /**
+     * Tells whether any breakpoint is set.
+     *
+     * @return true if at least one statement has a breakpoint
+     */
+    public boolean hasBreakpoints() {
+        return breakpointCount > 0;
+    }
+
+    // Index of the breakpoint flag of address, counting words from the start of
+    // the user text segment and then on from the end of its block table into the
+    // kernel one, or -1 if address is not a word the text block tables can hold.
+    private int breakpointIndex(int address) {
+        int relative, offset;
+        if (!wordAligned(address))
+            return -1;
+        if (inTextSegment(address)) {
+            relative = (address - textBaseAddress) >> 2;
+            offset = 0;
+        }
+        else if (inKernelTextSegment(address)) {
+            relative = (address - kernelTextBaseAddress) >> 2;
+            offset = TEXT_BLOCK_TABLE_LENGTH * TEXT_BLOCK_LENGTH_WORDS;
+        }
+        else
+            return -1;
+        return relative < TEXT_BLOCK_TABLE_LENGTH * TEXT_BLOCK_LENGTH_WORDS ? offset + relative : -1;
+    }
+
+    // Statement stored in a text segment table at address, or null if none.
+    // Never notifies, never throws.
+    private ProgramStatement getStoredStatement(int address) {
+        ProgramStatement[][] blockTable;
+        int relative;
+        if (!wordAligned(address))
+            return null;
+        if (inTextSegment(address)) {
+            blockTable = textBlockTable;
+            relative = (address - textBaseAddress) >> 2;
+        }
+        else if (inKernelTextSegment(address)) {
+            blockTable = kernelTextBlockTable;
+            relative = (address - kernelTextBaseAddress) >> 2;
+        }
+        else
+            return null;
+        int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+        if (block >= TEXT_BLOCK_TABLE_LENGTH || blockTable[block] == null)
+            return null;
+        return blockTable[block][relative % TEXT_BLOCK_LENGTH_WORDS];
+    }
+
     /**
      * Handy little utility to find out if given address is in MARS text segment
      * (starts at Memory.textBaseAddress). Note that MARS does not implement the
@@ -1188,7 +1830,12 @@ public final class Memory extends Observable {
         if (endAddr < startAddr)
             throw new AddressErrorException("end address of range < start address of range ",
                     Exceptions.ADDRESS_EXCEPTION_LOAD, startAddr);
-        observables.add(new MemoryObservable(obs, startAddr, endAddr));
+        MemoryObservable mo = new MemoryObservable(obs, startAddr, endAddr);
+        synchronized (observables) {
+            observables.add(mo);
+            indexObservables();
+            updateWatchedPages(mo, true);
+        }
     }
 
     /**
@@ -1201,6 +1848,21 @@ public final class Memory extends Observable {
         return observables.size();
     }
 
+    /**
+     * Tells whether any observer is currently registered for an address range
+     * overlapping the given one.
+     *
+     * @param startAddr the low end of the memory address range
+     * @param endAddr the high end of the memory address range
+     * @return true if accesses within the range may be notified to someone
+     */
+    public boolean isObserved(int startAddr, int endAddr) {
+        for (MemoryObservable mo : observableIndex)
+            if (mo.overlaps(startAddr, endAddr))
+                return true;
+        return false;
+    }
+
     /**
      * Remove specified memory observers
      *
@@ -1209,9 +1871,21 @@ public final class Memory extends Observable {
     @Override
     public void deleteObserver(Observer obs) {
         synchronized (observables) {
+            ArrayList<MemoryObservable> emptied = new ArrayList<>();
             Iterator<MemoryObservable> it = observables.iterator();
-            while (it.hasNext())
-                it.next().deleteObserver(obs);
+            while (it.hasNext()) {
+                MemoryObservable mo = it.next();
+                mo.deleteObserver(obs);
+                if (mo.countObservers() == 0) {
+                    it.remove();
+                    emptied.add(mo);
+                }
+            }
+            if (emptied.isEmpty())
+                return;
+            indexObservables();
+            for (MemoryObservable mo : emptied)
+                updateWatchedPages(mo, false);
         }
     }
 
@@ -1220,7 +1894,11 @@ public final class Memory extends Observable {
      */
     @Override
     public void deleteObservers() {
-        observables.clear();
+        synchronized (observables) {
+            observables.clear();
+            indexObservables();
+            watchedPages = new long[WATCHED_PAGES_LENGTH];
+        }
     }
 
     /**
@@ -1252,10 +1930,12 @@ public final class Memory extends Observable {
     private class MemoryObservable extends Observable implements Comparable<MemoryObservable> {
 
         private final int lowAddress, highAddress;
+        private final boolean reusesNotices;
 
         public MemoryObservable(Observer obs, int startAddr, int endAddr) {
             lowAddress = startAddr;
             highAddress = endAddr;
+            reusesNotices = obs instanceof TransientNoticeObserver;
             this.addObserver(obs);
         }
 
@@ -1263,19 +1943,30 @@ public final class Memory extends Observable {
             return (address >= lowAddress && address <= highAddress - 1 + WORD_LENGTH_BYTES);
         }
 
+        public boolean overlaps(int startAddr, int endAddr) {
+            return (startAddr <= highAddress - 1 + WORD_LENGTH_BYTES && endAddr >= lowAddress);
+        }
+
+        public int firstPage() {
+            return lowAddress >>> PAGE_SHIFT;
+        }
+
+        public int lastPage() {
+            return (highAddress - 1 + WORD_LENGTH_BYTES) >>> PAGE_SHIFT;
+        }
+
         public void notifyObserver(MemoryAccessNotice notice) {
             this.setChanged();
             this.notifyObservers(notice);
         }
 
-        // Useful to have for future refactoring, if it actually becomes worthwhile to sort
-        // these or put 'em in a tree (rather than sequential search through list).
+        // Orders the observable index (see indexObservables()).
         @Override
         public int compareTo(MemoryObservable obj) {
             if (this.lowAddress < obj.lowAddress || this.lowAddress == obj.lowAddress && this.highAddress < obj.highAddress)
                 return -1;
             if (this.lowAddress > obj.lowAddress || this.lowAddress == obj.lowAddress && this.highAddress > obj.highAddress)
-                return -1;
+                return 1;
             return 0;  // they have to be equal at this point.
         }
     }
@@ -1290,43 +1981,152 @@ public final class Memory extends Observable {
     //
     // The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF MIPS simulation
     // is from command mode, Globals.program is null but still want ability to observe.
+    //
+    // A single notice is created for all observers that may retain it; observers that
+    // declared otherwise all get the reusable notice.
     private void notifyAnyObservers(int type, int address, int length, int value) {
-        if ((Main.program != null || Main.getGUI() == null) && this.observables.size() > 0) {
-            Iterator<MemoryObservable> it = this.observables.iterator();
-            MemoryObservable mo;
-            while (it.hasNext()) {
-                mo = it.next();
-                if (mo.match(address))
-                    mo.notifyObserver(new MemoryAccessNotice(type, address, length, value));
+        if ((watchedPages[address >>> (PAGE_SHIFT + 6)] & (1L << (address >>> PAGE_SHIFT))) == 0
+                || Main.getProgram() == null && Main.getGUI() != null)
+            return;
+        MemoryAccessNotice notice = null;
+        boolean reusing = false;
+        for (MemoryObservable mo : observableIndex) {
+            if (mo.lowAddress > address)
+                break; // sorted by low address, no later range can match
+            if (!mo.match(address))
+                continue;
+            if (mo.reusesNotices && (reusing || !reusableNoticeInUse)) {
+                if (!reusing) {
+                    reusableNotice.reset(type, address, length, value);
+                    reusableNoticeInUse = reusing = true;
+                }
+                mo.notifyObserver(reusableNotice);
+            }
+            else {
+                if (notice == null)
+                    notice = new MemoryAccessNotice(type, address, length, value);
+                mo.notifyObserver(notice);
             }
         }
+        if (reusing)
+            reusableNoticeInUse = false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Whether an observer watches any page of the given range.  The bulk operations
+    // then fall back to the per-byte accessors, so that observers get the very
+    // notices a byte at a time loop would send them.
+    //
+    private boolean isWatched(int address, int length) {
+        int lastAddress = address + length - 1;
+        for (int page = address >>> PAGE_SHIFT; page <= lastAddress >>> PAGE_SHIFT; page++)
+            if ((watchedPages[page >>> 6] & (1L << page)) != 0)
+                return true;
+        return false;
     }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
-    // Helper method to store 1, 2 or 4 byte value in table that represents MIPS
-    // memory. Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.
+    // Rebuilds the observable index from the observables collection.  Called with
+    // its lock held after every change to it.
+    //
+    private void indexObservables() {
+        observableIndex = observables.stream()
+                .sorted()
+                .toArray(MemoryObservable[]::new);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Flags the pages of an added observable's range in the watched page bitmap, or
+    // unflags those of a removed one that no observable left in the index covers.
+    // Each word is written once with its final value, so a page still watched by
+    // someone else never reads as unwatched.  Called with the observables lock held,
+    // after the index has been rebuilt.
+    //
+    private void updateWatchedPages(MemoryObservable changed, boolean added) {
+        long[] pages = watchedPages;
+        int firstPage = changed.firstPage(), lastPage = changed.lastPage();
+        for (int word = firstPage >>> 6; word <= lastPage >>> 6; word++) {
+            long bits = pageBits(word, firstPage, lastPage);
+            if (added)
+                pages[word] |= bits;
+            else {
+                long kept = 0;
+                for (MemoryObservable mo : observableIndex)
+                    kept |= pageBits(word, mo.firstPage(), mo.lastPage());
+                pages[word] = pages[word] & ~bits | kept & bits;
+            }
+        }
+        watchedPages = pages; // publishes the updated words to unlocked readers
+    }
+
+    // The bits of bitmap word 'word' standing for pages firstPage to lastPage.
+    private static long pageBits(int word, int firstPage, int lastPage) {
+        int from = Math.max(firstPage, word << 6);
+        int to = Math.min(lastPage, (word << 6) + 63);
+        if (from > to)
+            return 0;
+        return (-1L >>> (63 - (to - from))) << from;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Number of bytes from the given address to the end of the ordinary memory
+    // segment (data, stack or kernel data) holding it, 0 if the address is not in
+    // one.  The segment is chosen with the same precedence as set() and get(), and
+    // parts of kernel data shared with the text segment or memory mapped I/O do
+    // not count.  The bulk operations work directly on the pages of such ranges.
+    //
+    private int ordinaryMemoryFrom(int address) {
+        if (inDataSegment(address))
+            return dataSegmentLimitAddress - address;
+        if (address > stackLimitAddress && address <= stackBaseAddress)
+            return stackBaseAddress - address + 1;
+        if (!inKernelDataSegment(address) || inTextSegment(address)
+                || address >= memoryMapBaseAddress && address < memoryMapLimitAddress)
+            return 0;
+        int end = kernelDataSegmentLimitAddress;
+        if (textBaseAddress > address)
+            end = Math.min(end, textBaseAddress);
+        if (memoryMapBaseAddress > address)
+            end = Math.min(end, memoryMapBaseAddress);
+        return end - address;
+    }
+
+    private boolean inOrdinaryMemory(int address, int length) {
+        return length <= ordinaryMemoryFrom(address);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Position within its word of the byte at the given address, as a shift count.
+    //
+    private int byteShift(int address) {
+        return (byteOrder == LITTLE_ENDIAN) ? (address & 3) << 3 : 24 - ((address & 3) << 3);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Helper method to store 1, 2 or 4 byte value in the page table that represents
+    // MIPS memory.  Used for data, stack, kernel data and memory mapped I/O alike.
     // Modified 29 Dec 2005 to return old value of replaced bytes.
     //
     private static final boolean STORE = true;
     private static final boolean FETCH = false;
 
-    private int storeBytesInTable(int[][] blockTable,
-            int relativeByteAddress, int length, int value) {
-        return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, value, STORE);
+    private int storeBytes(int address, int length, int value) {
+        return storeOrFetchBytes(getPage(address, true), address, length, value, STORE);
     }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
-    // Helper method to fetch 1, 2 or 4 byte value from table that represents MIPS
-    // memory.  Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.
+    // Helper method to fetch 1, 2 or 4 byte value from the page table that represents
+    // MIPS memory.  Used for data, stack, kernel data and memory mapped I/O alike.
     //	
-    private int fetchBytesFromTable(int[][] blockTable, int relativeByteAddress, int length) {
-        return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, 0, FETCH);
+    private int fetchBytes(int address, int length) {
+        return storeOrFetchBytes(getPage(address, false), address, length, 0, FETCH);
     }
 
     ////////////////////////////////////////////////////////////////////////////////		
@@ -1334,113 +2134,303 @@ public final class Memory extends Observable {
     // The helper's helper.  Works for either storing or fetching, little or big endian. 
     // When storing/fetching bytes, most of the work is calculating the correct array element(s) 
     // and element byte(s).  This method performs either store or fetch, as directed by its 
-    // client using STORE or FETCH in last arg.
+    // client using STORE or FETCH in last arg.  The page is the one holding the given
+    // address, or null if it has not been allocated yet (FETCH only).
     // Modified 29 Dec 2005 to return old value of replaced bytes, for STORE.
     //
-    private synchronized int storeOrFetchBytesInTable(int[][] blockTable,
-            int relativeByteAddress, int length, int value, boolean op) {
-        int relativeWordAddress, block, offset, bytePositionInMemory, bytePositionInValue;
+    // This and the other page table helpers used to be synchronized on the Memory object.
+    // Mutual exclusion is instead provided by the lock of the machine (for the default
+    // one Main.memoryAndRegistersLock), which the
+    // simulator holds for whole locking epochs and which any other thread accessing
+    // MIPS memory during execution is required to hold (see MarsTool).
+    //
+    private int storeOrFetchBytes(int[] page, int address, int length, int value, boolean op) {
+        int offset, bytePositionInMemory, bytePositionInValue;
         int oldValue = 0; // for STORE, return old values of replaced bytes
-        int loopStopper = 3 - length;
-        // IF added DPS 22-Dec-2008. NOTE: has NOT been tested with Big-Endian.
-        // Fix provided by Saul Spatz; comments that follow are his.
-        // If address in stack segment is 4k + m, with 0 < m < 4, then the
-        // relativeByteAddress we want is stackBaseAddress - 4k + m, but the
-        // address actually passed in is stackBaseAddress - (4k + m), so we
-        // need to add 2m.  Because of the change in sign, we get the
-        // expression 4-delta below in place of m.
-        if (blockTable == stackBlockTable) {
-            int delta = relativeByteAddress % 4;
-            if (delta != 0)
-                relativeByteAddress += (4 - delta) << 1;
+        if (length == WORD_LENGTH_BYTES && (address & 3) == 0) {
+            // Whole aligned word: the bytes land in the same array element in order,
+            // which is the value itself for little-endian and reversed for big-endian.
+            if (page == null)
+                return 0;
+            offset = (address & PAGE_OFFSET_MASK) >> 2;
+            if (op == STORE) {
+                oldValue = page[offset];
+                page[offset] = (byteOrder == LITTLE_ENDIAN) ? value : reverseBytes(value);
+                return (byteOrder == LITTLE_ENDIAN) ? oldValue : reverseBytes(oldValue);
+            }
+            return (byteOrder == LITTLE_ENDIAN) ? page[offset] : reverseBytes(page[offset]);
         }
+        int loopStopper = 3 - length;
         for (bytePositionInValue = 3; bytePositionInValue > loopStopper; bytePositionInValue--) {
-            bytePositionInMemory = relativeByteAddress % 4;
-            relativeWordAddress = relativeByteAddress >> 2;
-            block = relativeWordAddress / BLOCK_LENGTH_WORDS;  // Block number
-            offset = relativeWordAddress % BLOCK_LENGTH_WORDS; // Word within that block
-            if (blockTable[block] == null)
-                if (op == STORE)
-                    blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-                else
-                    return 0;
+            if (page == null)
+                return 0;
+            bytePositionInMemory = address & 3;
+            offset = (address & PAGE_OFFSET_MASK) >> 2; // Word within the page
             if (byteOrder == LITTLE_ENDIAN)
                 bytePositionInMemory = 3 - bytePositionInMemory;
             if (op == STORE) {
-                oldValue = replaceByte(blockTable[block][offset], bytePositionInMemory,
+                oldValue = replaceByte(page[offset], bytePositionInMemory,
                         oldValue, bytePositionInValue);
-                blockTable[block][offset] = replaceByte(value, bytePositionInValue,
-                        blockTable[block][offset], bytePositionInMemory);
+                page[offset] = replaceByte(value, bytePositionInValue,
+                        page[offset], bytePositionInMemory);
             }
             else// op == FETCH
-                value = replaceByte(blockTable[block][offset], bytePositionInMemory,
+                value = replaceByte(page[offset], bytePositionInMemory,
                         value, bytePositionInValue);
-            relativeByteAddress++;
+            address++;
+            if ((address & PAGE_OFFSET_MASK) == 0 && bytePositionInValue - 1 > loopStopper)
+                // unaligned access running into the next page
+                page = getPage(address, op == STORE);
         }
         return (op == STORE) ? oldValue : value;
     }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
-    // Helper method to store 4 byte value in table that represents MIPS memory.
-    // Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.  Assumes address is word aligned, no endian processing.
+    // Helper method to store 4 byte value in the page table that represents MIPS memory.
+    // Assumes address is word aligned, no endian processing.
     // Modified 29 Dec 2005 to return overwritten value.
-    private synchronized int storeWordInTable(int[][] blockTable, int relative, int value) {
-        int block, offset, oldValue;
-        block = relative / BLOCK_LENGTH_WORDS;
-        offset = relative % BLOCK_LENGTH_WORDS;
-        if (blockTable[block] == null)
-            // First time writing to this block, so allocate the space.
-            blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-        oldValue = blockTable[block][offset];
-        blockTable[block][offset] = value;
+    private int storeWord(int address, int value) {
+        int[] page = getPage(address, true);
+        int offset = (address & PAGE_OFFSET_MASK) >> 2;
+        int oldValue = page[offset];
+        page[offset] = value;
         return oldValue;
     }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
-    // Helper method to fetch 4 byte value from table that represents MIPS memory.
-    // Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.  Assumes word alignment, no endian processing.
+    // Helper method to fetch 4 byte value from the page table that represents MIPS memory.
+    // Assumes word alignment, no endian processing.
     //
-    private synchronized int fetchWordFromTable(int[][] blockTable, int relative) {
-        int value;
-        int block, offset;
-        block = relative / BLOCK_LENGTH_WORDS;
-        offset = relative % BLOCK_LENGTH_WORDS;
-        if (blockTable[block] == null)
-            // first reference to an address in this block.  Assume initialized to 0.
-            value = 0;
-        else
-            value = blockTable[block][offset];
-        return value;
+    private int fetchWord(int address) {
+        int[] page = getPage(address, false);
+        // first reference to an address in this page.  Assume initialized to 0.
+        return (page == null) ? 0 : page[(address & PAGE_OFFSET_MASK) >> 2];
     }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
-    // Helper method to fetch 4 byte value from table that represents MIPS memory.
-    // Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.  Assumes word alignment, no endian processing.
+    // Helper method to fetch 4 byte value from the page table that represents MIPS memory.
+    // Assumes word alignment, no endian processing.
     //
-    // This differs from "fetchWordFromTable()" in that it returns an Integer and
-    // returns null instead of 0 if the 4K table has not been allocated.  Developed
+    // This differs from "fetchWord()" in that it returns an Integer and
+    // returns null instead of 0 if the 4K page has not been allocated.  Developed
     // by Greg Gibeling of UC Berkeley, fall 2007.
     //
-    private synchronized Integer fetchWordOrNullFromTable(int[][] blockTable, int relative) {
-        int value;
-        int block, offset;
-        block = relative / BLOCK_LENGTH_WORDS;
-        offset = relative % BLOCK_LENGTH_WORDS;
-        if (blockTable[block] == null)
-            // first reference to an address in this block.  Assume initialized to 0.
-            return null;
-        else
-            value = blockTable[block][offset];
-        return value;
+    private Integer fetchWordOrNull(int address) {
+        int[] page = getPage(address, false);
+        return (page == null) ? null : page[(address & PAGE_OFFSET_MASK) >> 2];
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Walks the page table down to the 4K page holding the given address.  For
+    // reading (allocate false), null is returned if the page is missing.  For writing,
+    // missing page tables and pages are allocated, and shared ones copied, so that
+    // the page returned is owned by this memory.
+    //
+    private int[] getPage(int address, boolean allocate) {
+        int directoryIndex = address >>> PAGE_TABLE_SHIFT;
+        int index = (address >>> PAGE_SHIFT) & (PAGE_TABLE_LENGTH - 1);
+        int[][] pageTable = pageDirectory[directoryIndex];
+        if (!allocate) {
+            int[] page = (pageTable == null) ? null : pageTable[index];
+            // a page of a file mapping is read in on first access, load or store
+            return (page == null && fileMappings.length > 0 && findFileMapping(address) != null)
+                    ? getPage(address, true)
+                    : page;
+        }
+        boolean[] owned = ownedPages[directoryIndex];
+        if (owned == null) {
+            pageTable = pageDirectory[directoryIndex] = (pageTable == null)
+                    ? new int[PAGE_TABLE_LENGTH][]
+                    : pageTable.clone();
+            owned = ownedPages[directoryIndex] = new boolean[PAGE_TABLE_LENGTH];
+        }
+        int[] page = pageTable[index];
+        if (!owned[index]) {
+            if (page == null) {
+                FileMapping mapping = (fileMappings.length > 0) ? findFileMapping(address) : null;
+                page = (mapping == null)
+                        ? new int[BLOCK_LENGTH_WORDS]
+                        : mapping.readPage(address & ~PAGE_OFFSET_MASK);
+            }
+            else {
+                page = page.clone();
+                // the TLB may still hand out the shared page for reading
+                tlb[(address >>> PAGE_SHIFT) & (TLB_LENGTH - 1)] = null;
+            }
+            pageTable[index] = page;
+            owned[index] = true;
+        }
+        return page;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // File mapping helpers.  Pages are looked up without reading any in: those
+    // never accessed hold nothing to write back, and dropped ones are read in
+    // again from whatever mapping then covers them.
+    //
+    private FileMapping findFileMapping(int address) {
+        for (FileMapping mapping : fileMappings)
+            if (address >= mapping.address && address < mapping.endAddress)
+                return mapping;
+        return null;
+    }
+
+    private void writeBack(FileMapping mapping) {
+        for (int address = mapping.address; address != mapping.endAddress; address += BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES) {
+            int[][] pageTable = pageDirectory[address >>> PAGE_TABLE_SHIFT];
+            int[] page = (pageTable == null) ? null : pageTable[(address >>> PAGE_SHIFT) & (PAGE_TABLE_LENGTH - 1)];
+            if (page != null)
+                mapping.writePage(address, page);
+        }
+        if (mapping.buffer instanceof MappedByteBuffer)
+            ((MappedByteBuffer) mapping.buffer).force();
+    }
+
+    private void dropPages(int address, int endAddress) {
+        for (; address != endAddress; address += BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES) {
+            int directoryIndex = address >>> PAGE_TABLE_SHIFT;
+            int index = (address >>> PAGE_SHIFT) & (PAGE_TABLE_LENGTH - 1);
+            if (pageDirectory[directoryIndex] == null || pageDirectory[directoryIndex][index] == null)
+                continue;
+            if (ownedPages[directoryIndex] == null) {
+                pageDirectory[directoryIndex] = pageDirectory[directoryIndex].clone();
+                ownedPages[directoryIndex] = new boolean[PAGE_TABLE_LENGTH];
+            }
+            pageDirectory[directoryIndex][index] = null;
+            ownedPages[directoryIndex][index] = false;
+        }
+        Arrays.fill(tlb, null);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // Enters the page holding the given address in the TLB, after an access that
+    // went through the segment checks.  The cached range is the part of the page that
+    // lies within the segment (given as inclusive bounds); pages sharing addresses with
+    // the text segments or memory mapped I/O are left out, since accesses to those
+    // must keep going through the checks.  Nothing is cached for pages not allocated yet.
+    //
+    private void translate(int address, int lowAddress, int highAddress) {
+        int[] page = getPage(address, false);
+        if (page == null)
+            return;
+        int pageAddress = address & ~PAGE_OFFSET_MASK;
+        int low = Math.max(lowAddress, pageAddress);
+        int high = Math.min(highAddress, pageAddress + PAGE_OFFSET_MASK);
+        if (overlaps(low, high, textBaseAddress, textLimitAddress - 1)
+                || overlaps(low, high, kernelTextBaseAddress, kernelTextLimitAddress - 1)
+                || overlaps(low, high, memoryMapBaseAddress, memoryMapLimitAddress - 1))
+            return;
+        boolean[] owned = ownedPages[address >>> PAGE_TABLE_SHIFT];
+        boolean writable = owned != null && owned[(address >>> PAGE_SHIFT) & (PAGE_TABLE_LENGTH - 1)];
+        tlb[(address >>> PAGE_SHIFT) & (TLB_LENGTH - 1)] = new Translation(low, high, page, writable);
+    }
+
+    private static boolean overlaps(int low, int high, int otherLow, int otherHigh) {
+        return low <= otherHigh && otherLow <= high;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // A TLB entry.  Entries are immutable and replaced as a whole, so that a reader
+    // never sees the bounds of one entry paired with the page of another.  Stores
+    // may only go through entries of writable (owned) pages.
+    //
+    private static final class Translation {
+
+        final int lowAddress;
+        final int highAddress;
+        final int[] page;
+        final boolean writable;
+
+        Translation(int lowAddress, int highAddress, int[] page, boolean writable) {
+            this.lowAddress = lowAddress;
+            this.highAddress = highAddress;
+            this.page = page;
+            this.writable = writable;
+        }
+
+        boolean covers(int address) {
+            return address >= lowAddress && address <= highAddress;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    //
+    // A file mapping: the pages from address (inclusive) to endAddress (exclusive)
+    // hold the contents of buffer, followed by zeros.  heapAddress is the heap
+    // pointer the mapping was allocated at, to be given back on unmapping.  Pages
+    // are copied to and from the buffer in bulk, as words in byteOrder, that of
+    // the machine mapping the file.  If pagesRead is not null, pages are read
+    // from the buffer once only, and from that map again afterwards.
+    //
+    private static final class FileMapping {
+
+        final int address;
+        final int endAddress;
+        final int heapAddress;
+        final ByteBuffer buffer;
+        final boolean writeBack;
+        final Map<Integer, int[]> pagesRead;
+        final boolean byteOrder;
+
+        FileMapping(int address, int endAddress, int heapAddress, ByteBuffer buffer, boolean writeBack,
+                Map<Integer, int[]> pagesRead, boolean byteOrder) {
+            this.address = address;
+            this.endAddress = endAddress;
+            this.heapAddress = heapAddress;
+            this.buffer = buffer;
+            this.writeBack = writeBack;
+            this.pagesRead = pagesRead;
+            this.byteOrder = byteOrder;
+        }
+
+        int[] readPage(int pageAddress) {
+            int[] page = (pagesRead == null) ? null : pagesRead.get(pageAddress - address);
+            if (page != null)
+                return page.clone();
+            page = new int[BLOCK_LENGTH_WORDS];
+            ByteBuffer bytes = bytesOfPage(pageAddress);
+            if (bytes != null) {
+                int words = bytes.remaining() >> 2;
+                bytes.asIntBuffer().get(page, 0, words);
+                for (int i = words << 2; i < bytes.remaining(); i++)
+                    page[words] |= (bytes.get(bytes.position() + i) & 0xFF) << shift(i);
+            }
+            if (pagesRead != null)
+                pagesRead.put(pageAddress - address, page.clone());
+            return page;
+        }
+
+        void writePage(int pageAddress, int[] page) {
+            ByteBuffer bytes = bytesOfPage(pageAddress);
+            if (bytes == null)
+                return;
+            int words = bytes.remaining() >> 2;
+            bytes.asIntBuffer().put(page, 0, words);
+            for (int i = words << 2; i < bytes.remaining(); i++)
+                bytes.put(bytes.position() + i, (byte) (page[words] >>> shift(i)));
+        }
+
+        // The part of the buffer backing the given page, null if none
+        private ByteBuffer bytesOfPage(int pageAddress) {
+            int offset = pageAddress - address;
+            if (offset >= buffer.capacity())
+                return null;
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(Math.min(buffer.capacity(), offset + BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES));
+            bytes.position(offset);
+            return bytes.order((byteOrder == LITTLE_ENDIAN) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        }
+
+        private int shift(int byteInPage) {
+            return (byteOrder == LITTLE_ENDIAN) ? (byteInPage & 3) << 3 : 24 - ((byteInPage & 3) << 3);
+        }
     }
 
     ////////////////////////////////////////////////////////////////////////////////////
@@ -1466,6 +2456,17 @@ public final class Memory extends Observable {
                 | (source << 24);
     }
 
+    ///////////////////////////////////////////////////////////////////////
+    // Copy of a text segment table, with the blocks copied as well but not the
+    // statements in them.
+    private static ProgramStatement[][] copyTextBlocks(ProgramStatement[][] blockTable) {
+        ProgramStatement[][] copy = blockTable.clone();
+        for (int i = 0; i < copy.length; i++)
+            if (copy[i] != null)
+                copy[i] = copy[i].clone();
+        return copy;
+    }
+
     ///////////////////////////////////////////////////////////////////////   	
     // Store a program statement at the given address.  Address has already been verified
     // as valid.  It may be either in user or kernel text segment, as specified by arguments.
@@ -1478,6 +2479,10 @@ public final class Memory extends Observable {
             if (blockTable[block] == null)
                 // No instructions are stored in this block, so allocate the block.
                 blockTable[block] = new ProgramStatement[BLOCK_LENGTH_WORDS];
+            // A breakpoint stays with its address when code gets rewritten,
+            // but goes when the statement is removed
+            if (statement == null)
+                setBreakpoint(address, false);
             blockTable[block][offset] = statement;
         }
     }
@@ -1510,6 +2515,100 @@ public final class Memory extends Observable {
 
     //--------------------------------------------------------------------------
     // Internal classes
+    /**
+     * Iterator over the populated blocks of an address range, see
+     * {@link Memory#getWordBlocks(int, int)}. The same array receives each
+     * block in turn, so that iterating allocates nothing.
+     */
+    public final class WordBlocks {
+
+        private final int[] words = new int[BLOCK_LENGTH_WORDS];
+        private final int lastAddress;
+        private long nextAddress;
+        private int address;
+        private int length = 0;
+        private boolean ended = false;
+
+        private WordBlocks(int firstAddress, int lastAddress) {
+            this.nextAddress = firstAddress;
+            this.lastAddress = lastAddress;
+        }
+
+        /**
+         * Reads the next block.
+         *
+         * @return false if the end of the range or of the memory contents has
+         * been reached, in which case there is no current block.
+         * @throws AddressErrorException If the first address is not on word
+         * boundary or out of range.
+         */
+        public boolean next() throws AddressErrorException {
+            if (ended || nextAddress > lastAddress) {
+                length = 0;
+                return false;
+            }
+            address = (int) nextAddress;
+            int wanted = (int) Math.min(BLOCK_LENGTH_WORDS - ((address & PAGE_OFFSET_MASK) >> 2),
+                    (lastAddress - nextAddress) / WORD_LENGTH_BYTES + 1);
+            // reading a page of a file mapping for the first time allocates it
+            synchronized (Memory.this) {
+                length = getRawWords(address, words, 0, wanted);
+            }
+            ended = length < wanted;
+            nextAddress += (long) length * WORD_LENGTH_BYTES;
+            return length > 0;
+        }
+
+        /**
+         * @return address of the first word of the current block.
+         */
+        public int getAddress() {
+            return address;
+        }
+
+        /**
+         * @return number of words in the current block.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return array holding the words of the current block, from index 0.
+         * Its contents are replaced by the next call to {@link #next()}.
+         */
+        public int[] getWords() {
+            return words;
+        }
+    }
+
+    /**
+     * Contents of memory at the time of a {@link Memory#snapshot()}. A snapshot
+     * is immutable, and may be restored any number of times, from any thread.
+     */
+    public static final class Snapshot {
+
+        private final Configuration configuration;
+        private final int[][][] pageDirectory;
+        private final ProgramStatement[][] textBlockTable;
+        private final ProgramStatement[][] kernelTextBlockTable;
+        private final int heapAddress;
+        private final FileMapping[] fileMappings;
+        private final boolean byteOrder;
+
+        private Snapshot(Configuration configuration, int[][][] pageDirectory,
+                ProgramStatement[][] textBlockTable, ProgramStatement[][] kernelTextBlockTable,
+                int heapAddress, FileMapping[] fileMappings, boolean byteOrder) {
+            this.configuration = configuration;
+            this.pageDirectory = pageDirectory;
+            this.textBlockTable = textBlockTable;
+            this.kernelTextBlockTable = kernelTextBlockTable;
+            this.heapAddress = heapAddress;
+            this.fileMappings = fileMappings;
+            this.byteOrder = byteOrder;
+        }
+    }
+
     /**
      * Models the memory configuration for the simulated MIPS machine.
      * "configuration" refers to the starting memory addresses for the various
@@ -59,6 +59,13 @@ public class MemoryAccessNotice extends AccessNotice {
 	  this.length = Memory.WORD_LENGTH_BYTES;
 	  this.value = value;
   }
+  /** Refill this notice for a new access; see TransientNoticeObserver. */
+   void reset(int type, int address, int length, int value) {
+     super.reset(type);
+	  this.address = address;
+	  this.length = length;
+	  this.value = value;
+  }
   /** Fetch the memory address that was accessed. */
   public int getAddress() {
      return address;
@@ -1,6 +1,7 @@
 package mars.mips.hardware;
 
 import java.util.Observable;
+import java.util.Observer;
 
 /*
  Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -40,11 +41,14 @@ public class Register extends Observable {
 
     private String name;
     private int number, resetValue;
-    // volatile should be enough to allow safe multi-threaded access  
-    // w/o the use of synchronized methods.  getValue and setValue
-    // are the only methods here used by the register collection
-    // (RegisterFile, Coprocessor0, Coprocessor1) methods. 
-    private volatile int value;
+    // The value lives at the given index of a backing array, which a register
+    // collection may share among all of its registers so as to access their
+    // values directly (see RegisterFile).  Such direct access is only allowed
+    // while the register is not observed, since observers expect a notice
+    // for every access.
+    private final int[] store;
+    private final int index;
+    private volatile boolean observed;
 
     /**
      * Creates a new register with specified name, number, and value.
@@ -54,9 +58,25 @@ public class Register extends Observable {
      * @param val The initial (and reset) value of the register.
      */
     public Register(String n, int num, int val) {
+        this(n, num, val, new int[1], 0);
+    }
+
+    /**
+     * Creates a new register with specified name, number, and value, whose
+     * value is kept in the given backing array.
+     *
+     * @param n The name of the register.
+     * @param num The number of the register.
+     * @param val The initial (and reset) value of the register.
+     * @param store The array holding the register value.
+     * @param index The position of the register value in the array.
+     */
+    public Register(String n, int num, int val, int[] store, int index) {
         name = n;
         number = num;
-        value = val;
+        this.store = store;
+        this.index = index;
+        store[index] = val;
         resetValue = val;
     }
 
@@ -86,7 +106,7 @@ public class Register extends Observable {
      */
     public synchronized int getValue() {
         notifyAnyObservers(AccessNotice.READ);
-        return value;
+        return store[index];
     }
 
     /**
@@ -96,7 +116,7 @@ public class Register extends Observable {
      * @return value The value of the Register.
      */
     public synchronized int getValueNoNotify() {
-        return value;
+        return store[index];
     }
 
     /**
@@ -107,8 +127,8 @@ public class Register extends Observable {
      * @return previous value of register
      */
     public synchronized int setValue(int val) {
-        int old = value;
-        value = val;
+        int old = store[index];
+        store[index] = val;
         notifyAnyObservers(AccessNotice.WRITE);
         return old;
     }
@@ -127,7 +147,7 @@ public class Register extends Observable {
      * Observers are not notified.
      */
     public synchronized void resetValue() {
-        value = resetValue;
+        store[index] = resetValue;
     }
 
     /**
@@ -140,9 +160,37 @@ public class Register extends Observable {
         resetValue = reset;
     }
 
+    /**
+     * Tells whether this register currently has any observers. Unlike
+     * {@code countObservers()}, this does not acquire the monitor.
+     *
+     * @return true if accesses to this register are to be notified
+     */
+    public boolean isObserved() {
+        return observed;
+    }
+
+    @Override
+    public synchronized void addObserver(Observer o) {
+        super.addObserver(o);
+        observed = true;
+    }
+
+    @Override
+    public synchronized void deleteObserver(Observer o) {
+        super.deleteObserver(o);
+        observed = countObservers() > 0;
+    }
+
+    @Override
+    public synchronized void deleteObservers() {
+        super.deleteObservers();
+        observed = false;
+    }
+
     // Method to notify any observers of register operation that has just occurred.
     private void notifyAnyObservers(int type) {
-        if (this.countObservers() > 0) {// && Globals.program != null) && Globals.program.inSteppedExecution()) {
+        if (observed) {// && Globals.program != null) && Globals.program.inSteppedExecution()) {
             this.setChanged();
             this.notifyObservers(new RegisterAccessNotice(type, this.name));
         }
@@ -2,6 +2,7 @@
 
    import java.util.Observer;
 
+   import mars.MachineContext;
    import mars.Main;
    import mars.assembler.SymbolTable;
    import mars.mips.instructions.Instruction;
@@ -47,40 +48,59 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       public static final int GLOBAL_POINTER_REGISTER = 28;
       public static final int STACK_POINTER_REGISTER = 29;
    
-      private static Register [] regFile = 
-          { new Register("$zero", 0, 0), new Register("$at", 1, 0),
-         	new Register("$v0", 2, 0),new Register("$v1", 3, 0),
-         	new Register("$a0", 4, 0),new Register("$a1", 5, 0),
-         	new Register("$a2", 6, 0),new Register("$a3", 7, 0),
-         	new Register("$t0", 8, 0),new Register("$t1", 9, 0),
-         	new Register("$t2", 10, 0),new Register("$t3", 11, 0), 
-         	new Register("$t4", 12, 0),new Register("$t5", 13, 0),
-         	new Register("$t6", 14, 0),new Register("$t7", 15, 0),
-         	new Register("$s0", 16, 0),new Register("$s1", 17, 0),
-         	new Register("$s2", 18, 0),new Register("$s3", 19, 0),
-         	new Register("$s4", 20, 0),new Register("$s5", 21, 0),
-         	new Register("$s6", 22, 0),new Register("$s7", 23, 0),
-         	new Register("$t8", 24, 0),new Register("$t9", 25, 0),
-         	new Register("$k0", 26, 0),new Register("$k1", 27, 0),
-         	new Register("$gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer),
-         	new Register("$sp", STACK_POINTER_REGISTER, Memory.stackPointer),
-         	new Register("$fp", 30, 0),new Register("$ra", 31, 0)
-           };
-         												  
-      private static Register programCounter= new Register("pc", 32, Memory.textBaseAddress); 
-      private static Register hi= new Register("hi", 33, 0);//this is an internal register with arbitrary number
-      private static Register lo= new Register("lo", 34, 0);// this is an internal register with arbitrary number
+      // Flat backing store of the register values, indexed by register number:
+      // 0-31 general purpose, 32 program counter, 33 hi, 34 lo.  Values are read
+      // and written here directly, without going through the Register objects,
+      // unless the register has observers or backstepping is enabled.
+      private static final int PROGRAM_COUNTER = 32, HI = 33, LO = 34;
+
+      /**
+       *  The registers of one machine, see mars.MachineContext.  The static methods
+       *  of this class work on those of the current machine.
+       */
+       public static final class State {
+         private final int[] values = new int[35];
+
+         private final Register [] regFile = 
+             { new Register("$zero", 0, 0, values, 0), new Register("$at", 1, 0, values, 1),
+            	new Register("$v0", 2, 0, values, 2),new Register("$v1", 3, 0, values, 3),
+            	new Register("$a0", 4, 0, values, 4),new Register("$a1", 5, 0, values, 5),
+            	new Register("$a2", 6, 0, values, 6),new Register("$a3", 7, 0, values, 7),
+            	new Register("$t0", 8, 0, values, 8),new Register("$t1", 9, 0, values, 9),
+            	new Register("$t2", 10, 0, values, 10),new Register("$t3", 11, 0, values, 11), 
+            	new Register("$t4", 12, 0, values, 12),new Register("$t5", 13, 0, values, 13),
+            	new Register("$t6", 14, 0, values, 14),new Register("$t7", 15, 0, values, 15),
+            	new Register("$s0", 16, 0, values, 16),new Register("$s1", 17, 0, values, 17),
+            	new Register("$s2", 18, 0, values, 18),new Register("$s3", 19, 0, values, 19),
+            	new Register("$s4", 20, 0, values, 20),new Register("$s5", 21, 0, values, 21),
+            	new Register("$s6", 22, 0, values, 22),new Register("$s7", 23, 0, values, 23),
+            	new Register("$t8", 24, 0, values, 24),new Register("$t9", 25, 0, values, 25),
+            	new Register("$k0", 26, 0, values, 26),new Register("$k1", 27, 0, values, 27),
+            	new Register("$gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer, values, GLOBAL_POINTER_REGISTER),
+            	new Register("$sp", STACK_POINTER_REGISTER, Memory.stackPointer, values, STACK_POINTER_REGISTER),
+            	new Register("$fp", 30, 0, values, 30),new Register("$ra", 31, 0, values, 31)
+              };
+            												  
+         private final Register programCounter= new Register("pc", PROGRAM_COUNTER, Memory.textBaseAddress, values, PROGRAM_COUNTER); 
+         private final Register hi= new Register("hi", HI, 0, values, HI);//this is an internal register with arbitrary number
+         private final Register lo= new Register("lo", LO, 0, values, LO);// this is an internal register with arbitrary number
+      }
+
+       private static State state() {
+         return MachineContext.current().getRegisterFileState();
+      }
    		 
    
    	/**
-   	  *  Method for displaying the register values for debugging.
+   	  *  Method for displaying the register s.values for debugging.
    	  **/	 
    		 
        public static void showRegisters(){
-         for (int i=0; i< regFile.length; i++){
-            System.out.println("Name: " + regFile[i].getName());
-            System.out.println("Number: " + regFile[i].getNumber());
-            System.out.println("Value: " + regFile[i].getValue());	
+         State s = state();
+         for (int i=0; i< s.regFile.length; i++){
+            System.out.println("Name: " + s.regFile[i].getName());
+            System.out.println("Number: " + s.regFile[i].getNumber());
+            System.out.println("Value: " + s.regFile[i].getValue());	
             System.out.println(""); 
          }
       }
@@ -94,29 +114,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	  
        public static int updateRegister(int num, int val){
-         int old = 0;
-         if(num == 0){
+         State s = state();
+         if(num <= 0 || num == PROGRAM_COUNTER || num >= s.values.length){
             //System.out.println("You can not change the value of the zero register.");
+            return 0;
          }
-         else {
-            for (int i=0; i< regFile.length; i++){
-               if(regFile[i].getNumber()== num) {
-                  old = (Main.isBackSteppingEnabled())
-                        ? Main.program.getBackStepper().addRegisterFileRestore(num,regFile[i].setValue(val))
-                     	: regFile[i].setValue(val);
-                  break;
-               }
-            }
+         Register reg = (num == HI) ? s.hi : (num == LO) ? s.lo : s.regFile[num];
+         int old;
+         if (reg.isObserved()) {
+            old = reg.setValue(val);
          }
-         if(num== 33){//updates the hi register
-            old = (Main.isBackSteppingEnabled())
-               	      ? Main.program.getBackStepper().addRegisterFileRestore(num,hi.setValue(val))
-               			: hi.setValue(val);
+         else {
+            old = s.values[num];
+            s.values[num] = val;
          }
-         else if(num== 34){// updates the low register
-            old = (Main.isBackSteppingEnabled())
-               	      ? Main.program.getBackStepper().addRegisterFileRestore(num,lo.setValue(val))
-               			: lo.setValue(val);
+         if (Main.isBackSteppingEnabled()) {
+            Main.getProgram().getBackStepper().addRegisterFileRestore(num,old);
          }
          return old;
       }
@@ -128,12 +141,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static void updateRegister(String reg, int val){
+         State s = state();
          if(reg.equals("zero")){
             //System.out.println("You can not change the value of the zero register.");
          }
          else{
-            for (int i=0; i< regFile.length; i++){
-               if(regFile[i].getName().equals(reg)) {
+            for (int i=0; i< s.regFile.length; i++){
+               if(s.regFile[i].getName().equals(reg)) {
                   updateRegister(i,val);
                   break;
                }
@@ -147,15 +161,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static int getValue(int num){
-         if(num==33){
-            return hi.getValue();
-         }
-         else if(num==34){
-            return lo.getValue();
-         }
-         else  
-            return regFile[num].getValue();
-            
+         State s = state();
+         Register reg = (num == HI) ? s.hi : (num == LO) ? s.lo : s.regFile[num];
+         return reg.isObserved() ? reg.getValue() : s.values[num];
       }
       		
       	/**
@@ -166,10 +174,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    		  **/	
       		
        public static int getNumber(String n){
+         State s = state();
          int j=-1;
-         for (int i=0; i< regFile.length; i++){
-            if(regFile[i].getName().equals(n)) {
-               j= regFile[i].getNumber();
+         for (int i=0; i< s.regFile.length; i++){
+            if(s.regFile[i].getName().equals(n)) {
+               j= s.regFile[i].getNumber();
                break;
             }
          } 
@@ -182,7 +191,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static Register[] getRegisters(){
-         return regFile;
+         State s = state();
+         return s.regFile;
       }
       
    	/**
@@ -192,20 +202,21 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static Register getUserRegister(String Rname) {
+         State s = state();
          Register reg = null;
          if (Rname.charAt(0) == '$') {
             try {
                    // check for register number 0-31.
-               reg = regFile[Binary.stringToInt(Rname.substring(1))];    // KENV 1/6/05
+               reg = s.regFile[Binary.stringToInt(Rname.substring(1))];    // KENV 1/6/05
             }
                 catch (Exception e) {
                    // handles both NumberFormat and ArrayIndexOutOfBounds
                    // check for register mnemonic $zero thru $ra
                   reg = null; // just to be sure
                    // just do linear search; there aren't that many registers
-                  for (int i=0; i < regFile.length; i++) {
-                     if (Rname.equals(regFile[i].getName())) {
-                        reg = regFile[i];
+                  for (int i=0; i < s.regFile.length; i++) {
+                     if (Rname.equals(s.regFile[i].getName())) {
+                        reg = s.regFile[i];
                         break;
                      }
                   }
@@ -222,7 +233,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
      
        public static void initializeProgramCounter(int value){
-         programCounter.setValue(value);
+         State s = state();
+         s.programCounter.setValue(value);
       }
    	
    	/**
@@ -235,12 +247,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 **/
    	 
        public static void initializeProgramCounter(boolean startAtMain) {  
-         int mainAddr = Main.symbolTable.getAddress(SymbolTable.getStartLabel());
+         State s = state();
+         int mainAddr = Main.getSymbolTable().getAddress(SymbolTable.getStartLabel());
          if (startAtMain && mainAddr != SymbolTable.NOT_FOUND && (Memory.inTextSegment(mainAddr) || Memory.inKernelTextSegment(mainAddr))) {
             initializeProgramCounter(mainAddr);
          } 
          else {
-            initializeProgramCounter(programCounter.getResetValue());
+            initializeProgramCounter(s.programCounter.getResetValue());
          }
       }
    	
@@ -252,10 +265,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
      
        public static int setProgramCounter(int value){
-         int old = programCounter.getValue();
-         programCounter.setValue(value);
+         State s = state();
+         int old;
+         if (s.programCounter.isObserved()) {
+            old = s.programCounter.getValue();
+            s.programCounter.setValue(value);
+         }
+         else {
+            old = s.values[PROGRAM_COUNTER];
+            s.values[PROGRAM_COUNTER] = value;
+         }
          if (Main.isBackSteppingEnabled()) {
-            Main.program.getBackStepper().addPCRestore(old);
+            Main.getProgram().getBackStepper().addPCRestore(old);
          } 
          return old;
       }
@@ -266,7 +287,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	 
        public static int getProgramCounter(){
-         return programCounter.getValue();
+         State s = state();
+         return s.programCounter.isObserved() ? s.programCounter.getValue() : s.values[PROGRAM_COUNTER];
       }
    
      /**
@@ -274,7 +296,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	*  @return program counter's Register object.
    	*/
        public static Register getProgramCounterRegister() {
-         return programCounter;
+         State s = state();
+         return s.programCounter;
       }
    	
      /**
@@ -283,7 +306,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	 
        public static int getInitialProgramCounter(){
-         return programCounter.getResetValue();
+         State s = state();
+         return s.programCounter.getResetValue();
       }
    	
    	/**
@@ -296,12 +320,34 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  **/
    	
        public static void resetRegisters(){
-         for(int i=0; i< regFile.length; i++){
-            regFile[i].resetValue();
+         State s = state();
+         for(int i=0; i< s.regFile.length; i++){
+            s.regFile[i].resetValue();
          }
          initializeProgramCounter(BooleanSettings.START_AT_MAIN.isSet());// replaces "programCounter.resetValue()", DPS 3/3/09
-         hi.resetValue();
-         lo.resetValue();
+         s.hi.resetValue();
+         s.lo.resetValue();
+      }
+
+   	/**
+   	  *  Copies the values of all registers, including PC, HI and LO, for a later restoreRegisters().
+   	  *  Observers are not notified.
+   	  *
+   	  *  @return the register values
+   	  **/
+       public static int[] saveRegisters(){
+         return state().values.clone();
+      }
+   
+   	/**
+   	  *  Sets the registers back to values copied by saveRegisters().  Like
+   	  *  resetRegisters(), observers are not notified.
+   	  *
+   	  *  @param values the register values
+   	  **/
+       public static void restoreRegisters(int[] values){
+         State s = state();
+         System.arraycopy(values, 0, s.values, 0, s.values.length);
       }
       
      /**
@@ -309,7 +355,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 **/
    
        public static void incrementPC(){
-         programCounter.setValue(programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
+         State s = state();
+         if (s.programCounter.isObserved()) {
+            s.programCounter.setValue(s.programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
+         }
+         else {
+            s.values[PROGRAM_COUNTER] += Instruction.INSTRUCTION_LENGTH;
+         }
       }
    
       /**
@@ -318,11 +370,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  Counter.
    	 */
        public static void addRegistersObserver(Observer observer) {
-         for (int i=0; i<regFile.length; i++) {
-            regFile[i].addObserver(observer);
+         State s = state();
+         for (int i=0; i<s.regFile.length; i++) {
+            s.regFile[i].addObserver(observer);
          }
-         hi.addObserver(observer);
-         lo.addObserver(observer);
+         s.hi.addObserver(observer);
+         s.lo.addObserver(observer);
       }
    	
       /**
@@ -331,10 +384,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  Counter.
    	 */
        public static void deleteRegistersObserver(Observer observer) {
-         for (int i=0; i<regFile.length; i++) {
-            regFile[i].deleteObserver(observer);
+         State s = state();
+         for (int i=0; i<s.regFile.length; i++) {
+            s.regFile[i].deleteObserver(observer);
+         }
+         s.hi.deleteObserver(observer);
+         s.lo.deleteObserver(observer);
+      }
+
+      /**
+   	 *  Tells whether any of the registers, including hi and lo, currently has observers.
+   	 *  Program Counter is not considered, as above.
+   	 *  @return true if register accesses may be notified to someone
+   	 */
+       public static boolean isObserved() {
+         State s = state();
+         for (int i=0; i<s.regFile.length; i++) {
+            if (s.regFile[i].isObserved())
+               return true;
          }
-         hi.deleteObserver(observer);
-         lo.deleteObserver(observer);
+         return s.hi.isObserved() || s.lo.isObserved();
       }
    }
@@ -1,5 +1,7 @@
 package mars.mips.instructions;
 
+import java.util.Arrays;
+
 /*
  Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
 
@@ -44,6 +46,9 @@ public class BasicInstruction extends Instruction {
 
     private int opcodeMask;  // integer with 1's where constants required (0/1 become 1, f/s/t become 0)
     private int opcodeMatch; // integer matching constants required (0/1 become 0/1, f/s/t become 0)
+    private int[] operandShifts; // for each operand in order, position of its lowest bit
+    private int[] operandWidths; // and its number of bits
+    private boolean signedImmediate; // whether the example shows a 16-bit immediate as -100
 
     /**
      * BasicInstruction constructor.
@@ -85,6 +90,23 @@ public class BasicInstruction extends Instruction {
 
         this.opcodeMask = (int) Long.parseLong(this.operationMask.replaceAll("[01]", "1").replaceAll("[^01]", "0"), 2);
         this.opcodeMatch = (int) Long.parseLong(this.operationMask.replaceAll("[^1]", "0"), 2);
+
+        // Locate the operand fields once, so that decoding need not scan the mask.
+        String operandCodes = "fst";
+        int[] shifts = new int[operandCodes.length()];
+        int[] widths = new int[operandCodes.length()];
+        int count = 0;
+        for (int i = 0; i < operandCodes.length(); i++) {
+            int first = this.operationMask.indexOf(operandCodes.charAt(i));
+            if (first >= 0) {
+                shifts[count] = Instruction.INSTRUCTION_LENGTH_BITS - 1 - this.operationMask.lastIndexOf(operandCodes.charAt(i));
+                widths[count] = this.operationMask.lastIndexOf(operandCodes.charAt(i)) - first + 1;
+                count++;
+            }
+        }
+        this.operandShifts = Arrays.copyOf(shifts, count);
+        this.operandWidths = Arrays.copyOf(widths, count);
+        this.signedImmediate = example.contains("-100");
     }
 
 	  // Temporary constructor so that instructions without description yet will compile.
@@ -141,4 +163,30 @@ public class BasicInstruction extends Instruction {
     public int getOpcodeMatch() {
         return this.opcodeMatch;
     }
+
+    /**
+     * Extracts the operands of a binary machine instruction matching this one,
+     * from the operand fields of the operation mask. A 16-bit branch offset or
+     * signed immediate (such as a load or store offset) is sign-extended, as the
+     * assembler would have it, and a jump target gets the upper bits of the
+     * address.
+     *
+     * @param binary The 32-bit machine code.
+     * @param address The address of the machine code in memory.
+     * @param operands Array receiving the operands, in order; must have room
+     * for three.
+     * @return The number of operands.
+     */
+    public int decodeOperands(int binary, int address, int[] operands) {
+        for (int i = 0; i < operandShifts.length; i++) {
+            int operand = (binary >>> operandShifts[i]) & ((1 << operandWidths[i]) - 1);
+            // the branch offset, whichever operand it is (bgez has only two), or signed immediate
+            if ((instructionFormat == BasicInstructionFormat.I_BRANCH_FORMAT || signedImmediate) && operandWidths[i] == 16)
+                operand = operand << 16 >> 16;
+            else if (instructionFormat == BasicInstructionFormat.J_FORMAT && i == 0)
+                operand |= (address >> 2) & 0x3C000000;
+            operands[i] = operand;
+        }
+        return operandShifts.length;
+    }
 }
@@ -71,7 +71,6 @@ public class ExtendedInstruction extends Instruction {
         this.exampleFormat = example;
         this.description = description;
         this.mnemonic = this.extractOperator(example);
-        this.createExampleTokenList();
         this.translationStrings = buildTranslationList(translation);
         this.compactTranslationStrings = buildTranslationList(compactTranslation);
     }
@@ -89,7 +88,6 @@ public class ExtendedInstruction extends Instruction {
         this.exampleFormat = example;
         this.description = description;
         this.mnemonic = this.extractOperator(example);
-        this.createExampleTokenList();
         this.translationStrings = buildTranslationList(translation);
         this.compactTranslationStrings = null;
     }
@@ -67,9 +67,10 @@ public abstract class Instruction {
     protected String description;
     /**
      * List of tokens generated by tokenizing example usage (see
-     * <tt>exampleFormat</tt>). *
+     * <tt>exampleFormat</tt>). Built on first use, so that instructions a
+     * program does not use are never tokenized. *
      */
-    protected TokenList tokenList;
+    protected volatile TokenList tokenList;
 
     /**
      * Get operation mnemonic
@@ -112,7 +113,12 @@ public abstract class Instruction {
      * @return TokenList object representing correct instruction usage.
      */
     public TokenList getTokenList() {
-        return tokenList;
+        TokenList tokens = tokenList;
+        if (tokens == null) {
+            createExampleTokenList();
+            tokens = tokenList;
+        }
+        return tokens;
     }
 
     /**
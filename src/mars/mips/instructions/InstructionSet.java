@@ -6,6 +6,7 @@ import mars.mips.instructions.syscalls.*;
 import mars.*;
 import mars.util.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 import mars.settings.BooleanSettings;
 
@@ -47,8 +48,14 @@ import mars.settings.BooleanSettings;
 public class InstructionSet {
 
     private final ArrayList<Instruction> instructionList;
-    private ArrayList<MatchMap> opcodeMatchMaps;
+    private volatile ArrayList<MatchMap> opcodeMatchMaps;
     private SyscallLoader syscallLoader;
+    private final ConcurrentHashMap<String, ArrayList<Instruction>> mnemonicIndex = new ConcurrentHashMap<>();
+    private volatile PrefixNode mnemonicTrie;
+    // Lines of PseudoOps.txt in file order, and by mnemonic those whose
+    // instructions are yet to be created.  Null until first needed.
+    private final ArrayList<PseudoOpSpec> pseudoOpSpecs = new ArrayList<>();
+    private volatile ConcurrentHashMap<String, ArrayList<PseudoOpSpec>> pendingPseudoOps;
 
     /**
      * Creates a new InstructionSet object.
@@ -61,6 +68,7 @@ public class InstructionSet {
      * Retrieve the current instruction set.
      */
     public ArrayList getInstructionList() {
+        addAllPseudoInstructions();
         return instructionList;
     }
 
@@ -577,7 +585,7 @@ public class InstructionSet {
                                 int[] operands = statement.getOperands();
                                 try {
                                     RegisterFile.updateRegister(operands[0],
-                                            Main.memory.getWord(
+                                            Memory.getInstance().getWord(
                                                     RegisterFile.getValue(operands[2]) + operands[1]));
                                 }
                                 catch (AddressErrorException e) {
@@ -603,7 +611,7 @@ public class InstructionSet {
                                 int[] operands = statement.getOperands();
                                 try {
                                     RegisterFile.updateRegister(operands[0],
-                                            Main.memory.getWord(
+                                            Memory.getInstance().getWord(
                                                     RegisterFile.getValue(operands[2]) + operands[1]));
                                 }
                                 catch (AddressErrorException e) {
@@ -622,8 +630,8 @@ public class InstructionSet {
                                 try {
                                     int address = RegisterFile.getValue(operands[2]) + operands[1];
                                     int result = RegisterFile.getValue(operands[0]);
-                                    for (int i = 0; i <= address % Main.memory.WORD_LENGTH_BYTES; i++)
-                                        result = Binary.setByte(result, 3 - i, Main.memory.getByte(address - i));
+                                    for (int i = 0; i <= address % Memory.getInstance().WORD_LENGTH_BYTES; i++)
+                                        result = Binary.setByte(result, 3 - i, Memory.getInstance().getByte(address - i));
                                     RegisterFile.updateRegister(operands[0], result);
                                 }
                                 catch (AddressErrorException e) {
@@ -642,8 +650,8 @@ public class InstructionSet {
                                 try {
                                     int address = RegisterFile.getValue(operands[2]) + operands[1];
                                     int result = RegisterFile.getValue(operands[0]);
-                                    for (int i = 0; i <= 3 - (address % Main.memory.WORD_LENGTH_BYTES); i++)
-                                        result = Binary.setByte(result, i, Main.memory.getByte(address + i));
+                                    for (int i = 0; i <= 3 - (address % Memory.getInstance().WORD_LENGTH_BYTES); i++)
+                                        result = Binary.setByte(result, i, Memory.getInstance().getByte(address + i));
                                     RegisterFile.updateRegister(operands[0], result);
                                 }
                                 catch (AddressErrorException e) {
@@ -660,7 +668,7 @@ public class InstructionSet {
                             public void simulate(ProgramStatement statement) throws ProcessingException {
                                 int[] operands = statement.getOperands();
                                 try {
-                                    Main.memory.setWord(
+                                    Memory.getInstance().setWord(
                                             RegisterFile.getValue(operands[2]) + operands[1],
                                             RegisterFile.getValue(operands[0]));
                                 }
@@ -680,7 +688,7 @@ public class InstructionSet {
                             public void simulate(ProgramStatement statement) throws ProcessingException {
                                 int[] operands = statement.getOperands();
                                 try {
-                                    Main.memory.setWord(
+                                    Memory.getInstance().setWord(
                                             RegisterFile.getValue(operands[2]) + operands[1],
                                             RegisterFile.getValue(operands[0]));
                                 }
@@ -701,8 +709,8 @@ public class InstructionSet {
                                 try {
                                     int address = RegisterFile.getValue(operands[2]) + operands[1];
                                     int source = RegisterFile.getValue(operands[0]);
-                                    for (int i = 0; i <= address % Main.memory.WORD_LENGTH_BYTES; i++)
-                                        Main.memory.setByte(address - i, Binary.getByte(source, 3 - i));
+                                    for (int i = 0; i <= address % Memory.getInstance().WORD_LENGTH_BYTES; i++)
+                                        Memory.getInstance().setByte(address - i, Binary.getByte(source, 3 - i));
                                 }
                                 catch (AddressErrorException e) {
                                     throw new ProcessingException(statement, e);
@@ -720,8 +728,8 @@ public class InstructionSet {
                                 try {
                                     int address = RegisterFile.getValue(operands[2]) + operands[1];
                                     int source = RegisterFile.getValue(operands[0]);
-                                    for (int i = 0; i <= 3 - (address % Main.memory.WORD_LENGTH_BYTES); i++)
-                                        Main.memory.setByte(address + i, Binary.getByte(source, i));
+                                    for (int i = 0; i <= 3 - (address % Memory.getInstance().WORD_LENGTH_BYTES); i++)
+                                        Memory.getInstance().setByte(address + i, Binary.getByte(source, i));
                                 }
                                 catch (AddressErrorException e) {
                                     throw new ProcessingException(statement, e);
@@ -1089,7 +1097,7 @@ public class InstructionSet {
                                 int[] operands = statement.getOperands();
                                 try {
                                     RegisterFile.updateRegister(operands[0],
-                                            Main.memory.getByte(
+                                            Memory.getInstance().getByte(
                                                     RegisterFile.getValue(operands[2])
                                                     + (operands[1] << 16 >> 16))
                                             << 24
@@ -1110,7 +1118,7 @@ public class InstructionSet {
                                 int[] operands = statement.getOperands();
                                 try {
                                     RegisterFile.updateRegister(operands[0],
-                                            Main.memory.getHalf(
+                                            Memory.getInstance().getHalf(
                                                     RegisterFile.getValue(operands[2])
                                                     + (operands[1] << 16 >> 16))
                                             << 16
@@ -1132,7 +1140,7 @@ public class InstructionSet {
                                 try {
                                     // offset is sign-extended and loaded halfword value is zero-extended
                                     RegisterFile.updateRegister(operands[0],
-                                            Main.memory.getHalf(
+                                            Memory.getInstance().getHalf(
                                                     RegisterFile.getValue(operands[2])
                                                     + (operands[1] << 16 >> 16))
                                             & 0x0000ffff);
@@ -1152,7 +1160,7 @@ public class InstructionSet {
                                 int[] operands = statement.getOperands();
                                 try {
                                     RegisterFile.updateRegister(operands[0],
-                                            Main.memory.getByte(
+                                            Memory.getInstance().getByte(
                                                     RegisterFile.getValue(operands[2])
                                                     + (operands[1] << 16 >> 16))
                                             & 0x000000ff);
@@ -1171,7 +1179,7 @@ public class InstructionSet {
                             public void simulate(ProgramStatement statement) throws ProcessingException {
                                 int[] operands = statement.getOperands();
                                 try {
-                                    Main.memory.setByte(
+                                    Memory.getInstance().setByte(
                                             RegisterFile.getValue(operands[2])
                                             + (operands[1] << 16 >> 16),
                                             RegisterFile.getValue(operands[0])
@@ -1191,7 +1199,7 @@ public class InstructionSet {
                             public void simulate(ProgramStatement statement) throws ProcessingException {
                                 int[] operands = statement.getOperands();
                                 try {
-                                    Main.memory.setHalf(
+                                    Memory.getInstance().setHalf(
                                             RegisterFile.getValue(operands[2])
                                             + (operands[1] << 16 >> 16),
                                             RegisterFile.getValue(operands[0])
@@ -2328,7 +2336,7 @@ public class InstructionSet {
                                 int[] operands = statement.getOperands();
                                 try {
                                     Coprocessor1.updateRegister(operands[0],
-                                            Main.memory.getWord(
+                                            Memory.getInstance().getWord(
                                                     RegisterFile.getValue(operands[2]) + operands[1]));
                                 }
                                 catch (AddressErrorException e) {
@@ -2347,17 +2355,17 @@ public class InstructionSet {
                                 if (operands[0] % 2 == 1)
                                     throw new ProcessingException(statement, "first register must be even-numbered");
                                 // IF statement added by DPS 13-July-2011.
-                                if (!Main.memory.doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
+                                if (!Memory.getInstance().doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
                                     throw new ProcessingException(statement,
                                             new AddressErrorException("address not aligned on doubleword boundary ",
                                                     Exceptions.ADDRESS_EXCEPTION_LOAD, RegisterFile.getValue(operands[2]) + operands[1]));
 
                                 try {
                                     Coprocessor1.updateRegister(operands[0],
-                                            Main.memory.getWord(
+                                            Memory.getInstance().getWord(
                                                     RegisterFile.getValue(operands[2]) + operands[1]));
                                     Coprocessor1.updateRegister(operands[0] + 1,
-                                            Main.memory.getWord(
+                                            Memory.getInstance().getWord(
                                                     RegisterFile.getValue(operands[2]) + operands[1] + 4));
                                 }
                                 catch (AddressErrorException e) {
@@ -2374,7 +2382,7 @@ public class InstructionSet {
                             public void simulate(ProgramStatement statement) throws ProcessingException {
                                 int[] operands = statement.getOperands();
                                 try {
-                                    Main.memory.setWord(
+                                    Memory.getInstance().setWord(
                                             RegisterFile.getValue(operands[2]) + operands[1],
                                             Coprocessor1.getValue(operands[0]));
                                 }
@@ -2394,15 +2402,15 @@ public class InstructionSet {
                                 if (operands[0] % 2 == 1)
                                     throw new ProcessingException(statement, "first register must be even-numbered");
                                 // IF statement added by DPS 13-July-2011.
-                                if (!Main.memory.doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
+                                if (!Memory.getInstance().doublewordAligned(RegisterFile.getValue(operands[2]) + operands[1]))
                                     throw new ProcessingException(statement,
                                             new AddressErrorException("address not aligned on doubleword boundary ",
                                                     Exceptions.ADDRESS_EXCEPTION_STORE, RegisterFile.getValue(operands[2]) + operands[1]));
                                 try {
-                                    Main.memory.setWord(
+                                    Memory.getInstance().setWord(
                                             RegisterFile.getValue(operands[2]) + operands[1],
                                             Coprocessor1.getValue(operands[0]));
-                                    Main.memory.setWord(
+                                    Memory.getInstance().setWord(
                                             RegisterFile.getValue(operands[2]) + operands[1] + 4,
                                             Coprocessor1.getValue(operands[0] + 1));
                                 }
@@ -2596,18 +2604,38 @@ public class InstructionSet {
                             }
                         }));
 
-        ////////////// READ PSEUDO-INSTRUCTION SPECS FROM DATA FILE AND ADD //////////////////////
-        addPseudoInstructions();
+        ////////////// PSEUDO-INSTRUCTION SPECS ARE READ FROM DATA FILE ON FIRST LOOKUP //////////////////////
+        // See addPseudoInstructions().
 
         ////////////// GET AND CREATE LIST OF SYSCALL FUNCTION OBJECTS ////////////////////
         syscallLoader = new SyscallLoader();
         syscallLoader.loadSyscalls();
 
-        // Initialization step.  Create token list for each instruction example.  This is
-        // used by parser to determine user program correct syntax.
-        for (Instruction inst : instructionList)
-            inst.createExampleTokenList();
+        // The token list of each instruction example, used by the parser to determine
+        // user program correct syntax, is created on first use, see Instruction.getTokenList().
+        // So are the opcode match maps, see findByBinaryCode().
 
+        buildMnemonicIndex();
+    }
+
+    public BasicInstruction findByBinaryCode(int binaryInstr) {
+        ArrayList<MatchMap> matchMaps = opcodeMatchMaps;
+        if (matchMaps == null)
+            matchMaps = buildMatchMaps();
+        for (MatchMap map : matchMaps) {
+            BasicInstruction ret = map.find(binaryInstr);
+            if (ret != null) return ret;
+        }
+        return null;
+    }
+
+    /*
+     * Groups the basic instructions by opcode mask, most specific masks first,
+     * for findByBinaryCode().
+     */
+    private synchronized ArrayList<MatchMap> buildMatchMaps() {
+        if (opcodeMatchMaps != null)
+            return opcodeMatchMaps;
         HashMap<Integer, HashMap<Integer, BasicInstruction>> maskMap = new HashMap<>();
         ArrayList<MatchMap> matchMaps = new ArrayList<>();
         for (Instruction rawInstr : instructionList)
@@ -2625,19 +2653,15 @@ public class InstructionSet {
             }
         Collections.sort(matchMaps);
         this.opcodeMatchMaps = matchMaps;
+        return matchMaps;
     }
 
-    public BasicInstruction findByBinaryCode(int binaryInstr) {
-        for (MatchMap map : opcodeMatchMaps) {
-            BasicInstruction ret = map.find(binaryInstr);
-            if (ret != null) return ret;
-        }
-        return null;
-    }
-
-    /*  METHOD TO ADD PSEUDO-INSTRUCTIONS
+    /*  METHOD TO READ PSEUDO-INSTRUCTION SPECS
+     *  Only indexes the lines of PseudoOps.txt by mnemonic, the instructions
+     *  themselves are created on first lookup of their mnemonic, see
+     *  addPseudoInstructions().  Called with this set locked.
      */
-    private void addPseudoInstructions() {
+    private void readPseudoInstructionSpecs() {
         InputStream is = null;
         BufferedReader in = null;
         try {
@@ -2650,41 +2674,19 @@ public class InstructionSet {
                     "Error: MIPS pseudo-instruction file PseudoOps.txt not found.");
             System.exit(0);
         }
+        ConcurrentHashMap<String, ArrayList<PseudoOpSpec>> specs = new ConcurrentHashMap<>();
         try {
-            String line, pseudoOp, template, firstTemplate, token;
-            String description;
-            StringTokenizer tokenizer;
+            String line;
             while ((line = in.readLine()) != null)
                 // skip over: comment lines, empty lines, lines starting with blank.
                 if (!line.startsWith("#") && !line.startsWith(" ")
                         && line.length() > 0) {
-                    description = "";
-                    tokenizer = new StringTokenizer(line, "\t");
-                    pseudoOp = tokenizer.nextToken();
-                    template = "";
-                    firstTemplate = null;
-                    while (tokenizer.hasMoreTokens()) {
-                        token = tokenizer.nextToken();
-                        if (token.startsWith("#")) {
-                            // Optional description must be last token in the line.
-                            description = token.substring(1);
-                            break;
-                        }
-                        if (token.startsWith("COMPACT")) {
-                            // has second template for Compact (16-bit) memory config -- added DPS 3 Aug 2009
-                            firstTemplate = template;
-                            template = "";
-                            continue;
-                        }
-                        template = template + token;
-                        if (tokenizer.hasMoreTokens())
-                            template = template + "\n";
-                    }
-                    ExtendedInstruction inst = (firstTemplate == null)
-                            ? new ExtendedInstruction(pseudoOp, template, description)
-                            : new ExtendedInstruction(pseudoOp, firstTemplate, template, description);
-                    instructionList.add(inst);
-                    //if (firstTemplate != null) System.out.println("\npseudoOp: "+pseudoOp+"\ndefault template:\n"+firstTemplate+"\ncompact template:\n"+template);
+                    int end = 0;
+                    while (end < line.length() && line.charAt(end) != ' ' && line.charAt(end) != '\t')
+                        end++;
+                    PseudoOpSpec spec = new PseudoOpSpec(line);
+                    pseudoOpSpecs.add(spec);
+                    specs.computeIfAbsent(line.substring(0, end).toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(spec);
                 }
             in.close();
         }
@@ -2693,55 +2695,160 @@ public class InstructionSet {
                     "Internal Error: MIPS pseudo-instructions could not be loaded.");
             System.exit(0);
         }
-        catch (Exception ioe) {
-            System.out.println(
-                    "Error: Invalid MIPS pseudo-instruction specification.");
-            System.exit(0);
+        pendingPseudoOps = specs;
+    }
+
+    /*  METHOD TO ADD PSEUDO-INSTRUCTIONS
+     *  Creates the pseudo-instructions of the given mnemonic, if not done yet,
+     *  and adds them to the mnemonic index after the basic instructions of the
+     *  same mnemonic, in PseudoOps.txt order.
+     */
+    private synchronized void addPseudoInstructions(String mnemonic) {
+        if (pendingPseudoOps == null)
+            readPseudoInstructionSpecs();
+        ArrayList<PseudoOpSpec> specs = pendingPseudoOps.get(mnemonic);
+        if (specs == null)
+            return;
+        ArrayList<Instruction> matches = new ArrayList<>(mnemonicIndex.getOrDefault(mnemonic, new ArrayList<>()));
+        for (PseudoOpSpec spec : specs)
+            matches.add(spec.build());
+        mnemonicIndex.put(mnemonic, matches);
+        pendingPseudoOps.remove(mnemonic);
+    }
+
+    /*
+     * Creates all remaining pseudo-instructions and adds them to the instruction
+     * list, in PseudoOps.txt order, then builds the trie of mnemonics.  Needed by
+     * the views of the whole instruction set, which only the GUI has.
+     */
+    private synchronized void addAllPseudoInstructions() {
+        if (mnemonicTrie != null)
+            return;
+        if (pendingPseudoOps == null)
+            readPseudoInstructionSpecs();
+        for (String mnemonic : new ArrayList<>(pendingPseudoOps.keySet()))
+            addPseudoInstructions(mnemonic);
+        for (PseudoOpSpec spec : pseudoOpSpecs)
+            instructionList.add(spec.build());
+        buildMnemonicTrie();
+    }
+
+    // A line of PseudoOps.txt and the instruction it specifies, once created
+    private static class PseudoOpSpec {
+
+        private final String line;
+        private ExtendedInstruction instruction;
+
+        PseudoOpSpec(String line) {
+            this.line = line;
         }
 
+        ExtendedInstruction build() {
+            if (instruction != null)
+                return instruction;
+            try {
+                String pseudoOp, template, firstTemplate, token;
+                String description = "";
+                StringTokenizer tokenizer = new StringTokenizer(line, "\t");
+                pseudoOp = tokenizer.nextToken();
+                template = "";
+                firstTemplate = null;
+                while (tokenizer.hasMoreTokens()) {
+                    token = tokenizer.nextToken();
+                    if (token.startsWith("#")) {
+                        // Optional description must be last token in the line.
+                        description = token.substring(1);
+                        break;
+                    }
+                    if (token.startsWith("COMPACT")) {
+                        // has second template for Compact (16-bit) memory config -- added DPS 3 Aug 2009
+                        firstTemplate = template;
+                        template = "";
+                        continue;
+                    }
+                    template = template + token;
+                    if (tokenizer.hasMoreTokens())
+                        template = template + "\n";
+                }
+                instruction = (firstTemplate == null)
+                        ? new ExtendedInstruction(pseudoOp, template, description)
+                        : new ExtendedInstruction(pseudoOp, firstTemplate, template, description);
+            }
+            catch (Exception e) {
+                System.out.println(
+                        "Error: Invalid MIPS pseudo-instruction specification.");
+                System.exit(0);
+            }
+            return instruction;
+        }
     }
 
     /**
      * Given an operator mnemonic, will return the corresponding Instruction
-     * object(s) from the instruction set. Uses straight linear search
-     * technique.
+     * object(s) from the instruction set. Case-insensitive, looked up in a hash
+     * index built by populate(), to which the pseudo-instructions of a mnemonic
+     * are added on its first lookup. The returned list is shared and must not be
+     * modified.
      *
      * @param name operator mnemonic (e.g. addi, sw,...)
      * @return list of corresponding Instruction object(s), or null if not
      * found.
      */
     public ArrayList<Instruction> matchOperator(String name) {
-        ArrayList<Instruction> matchingInstructions = null;
-        // Linear search for now....
-        for (Instruction instruction : instructionList)
-            if (instruction.getName().equalsIgnoreCase(name)) {
-                if (matchingInstructions == null)
-                    matchingInstructions = new ArrayList<>();
-                matchingInstructions.add(instruction);
-            }
-        return matchingInstructions;
+        if (name == null)
+            return null;
+        String mnemonic = name.toLowerCase(Locale.ROOT);
+        ConcurrentHashMap<String, ArrayList<PseudoOpSpec>> pending = pendingPseudoOps;
+        if (pending == null || pending.containsKey(mnemonic))
+            addPseudoInstructions(mnemonic);
+        return mnemonicIndex.get(mnemonic);
     }
 
     /**
      * Given a string, will return the Instruction object(s) from the
      * instruction set whose operator mnemonic prefix matches it.
-     * Case-insensitive. For example "s" will match "sw", "sh", "sb", etc. Uses
-     * straight linear search technique.
+     * Case-insensitive. For example "s" will match "sw", "sh", "sb", etc. Looked
+     * up in a trie of the mnemonics, built on first use along with all the
+     * pseudo-instructions. The returned list is shared and must not be modified.
      *
      * @param name a string
      * @return list of matching Instruction object(s), or null if none match.
      */
     public ArrayList<Instruction> prefixMatchOperator(String name) {
-        ArrayList<Instruction> matchingInstructions = null;
-        // Linear search for now....
-        if (name != null)
-            for (Instruction instruction : instructionList)
-                if (instruction.getName().toLowerCase().startsWith(name.toLowerCase())) {
-                    if (matchingInstructions == null)
-                        matchingInstructions = new ArrayList<>();
-                    matchingInstructions.add(instruction);
-                }
-        return matchingInstructions;
+        if (name == null)
+            return null;
+        if (mnemonicTrie == null)
+            addAllPseudoInstructions();
+        PrefixNode node = mnemonicTrie;
+        for (int i = 0; i < name.length() && node != null; i++)
+            node = node.children.get(Character.toLowerCase(name.charAt(i)));
+        return node == null || node.instructions.isEmpty() ? null : node.instructions;
+    }
+
+    /*
+     * Index the basic instructions by lowercase mnemonic, in instruction set order.
+     */
+    private void buildMnemonicIndex() {
+        for (Instruction instruction : instructionList)
+            mnemonicIndex.computeIfAbsent(instruction.getName().toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(instruction);
+    }
+
+    /*
+     * Build the trie of mnemonics, which keeps the instructions in instruction
+     * set order.
+     */
+    private void buildMnemonicTrie() {
+        PrefixNode root = new PrefixNode();
+        for (Instruction instruction : instructionList) {
+            String name = instruction.getName().toLowerCase(Locale.ROOT);
+            PrefixNode node = root;
+            node.instructions.add(instruction);
+            for (int i = 0; i < name.length(); i++) {
+                node = node.children.computeIfAbsent(name.charAt(i), k -> new PrefixNode());
+                node.instructions.add(instruction);
+            }
+        }
+        mnemonicTrie = root;
     }
 
     /*
@@ -2821,6 +2928,14 @@ public class InstructionSet {
                         : 0));
     }
 
+    // Node of the mnemonic trie, holding every instruction whose mnemonic
+    // starts with the path to it
+    private static class PrefixNode {
+
+        private final HashMap<Character, PrefixNode> children = new HashMap<>();
+        private final ArrayList<Instruction> instructions = new ArrayList<>();
+    }
+
     private static class MatchMap implements Comparable<MatchMap> {
 
         private int mask;
@@ -3,6 +3,10 @@
    import mars.*;
 	import mars.util.*;
    import java.util.*;
+   import java.io.*;
+   import java.nio.charset.StandardCharsets;
+   import java.nio.file.*;
+   import java.lang.reflect.Modifier;
 
 /*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -39,6 +43,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      * in particular of the Memory and Register classes, to write custom MIPS syscall
      * functions. This is adapted from the ToolLoader class, which is in turn adapted
      * from Bret Barker's GameServer class from the book "Developing Games In Java".
+     *
+     * The syscall classes are listed at build time in a service index, see
+     * {@link #main(String[])}, so that startup does not have to scan the classpath.
+     * Lookups at run time go through a table indexed by service number.
      */
     
     class SyscallLoader {
@@ -48,69 +56,143 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static final String SYSCALL_INTERFACE = "Syscall.class";
       private static final String SYSCALL_ABSTRACT = "AbstractSyscall.class";
       private static final String CLASS_EXTENSION = "class";
+      // Service index, in java.util.ServiceLoader format
+      private static final String SYSCALL_INDEX = "META-INF/services/mars.mips.instructions.syscalls.Syscall";
       
-      private ArrayList syscallList;
+      private ArrayList<Syscall> syscallList;
+      // Syscalls by service number; null where no service has the number
+      private Syscall[] syscallTable;
    	
    /*
-      *  Dynamically loads Syscalls into an ArrayList.  This method is adapted from
-      *  the loadGameControllers() method in Bret Barker's GameServer class.
-      *  Barker (bret@hypefiend.com) is co-author of the book "Developing Games
-      *  in Java".  Also see the "loadMarsTools()" method from ToolLoader class.
+      *  Loads Syscalls into an ArrayList, as listed by the service index in the
+      *  jar or class directory. When running from classes built without the
+      *  index, falls back to scanning the syscalls directory.
       */
        void loadSyscalls() {
-         syscallList = new ArrayList();
+         syscallList = new ArrayList<>();
+         ClassLoader loader = this.getClass().getClassLoader();
+         if (loader.getResource(SYSCALL_INDEX) != null) {
+            try {
+               for (Syscall syscall : ServiceLoader.load(Syscall.class, loader)) {
+                  addSyscall(syscall);
+               }
+            } 
+                catch (Exception | ServiceConfigurationError e) {
+                  System.out.println("Error instantiating Syscall from " + SYSCALL_INDEX + ": "+e);
+                  System.exit(0);
+               }
+         } 
+         else {
+            for (String name : findSyscallClasses(loader)) {
+               try {
+                  Class<?> clas = Class.forName(name);
+                  addSyscall((Syscall) clas.getDeclaredConstructor().newInstance());
+               } 
+                   catch (Exception e) {
+                     System.out.println("Error instantiating Syscall " + name + ": "+e);
+                     System.exit(0);
+                  }
+            }
+         }
+         syscallList = processSyscallNumberOverrides(syscallList);
+         syscallTable = buildSyscallTable(syscallList);
+         return;
+      }
+      
+       private void addSyscall(Syscall syscall) throws Exception {
+         for (int i=0; i < syscallList.size(); i++) {
+            Syscall other = syscallList.get(i);
+            if (other.getNumber() == syscall.getNumber()) {
+               throw new Exception("Duplicate service number: "+syscall.getNumber()+
+                            " already registered to "+other.getName());
+            }
+         }
+         syscallList.add(syscall);
+      }
+   
+   /*
+      *  Scans the syscalls directory for the names of classes implementing Syscall.
+      *  This method is adapted from the loadGameControllers() method in Bret Barker's
+      *  GameServer class. Barker (bret@hypefiend.com) is co-author of the book
+      *  "Developing Games in Java".  Also see the "loadMarsTools()" method from
+      *  ToolLoader class.
+      */
+       private static ArrayList<String> findSyscallClasses(ClassLoader loader) {
+         ArrayList<String> names = new ArrayList<>();
          // grab all class files in the same directory as Syscall
-         ArrayList candidates = FilenameFinder.getFilenameList(this.getClass( ).getClassLoader(),
+         ArrayList<String> candidates = FilenameFinder.getFilenameList(loader,
                                               SYSCALLS_DIRECTORY_PATH, CLASS_EXTENSION);
-		   HashMap syscalls = new HashMap();
+		   HashSet<String> syscalls = new HashSet<>();
          for( int i = 0; i < candidates.size(); i++) {
-            String file = (String) candidates.get(i); 
+            String file = candidates.get(i); 
 				// Do not add class if already encountered (happens if run in MARS development directory)
-				if (syscalls.containsKey(file)) {
+				if (!syscalls.add(file)) {
 				  continue;
-				} else {
-				   syscalls.put(file,file);
 				}
             if ((!file.equals(SYSCALL_INTERFACE)) &&
                	  (!file.equals(SYSCALL_ABSTRACT)) ) {
+               String syscallClassName = CLASS_PREFIX+file.substring(0, file.indexOf(CLASS_EXTENSION)-1);
                try {
-                  // grab the class, make sure it implements Syscall, instantiate, add to list
-                  String syscallClassName = CLASS_PREFIX+file.substring(0, file.indexOf(CLASS_EXTENSION)-1);
-                  Class clas = Class.forName(syscallClassName);
-                  if (!Syscall.class.isAssignableFrom(clas)) {
-                     continue;
-                  }
-                  Syscall syscall = (Syscall) clas.newInstance();
-                  if (findSyscall(syscall.getNumber()) == null) {
-                     syscallList.add(syscall);
-                  } 
-                  else {
-                     throw new Exception("Duplicate service number: "+syscall.getNumber()+
-                            " already registered to "+
-                            findSyscall(syscall.getNumber()).getName());
+                  // make sure the class implements Syscall and can be instantiated,
+                  // without initializing it
+                  Class<?> clas = Class.forName(syscallClassName, false, loader);
+                  if (Syscall.class.isAssignableFrom(clas) && Modifier.isPublic(clas.getModifiers())
+                        && !Modifier.isAbstract(clas.getModifiers())) {
+                     names.add(syscallClassName);
                   }
                } 
-                   catch (Exception e) {
-                     System.out.println("Error instantiating Syscall from file " + file + ": "+e);
-                     System.exit(0);
+                   catch (ClassNotFoundException | LinkageError e) {
+                     // not a loadable top-level class, e.g. an inner class
                   }
             }
          }
-         syscallList = processSyscallNumberOverrides(syscallList);
-         return;
+         Collections.sort(names);
+         return names;
+      }
+   
+   /*
+      *  Writes the service index of syscall classes to the file named by the
+      *  first argument.  Run by the build after compiling, with the compiled
+      *  classes on the class path.
+      */
+       public static void main(String[] args) throws IOException {
+         Path index = Paths.get(args[0]);
+         Files.createDirectories(index.getParent());
+         ArrayList<String> names = findSyscallClasses(SyscallLoader.class.getClassLoader());
+         Files.write(index, names, StandardCharsets.UTF_8);
+         System.out.println("Indexed " + names.size() + " syscalls in " + index);
+      }
+   
+       // Builds the table of syscalls by service number.
+       private static Syscall[] buildSyscallTable(ArrayList<Syscall> syscallList) {
+         int size = 0;
+         for (int i = 0; i < syscallList.size(); i++) {
+            int number = syscallList.get(i).getNumber();
+            if (number >= size) {
+               size = number + 1;
+            }
+         }
+         Syscall[] table = new Syscall[size];
+         for (int i = 0; i < syscallList.size(); i++) {
+            Syscall syscall = syscallList.get(i);
+            if (syscall.getNumber() >= 0) {
+               table[syscall.getNumber()] = syscall;
+            }
+         }
+         return table;
       }
          
        // Will get any syscall number override specifications from MARS config file and
        // process them.  This will alter syscallList entry for affected names.
-       private ArrayList processSyscallNumberOverrides(ArrayList syscallList) {
-         ArrayList overrides = new Main().getSyscallOverrides();
+       private ArrayList<Syscall> processSyscallNumberOverrides(ArrayList<Syscall> syscallList) {
+         ArrayList<SyscallNumberOverride> overrides = new Main().getSyscallOverrides();
          SyscallNumberOverride override;
          Syscall syscall;
          for (int index=0; index < overrides.size(); index++) {
-            override = (SyscallNumberOverride) overrides.get(index);
+            override = overrides.get(index);
             boolean match = false; 
             for (int i=0; i < syscallList.size(); i++) {
-               syscall = (Syscall) syscallList.get(i);
+               syscall = syscallList.get(i);
                if (override.getName().equals(syscall.getName())) {
                       // we have a match to service name, assign new number
                   syscall.setNumber(override.getNumber());
@@ -132,9 +214,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          Syscall syscallA, syscallB;
          boolean duplicates = false;
          for (int i = 0; i < syscallList.size(); i++) {
-            syscallA = (Syscall)syscallList.get(i);
+            syscallA = syscallList.get(i);
             for (int j = i+1; j < syscallList.size(); j++) {
-               syscallB = (Syscall)syscallList.get(j);
+               syscallB = syscallList.get(j);
                if ( syscallA.getNumber() == syscallB.getNumber()) {
                   System.out.println("Error: syscalls "+syscallA.getName()+" and "+
                         syscallB.getName()+" are both assigned same number "+syscallA.getNumber());
@@ -153,17 +235,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 * Returns null if no associated object found.
    	 */
        Syscall findSyscall(int number) {
-         // linear search is OK since number of syscalls is small.
-         Syscall service, match = null;
-         if (syscallList==null) {
+         if (syscallTable==null) {
             loadSyscalls();
          }
-         for (int index=0; index < syscallList.size(); index++) {
-            service = (Syscall) syscallList.get(index);
-            if (service.getNumber() == number) {
-               match = service;
-            }
-         }
-         return match;
+         return number >= 0 && number < syscallTable.length ? syscallTable[number] : null;
       }
    }
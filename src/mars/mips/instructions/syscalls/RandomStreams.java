@@ -1,5 +1,7 @@
    package mars.mips.instructions.syscalls;
 	import java.util.HashMap;
+	import java.util.Random;
+	import mars.MachineContext;
 
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -31,13 +33,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 
 /** 
- * This small class serves only to hold a static HashMap for storing
+ * This small class serves only to hold a HashMap for storing
  * random number generators for use by all the random number generator
- * syscalls.
+ * syscalls.  Each machine has its own, see mars.MachineContext.
  */
  
     public class RandomStreams {
-      /** Collection of pseudorandom number streams available for use in Rand-type syscalls.
-       * The streams are by default not seeded. */
-		 static final HashMap randomStreams = new HashMap();
+      /** Collection of pseudorandom number streams available for use in Rand-type syscalls,
+       * those of the current machine.  The streams are by default not seeded. */
+		 static HashMap<Integer, Random> randomStreams() {
+		    return MachineContext.current().getRandomStreams();
+		 }
    }
\ No newline at end of file
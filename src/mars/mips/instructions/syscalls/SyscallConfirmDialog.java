@@ -61,12 +61,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          char ch[] = { ' '}; // Need an array to convert to String
          try
          {
-            ch[0] = (char) Main.memory.getByte(byteAddress);
+            ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             while (ch[0] != 0) // only uses single location ch[0]
             {
                message = message.concat(new String(ch)); // parameter to String constructor is a char[] array
                byteAddress++;
-               ch[0] = (char) Main.memory.getByte(byteAddress);
+               ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             }
          }
              catch (AddressErrorException e)
@@ -79,7 +79,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             //    0 ---> meaning Yes
             //    1 ---> meaning No
             //    2 ---> meaning Cancel
-            RegisterFile.updateRegister(4, JOptionPane.showConfirmDialog(null, message) );
+            String prompt = message;
+            RegisterFile.updateRegister(4, ReverseExecution.input(() -> JOptionPane.showConfirmDialog(null, prompt)) );
 
        }
 
@@ -67,12 +67,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          char ch[] = { ' '}; // Need an array to convert to String
          try
          {
-            ch[0] = (char) Main.memory.getByte(byteAddress);
+            ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             while (ch[0] != 0) // only uses single location ch[0]
             {
                message = message.concat(new String(ch)); // parameter to String constructor is a char[] array
                byteAddress++;
-               ch[0] = (char) Main.memory.getByte(byteAddress);
+               ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             }
          }
              catch (AddressErrorException e)
@@ -85,7 +85,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             // An empty string returned (that is, inputString.length() of zero)
             // means that OK was chosen but no string was input.
          String inputString = null;
-         inputString = JOptionPane.showInputDialog(message);
+         String prompt = message;
+         inputString = ReverseExecution.input(() -> JOptionPane.showInputDialog(prompt));
          byteAddress = RegisterFile.getValue(5); // byteAddress of string is in $a1
          int maxLength = RegisterFile.getValue(6); // input buffer size for input string is in $a2
       
@@ -105,14 +106,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                     // Copy the input data to buffer as space permits
                for (int index = 0; (index < inputString.length()) && (index < maxLength - 1); index++)
                {
-                  Main.memory.setByte(byteAddress + index,
+                  Memory.getInstance().setByte(byteAddress + index,
                                        inputString.charAt(index));
                }
                if (inputString.length() < maxLength-1) 
 					{
-                  Main.memory.setByte(byteAddress + (int)Math.min(inputString.length(), maxLength-2), '\n');  // newline at string end
+                  Memory.getInstance().setByte(byteAddress + (int)Math.min(inputString.length(), maxLength-2), '\n');  // newline at string end
                }
-               Main.memory.setByte(byteAddress + (int)Math.min((inputString.length()+1), maxLength-1), 0);  // null char to end string
+               Memory.getInstance().setByte(byteAddress + (int)Math.min((inputString.length()+1), maxLength-1), 0);  // null char to end string
                     
                if (inputString.length() > maxLength - 1)
                {
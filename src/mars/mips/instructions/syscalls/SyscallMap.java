@@ -0,0 +1,63 @@
+   package mars.mips.instructions.syscalls;
+   import mars.util.*;
+   import mars.mips.hardware.*;
+   import mars.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+
+/** 
+ * Service to map part of the file given by descriptor $a0 into the heap.
+ *
+ */
+ 
+    public class SyscallMap extends AbstractSyscall {
+   /**
+    * Build an instance of the Map syscall.  Default service number
+    * is 19 and name is "Map".
+    */
+       public SyscallMap() {
+         super(19, "Map");
+      }
+      
+   /**
+   * Performs syscall function to map $a1 bytes of file descriptor given in $a0, starting
+   * at byte offset $a2 of the file, into a fresh part of the heap.  Address of the mapping
+   * is returned in $v0, or -1 if error.  The file is read as the program accesses the
+   * mapping, with loads and stores as usual.  If the file was opened read-write (flag 2),
+   * changes are written back to it by the Unmap syscall and when the program ends.
+   */
+       public void simulate(ProgramStatement statement) throws ProcessingException {
+         int retValue = SystemIO.mapFile(
+                                 RegisterFile.getValue(4), // fd
+                                 RegisterFile.getValue(5), // length
+                                 RegisterFile.getValue(6)); // offset
+         RegisterFile.updateRegister(2, retValue); // set returned value in register
+      }
+   }
@@ -76,7 +76,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (duration < 0) duration = ToneGenerator.DEFAULT_DURATION;
          if (instrument < rangeLowEnd || instrument > rangeHighEnd) instrument = ToneGenerator.DEFAULT_INSTRUMENT;
          if (volume < rangeLowEnd || volume > rangeHighEnd) volume = ToneGenerator.DEFAULT_VOLUME;
-         new ToneGenerator().generateTone( (byte) pitch, duration, (byte) instrument, (byte) volume);
+         if (!ReverseExecution.isReplaying())
+            new ToneGenerator().generateTone( (byte) pitch, duration, (byte) instrument, (byte) volume);
       }
 
    }
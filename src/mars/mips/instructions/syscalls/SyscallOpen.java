@@ -51,9 +51,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
    /**
    * Performs syscall function to open file name specified by $a0. File descriptor returned
-	* in $v0.  Only supported flags ($a1) are read-only (0), write-only (1) and 
+	* in $v0.  Only supported flags ($a1) are read-only (0), write-only (1), read-write (2) and 
 	* write-append (9). write-only flag creates file if it does not exist, so it is technically
-	* write-create.  write-append will start writing at end of existing file.
+	* write-create.  write-append will start writing at end of existing file.  read-write
+	* opens an existing file, at its start; see the Seek syscall to move about it.
 	* Mode ($a2) is ignored. 
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
@@ -65,7 +66,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
           // This code implements the flags:
           // Read          flag = 0
           // Write         flag = 1
-          // Read/Write    NOT IMPLEMENTED
+          // Read/Write    flag = 2
 			 // Write/append  flag = 9
           // This code implements the modes:
           // NO MODES IMPLEMENTED  -- MODE IS IGNORED
@@ -76,12 +77,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          char ch[] = { ' '}; // Need an array to convert to String
          try
          {
-            ch[0] = (char) Main.memory.getByte(byteAddress);
+            ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             while (ch[0] != 0) // only uses single location ch[0]
             {
                filename = filename.concat(new String(ch)); // parameter to String constructor is a char[] array
                byteAddress++;
-               ch[0] = (char) Main.memory.getByte(
+               ch[0] = (char) Memory.getInstance().getByte(
                                         byteAddress);
             }
          } 
@@ -50,17 +50,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
          int byteAddress = RegisterFile.getValue(4);
-         char ch = 0;
          try
          {
-            ch = (char) Main.memory.getByte(byteAddress);
                               // won't stop until NULL byte reached!
-            while (ch != 0)
-            {
-               SystemIO.printString(new Character(ch).toString());
-               byteAddress++;
-               ch = (char) Main.memory.getByte(byteAddress);
-            }
+            int length = Memory.getInstance().getStringLength(byteAddress);
+            byte[] bytes = new byte[length + 1];
+            Memory.getInstance().getBytes(byteAddress, bytes, 0, length + 1);
+            SystemIO.printString(bytes, 0, length);
          } 
              catch (AddressErrorException e)
             {
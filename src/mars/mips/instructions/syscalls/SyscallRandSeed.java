@@ -54,11 +54,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
           // Arguments: $a0 = index of pseudorandom number generator
           //   $a1 = seed for pseudorandom number generator.
           // Result: No values are returned. Sets the seed of the underlying Java pseudorandom number generator.
+          // Replays take the numbers drawn from the log instead.
+          if (ReverseExecution.isReplaying())
+             return;
 
           Integer index = new Integer(RegisterFile.getValue(4));
-			 Random stream = (Random) RandomStreams.randomStreams.get(index);
+			 Random stream = (Random) RandomStreams.randomStreams().get(index);
           if (stream == null) {
-			    RandomStreams.randomStreams.put(index, new Random(RegisterFile.getValue(5)));
+			    RandomStreams.randomStreams().put(index, new Random(RegisterFile.getValue(5)));
 			 } else {
 			    stream.setSeed(RegisterFile.getValue(5));
 			 }
@@ -65,19 +65,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          inputString = SystemIO.readString(this.getNumber(), maxLength);
          int stringLength = Math.min(maxLength, inputString.length());
+         byte[] bytes = new byte[stringLength + 2];
+         for (int index = 0; index < stringLength; index++)
+         {
+            bytes[index] = (byte) inputString.charAt(index);
+         }
+         if (stringLength < maxLength)
+         {
+            bytes[stringLength] = '\n';
+            stringLength++;
+         }
+         if (addNullByte) bytes[stringLength++] = 0;
          try
          {
-            for (int index = 0; index < stringLength; index++)
-            {
-               Main.memory.setByte(buf + index,
-                                       inputString.charAt(index));
-            }            
-            if (stringLength < maxLength)
-            {
-               Main.memory.setByte(buf + stringLength, '\n');
-               stringLength++;
-            }
-            if (addNullByte) Main.memory.setByte(buf + stringLength, 0);
+            Memory.getInstance().setBytes(buf, bytes, 0, stringLength);
          } 
              catch (AddressErrorException e)
             {
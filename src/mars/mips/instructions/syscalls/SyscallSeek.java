@@ -0,0 +1,62 @@
+   package mars.mips.instructions.syscalls;
+   import mars.util.*;
+   import mars.mips.hardware.*;
+   import mars.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+
+/** 
+ * Service to move the read/write position of the file descriptor given in $a0.
+ *
+ */
+ 
+    public class SyscallSeek extends AbstractSyscall {
+   /**
+    * Build an instance of the Seek syscall.  Default service number
+    * is 18 and name is "Seek".
+    */
+       public SyscallSeek() {
+         super(18, "Seek");
+      }
+      
+   /**
+   * Performs syscall function to move the read/write position of file descriptor given in $a0.
+   * $a1 specifies the offset and $a2 where it is counted from: start of file (0), current
+   * position (1) or end of file (2).  New position is returned in $v0, or -1 if error.
+   * Positions beyond the end of file are allowed; writing there extends the file.
+   */
+       public void simulate(ProgramStatement statement) throws ProcessingException {
+         int retValue = SystemIO.seekFile(
+                                 RegisterFile.getValue(4), // fd
+                                 RegisterFile.getValue(5), // offset
+                                 RegisterFile.getValue(6)); // whence
+         RegisterFile.updateRegister(2, retValue); // set returned value in register
+      }
+   }
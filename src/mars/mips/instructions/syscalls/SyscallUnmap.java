@@ -0,0 +1,59 @@
+   package mars.mips.instructions.syscalls;
+   import mars.util.*;
+   import mars.mips.hardware.*;
+   import mars.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+
+/** 
+ * Service to remove the file mapping at address $a0.
+ *
+ */
+ 
+    public class SyscallUnmap extends AbstractSyscall {
+   /**
+    * Build an instance of the Unmap syscall.  Default service number
+    * is 20 and name is "Unmap".
+    */
+       public SyscallUnmap() {
+         super(20, "Unmap");
+      }
+      
+   /**
+   * Performs syscall function to remove the file mapping made by the Map syscall at
+   * address $a0, writing back the changes made to it if the file was opened read-write.
+   * The mapped part of the heap reads as zero afterwards.  0 is returned in $v0, or -1
+   * if no mapping starts at that address.
+   */
+       public void simulate(ProgramStatement statement) throws ProcessingException {
+         int retValue = SystemIO.unmapFile(RegisterFile.getValue(4));
+         RegisterFile.updateRegister(2, retValue); // set returned value in register
+      }
+   }
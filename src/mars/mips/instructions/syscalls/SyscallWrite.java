@@ -56,22 +56,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
          int byteAddress = RegisterFile.getValue(5); // source of characters to write to file
-         byte b = 0;
          int reqLength = RegisterFile.getValue(6); // user-requested length
-         int index = 0;
-         byte myBuffer[] = new byte[RegisterFile.getValue(6) + 1]; // specified length plus null termination
+         if (reqLength < 0)
+         {
+            RegisterFile.updateRegister(2, -1);
+            return;
+         }
+         byte myBuffer[] = new byte[reqLength]; // specified length
          try
          {
-            b = (byte) Main.memory.getByte(byteAddress);                            
-            while (index < reqLength) // Stop at requested length. Null bytes are included.
-                                 // while (index < reqLength && b != 0) // Stop at requested length OR null byte
-            {
-               myBuffer[index++] = b;
-               byteAddress++;
-               b = (byte) Main.memory.getByte(byteAddress);
-            }
-                              
-            myBuffer[index] = 0; // Add string termination
+            // Stop at requested length. Null bytes are included.
+            Memory.getInstance().getBytes(byteAddress, myBuffer, 0, reqLength);
          } // end try
              catch (AddressErrorException e)
             {
@@ -80,7 +75,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          int retValue = SystemIO.writeToFile(
                                  RegisterFile.getValue(4), // fd
                                  myBuffer, // buffer
-                                 RegisterFile.getValue(6)); // length
+                                 reqLength); // length
          RegisterFile.updateRegister(2, retValue); // set returned value in register
 
          // Getting rid of processing exception.  It is the responsibility of the
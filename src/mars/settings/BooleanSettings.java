@@ -59,7 +59,11 @@ public enum BooleanSettings {
     POPUP_SYSCALL_INPUT("PopupSyscallInput", false),
     GENERIC_TEXT_EDITOR("GenericTextEditor", false),
     AUTO_INDENT("AutoIndent", true),
-    SELF_MODIFYING_CODE("SelfModifyingCode", false);
+    SELF_MODIFYING_CODE("SelfModifyingCode", false),
+    PREDECODED_EXECUTION("PredecodedExecution", false),
+    BLOCK_COMPILATION("BlockCompilation", false),
+    UNLIMITED_BACKSTEPS("UnlimitedBacksteps", false),
+    REVERSE_EXECUTION("ReverseExecution", false);
 
     final String identifier;
     boolean state;
@@ -88,6 +92,7 @@ public enum BooleanSettings {
      */
     public void set(boolean newState) {
         if (state != newState) {
+            state = newState;
             try {
                 Settings.PREFS_NODE.putBoolean(identifier, newState);
                 Settings.PREFS_NODE.flush();
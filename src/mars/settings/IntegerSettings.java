@@ -40,7 +40,8 @@ public enum IntegerSettings {
     CARET_BLINK_RATE("CaretBlinkRate", 500),
     EDITOR_TAB_SIZE("EditorTabSize", 8),
     LABEL_SORT_STATE("LabelSortState", 0),
-    EDITOR_POPUP_PREFIX_LENGTH("EditorPopupPrefixLength", 2);
+    EDITOR_POPUP_PREFIX_LENGTH("EditorPopupPrefixLength", 2),
+    LOCK_EPOCH_LENGTH("LockEpochLength", 1000);
 
     final String identifier;
     final int defaultValue;
@@ -67,6 +68,17 @@ public enum IntegerSettings {
         return value;
     }
 
+    /**
+     * Temporarily establish integer setting. This setting will NOT be written
+     * to persistent store! Currently this is used only when running MARS from
+     * the command line
+     *
+     * @param value the value to establish
+     */
+    public void setNoPersist(int value) {
+        this.value = value;
+    }
+
     public void set(int value) {
         this.value = value;
         Settings.PREFS_NODE.putInt(identifier, value);
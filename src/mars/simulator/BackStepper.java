@@ -1,11 +1,18 @@
 package mars.simulator;
 
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
 import mars.Main;
-import mars.ProgramStatement;
 import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.mips.instructions.Instruction;
+import mars.settings.BooleanSettings;
 
 /*
  Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -55,6 +62,8 @@ public class BackStepper {
     private static final int COPROC1_CONDITION_CLEAR = 8;
     private static final int COPROC1_CONDITION_SET = 9;
     private static final int DO_NOTHING = 10;  // instruction does not write anything.
+    // Set along with the action if the instruction executed in a delay slot
+    private static final int IN_DELAY_SLOT = 0x80;
 
     // Flag to mark BackStep object as prepresenting specific situation: user manipulates
     // memory/register value via GUI after assembling program but before running it.
@@ -63,19 +72,18 @@ public class BackStepper {
     private boolean engaged;
     private BackstepStack backSteps;
 
-    // One can argue using java.util.Stack, given its clumsy implementation.
-    // A homegrown linked implementation will be more streamlined, but
-    // I anticipate that backstepping will only be used during timed
-    // (currently max 30 instructions/second) or stepped execution, where
-    // performance is not an issue.  Its Vector implementation may result
-    // in quicker garbage collection than a pure linked list implementation.
+    // Steps are recorded on every register and memory write of a program running
+    // with backstepping enabled, at full speed too, so the stack below is kept in
+    // primitive arrays and pushing a step allocates nothing.
     /**
      * Create a fresh BackStepper. It is enabled, which means all subsequent
      * instruction executions will have their "undo" action recorded here.
+     * It keeps the latest steps up to the backstep limit, or all of them if
+     * unlimited backstepping is set.
      */
     public BackStepper() {
         engaged = true;
-        backSteps = new BackstepStack(Main.maximumBacksteps);
+        backSteps = new BackstepStack(Main.maximumBacksteps, BooleanSettings.UNLIMITED_BACKSTEPS.isSet());
     }
 
     /**
@@ -97,6 +105,22 @@ public class BackStepper {
         engaged = state;
     }
 
+    /**
+     * Discard all steps recorded so far.
+     */
+    public void clear() {
+        backSteps.clear();
+    }
+
+    /**
+     * Release the file older steps may have been moved to. Steps recorded from
+     * then on are only kept up to the backstep limit. To be called once this
+     * back stepper is replaced.
+     */
+    public void close() {
+        backSteps.close();
+    }
+
     /**
      * Test whether there are steps that can be undone.
      *
@@ -115,7 +139,7 @@ public class BackStepper {
      */
     // Added 25 June 2007
     public boolean inDelaySlot() {
-        return !empty() && backSteps.peek().inDelaySlot;
+        return !empty() && (backSteps.actions[backSteps.peek()] & IN_DELAY_SLOT) != 0;
     }
 
     /**
@@ -127,51 +151,51 @@ public class BackStepper {
     // all store their result in register pairs which results in two store operations.  
     // Both must be undone transparently, so we need to detect that multiple steps happen
     // together and carry out all of them here.  
-    // Use a do-while loop based on the backstep's program statement reference.
+    // Use a do-while loop based on the backstep's program counter value, which
+    // stands for its statement.
     public void backStep() {
         if (engaged && !backSteps.empty()) {
-            ProgramStatement statement = backSteps.peek().ps;
+            int statement = backSteps.pcs[backSteps.peek()];
             engaged = false; // GOTTA DO THIS SO METHOD CALL IN SWITCH WILL NOT RESULT IN NEW ACTION ON STACK!
             do {
-                BackStep step = backSteps.pop();
-                /*
-                 System.out.println("backstep POP: action "+step.action+" pc "+mars.util.Binary.intToHexString(step.pc)+
-                 " source "+((step.ps==null)? "none":step.ps.getSource())+
-                 " parm1 "+step.param1+" parm2 "+step.param2);
-                 */
-                if (step.pc != NOT_PC_VALUE)
-                    RegisterFile.setProgramCounter(step.pc);
+                int top = backSteps.pop();
+                int action = backSteps.actions[top] & ~IN_DELAY_SLOT;
+                int pc = backSteps.pcs[top];
+                int param1 = backSteps.params1[top];
+                int param2 = backSteps.params2[top];
+                if (pc != NOT_PC_VALUE)
+                    RegisterFile.setProgramCounter(pc);
                 try {
-                    switch (step.action) {
+                    switch (action) {
                         case MEMORY_RESTORE_RAW_WORD:
-                            Main.memory.setRawWord(step.param1, step.param2);
+                            Memory.getInstance().setRawWord(param1, param2);
                             break;
                         case MEMORY_RESTORE_WORD:
-                            Main.memory.setWord(step.param1, step.param2);
+                            Memory.getInstance().setWord(param1, param2);
                             break;
                         case MEMORY_RESTORE_HALF:
-                            Main.memory.setHalf(step.param1, step.param2);
+                            Memory.getInstance().setHalf(param1, param2);
                             break;
                         case MEMORY_RESTORE_BYTE:
-                            Main.memory.setByte(step.param1, step.param2);
+                            Memory.getInstance().setByte(param1, param2);
                             break;
                         case REGISTER_RESTORE:
-                            RegisterFile.updateRegister(step.param1, step.param2);
+                            RegisterFile.updateRegister(param1, param2);
                             break;
                         case PC_RESTORE:
-                            RegisterFile.setProgramCounter(step.param1);
+                            RegisterFile.setProgramCounter(param1);
                             break;
                         case COPROC0_REGISTER_RESTORE:
-                            Coprocessor0.updateRegister(step.param1, step.param2);
+                            Coprocessor0.updateRegister(param1, param2);
                             break;
                         case COPROC1_REGISTER_RESTORE:
-                            Coprocessor1.updateRegister(step.param1, step.param2);
+                            Coprocessor1.updateRegister(param1, param2);
                             break;
                         case COPROC1_CONDITION_CLEAR:
-                            Coprocessor1.clearConditionFlag(step.param1);
+                            Coprocessor1.clearConditionFlag(param1);
                             break;
                         case COPROC1_CONDITION_SET:
-                            Coprocessor1.setConditionFlag(step.param1);
+                            Coprocessor1.setConditionFlag(param1);
                             break;
                         case DO_NOTHING:
                             break;
@@ -182,7 +206,7 @@ public class BackStepper {
                     System.out.println("Internal MARS error: address exception while back-stepping.");
                     System.exit(0);
                 }
-            } while (!backSteps.empty() && statement == backSteps.peek().ps);
+            } while (!backSteps.empty() && statement == backSteps.pcs[backSteps.peek()]);
             engaged = true;  // RESET IT (was disabled at top of loop -- see comment)
         }
     }
@@ -336,90 +360,75 @@ public class BackStepper {
      * @return 0
      */
     public int addDoNothing(int pc) {
-        if (backSteps.empty() || backSteps.peek().pc != pc)
-            backSteps.push(DO_NOTHING, pc);
+        backSteps.pushDoNothing(pc);
         return 0;
     }
 
-    // Represents a "back step" (undo action) on the stack.
-    private class BackStep {
-
-        private int action;  // what do do MEMORY_RESTORE_WORD, etc
-        private int pc;      // program counter value when original step occurred
-        private ProgramStatement ps;   // statement whose action is being "undone" here
-        private int param1;  // first parameter required by that action
-        private int param2;  // optional second parameter required by that action
-        private boolean inDelaySlot; // true if instruction executed in "delay slot" (delayed branching enabled)
-
-        // it is critical that BackStep object get its values by calling this method
-        // rather than assigning to individual members, because of the technique used
-        // to set its ps member (and possibly pc).
-        private void assign(int act, int programCounter, int parm1, int parm2) {
-            action = act;
-            pc = programCounter;
-            try {
-                // Client does not have direct access to program statement, and rather than making all
-                // of them go through the methods below to obtain it, we will do it here.  
-                // Want the program statement but do not want observers notified.
-                ps = Main.memory.getStatementNoNotify(programCounter);
-            }
-            catch (Exception e) {
-                // The only situation causing this so far: user modifies memory or register
-                // contents through direct manipulation on the GUI, after assembling the program but
-                // before starting to run it (or after backstepping all the way to the start).
-                // The action will not be associated with any instruction, but will be carried out
-                // when popped.
-                ps = null;
-                pc = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
-            }
-            param1 = parm1;
-            param2 = parm2;
-            inDelaySlot = Simulator.inDelaySlot(); // ADDED 25 June 2007
-         /*				
-             System.out.println("backstep PUSH: action "+action+" pc "+mars.util.Binary.intToHexString(pc)+
-             " source "+((ps==null)? "none":ps.getSource())+
-             " parm1 "+param1+" parm2 "+param2);
-             */
-        }
-    }
-
     // *****************************************************************************
     // special purpose stack class for backstepping.  You've heard of circular queues
     // implemented with an array, right?  This is a circular stack!  When full, the
     // newly-pushed item overwrites the oldest item, with circular top!  All operations 
     // are constant time.  It's synchronized too, to be safe (is used by both the 
     // simulation thread and the GUI thread for the back-step button).
-    // Upon construction, it is filled with newly-created empty BackStep objects which
-    // will exist for the life of the stack.  Push does not create a BackStep object 
-    // but instead overwrites the contents of the existing one.  Thus during MIPS
-    // program (simulated) execution, BackStep objects are never created or junked
-    // regardless of how many steps are executed.  This will speed things up a bit
-    // and make life easier for the garbage collector.
+    // The fields of the "back steps" (undo actions) on the stack are kept in parallel
+    // arrays, allocated once for the life of the stack, and entries are referred to
+    // by their index.  Thus during MIPS program (simulated) execution, nothing is
+    // created or junked regardless of how many steps are executed.
+    //
+    // An unbounded stack does not overwrite its oldest entries when full, but moves
+    // them out to a spill file a segment at a time, and reads them back in as
+    // steps are undone.  The file is created on the first spill.  Should it fail,
+    // or once it is closed, the stack falls back to overwriting.
     private class BackstepStack {
 
-        private int capacity;
+        private final int capacity;
         private int size;
         private int top;
-        private BackStep[] stack;
-
-        // Stack is created upon successful assembly or reset.  The one-time overhead of
-        // creating all the BackStep objects will not be noticed by the user, and enhances
-        // runtime performance by not having to create or recycle them during MIPS
-        // program execution.
-        private BackstepStack(int capacity) {
+        private final byte[] actions;  // what to do: MEMORY_RESTORE_WORD, etc, and IN_DELAY_SLOT
+        private final int[] pcs;       // program counter value when original step occurred
+        private final int[] params1;   // first parameter required by that action
+        private final int[] params2;   // optional second parameter required by that action
+        private boolean unbounded;
+        private SpillFile spill;
+
+        // Stack is created upon successful assembly or reset.
+        private BackstepStack(int capacity, boolean unbounded) {
+            if (unbounded)
+                capacity = Math.max(capacity, 2 * SpillFile.SEGMENT_LENGTH);
             this.capacity = capacity;
             this.size = 0;
             this.top = -1;
-            this.stack = new BackStep[capacity];
-            for (int i = 0; i < capacity; i++)
-                this.stack[i] = new BackStep();
+            this.actions = new byte[capacity];
+            this.pcs = new int[capacity];
+            this.params1 = new int[capacity];
+            this.params2 = new int[capacity];
+            this.unbounded = unbounded;
+        }
+
+        private synchronized void clear() {
+            size = 0;
+            top = -1;
+            if (spill != null)
+                spill.segments = 0;
+        }
+
+        private synchronized void close() {
+            unbounded = false;
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
         }
 
         private synchronized boolean empty() {
-            return size == 0;
+            return size == 0 && (spill == null || spill.segments == 0);
         }
 
+        // it is critical that the entry gets its values through this method,
+        // because of the technique used to set its pc.
         private synchronized void push(int act, int programCounter, int parm1, int parm2) {
+            if (size == capacity && unbounded)
+                spillOldest();
             if (size == 0) {
                 top = 0;
                 size++;
@@ -430,38 +439,141 @@ public class BackStepper {
             }
             else // size == capacity.  The top moves up one, replacing oldest entry (goodbye!)
                 top = (top + 1) % capacity;
-            // We'll re-use existing objects rather than create/discard each time.
-            // Must use assign() method rather than series of assignment statements!
-            stack[top].assign(act, programCounter, parm1, parm2);
+            // The program counter stands for the statement whose action is being "undone".
+            // If there is no statement there, the situation so far is: user modifies memory
+            // or register contents through direct manipulation on the GUI, after assembling
+            // the program but before starting to run it (or after backstepping all the way
+            // to the start).  The action will not be associated with any instruction, but
+            // will be carried out when popped.
+            if (!Memory.wordAligned(programCounter)
+                    || !BooleanSettings.SELF_MODIFYING_CODE.isSet()
+                    && !Memory.inTextSegment(programCounter) && !Memory.inKernelTextSegment(programCounter))
+                programCounter = NOT_PC_VALUE; // Backstep method above will see this as flag to not set PC
+            actions[top] = (byte) (Simulator.inDelaySlot() ? act | IN_DELAY_SLOT : act); // ADDED 25 June 2007
+            pcs[top] = programCounter;
+            params1[top] = parm1;
+            params2[top] = parm2;
         }
 
-        private synchronized void push(int act, int programCounter, int parm1) {
+        private void push(int act, int programCounter, int parm1) {
             push(act, programCounter, parm1, 0);
         }
 
-        private synchronized void push(int act, int programCounter) {
+        private void push(int act, int programCounter) {
             push(act, programCounter, 0, 0);
         }
 
+        private synchronized void pushDoNothing(int programCounter) {
+            if (empty() || pcs[peek()] != programCounter)
+                push(DO_NOTHING, programCounter);
+        }
+
         // NO PROTECTION.  This class is used only within this file so there is no excuse
-        // for trying to pop from empty stack.
-        private synchronized BackStep pop() {
-            BackStep bs;
-            bs = stack[top];
+        // for trying to pop from empty stack.  Returns the index of the popped entry,
+        // valid until the next push.
+        private synchronized int pop() {
+            int index = peek();
             if (size == 1)
                 top = -1;
             else
                 top = (top + capacity - 1) % capacity;
             size--;
-            return bs;
+            return index;
         }
 
         // NO PROTECTION.  This class is used only within this file so there is no excuse
-        // for trying to peek from empty stack.         
-        private synchronized BackStep peek() {
-            return stack[top];
+        // for trying to peek from empty stack.  Returns the index of the top entry.
+        private synchronized int peek() {
+            if (size == 0)
+                unspillLatest();
+            return top;
         }
 
+        // Moves the oldest segment of entries to the spill file
+        private void spillOldest() {
+            int bottom = (top - size + 1 + capacity) % capacity;
+            try {
+                if (spill == null)
+                    spill = new SpillFile();
+                MappedByteBuffer buffer = spill.segment(spill.segments);
+                for (int i = 0, index = bottom; i < SpillFile.SEGMENT_LENGTH; i++, index = (index + 1) % capacity)
+                    buffer.putInt(actions[index]).putInt(pcs[index]).putInt(params1[index]).putInt(params2[index]);
+                spill.segments++;
+                size -= SpillFile.SEGMENT_LENGTH;
+            }
+            catch (IOException e) {
+                Main.logger.log(Level.WARNING, "Cannot write backstep spill file, backstepping is limited", e);
+                close();
+            }
+        }
+
+        // Reads the latest spilled segment back into the (empty) stack
+        private void unspillLatest() {
+            try {
+                MappedByteBuffer buffer = spill.segment(spill.segments - 1);
+                for (int index = 0; index < SpillFile.SEGMENT_LENGTH; index++) {
+                    actions[index] = (byte) buffer.getInt();
+                    pcs[index] = buffer.getInt();
+                    params1[index] = buffer.getInt();
+                    params2[index] = buffer.getInt();
+                }
+                spill.segments--;
+                top = SpillFile.SEGMENT_LENGTH - 1;
+                size = SpillFile.SEGMENT_LENGTH;
+            }
+            catch (IOException e) {
+                Main.logger.log(Level.WARNING, "Cannot read backstep spill file, older steps are lost", e);
+                close();
+                // leave a placeholder for the step being looked for
+                actions[0] = DO_NOTHING;
+                pcs[0] = NOT_PC_VALUE;
+                top = 0;
+                size = 1;
+            }
+        }
+    }
+
+    // Temporary file holding the spilled segments of an unbounded stack, the
+    // latest one last, accessed through a memory mapped window onto it.  The file
+    // is deleted once closed, which happens when the back stepper is replaced
+    // (on some systems, right after it is opened).
+    private static final class SpillFile {
+
+        private static final int SEGMENT_LENGTH = 4096;  // entries
+        private static final int ENTRY_BYTES = 16;
+        private static final long WINDOW_BYTES = 256L * SEGMENT_LENGTH * ENTRY_BYTES;
+
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        private long windowStart = -1;
+        private int segments;
+
+        private SpillFile() throws IOException {
+            channel = FileChannel.open(Files.createTempFile("mars", ".backsteps"),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+
+        // Buffer positioned at the start of the given segment
+        private MappedByteBuffer segment(int index) throws IOException {
+            long offset = (long) index * SEGMENT_LENGTH * ENTRY_BYTES;
+            long start = offset - offset % WINDOW_BYTES;
+            if (start != windowStart) {
+                window = channel.map(FileChannel.MapMode.READ_WRITE, start, WINDOW_BYTES);
+                windowStart = start;
+            }
+            window.position((int) (offset - start));
+            return window;
+        }
+
+        private void close() {
+            window = null;
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                Main.logger.log(Level.WARNING, "Cannot close backstep spill file", e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,782 @@
+package mars.simulator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.Map;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
+import mars.mips.instructions.Instruction;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * Second tier of {@link PredecodedEngine}: translates a basic block of
+ * predecoded statements into a JVM class, defined at runtime as a hidden class
+ * so that it can be unloaded along with the engine that requested it.
+ * <p>
+ * A compiled block works directly on the engine state array (general purpose
+ * registers, then HI and LO) and returns the address of the next statement.
+ * Blocks are straight-line code ending at the first branch or jump, so the
+ * generated method has no branches of its own; conditional results come from
+ * the small static helpers below, which the JVM inlines anyway.
+ * <p>
+ * Before an instruction that may fault (memory accesses, overflow checking
+ * arithmetic) the block records its address in the state array. When the
+ * instruction faults, the block is left by an exception with every preceding
+ * instruction completed and nothing of the faulting one done, so the engine
+ * can hand that instruction back to the regular simulator.
+ *
+ * @author Project2100
+ */
+final class BlockCompiler {
+
+    /**
+     * Code generated for a basic block.
+     */
+    interface Block {
+
+        /**
+         * Executes the whole block.
+         *
+         * @param state general purpose registers, HI, LO and fault address
+         * @return address of the statement following the block
+         */
+        int execute(int[] state);
+    }
+
+    /**
+     * Thrown by generated code when a memory access faults. The address of the
+     * faulting statement is found in the {@link #FAULT} entry of the state.
+     */
+    static final class Exit extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private Exit() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Layout of the state array
+    static final int HI = 32, LO = 33, FAULT = 34, STATE_LENGTH = 35;
+
+    private static final Exit EXIT = new Exit();
+
+    private static final String CLASS_NAME = "mars/simulator/CompiledBlock";
+    private static final String BLOCK_NAME = "mars/simulator/BlockCompiler$Block";
+    private static final String HELPERS_NAME = "mars/simulator/BlockCompiler";
+
+    // Bytecode instructions used by the generator
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13,
+            ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, IALOAD = 0x2e, IASTORE = 0x4f, POP = 0x57,
+            IADD = 0x60, ISUB = 0x64, ISHL = 0x78, ISHR = 0x7a, IUSHR = 0x7c,
+            IAND = 0x7e, IOR = 0x80, IXOR = 0x82, IRETURN = 0xac, RETURN = 0xb1,
+            INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    // Per class state, reset by compile()
+    private final Map<String, Integer> constants = new HashMap<>();
+    private ByteArrayOutputStream pool;
+    private DataOutputStream poolData;
+    private ByteArrayOutputStream code;
+
+    /**
+     * Compiles a basic block.
+     *
+     * @param address address of the first statement
+     * @param statements predecoded statements, as quadruples of operation code
+     * and operand fields; only a final statement may be a branch or jump
+     * @param count number of statements
+     * @return the compiled block, or null if the JVM refused it
+     */
+    Block compile(int address, int[] statements, int count) {
+        constants.clear();
+        pool = new ByteArrayOutputStream();
+        poolData = new DataOutputStream(pool);
+        code = new ByteArrayOutputStream();
+
+        boolean transfer = false;
+        int pc = address;
+        for (int i = 0; i < count; i++, pc += Instruction.INSTRUCTION_LENGTH)
+            transfer = translate(pc, statements[4 * i], statements[4 * i + 1],
+                    statements[4 * i + 2], statements[4 * i + 3]);
+        if (!transfer) {
+            push(pc);
+            emit(IRETURN);
+        }
+
+        try {
+            byte[] bytes = assemble();
+            return (Block) lookup.defineHiddenClass(bytes, true).lookupClass()
+                    .getDeclaredConstructor().newInstance();
+        }
+        catch (IOException | ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // Emits the code for a single statement, returns true for control transfers
+    private boolean translate(int pc, int op, int a, int b, int c) {
+        int next = pc + Instruction.INSTRUCTION_LENGTH;
+        switch (op) {
+            case PredecodedEngine.NOP:
+                break;
+            case PredecodedEngine.ADD:
+                fault(pc);
+                arithmetic(a, b, c, "java/lang/Math", "addExact");
+                break;
+            case PredecodedEngine.ADDU:
+                arithmetic(a, b, c, IADD);
+                break;
+            case PredecodedEngine.SUB:
+                fault(pc);
+                arithmetic(a, b, c, "java/lang/Math", "subtractExact");
+                break;
+            case PredecodedEngine.SUBU:
+                arithmetic(a, b, c, ISUB);
+                break;
+            case PredecodedEngine.ADDI:
+                fault(pc);
+                immediate(a, b, c << 16 >> 16, "java/lang/Math", "addExact");
+                break;
+            case PredecodedEngine.ADDIU:
+                immediate(a, b, c << 16 >> 16, IADD);
+                break;
+            case PredecodedEngine.AND:
+                arithmetic(a, b, c, IAND);
+                break;
+            case PredecodedEngine.OR:
+                arithmetic(a, b, c, IOR);
+                break;
+            case PredecodedEngine.XOR:
+                arithmetic(a, b, c, IXOR);
+                break;
+            case PredecodedEngine.NOR:
+                beginStore(a);
+                load(b);
+                load(c);
+                emit(IOR);
+                push(-1);
+                emit(IXOR);
+                endStore(a);
+                break;
+            case PredecodedEngine.ANDI:
+                immediate(a, b, c & 0x0000FFFF, IAND);
+                break;
+            case PredecodedEngine.ORI:
+                immediate(a, b, c & 0x0000FFFF, IOR);
+                break;
+            case PredecodedEngine.XORI:
+                immediate(a, b, c & 0x0000FFFF, IXOR);
+                break;
+            case PredecodedEngine.LUI:
+                beginStore(a);
+                push(b << 16);
+                endStore(a);
+                break;
+            // JVM shifts only use the 5 low bits of the distance, like MIPS
+            case PredecodedEngine.SLL:
+                immediate(a, b, c, ISHL);
+                break;
+            case PredecodedEngine.SRL:
+                immediate(a, b, c, IUSHR);
+                break;
+            case PredecodedEngine.SRA:
+                immediate(a, b, c, ISHR);
+                break;
+            case PredecodedEngine.SLLV:
+                arithmetic(a, b, c, ISHL);
+                break;
+            case PredecodedEngine.SRLV:
+                arithmetic(a, b, c, IUSHR);
+                break;
+            case PredecodedEngine.SRAV:
+                arithmetic(a, b, c, ISHR);
+                break;
+            // Sign bit of the comparison result is the "less than" flag
+            case PredecodedEngine.SLT:
+                setLessThan(a, b, c, false, "compare");
+                break;
+            case PredecodedEngine.SLTU:
+                setLessThan(a, b, c, false, "compareUnsigned");
+                break;
+            case PredecodedEngine.SLTI:
+                setLessThan(a, b, c << 16 >> 16, true, "compare");
+                break;
+            case PredecodedEngine.SLTIU:
+                setLessThan(a, b, c << 16 >> 16, true, "compareUnsigned");
+                break;
+            case PredecodedEngine.MOVN:
+                beginStore(a);
+                load(c);
+                load(b);
+                load(a);
+                invoke(HELPERS_NAME, "select", "(III)I");
+                endStore(a);
+                break;
+            case PredecodedEngine.MOVZ:
+                beginStore(a);
+                load(c);
+                load(a);
+                load(b);
+                invoke(HELPERS_NAME, "select", "(III)I");
+                endStore(a);
+                break;
+            case PredecodedEngine.MULT:
+                multiplyOrDivide(a, b, "multiply");
+                break;
+            case PredecodedEngine.MULTU:
+                multiplyOrDivide(a, b, "multiplyUnsigned");
+                break;
+            case PredecodedEngine.DIV:
+                multiplyOrDivide(a, b, "divide");
+                break;
+            case PredecodedEngine.DIVU:
+                multiplyOrDivide(a, b, "divideUnsigned");
+                break;
+            case PredecodedEngine.MUL:
+                beginStore(a);
+                emit(ALOAD_1);
+                load(b);
+                load(c);
+                invoke(HELPERS_NAME, "multiplyLow", "([III)I");
+                endStore(a);
+                break;
+            case PredecodedEngine.MFHI:
+                move(a, HI);
+                break;
+            case PredecodedEngine.MFLO:
+                move(a, LO);
+                break;
+            case PredecodedEngine.MTHI:
+                move(HI, a);
+                break;
+            case PredecodedEngine.MTLO:
+                move(LO, a);
+                break;
+            case PredecodedEngine.LW:
+                fault(pc);
+                memoryLoad(a, c, b, "loadWord");
+                break;
+            case PredecodedEngine.LH:
+                fault(pc);
+                memoryLoad(a, c, b << 16 >> 16, "loadHalf");
+                break;
+            case PredecodedEngine.LHU:
+                fault(pc);
+                memoryLoad(a, c, b << 16 >> 16, "loadHalfUnsigned");
+                break;
+            case PredecodedEngine.LB:
+                fault(pc);
+                memoryLoad(a, c, b << 16 >> 16, "loadByte");
+                break;
+            case PredecodedEngine.LBU:
+                fault(pc);
+                memoryLoad(a, c, b << 16 >> 16, "loadByteUnsigned");
+                break;
+            case PredecodedEngine.SW:
+                fault(pc);
+                memoryStore(a, c, b, "storeWord");
+                break;
+            case PredecodedEngine.SH:
+                fault(pc);
+                memoryStore(a, c, b << 16 >> 16, "storeHalf");
+                break;
+            case PredecodedEngine.SB:
+                fault(pc);
+                memoryStore(a, c, b << 16 >> 16, "storeByte");
+                break;
+            case PredecodedEngine.BEQ:
+                branch(a, b, next + (c << 2), next);
+                return true;
+            case PredecodedEngine.BNE:
+                branch(a, b, next, next + (c << 2));
+                return true;
+            case PredecodedEngine.BLEZ:
+                branch(a, next + (b << 2), next, "branchLessOrEqualZero");
+                return true;
+            case PredecodedEngine.BGTZ:
+                branch(a, next, next + (b << 2), "branchLessOrEqualZero");
+                return true;
+            case PredecodedEngine.BLTZ:
+                branch(a, next + (b << 2), next, "branchLessThanZero");
+                return true;
+            case PredecodedEngine.BGEZ:
+                branch(a, next, next + (b << 2), "branchLessThanZero");
+                return true;
+            case PredecodedEngine.J:
+                push((next & 0xF0000000) | (a << 2));
+                emit(IRETURN);
+                return true;
+            case PredecodedEngine.JAL:
+                link(31, next);
+                push((next & 0xF0000000) | (a << 2));
+                emit(IRETURN);
+                return true;
+            case PredecodedEngine.JR:
+                load(a);
+                emit(IRETURN);
+                return true;
+            case PredecodedEngine.JALR:
+                // Return address is written first, as in InstructionSet
+                link(a, next);
+                load(b);
+                emit(IRETURN);
+                return true;
+            case PredecodedEngine.JALR_RA:
+                link(31, next);
+                load(a);
+                emit(IRETURN);
+                return true;
+            default:
+                throw new IllegalArgumentException("operation " + op + " at " + pc);
+        }
+        return false;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Statement patterns
+
+    private void arithmetic(int a, int b, int c, int instruction) {
+        beginStore(a);
+        load(b);
+        load(c);
+        emit(instruction);
+        endStore(a);
+    }
+
+    private void arithmetic(int a, int b, int c, String owner, String method) {
+        beginStore(a);
+        load(b);
+        load(c);
+        invoke(owner, method, "(II)I");
+        endStore(a);
+    }
+
+    private void immediate(int a, int b, int value, int instruction) {
+        beginStore(a);
+        load(b);
+        push(value);
+        emit(instruction);
+        endStore(a);
+    }
+
+    private void immediate(int a, int b, int value, String owner, String method) {
+        beginStore(a);
+        load(b);
+        push(value);
+        invoke(owner, method, "(II)I");
+        endStore(a);
+    }
+
+    private void setLessThan(int a, int b, int c, boolean immediate, String method) {
+        beginStore(a);
+        load(b);
+        if (immediate)
+            push(c);
+        else
+            load(c);
+        invoke("java/lang/Integer", method, "(II)I");
+        push(31);
+        emit(IUSHR);
+        endStore(a);
+    }
+
+    private void multiplyOrDivide(int a, int b, String method) {
+        emit(ALOAD_1);
+        load(a);
+        load(b);
+        invoke(HELPERS_NAME, method, "([III)V");
+    }
+
+    private void move(int destination, int source) {
+        beginStore(destination);
+        load(source);
+        endStore(destination);
+    }
+
+    private void memoryLoad(int a, int base, int offset, String method) {
+        beginStore(a);
+        load(base);
+        push(offset);
+        emit(IADD);
+        invoke(HELPERS_NAME, method, "(I)I");
+        endStore(a);
+    }
+
+    private void memoryStore(int a, int base, int offset, String method) {
+        load(base);
+        push(offset);
+        emit(IADD);
+        load(a);
+        invoke(HELPERS_NAME, method, "(II)V");
+    }
+
+    private void branch(int a, int b, int equal, int notEqual) {
+        load(a);
+        load(b);
+        push(equal);
+        push(notEqual);
+        invoke(HELPERS_NAME, "branchEqual", "(IIII)I");
+        emit(IRETURN);
+    }
+
+    private void branch(int a, int taken, int notTaken, String method) {
+        load(a);
+        push(taken);
+        push(notTaken);
+        invoke(HELPERS_NAME, method, "(III)I");
+        emit(IRETURN);
+    }
+
+    private void link(int a, int returnAddress) {
+        beginStore(a);
+        push(returnAddress);
+        endStore(a);
+    }
+
+    private void fault(int pc) {
+        beginStore(FAULT);
+        push(pc);
+        endStore(FAULT);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Code emission. Register $zero is never written: its value is computed,
+    // since it may fault, then dropped.
+
+    private void load(int register) {
+        if (register == 0)
+            emit(ICONST_0);
+        else {
+            emit(ALOAD_1);
+            push(register);
+            emit(IALOAD);
+        }
+    }
+
+    private void beginStore(int register) {
+        if (register != 0) {
+            emit(ALOAD_1);
+            push(register);
+        }
+    }
+
+    private void endStore(int register) {
+        emit(register != 0 ? IASTORE : POP);
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5)
+            emit(ICONST_0 + value);
+        else if (value == (byte) value) {
+            emit(BIPUSH);
+            emit(value);
+        }
+        else if (value == (short) value) {
+            emit(SIPUSH);
+            emitShort(value);
+        }
+        else {
+            emit(LDC_W);
+            emitShort(integer(value));
+        }
+    }
+
+    private void invoke(String owner, String method, String descriptor) {
+        emit(INVOKESTATIC);
+        emitShort(methodReference(owner, method, descriptor));
+    }
+
+    private void emit(int b) {
+        code.write(b);
+    }
+
+    private void emitShort(int s) {
+        code.write(s >>> 8);
+        code.write(s);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Class file layout. Constant pool entries are shared by key, and indexes
+    // start at 1 as required by the format.
+
+    private byte[] assemble() throws IOException {
+        byte[] body = code.toByteArray();
+        int thisClass = classReference(CLASS_NAME);
+        int superClass = classReference("java/lang/Object");
+        int blockInterface = classReference(BLOCK_NAME);
+        int objectInit = methodReference("java/lang/Object", "<init>", "()V");
+        int initName = utf8("<init>");
+        int initDescriptor = utf8("()V");
+        int executeName = utf8("execute");
+        int executeDescriptor = utf8("([I)I");
+        int codeName = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + pool.size() + 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(constants.size() + 1);
+        pool.writeTo(out);
+        out.writeShort(0x0030); // final, super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(blockInterface);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+
+        out.writeShort(0x0001);
+        out.writeShort(initName);
+        out.writeShort(initDescriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + 5);
+        out.writeShort(1); // stack
+        out.writeShort(1); // locals
+        out.writeInt(5);
+        out.writeByte(ALOAD_0);
+        out.writeByte(INVOKESPECIAL);
+        out.writeShort(objectInit);
+        out.writeByte(RETURN);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+
+        out.writeShort(0x0001);
+        out.writeShort(executeName);
+        out.writeShort(executeDescriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + body.length);
+        out.writeShort(8); // deepest pattern is "mul" with 6 values
+        out.writeShort(2);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);
+        out.writeShort(0);
+
+        out.writeShort(0); // class attributes
+        return bytes.toByteArray();
+    }
+
+    private int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index == null) {
+            index = add("U" + value);
+            pool.write(1);
+            try {
+                poolData.writeUTF(value);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return index;
+    }
+
+    private int integer(int value) {
+        Integer index = constants.get("I" + value);
+        if (index == null) {
+            index = add("I" + value);
+            pool.write(3);
+            poolShort(value >>> 16);
+            poolShort(value);
+        }
+        return index;
+    }
+
+    private int classReference(String name) {
+        Integer index = constants.get("C" + name);
+        if (index == null) {
+            int nameIndex = utf8(name);
+            index = add("C" + name);
+            pool.write(7);
+            poolShort(nameIndex);
+        }
+        return index;
+    }
+
+    private int methodReference(String owner, String name, String descriptor) {
+        String key = "M" + owner + '.' + name + descriptor;
+        Integer index = constants.get(key);
+        if (index == null) {
+            int ownerIndex = classReference(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = add("N" + name + descriptor);
+            pool.write(12);
+            poolShort(nameIndex);
+            poolShort(descriptorIndex);
+            index = add(key);
+            pool.write(10);
+            poolShort(ownerIndex);
+            poolShort(nameAndType);
+        }
+        return index;
+    }
+
+    private int add(String key) {
+        int index = constants.size() + 1;
+        constants.put(key, index);
+        return index;
+    }
+
+    private void poolShort(int value) {
+        pool.write(value >>> 8);
+        pool.write(value);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Helpers called by generated code, operand semantics as in PredecodedEngine
+
+    static int select(int condition, int ifNonZero, int ifZero) {
+        return condition != 0 ? ifNonZero : ifZero;
+    }
+
+    static int branchEqual(int x, int y, int equal, int notEqual) {
+        return x == y ? equal : notEqual;
+    }
+
+    static int branchLessOrEqualZero(int x, int taken, int notTaken) {
+        return x <= 0 ? taken : notTaken;
+    }
+
+    static int branchLessThanZero(int x, int taken, int notTaken) {
+        return x < 0 ? taken : notTaken;
+    }
+
+    static void multiply(int[] state, int x, int y) {
+        long product = (long) x * (long) y;
+        state[HI] = (int) (product >> 32);
+        state[LO] = (int) product;
+    }
+
+    static void multiplyUnsigned(int[] state, int x, int y) {
+        long product = (((long) x) << 32 >>> 32) * (((long) y) << 32 >>> 32);
+        state[HI] = (int) (product >> 32);
+        state[LO] = (int) product;
+    }
+
+    static int multiplyLow(int[] state, int x, int y) {
+        multiply(state, x, y);
+        return state[LO];
+    }
+
+    static void divide(int[] state, int x, int y) {
+        // No exceptions and undefined results for zero divide
+        if (y != 0) {
+            state[HI] = x % y;
+            state[LO] = x / y;
+        }
+    }
+
+    static void divideUnsigned(int[] state, int x, int y) {
+        if (y != 0) {
+            state[HI] = Integer.remainderUnsigned(x, y);
+            state[LO] = Integer.divideUnsigned(x, y);
+        }
+    }
+
+    static int loadWord(int address) {
+        try {
+            return Memory.getInstance().getWord(address);
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static int loadHalf(int address) {
+        try {
+            return Memory.getInstance().getHalf(address) << 16 >> 16;
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static int loadHalfUnsigned(int address) {
+        try {
+            return Memory.getInstance().getHalf(address) & 0x0000ffff;
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static int loadByte(int address) {
+        try {
+            return Memory.getInstance().getByte(address) << 24 >> 24;
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static int loadByteUnsigned(int address) {
+        try {
+            return Memory.getInstance().getByte(address) & 0x000000ff;
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static void storeWord(int address, int value) {
+        try {
+            Memory.getInstance().setWord(address, value);
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static void storeHalf(int address, int value) {
+        try {
+            Memory.getInstance().setHalf(address, value & 0x0000ffff);
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+
+    static void storeByte(int address, int value) {
+        try {
+            Memory.getInstance().setByte(address, value & 0x000000ff);
+        }
+        catch (AddressErrorException e) {
+            throw EXIT;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package mars.simulator;
 
+import mars.MachineContext;
+
 /*
 Copyright (c) 2003-2007,  Pete Sanderson and Kenneth Vollmar
 
@@ -65,10 +67,19 @@ public class DelayedBranch {
 	private static final int REGISTERED = 1;
 	private static final int TRIGGERED  = 2;
 
-   // Initially nothing is happening.
-	
-	private static int state = CLEARED;
-	private static int branchTargetAddress = 0;
+   /**
+    *  The delayed branch of one machine, see mars.MachineContext.  The static methods
+    *  of this class work on that of the current machine.
+    */
+   public static final class State {
+      // Initially nothing is happening.
+      private int state = CLEARED;
+      private int branchTargetAddress = 0;
+   }
+
+   private static State state() {
+      return MachineContext.current().getDelayedBranchState();
+   }
 	
 	/**
     *  Register the fact that a successful branch is to occur.  This is called in
@@ -82,11 +93,12 @@ public class DelayedBranch {
 	 *  @param targetAddress The address to branch to after executing the next instruction
 	 */
 	public static void register(int targetAddress) {
+	  State s = state();
 	  // About as clean as a switch statement can be!
-	  switch (state) {
-	    case CLEARED    :  branchTargetAddress = targetAddress;
+	  switch (s.state) {
+	    case CLEARED    :  s.branchTargetAddress = targetAddress;
 		 case REGISTERED :
-		 case TRIGGERED  :  state = REGISTERED;
+		 case TRIGGERED  :  s.state = REGISTERED;
 	  }          
 	}
 
@@ -103,10 +115,11 @@ public class DelayedBranch {
 	 *
 	 */
 	 static void trigger() {
+	  State s = state();
 	  // About as clean as a switch statement can be!
-	  switch (state) {
+	  switch (s.state) {
 		 case REGISTERED :
-		 case TRIGGERED  :  state = TRIGGERED;
+		 case TRIGGERED  :  s.state = TRIGGERED;
 		 case CLEARED    :
 	  }          
 	}
@@ -116,8 +129,9 @@ public class DelayedBranch {
 	 *  program counter to the target address.  This method has package visibility.
 	 */
 	 static void clear() {
-	  state = CLEARED;
-	  branchTargetAddress = 0; 
+	  State s = state();
+	  s.state = CLEARED;
+	  s.branchTargetAddress = 0; 
 	}
 
    /**
@@ -129,7 +143,7 @@ public class DelayedBranch {
 	 */
 
     static boolean isRegistered() {
-	   return state == REGISTERED;
+	   return state().state == REGISTERED;
 	}
 	
    /**
@@ -140,7 +154,7 @@ public class DelayedBranch {
 	 */
 
    static boolean isTriggered() {
-	   return state == TRIGGERED;
+	   return state().state == TRIGGERED;
 	}	
 
 
@@ -153,7 +167,7 @@ public class DelayedBranch {
 	*  @return Target address of the delayed branch.
 	*/
 	 static int getBranchTargetAddress() {
-	    return branchTargetAddress;
+	    return state().branchTargetAddress;
 	}
 	
 }  // DelayedBranch
\ No newline at end of file
@@ -0,0 +1,615 @@
+package mars.simulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import mars.Main;
+import mars.ProgramStatement;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.RegisterFile;
+import mars.mips.instructions.Instruction;
+import mars.settings.BooleanSettings;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * Alternative execution engine for the simulator thread. Text segment
+ * statements are decoded once into a compact table of operation codes and
+ * operand fields; runs of common integer instructions are then executed from
+ * that table with the general purpose registers held in a local array, instead
+ * of going through {@code SimulationCode.simulate} and the register file for
+ * every single instruction.
+ * <p>
+ * The engine never replaces the regular simulation path, it only runs ahead of
+ * it: whenever it meets an instruction it does not handle (syscalls, floating
+ * point, traps...) or one that would raise an exception (arithmetic overflow,
+ * address errors), it stops <i>before</i> that instruction, writes its state
+ * back and lets {@link Simulator} carry on as usual. Its operand semantics are
+ * copied from the corresponding {@code InstructionSet} entries, so both paths
+ * produce the same results.
+ * <p>
+ * It can only be used while nothing needs to see individual instructions go
+ * by: see {@link #isApplicable()}.
+ * <p>
+ * When created with block compilation enabled, the engine also counts how
+ * often each basic block is entered; blocks entered more than
+ * {@link #HOT_THRESHOLD} times are handed to {@link BlockCompiler}, and from
+ * then on run as generated code. A compiled block is never entered while any
+ * breakpoint is set or when it would cross the instruction limit, and a fault
+ * inside it
+ * brings execution back here, before the faulting instruction. Accesses to
+ * memory mapped I/O are noticed at the end of the block.
+ *
+ * @author Project2100
+ */
+final class PredecodedEngine {
+
+    // Operation codes of the predecoded table. UNDECODED marks a slot that
+    // has not been visited yet, FALLBACK one that the engine leaves to the
+    // regular simulator. Branches and jumps come last.
+    static final int UNDECODED = 0, FALLBACK = 1,
+            NOP = 2, ADD = 3, ADDU = 4, SUB = 5, SUBU = 6, ADDI = 7, ADDIU = 8,
+            AND = 9, OR = 10, XOR = 11, NOR = 12, ANDI = 13, ORI = 14, XORI = 15, LUI = 16,
+            SLL = 17, SRL = 18, SRA = 19, SLLV = 20, SRLV = 21, SRAV = 22,
+            SLT = 23, SLTU = 24, SLTI = 25, SLTIU = 26, MOVN = 27, MOVZ = 28,
+            MULT = 29, MULTU = 30, MUL = 31, DIV = 32, DIVU = 33,
+            MFHI = 34, MFLO = 35, MTHI = 36, MTLO = 37,
+            LW = 38, LH = 39, LHU = 40, LB = 41, LBU = 42, SW = 43, SH = 44, SB = 45,
+            BEQ = 46, BNE = 47, BLEZ = 48, BGTZ = 49, BLTZ = 50, BGEZ = 51,
+            J = 52, JAL = 53, JR = 54, JALR = 55, JALR_RA = 56;
+
+    // Keyed by the example format of the basic instruction, which is unique
+    // across the instruction set (unlike the mnemonic, see "jalr")
+    private static final Map<String, Integer> OPCODES = new HashMap<>();
+
+    static {
+        OPCODES.put("nop", NOP);
+        OPCODES.put("add $t1,$t2,$t3", ADD);
+        OPCODES.put("addu $t1,$t2,$t3", ADDU);
+        OPCODES.put("sub $t1,$t2,$t3", SUB);
+        OPCODES.put("subu $t1,$t2,$t3", SUBU);
+        OPCODES.put("addi $t1,$t2,-100", ADDI);
+        OPCODES.put("addiu $t1,$t2,-100", ADDIU);
+        OPCODES.put("and $t1,$t2,$t3", AND);
+        OPCODES.put("or $t1,$t2,$t3", OR);
+        OPCODES.put("xor $t1,$t2,$t3", XOR);
+        OPCODES.put("nor $t1,$t2,$t3", NOR);
+        OPCODES.put("andi $t1,$t2,100", ANDI);
+        OPCODES.put("ori $t1,$t2,100", ORI);
+        OPCODES.put("xori $t1,$t2,100", XORI);
+        OPCODES.put("lui $t1,100", LUI);
+        OPCODES.put("sll $t1,$t2,10", SLL);
+        OPCODES.put("srl $t1,$t2,10", SRL);
+        OPCODES.put("sra $t1,$t2,10", SRA);
+        OPCODES.put("sllv $t1,$t2,$t3", SLLV);
+        OPCODES.put("srlv $t1,$t2,$t3", SRLV);
+        OPCODES.put("srav $t1,$t2,$t3", SRAV);
+        OPCODES.put("slt $t1,$t2,$t3", SLT);
+        OPCODES.put("sltu $t1,$t2,$t3", SLTU);
+        OPCODES.put("slti $t1,$t2,-100", SLTI);
+        OPCODES.put("sltiu $t1,$t2,-100", SLTIU);
+        OPCODES.put("movn $t1,$t2,$t3", MOVN);
+        OPCODES.put("movz $t1,$t2,$t3", MOVZ);
+        OPCODES.put("mult $t1,$t2", MULT);
+        OPCODES.put("multu $t1,$t2", MULTU);
+        OPCODES.put("mul $t1,$t2,$t3", MUL);
+        OPCODES.put("div $t1,$t2", DIV);
+        OPCODES.put("divu $t1,$t2", DIVU);
+        OPCODES.put("mfhi $t1", MFHI);
+        OPCODES.put("mflo $t1", MFLO);
+        OPCODES.put("mthi $t1", MTHI);
+        OPCODES.put("mtlo $t1", MTLO);
+        OPCODES.put("lw $t1,-100($t2)", LW);
+        OPCODES.put("lh $t1,-100($t2)", LH);
+        OPCODES.put("lhu $t1,-100($t2)", LHU);
+        OPCODES.put("lb $t1,-100($t2)", LB);
+        OPCODES.put("lbu $t1,-100($t2)", LBU);
+        OPCODES.put("sw $t1,-100($t2)", SW);
+        OPCODES.put("sh $t1,-100($t2)", SH);
+        OPCODES.put("sb $t1,-100($t2)", SB);
+        OPCODES.put("beq $t1,$t2,label", BEQ);
+        OPCODES.put("bne $t1,$t2,label", BNE);
+        OPCODES.put("blez $t1,label", BLEZ);
+        OPCODES.put("bgtz $t1,label", BGTZ);
+        OPCODES.put("bltz $t1,label", BLTZ);
+        OPCODES.put("bgez $t1,label", BGEZ);
+        OPCODES.put("j target", J);
+        OPCODES.put("jal target", JAL);
+        OPCODES.put("jr $t1", JR);
+        OPCODES.put("jalr $t1,$t2", JALR);
+        OPCODES.put("jalr $t1", JALR_RA);
+    }
+
+    // The table mirrors the block layout of Memory: each block covers
+    // BLOCK_WORDS consecutive statements, with SLOT_LENGTH ints per statement
+    // (operation code, the three operand fields, then the compilation mark).
+    // Blocks are only allocated, and statements only decoded, once execution
+    // reaches them.
+    private static final int BLOCK_WORDS = 1024;
+    private static final int SLOT_LENGTH = 5;
+
+    // Compilation mark of a basic block leader: a non negative value counts
+    // the entries so far, NOT_COMPILABLE means it does not start with a
+    // compilable statement, other negative values refer to compiled blocks.
+    private static final int NOT_COMPILABLE = Integer.MIN_VALUE;
+
+    /**
+     * Number of entries after which a basic block is compiled.
+     */
+    static final int HOT_THRESHOLD = 50;
+
+    // Longest basic block handed to the compiler
+    private static final int MAX_BLOCK_LENGTH = 64;
+
+    private final int textBase, kernelTextBase;
+    private final int[][] textBlocks, kernelTextBlocks;
+
+    // General purpose registers, followed by HI and LO
+    private final int[] registers = new int[BlockCompiler.STATE_LENGTH];
+    private static final int HI = BlockCompiler.HI, LO = BlockCompiler.LO;
+    private int lastAddress;
+
+    private final BlockCompiler compiler;
+    private BlockCompiler.Block[] compiled = new BlockCompiler.Block[16];
+    private int[] compiledLengths = new int[16];
+    private int compiledCount;
+    private final int[] statements = new int[MAX_BLOCK_LENGTH * 4];
+
+    /**
+     * Creates an engine for the program currently loaded in memory. Since
+     * statements are decoded lazily, creation is cheap; a new engine must be
+     * created whenever the text segment may have changed.
+     *
+     * @param compileBlocks whether frequently executed basic blocks should be
+     * compiled
+     */
+    PredecodedEngine(boolean compileBlocks) {
+        compiler = compileBlocks ? new BlockCompiler() : null;
+        textBase = Memory.textBaseAddress;
+        kernelTextBase = Memory.kernelTextBaseAddress;
+        textBlocks = new int[blockCount(Memory.textBaseAddress, Memory.textLimitAddress)][];
+        kernelTextBlocks = new int[blockCount(Memory.kernelTextBaseAddress, Memory.kernelTextLimitAddress)][];
+    }
+
+    private static int blockCount(int base, int limit) {
+        return ((limit - base) >>> 2) / BLOCK_WORDS + 1;
+    }
+
+    // Table block holding the statement at pc, or null if outside the text
+    // segments; the slot offset is left in "slot"
+    private int slot;
+
+    private int[] blockFor(int pc) {
+        int[][] blocks;
+        int word;
+        if (Memory.inTextSegment(pc)) {
+            blocks = textBlocks;
+            word = (pc - textBase) >>> 2;
+        }
+        else if (Memory.inKernelTextSegment(pc)) {
+            blocks = kernelTextBlocks;
+            word = (pc - kernelTextBase) >>> 2;
+        }
+        else
+            return null;
+        slot = (word % BLOCK_WORDS) * SLOT_LENGTH;
+        int[] block = blocks[word / BLOCK_WORDS];
+        if (block == null)
+            block = blocks[word / BLOCK_WORDS] = new int[BLOCK_WORDS * SLOT_LENGTH];
+        return block;
+    }
+
+    /**
+     * Tells whether the engine may run under the current settings and
+     * observers. Backstepping, delayed branching and self-modifying code all
+     * require per-instruction bookkeeping the engine does not do, and register
+     * or text segment observers (the GUI when stepping or running slowly,
+     * tools, instruction counters) expect a notice for every access.
+     *
+     * @return true if the engine may be used for the next batch
+     */
+    static boolean isApplicable() {
+        return !Main.isBackSteppingEnabled()
+                && !BooleanSettings.DELAYED_BRANCHING.isSet()
+                && !BooleanSettings.SELF_MODIFYING_CODE.isSet()
+                && !RegisterFile.isObserved()
+                && !Memory.getInstance().isObserved(Memory.textBaseAddress, Memory.textLimitAddress)
+                && !Memory.getInstance().isObserved(Memory.kernelTextBaseAddress, Memory.kernelTextLimitAddress);
+    }
+
+    /**
+     * Address of the last instruction executed by the latest call to
+     * {@link #run}.
+     *
+     * @return the address, meaningful only if {@code run} returned a positive
+     * count
+     */
+    int getLastAddress() {
+        return lastAddress;
+    }
+
+    /**
+     * Executes instructions starting at the current program counter, until
+     * either the limit is reached, the next instruction is a breakpoint, memory
+     * mapped I/O has been accessed, or the next instruction must be left to the
+     * regular simulator. The register file
+     * and program counter are updated before returning. Caller must hold
+     * the lock of its machine, see {@code MachineContext.getLock()}.
+     *
+     * @param limit maximum number of instructions to execute
+     * @return number of instructions executed, possibly 0
+     */
+    int run(int limit) {
+        final int[] r = registers;
+        for (int i = 1; i < 32; i++)
+            r[i] = RegisterFile.getValue(i);
+        r[0] = 0;
+        r[HI] = RegisterFile.getValue(33);
+        r[LO] = RegisterFile.getValue(34);
+
+        int pc = RegisterFile.getProgramCounter();
+        int executed = 0;
+        // Whether pc starts a basic block, as far as this run can tell
+        boolean leader = true;
+
+        execute:
+        while (executed < limit) {
+            int[] block = blockFor(pc);
+            if (block == null || (pc & 3) != 0)
+                break;
+            int slot = this.slot;
+            int op = block[slot];
+            if (op == UNDECODED)
+                op = decode(pc, block, slot);
+
+            if (leader && compiler != null && !Memory.getInstance().hasBreakpoints()) {
+                int mark = block[slot + 4];
+                if (mark >= 0 && ++mark >= HOT_THRESHOLD)
+                    mark = compile(pc);
+                block[slot + 4] = mark;
+                if (mark < 0 && mark != NOT_COMPILABLE
+                        && executed + compiledLengths[-mark - 1] <= limit) {
+                    int start = pc;
+                    try {
+                        pc = compiled[-mark - 1].execute(r);
+                        executed += compiledLengths[-mark - 1];
+                        lastAddress = start + (compiledLengths[-mark - 1] - 1) * Instruction.INSTRUCTION_LENGTH;
+                    }
+                    catch (BlockCompiler.Exit | ArithmeticException e) {
+                        // Deoptimize: leave the faulting instruction to the
+                        // regular simulator
+                        pc = r[BlockCompiler.FAULT];
+                        if (pc != start) {
+                            executed += (pc - start) >>> 2;
+                            lastAddress = pc - Instruction.INSTRUCTION_LENGTH;
+                        }
+                        break;
+                    }
+                    if (Memory.getInstance().isMemoryMapAccessed())
+                        break;
+                    continue;
+                }
+            }
+            int a = block[slot + 1];
+            int b = block[slot + 2];
+            int c = block[slot + 3];
+            // Program counter as seen by the instruction, already incremented
+            int next = pc + Instruction.INSTRUCTION_LENGTH;
+
+            try {
+                switch (op) {
+                    case NOP:
+                        break;
+                    case ADD: {
+                        int add1 = r[b], add2 = r[c], sum = add1 + add2;
+                        if ((add1 >= 0 && add2 >= 0 && sum < 0)
+                                || (add1 < 0 && add2 < 0 && sum >= 0))
+                            break execute;
+                        r[a] = sum;
+                        break;
+                    }
+                    case ADDU:
+                        r[a] = r[b] + r[c];
+                        break;
+                    case SUB: {
+                        int sub1 = r[b], sub2 = r[c], dif = sub1 - sub2;
+                        if ((sub1 >= 0 && sub2 < 0 && dif < 0)
+                                || (sub1 < 0 && sub2 >= 0 && dif >= 0))
+                            break execute;
+                        r[a] = dif;
+                        break;
+                    }
+                    case SUBU:
+                        r[a] = r[b] - r[c];
+                        break;
+                    case ADDI: {
+                        int add1 = r[b], add2 = c << 16 >> 16, sum = add1 + add2;
+                        if ((add1 >= 0 && add2 >= 0 && sum < 0)
+                                || (add1 < 0 && add2 < 0 && sum >= 0))
+                            break execute;
+                        r[a] = sum;
+                        break;
+                    }
+                    case ADDIU:
+                        r[a] = r[b] + (c << 16 >> 16);
+                        break;
+                    case AND:
+                        r[a] = r[b] & r[c];
+                        break;
+                    case OR:
+                        r[a] = r[b] | r[c];
+                        break;
+                    case XOR:
+                        r[a] = r[b] ^ r[c];
+                        break;
+                    case NOR:
+                        r[a] = ~(r[b] | r[c]);
+                        break;
+                    case ANDI:
+                        r[a] = r[b] & (c & 0x0000FFFF);
+                        break;
+                    case ORI:
+                        r[a] = r[b] | (c & 0x0000FFFF);
+                        break;
+                    case XORI:
+                        r[a] = r[b] ^ (c & 0x0000FFFF);
+                        break;
+                    case LUI:
+                        r[a] = b << 16;
+                        break;
+                    case SLL:
+                        r[a] = r[b] << c;
+                        break;
+                    case SRL:
+                        r[a] = r[b] >>> c;
+                        break;
+                    case SRA:
+                        r[a] = r[b] >> c;
+                        break;
+                    case SLLV:
+                        r[a] = r[b] << (r[c] & 0x0000001F);
+                        break;
+                    case SRLV:
+                        r[a] = r[b] >>> (r[c] & 0x0000001F);
+                        break;
+                    case SRAV:
+                        r[a] = r[b] >> (r[c] & 0x0000001F);
+                        break;
+                    case SLT:
+                        r[a] = r[b] < r[c] ? 1 : 0;
+                        break;
+                    case SLTU:
+                        r[a] = Integer.compareUnsigned(r[b], r[c]) < 0 ? 1 : 0;
+                        break;
+                    case SLTI:
+                        r[a] = r[b] < (c << 16 >> 16) ? 1 : 0;
+                        break;
+                    case SLTIU:
+                        r[a] = Integer.compareUnsigned(r[b], c << 16 >> 16) < 0 ? 1 : 0;
+                        break;
+                    case MOVN:
+                        if (r[c] != 0)
+                            r[a] = r[b];
+                        break;
+                    case MOVZ:
+                        if (r[c] == 0)
+                            r[a] = r[b];
+                        break;
+                    case MULT: {
+                        long product = (long) r[a] * (long) r[b];
+                        r[HI] = (int) (product >> 32);
+                        r[LO] = (int) product;
+                        break;
+                    }
+                    case MULTU: {
+                        long product = (((long) r[a]) << 32 >>> 32) * (((long) r[b]) << 32 >>> 32);
+                        r[HI] = (int) (product >> 32);
+                        r[LO] = (int) product;
+                        break;
+                    }
+                    case MUL: {
+                        long product = (long) r[b] * (long) r[c];
+                        r[a] = (int) product;
+                        r[HI] = (int) (product >> 32);
+                        r[LO] = (int) product;
+                        break;
+                    }
+                    case DIV:
+                        // No exceptions and undefined results for zero divide
+                        if (r[b] != 0) {
+                            r[HI] = r[a] % r[b];
+                            r[LO] = r[a] / r[b];
+                        }
+                        break;
+                    case DIVU:
+                        if (r[b] != 0) {
+                            r[HI] = Integer.remainderUnsigned(r[a], r[b]);
+                            r[LO] = Integer.divideUnsigned(r[a], r[b]);
+                        }
+                        break;
+                    case MFHI:
+                        r[a] = r[HI];
+                        break;
+                    case MFLO:
+                        r[a] = r[LO];
+                        break;
+                    case MTHI:
+                        r[HI] = r[a];
+                        break;
+                    case MTLO:
+                        r[LO] = r[a];
+                        break;
+                    // Memory accesses throw before any side effect, so the
+                    // slow path can simply redo the faulting instruction
+                    case LW:
+                        r[a] = Memory.getInstance().getWord(r[c] + b);
+                        break;
+                    case LH:
+                        r[a] = Memory.getInstance().getHalf(r[c] + (b << 16 >> 16)) << 16 >> 16;
+                        break;
+                    case LHU:
+                        r[a] = Memory.getInstance().getHalf(r[c] + (b << 16 >> 16)) & 0x0000ffff;
+                        break;
+                    case LB:
+                        r[a] = Memory.getInstance().getByte(r[c] + (b << 16 >> 16)) << 24 >> 24;
+                        break;
+                    case LBU:
+                        r[a] = Memory.getInstance().getByte(r[c] + (b << 16 >> 16)) & 0x000000ff;
+                        break;
+                    case SW:
+                        Memory.getInstance().setWord(r[c] + b, r[a]);
+                        break;
+                    case SH:
+                        Memory.getInstance().setHalf(r[c] + (b << 16 >> 16), r[a] & 0x0000ffff);
+                        break;
+                    case SB:
+                        Memory.getInstance().setByte(r[c] + (b << 16 >> 16), r[a] & 0x000000ff);
+                        break;
+                    case BEQ:
+                        if (r[a] == r[b])
+                            next += c << 2;
+                        break;
+                    case BNE:
+                        if (r[a] != r[b])
+                            next += c << 2;
+                        break;
+                    case BLEZ:
+                        if (r[a] <= 0)
+                            next += b << 2;
+                        break;
+                    case BGTZ:
+                        if (r[a] > 0)
+                            next += b << 2;
+                        break;
+                    case BLTZ:
+                        if (r[a] < 0)
+                            next += b << 2;
+                        break;
+                    case BGEZ:
+                        if (r[a] >= 0)
+                            next += b << 2;
+                        break;
+                    case J:
+                        next = (next & 0xF0000000) | (a << 2);
+                        break;
+                    case JAL:
+                        r[31] = next;
+                        next = (next & 0xF0000000) | (a << 2);
+                        break;
+                    case JR:
+                        next = r[a];
+                        break;
+                    case JALR:
+                        // Return address is written first, as in InstructionSet
+                        r[a] = next;
+                        r[0] = 0;
+                        next = r[b];
+                        break;
+                    case JALR_RA:
+                        r[31] = next;
+                        next = r[a];
+                        break;
+                    default:
+                        break execute;
+                }
+            }
+            catch (AddressErrorException e) {
+                break;
+            }
+            r[0] = 0;
+            lastAddress = pc;
+            pc = next;
+            executed++;
+            leader = op >= BEQ;
+            // Devices get a chance to respond to memory mapped I/O accesses
+            if (Memory.getInstance().isMemoryMapAccessed()
+                    || Memory.getInstance().hasBreakpoints() && Memory.getInstance().isBreakpoint(pc))
+                break;
+        }
+
+        if (executed > 0) {
+            for (int i = 1; i < 32; i++)
+                RegisterFile.updateRegister(i, r[i]);
+            RegisterFile.updateRegister(33, r[HI]);
+            RegisterFile.updateRegister(34, r[LO]);
+            RegisterFile.initializeProgramCounter(pc);
+        }
+        return executed;
+    }
+
+    // Compiles the basic block starting at address, returns its mark
+    private int compile(int address) {
+        int count = 0;
+        int pc = address;
+        while (count < MAX_BLOCK_LENGTH) {
+            int[] block = blockFor(pc);
+            if (block == null)
+                break;
+            int op = block[slot];
+            if (op == UNDECODED)
+                op = decode(pc, block, slot);
+            if (op == FALLBACK)
+                break;
+            System.arraycopy(block, slot, statements, 4 * count, 4);
+            count++;
+            pc += Instruction.INSTRUCTION_LENGTH;
+            if (op >= BEQ)
+                break;
+        }
+        BlockCompiler.Block code = count == 0 ? null : compiler.compile(address, statements, count);
+        if (code == null)
+            return NOT_COMPILABLE;
+        if (compiledCount == compiled.length) {
+            compiled = Arrays.copyOf(compiled, 2 * compiledCount);
+            compiledLengths = Arrays.copyOf(compiledLengths, 2 * compiledCount);
+        }
+        compiled[compiledCount] = code;
+        compiledLengths[compiledCount] = count;
+        return -(++compiledCount);
+    }
+
+    // Fills the given slot with the decoded form of the statement at address
+    private static int decode(int address, int[] block, int slot) {
+        int op = FALLBACK;
+        try {
+            ProgramStatement statement = Memory.getInstance().getStatementNoNotify(address);
+            if (statement != null && statement.getInstruction() != null) {
+                op = OPCODES.getOrDefault(statement.getInstruction().getExampleFormat(), FALLBACK);
+                int[] operands = statement.getOperands();
+                block[slot + 1] = operands[0];
+                block[slot + 2] = operands[1];
+                block[slot + 3] = operands[2];
+            }
+        }
+        catch (AddressErrorException e) {
+        }
+        block[slot] = op;
+        return op;
+    }
+}
@@ -0,0 +1,520 @@
+package mars.simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.function.Supplier;
+import mars.MIPSprogram;
+import mars.MachineContext;
+import mars.ProcessingException;
+import mars.mips.hardware.AccessNotice;
+import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.Coprocessor1;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.hardware.RegisterFile;
+import mars.mips.hardware.TransientNoticeObserver;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * Execution history of a machine, for going back in time over runs of any
+ * length. While the program runs with reverse execution enabled, the
+ * simulator counts the instructions executed and takes periodic checkpoints
+ * of the machine, see {@link MachineContext#snapshot()}; everything that does
+ * not follow from the program itself is logged: input syscalls, the time and
+ * random numbers, file reads, memory mapped I/O written by devices and the
+ * external interrupts they raise. Going back restores the nearest checkpoint
+ * and runs the program forward again to the point wanted, with logged inputs
+ * in place of live ones, and their side effects (output, dialogs, sleeps,
+ * sound) left out.
+ * <p>
+ * At most {@value #MAX_CHECKPOINTS} checkpoints are kept; when there would be
+ * more, every other one is dropped and checkpoints are taken half as often
+ * from then on. Any point in the history is thus at most one checkpoint
+ * interval, about a hundredth of the run so far, away from the nearest one.
+ * <p>
+ * Running forward from a point in the past replays the history until its end,
+ * and then carries on live. Changing memory or registers in the past, then
+ * running, discards the history after that point. Files are left as they were
+ * at the furthest point reached, and tools attached to the machine are not
+ * taken back in time.
+ *
+ * @author Project2100
+ */
+public final class ReverseExecution {
+
+    // Upper bound on the number of checkpoints kept
+    private static final int MAX_CHECKPOINTS = 256;
+    // Instructions between two checkpoints, until the first thinning
+    private static final long FIRST_INTERVAL = 1 << 20;
+    private static final long NO_STOP = Long.MAX_VALUE;
+
+    private final MachineContext context;
+    private final DeviceRecorder deviceRecorder = new DeviceRecorder();
+    private boolean recording;
+
+    // Instructions executed since the program was assembled, and the furthest
+    // point reached so far: the history is replayed up to there
+    private long time;
+    private long recordedTime;
+    private long interval = FIRST_INTERVAL;
+    private long nextCheckpoint;
+    private final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+
+    // Logged inputs in the order taken, and device events in time order; the
+    // positions are those of the next input or event to replay, or the size of
+    // the log in a live run
+    private final ArrayList<Object> inputs = new ArrayList<>();
+    private int inputPosition;
+    private final ArrayList<DeviceEvent> events = new ArrayList<>();
+    private int eventPosition;
+
+    // Registers at the latest stop, memory having been snapshot then as well,
+    // to tell whether the user changed the machine before the next start
+    private int[][] stopRegisters;
+
+    // Set while going back, when replaying stops at stopTime and breakpoints
+    // are only taken note of
+    private long stopTime = NO_STOP;
+    private final ArrayList<Long> breakpointTimes = new ArrayList<>();
+
+    /**
+     * Creates the empty history of a new machine. Use {@link #getInstance()}
+     * for the one of the machine at hand.
+     *
+     * @param context the machine
+     * @see MachineContext#getReverseExecution()
+     */
+    public ReverseExecution(MachineContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the execution history of the current machine
+     *
+     * @return the history
+     * @see MachineContext#current()
+     */
+    public static ReverseExecution getInstance() {
+        return MachineContext.current().getReverseExecution();
+    }
+
+    /**
+     * Takes an input of the program running in the current machine: from the
+     * given source in a live run, which is logged when reverse execution is
+     * enabled, or from the log when replaying.
+     *
+     * @param <T> the type of the input
+     * @param source where to take the input from when running live
+     * @return the input
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T input(Supplier<T> source) {
+        ReverseExecution history = getInstance();
+        if (!history.recording)
+            return source.get();
+        synchronized (history.context.getLock()) {
+            if (history.inputPosition < history.inputs.size())
+                return (T) history.inputs.get(history.inputPosition++);
+            T value = source.get();
+            history.inputs.add(value);
+            history.inputPosition++;
+            return value;
+        }
+    }
+
+    /**
+     * Tells whether the program running in the current machine is replaying
+     * its history, and side effects on the outside world are to be left out.
+     *
+     * @return true if replaying, false if running live
+     */
+    public static boolean isReplaying() {
+        ReverseExecution history = getInstance();
+        return history.recording && history.time < history.recordedTime;
+    }
+
+    /**
+     * Tells whether there is a point in the history before the present one.
+     *
+     * @return true if it is possible to step back
+     */
+    public boolean canStepBack() {
+        return recording && !checkpoints.isEmpty() && time > checkpoints.get(0).time;
+    }
+
+    /**
+     * @return the number of instructions executed so far in this history
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Takes the machine back by the given number of instructions, or to the
+     * start of the history if it does not go back that far. Must not be called
+     * while the program runs. Runs the program forward from a checkpoint and
+     * waits for it, so the GUI calls it off the event dispatch thread; stopping
+     * the simulator leaves the machine where the replay got to.
+     *
+     * @param steps number of instructions to go back
+     * @return false if there was nowhere to go back to, true otherwise
+     */
+    public boolean stepBack(long steps) {
+        if (!canStepBack() || steps <= 0)
+            return false;
+        jumpTo(Math.max(checkpoints.get(0).time, time - steps));
+        return true;
+    }
+
+    /**
+     * Takes the machine back to the latest point in the history where it
+     * stopped, or would have stopped, at a breakpoint currently set. Goes back
+     * to the start of the history if there is no such point. Must not be
+     * called while the program runs; see {@link #stepBack(long)} about threads
+     * and stopping.
+     *
+     * @return true if a breakpoint was found, false otherwise
+     */
+    public boolean runBackToBreakpoint() {
+        if (!canStepBack())
+            return false;
+        long now = time;
+        int index = latestCheckpoint(now - 1);
+        for (long end = now; index >= 0; end = checkpoints.get(index--).time) {
+            // Replay each interval in turn, the latest first, taking note of
+            // the breakpoints met on the way
+            breakpointTimes.clear();
+            restore(checkpoints.get(index));
+            if (context.getMemory().hasBreakpoints()
+                    && context.getMemory().isBreakpoint(RegisterFile.getProgramCounter()))
+                breakpointTimes.add(time);
+            if (!replay(end)) {
+                // stopped by the user
+                synchronized (context.getLock()) {
+                    noteStop();
+                }
+                return false;
+            }
+            breakpointTimes.removeIf(t -> t >= now);
+            if (!breakpointTimes.isEmpty()) {
+                jumpTo(breakpointTimes.get(breakpointTimes.size() - 1));
+                return true;
+            }
+        }
+        jumpTo(checkpoints.get(0).time);
+        return false;
+    }
+
+    /**
+     * Forgets the history, as after assembling a new program.
+     */
+    public void reset() {
+        synchronized (context.getLock()) {
+            if (recording)
+                context.getMemory().deleteObserver(deviceRecorder);
+            recording = false;
+            time = recordedTime = 0;
+            interval = FIRST_INTERVAL;
+            nextCheckpoint = 0;
+            checkpoints.clear();
+            inputs.clear();
+            inputPosition = 0;
+            events.clear();
+            eventPosition = 0;
+            stopRegisters = null;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Simulator side, all called by the simulator thread of the machine, the
+    // ones during a run with its lock held
+
+    // A run starts: sees to the first checkpoint, or to the user having changed
+    // memory or registers since the run before, which starts a new history
+    // from here
+    void started() {
+        synchronized (context.getLock()) {
+            if (isJumping())
+                return;
+            if (!recording) {
+                try {
+                    context.getMemory().addObserver(deviceRecorder, Memory.memoryMapBaseAddress,
+                            Memory.memoryMapLimitAddress - Memory.WORD_LENGTH_BYTES);
+                }
+                catch (AddressErrorException e) {
+                    // not with the bounds of a memory configuration
+                }
+                recording = true;
+            }
+            if (checkpoints.isEmpty())
+                checkpoint();
+            else if (stopRegisters != null && isChangedSinceStop()) {
+                if (time < recordedTime)
+                    truncate();
+                checkpoint();
+            }
+        }
+    }
+
+    // A run stops, possibly in the past
+    void stopped() {
+        synchronized (context.getLock()) {
+            if (!isJumping())
+                noteStop();
+        }
+    }
+
+    boolean isJumping() {
+        return stopTime != NO_STOP;
+    }
+
+    // Limits a number of instructions to run at full speed to the next point
+    // where the simulator must step in
+    int limit(int limit) {
+        if (stopTime != NO_STOP)
+            limit = (int) Math.min(limit, stopTime - time);
+        if (eventPosition < events.size())
+            limit = (int) Math.max(0, Math.min(limit, events.get(eventPosition).time - time));
+        return limit;
+    }
+
+    // Replays the memory mapped I/O written by devices at this point
+    void applyDeviceWrites() {
+        while (eventPosition < events.size()) {
+            DeviceEvent event = events.get(eventPosition);
+            if (event.time > time || event.length == 0)
+                return;
+            eventPosition++;
+            try {
+                if (event.length == Memory.WORD_LENGTH_BYTES && Memory.wordAligned(event.address))
+                    context.getMemory().setRawWord(event.address, event.value);
+                else
+                    context.getMemory().set(event.address, event.value, event.length);
+            }
+            catch (AddressErrorException e) {
+                // was written once already
+            }
+        }
+    }
+
+    // Replaces Simulator.takeExternalInterrupt() in the simulator loop
+    int takeExternalInterrupt() {
+        if (eventPosition < events.size()) {
+            DeviceEvent event = events.get(eventPosition);
+            if (event.time > time || event.length != 0)
+                return Simulator.NO_DEVICE;
+            eventPosition++;
+            return event.value;
+        }
+        if (time < recordedTime)
+            return Simulator.NO_DEVICE;
+        int device = Simulator.takeExternalInterrupt();
+        if (device != Simulator.NO_DEVICE) {
+            events.add(new DeviceEvent(time, device, 0, 0));
+            eventPosition++;
+        }
+        return device;
+    }
+
+    // Counts instructions executed, and takes the checkpoints due; returns true
+    // when the run must stop, having gone back to the point wanted
+    boolean advance(int executed) {
+        time += executed;
+        if (time > recordedTime)
+            recordedTime = time;
+        if (stopTime != NO_STOP)
+            return time >= stopTime;
+        if (time == recordedTime && time >= nextCheckpoint && !DelayedBranch.isRegistered() && !DelayedBranch.isTriggered())
+            checkpoint();
+        return false;
+    }
+
+    void breakpointPassed() {
+        breakpointTimes.add(time);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private void checkpoint() {
+        Checkpoint checkpoint = new Checkpoint(time, context.snapshot(), inputPosition, eventPosition);
+        int last = checkpoints.size() - 1;
+        if (last >= 0 && checkpoints.get(last).time == time)
+            checkpoints.set(last, checkpoint);
+        else
+            checkpoints.add(checkpoint);
+        if (checkpoints.size() > MAX_CHECKPOINTS) {
+            // Keep the first, the last and every other one in between
+            ArrayList<Checkpoint> kept = new ArrayList<>(MAX_CHECKPOINTS / 2 + 2);
+            for (int i = 0; i < checkpoints.size(); i += 2)
+                kept.add(checkpoints.get(i));
+            if (checkpoints.size() % 2 == 0)
+                kept.add(checkpoints.get(checkpoints.size() - 1));
+            checkpoints.clear();
+            checkpoints.addAll(kept);
+            interval *= 2;
+        }
+        nextCheckpoint = time + interval;
+    }
+
+    // Discards the history after the present point
+    private void truncate() {
+        checkpoints.removeIf(c -> c.time > time);
+        inputs.subList(inputPosition, inputs.size()).clear();
+        events.subList(eventPosition, events.size()).clear();
+        recordedTime = time;
+        nextCheckpoint = time + interval;
+    }
+
+    private void noteStop() {
+        // The snapshot is not kept, taking it leaves memory with nothing
+        // written since
+        context.snapshot();
+        stopRegisters = new int[][]{RegisterFile.saveRegisters(),
+            Coprocessor0.saveRegisters(), Coprocessor1.saveRegisters()};
+    }
+
+    private boolean isChangedSinceStop() {
+        return context.getMemory().isWrittenSinceSnapshot()
+                || !Arrays.equals(stopRegisters[0], RegisterFile.saveRegisters())
+                || !Arrays.equals(stopRegisters[1], Coprocessor0.saveRegisters())
+                || !Arrays.equals(stopRegisters[2], Coprocessor1.saveRegisters());
+    }
+
+    // Index of the latest checkpoint at or before the given time
+    private int latestCheckpoint(long when) {
+        int index = checkpoints.size() - 1;
+        while (index > 0 && checkpoints.get(index).time > when)
+            index--;
+        return index;
+    }
+
+    private void jumpTo(long target) {
+        restore(checkpoints.get(latestCheckpoint(target)));
+        MIPSprogram program = context.getProgram();
+        if (program != null && program.getBackStepper() != null)
+            program.getBackStepper().clear();
+        replay(target);
+        synchronized (context.getLock()) {
+            noteStop();
+        }
+    }
+
+    private void restore(Checkpoint checkpoint) {
+        synchronized (context.getLock()) {
+            context.restore(checkpoint.snapshot);
+            context.run(DelayedBranch::clear);
+            time = checkpoint.time;
+            inputPosition = checkpoint.inputPosition;
+            eventPosition = checkpoint.eventPosition;
+        }
+    }
+
+    // Runs the program from the present point to the given one, on the
+    // simulator thread and waiting for it.  Nothing is recorded for backstepping
+    // meanwhile, which lets the predecoded engine run.  Returns false if the
+    // user stopped the run before it got there.
+    private boolean replay(long target) {
+        if (target <= time)
+            return true;
+        MIPSprogram program = context.getProgram();
+        BackStepper backStepper = (program == null) ? null : program.getBackStepper();
+        boolean backStepping = backStepper != null && backStepper.enabled();
+        if (backStepping)
+            backStepper.setEnabled(false);
+        stopTime = target;
+        try {
+            context.call(() -> context.getSimulator().simulate(program,
+                    RegisterFile.getProgramCounter(), -1, null, null));
+        }
+        catch (ProcessingException e) {
+            // the run went past this point already
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        finally {
+            stopTime = NO_STOP;
+            if (backStepping)
+                backStepper.setEnabled(true);
+        }
+        return time >= target;
+    }
+
+    private static final class Checkpoint {
+
+        private final long time;
+        private final MachineContext.Snapshot snapshot;
+        private final int inputPosition;
+        private final int eventPosition;
+
+        private Checkpoint(long time, MachineContext.Snapshot snapshot, int inputPosition, int eventPosition) {
+            this.time = time;
+            this.snapshot = snapshot;
+            this.inputPosition = inputPosition;
+            this.eventPosition = eventPosition;
+        }
+    }
+
+    // A write to memory mapped I/O by a device, or an external interrupt raised
+    // by one (length 0, the value being the device)
+    private static final class DeviceEvent {
+
+        private final long time;
+        private final int value;
+        private final int address;
+        private final int length;
+
+        private DeviceEvent(long time, int value, int address, int length) {
+            this.time = time;
+            this.value = value;
+            this.address = address;
+            this.length = length;
+        }
+    }
+
+    // Logs the memory mapped I/O written by threads other than the simulator
+    private final class DeviceRecorder implements TransientNoticeObserver {
+
+        @Override
+        public void update(Observable observable, Object notice) {
+            MemoryAccessNotice access = (MemoryAccessNotice) notice;
+            if (access.getAccessType() != AccessNotice.WRITE || access.accessIsFromMIPS())
+                return;
+            synchronized (context.getLock()) {
+                // A write in the past is a change made by the user, see started()
+                if (time < recordedTime)
+                    return;
+                events.add(new DeviceEvent(time, access.getValue(), access.getAddress(), access.getLength()));
+                eventPosition++;
+            }
+        }
+    }
+}
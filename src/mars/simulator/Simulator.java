@@ -2,11 +2,11 @@ package mars.simulator;
 
 import java.awt.EventQueue;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Observable;
 import javax.swing.AbstractAction;
 import mars.ErrorList;
 import mars.ErrorMessage;
+import mars.MachineContext;
 import mars.MIPSprogram;
 import mars.Main;
 import mars.ProcessingException;
@@ -16,6 +16,8 @@ import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
 import mars.mips.instructions.BasicInstruction;
+import mars.settings.BooleanSettings;
+import mars.settings.IntegerSettings;
 import mars.util.Binary;
 import mars.util.SystemIO;
 import mars.venus.RunGoAction;
@@ -58,7 +60,6 @@ import mars.venus.RunStepAction;
 public class Simulator extends Observable {
 
     private SimThread simulatorThread;
-    private static Simulator instance = null;  // Singleton object
 
     // Others can set this true to indicate external interrupt.  Initially used
     // to simulate keyboard and display interrupts.  The device is identified
@@ -76,20 +77,31 @@ public class Simulator extends Observable {
     public static final int CLIFF_TERMINATION = 5; // run off bottom of program
     public static final int PAUSE_OR_STOP = 6;
 
+    // Maximum number of instructions run by the predecoded engine between two
+    // checks of the stop flag, observers and run speed
+    private static final int ENGINE_BATCH_LENGTH = 10000;
+
+    // Binary encoding of the syscall instruction, which ends a locking epoch
+    private static final int SYSCALL_MASK = 0xFC00003F;
+    private static final int SYSCALL_BINARY = 0x0000000C;
+
     /**
      * Returns the Simulator object
      *
-     * @return the Simulator object in use
+     * @return the Simulator object of the current machine
+     * @see MachineContext#current()
      */
     public static Simulator getInstance() {
-        // Do NOT change this to create the Simulator at load time (in declaration above)!
-        // Its constructor looks for the GUI, which at load time is not created yet,
-        // and incorrectly leaves interactiveGUIUpdater null!  This causes runtime
-        // exceptions while running in timed mode.
-        return instance == null ? instance = new Simulator() : instance;
+        return MachineContext.current().getSimulator();
     }
 
-    private Simulator() {
+    /**
+     * Creates the simulator of a new machine. Use {@link #getInstance()} for
+     * the one of the machine at hand.
+     *
+     * @see MachineContext#getSimulator()
+     */
+    public Simulator() {
         simulatorThread = null;
     }
 
@@ -106,6 +118,14 @@ public class Simulator extends Observable {
         return DelayedBranch.isTriggered();
     }
 
+    // Takes the pending external interrupt, if any
+    static int takeExternalInterrupt() {
+        int device = externalInterruptingDevice;
+        if (device != NO_DEVICE)
+            externalInterruptingDevice = NO_DEVICE;
+        return device;
+    }
+
     /**
      * Simulate execution of given MIPS program. It must have already been
      * assembled.
@@ -115,8 +135,9 @@ public class Simulator extends Observable {
      * program counter
      * @param maxSteps maximum number of steps to perform before returning false
      * (0 or less means no max)
-     * @param breakPoints array of breakpoint program counter values, use null
-     * if none
+     * @param breakPoints array of breakpoint program counter values, replacing
+     * the current ones; use null to keep those already set in Memory, which
+     * may also be changed while the program runs
      * @param actor the GUI component responsible for this call, usually GO or
      * STEP. null if none.
      * @return true if execution completed, false otherwise
@@ -188,13 +209,19 @@ public class Simulator extends Observable {
     // "stop" just means it is leaving execution state; this could be triggered
     // by Stop button, by Pause button, by Step button, by runtime exception, by
     // instruction count limit, by breakpoint, or by end of simulation (truly done).
+    // Runs going back in time are not shown as such, see ReverseExecution.
     private void notifyObserversOfExecutionStart(int maxSteps, int programCounter) {
+        if (ReverseExecution.getInstance().isJumping())
+            return;
         this.setChanged();
         this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_START,
                 maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter));
     }
 
     private void notifyObserversOfExecutionStop(int maxSteps, int programCounter) {
+        SystemIO.flushOutput();
+        if (ReverseExecution.getInstance().isJumping())
+            return;
         this.setChanged();
         this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_STOP,
                 maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter));
@@ -221,6 +248,9 @@ public class Simulator extends Observable {
         private volatile AbstractAction stopper;
         private AbstractAction starter;
         private int constructReturnReason;
+        private final MachineContext context = MachineContext.current();
+        // Execution history being recorded or replayed, null if none
+        private ReverseExecution history;
 
         /**
          * SimThread constructor. Receives all the information it needs to
@@ -268,6 +298,17 @@ public class Simulator extends Observable {
          */
         @Override
         public Object construct() {
+            if (BooleanSettings.REVERSE_EXECUTION.isSet())
+                history = context.getReverseExecution();
+            else
+                context.getReverseExecution().reset();
+            Object result = execute();
+            if (history != null)
+                history.stopped();
+            return result;
+        }
+
+        private Object execute() {
             // The next two statements are necessary for GUI to be consistently updated
             // before the simulation gets underway.  Without them, this happens only intermittently,
             // with a consequence that some simulations are interruptable using PAUSE/STOP and others
@@ -275,17 +316,19 @@ public class Simulator extends Observable {
             Thread.currentThread().setPriority(Thread.NORM_PRIORITY - 1);
             Thread.yield();  // let the main thread run a bit to finish updating the GUI
 
-            if (breakPoints == null || breakPoints.length == 0)
-                breakPoints = null;
-            else
-                Arrays.sort(breakPoints); // must be pre-sorted for binary search
+            // Breakpoints are kept with the statements in memory, where they can also be
+            // set and cleared while running.  Null leaves the current ones in place.
+            if (breakPoints != null)
+                Memory.getInstance().setBreakpoints(breakPoints);
 
-            Simulator.getInstance().notifyObserversOfExecutionStart(maxSteps, pc);
+            Simulator.this.notifyObserversOfExecutionStart(maxSteps, pc);
 
             RegisterFile.initializeProgramCounter(pc);
+            if (history != null)
+                history.started();
             ProgramStatement statement;
             try {
-                statement = Main.memory.getStatement(RegisterFile.getProgramCounter());
+                statement = Memory.getInstance().getStatement(RegisterFile.getProgramCounter());
             }
             catch (AddressErrorException e) {
                 ErrorList el = new ErrorList();
@@ -299,7 +342,7 @@ public class Simulator extends Observable {
                 constructReturnReason = EXCEPTION;
                 done = true;
                 SystemIO.resetFiles(); // close any files opened in MIPS program
-                Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+                Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
                 return done;
             }
             int steps = 0;
@@ -335,108 +378,181 @@ public class Simulator extends Observable {
             // *********************************************************************
             int pc = 0;  // added: 7/26/06 (explanation above)
 
+            // The predecoded engine, when enabled, runs ahead of the loop below for as
+            // long as it can; the loop then carries on from the instruction it stopped at.
+            // Block compilation builds on top of the engine, and implies it.  Going back
+            // in time always uses the engine, the replay being of a run already seen.
+            PredecodedEngine engine = BooleanSettings.PREDECODED_EXECUTION.isSet()
+                    || BooleanSettings.BLOCK_COMPILATION.isSet()
+                    || history != null && history.isJumping()
+                    ? new PredecodedEngine(BooleanSettings.BLOCK_COMPILATION.isSet())
+                    : null;
+
             while (statement != null) {
-                pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
-                RegisterFile.incrementPC();
-                // Perform the MIPS instruction in synchronized block.  If external threads agree
-                // to access MIPS memory and registers only through synchronized blocks on same 
-                // lock variable, then full (albeit heavy-handed) protection of MIPS memory and 
-                // registers is assured.  Not as critical for reading from those resources.
-                synchronized (Main.memoryAndRegistersLock) {
-                    try {
-                        if (Simulator.externalInterruptingDevice != NO_DEVICE) {
-                            int deviceInterruptCode = externalInterruptingDevice;
-                            Simulator.externalInterruptingDevice = NO_DEVICE;
-                            throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
-                        }
-                        BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
-                        if (instruction == null)
-                            throw new ProcessingException(statement,
-                                    "undefined instruction (" + Binary.intToHexString(statement.getBinaryStatement()) + ")",
-                                    Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
-                        // THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
-                        instruction.getSimulationCode().simulate(statement);
-
-                        // IF statement added 7/26/06 (explanation above)
-                        if (Main.isBackSteppingEnabled())
-                            Main.program.getBackStepper().addDoNothing(pc);
-                    }
-                    catch (ProcessingException pe) {
-                        if (pe.errors() == null) {
-                            constructReturnReason = NORMAL_TERMINATION;
-                            done = true;
-                            SystemIO.resetFiles(); // close any files opened in MIPS program
-                            Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                            return done; // execution completed without error.
+                // Instructions are performed in locking epochs: the lock is taken once for a
+                // batch of up to epochLength instructions, and released after the batch, after
+                // a syscall or after an access to memory mapped I/O.  If external threads agree
+                // to access MIPS memory and registers only through synchronized blocks on same
+                // lock variable, then they get a consistent view of both at epoch boundaries.
+                // Running slowly enough for GUI to keep up means one instruction per epoch.
+                double executionSpeed = RunSpeedPanel.getInstance().getRunSpeed();
+                boolean timed = Main.getGUI() != null && maxSteps != 1
+                        && executionSpeed < RunSpeedPanel.UNLIMITED_SPEED
+                        && (history == null || !history.isJumping());
+                int epochLength = timed ? 1 : Math.max(1, IntegerSettings.LOCK_EPOCH_LENGTH.get());
+                synchronized (context.getLock()) {
+                    int epoch = 0;
+                    boolean endOfEpoch = false;
+                    do {
+                        int executed = 0;
+                        if (history != null)
+                            history.applyDeviceWrites();
+                        if (engine != null && !timed && Simulator.externalInterruptingDevice == NO_DEVICE
+                                && PredecodedEngine.isApplicable()) {
+                            int limit = Math.min(epochLength - epoch, ENGINE_BATCH_LENGTH);
+                            if (maxSteps > 0)
+                                limit = Math.min(limit, maxSteps - steps);
+                            if (history != null)
+                                limit = history.limit(limit);
+                            executed = engine.run(limit);
+                            if (executed > 0)
+                                pc = engine.getLastAddress();
                         }
-                        else {
-                            // See if an exception handler is present.  Assume this is the case
-                            // if and only if memory location Memory.exceptionHandlerAddress
-                            // (e.g. 0x80000180) contains an instruction.  If so, then setStatusMenu the
-                            // program counter there and continue.  Otherwise terminate the
-                            // MIPS program with appropriate error message.
-                            ProgramStatement exceptionHandler = null;
+                        if (executed == 0) {
+                            executed = 1;
+                            pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
+                            RegisterFile.incrementPC();
+                            endOfEpoch = (statement.getBinaryStatement() & SYSCALL_MASK) == SYSCALL_BINARY;
                             try {
-                                exceptionHandler = Main.memory.getStatement(Memory.exceptionHandlerAddress);
+                                int deviceInterruptCode = history != null
+                                        ? history.takeExternalInterrupt()
+                                        : takeExternalInterrupt();
+                                if (deviceInterruptCode != NO_DEVICE)
+                                    throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
+                                BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
+                                if (instruction == null)
+                                    throw new ProcessingException(statement,
+                                            "undefined instruction (" + Binary.intToHexString(statement.getBinaryStatement()) + ")",
+                                            Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+                                // THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
+                                instruction.getSimulationCode().simulate(statement);
+
+                                // IF statement added 7/26/06 (explanation above)
+                                if (Main.isBackSteppingEnabled())
+                                    Main.getProgram().getBackStepper().addDoNothing(pc);
+                            }
+                            catch (ProcessingException pe) {
+                                if (pe.errors() == null) {
+                                    constructReturnReason = NORMAL_TERMINATION;
+                                    done = true;
+                                    SystemIO.resetFiles(); // close any files opened in MIPS program
+                                    Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                                    return done; // execution completed without error.
+                                }
+                                else {
+                                    // See if an exception handler is present.  Assume this is the case
+                                    // if and only if memory location Memory.exceptionHandlerAddress
+                                    // (e.g. 0x80000180) contains an instruction.  If so, then setStatusMenu the
+                                    // program counter there and continue.  Otherwise terminate the
+                                    // MIPS program with appropriate error message.
+                                    ProgramStatement exceptionHandler = null;
+                                    try {
+                                        exceptionHandler = Memory.getInstance().getStatement(Memory.exceptionHandlerAddress);
+                                    }
+                                    catch (AddressErrorException aee) {
+                                    } // will not occur with this well-known addres
+                                    if (exceptionHandler != null)
+                                        RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
+                                    else {
+                                        constructReturnReason = EXCEPTION;
+                                        this.pe = pe;
+                                        done = true;
+                                        SystemIO.resetFiles(); // close any files opened in MIPS program
+                                        Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                                        return done;
+                                    }
+                                }
                             }
-                            catch (AddressErrorException aee) {
-                            } // will not occur with this well-known addres
-                            if (exceptionHandler != null)
-                                RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
+
+                            ///////// DPS 15 June 2007.  Handle delayed branching if it occurs./////
+                            if (DelayedBranch.isTriggered()) {
+                                RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
+                                DelayedBranch.clear();
+                            }
+                            else if (DelayedBranch.isRegistered())
+                                DelayedBranch.trigger();//////////////////////////////////////////////////////////////////////
+                        }
+                        epoch += executed;
+                        // Going back in time ends once at the point wanted
+                        if (history != null && history.advance(executed)) {
+                            constructReturnReason = MAX_STEPS;
+                            done = false;
+                            Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                            return done;
+                        }
+                        if (Memory.getInstance().isMemoryMapAccessed()) {
+                            Memory.getInstance().clearMemoryMapAccessed();
+                            endOfEpoch = true;
+                        }
+
+                        // Volatile variable initialized false but can be set true by the main thread.
+                        // Used to stop or pause a running MIPS program.  See stopSimulation() above.
+                        if (stop == true) {
+                            constructReturnReason = PAUSE_OR_STOP;
+                            done = false;
+                            Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                            return done;
+                        }
+                        //	Return if we've reached a breakpoint, which going back in time only notes.
+                        if (Memory.getInstance().hasBreakpoints()
+                                && Memory.getInstance().isBreakpoint(RegisterFile.getProgramCounter())) {
+                            if (history != null && history.isJumping())
+                                history.breakpointPassed();
                             else {
-                                constructReturnReason = EXCEPTION;
-                                this.pe = pe;
-                                done = true;
-                                SystemIO.resetFiles(); // close any files opened in MIPS program
-                                Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                                return done;
+                                constructReturnReason = BREAKPOINT;
+                                done = false;
+                                Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                                return done; // false;
+                            }
+                        }
+                        // Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
+                        if (maxSteps > 0) {
+                            steps += executed;
+                            if (steps >= maxSteps) {
+                                constructReturnReason = MAX_STEPS;
+                                done = false;
+                                Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                                return done;// false;
                             }
                         }
-                    }
-                }// end synchronized block
 
-                ///////// DPS 15 June 2007.  Handle delayed branching if it occurs./////
-                if (DelayedBranch.isTriggered()) {
-                    RegisterFile.setProgramCounter(DelayedBranch.getBranchTargetAddress());
-                    DelayedBranch.clear();
-                }
-                else if (DelayedBranch.isRegistered())
-                    DelayedBranch.trigger();//////////////////////////////////////////////////////////////////////
-
-                // Volatile variable initialized false but can be set true by the main thread.
-                // Used to stop or pause a running MIPS program.  See stopSimulation() above.
-                if (stop == true) {
-                    constructReturnReason = PAUSE_OR_STOP;
-                    done = false;
-                    Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                    return done;
-                }
-                //	Return if we've reached a breakpoint.					
-                if ((breakPoints != null)
-                        && (Arrays.binarySearch(breakPoints, RegisterFile.getProgramCounter()) >= 0)) {
-                    constructReturnReason = BREAKPOINT;
-                    done = false;
-                    Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                    return done; // false;
-                }
-                // Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
-                if (maxSteps > 0) {
-                    steps++;
-                    if (steps >= maxSteps) {
-                        constructReturnReason = MAX_STEPS;
-                        done = false;
-                        Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                        return done;// false;
-                    }
-                }
+                        // Get next instruction in preparation for next iteration.
+                        try {
+                            statement = Memory.getInstance().getStatement(RegisterFile.getProgramCounter());
+                        }
+                        catch (AddressErrorException e) {
+                            ErrorList el = new ErrorList();
+                            el.add(new ErrorMessage((MIPSprogram) null, 0, 0, "invalid program counter value: " + Binary.intToHexString(RegisterFile.getProgramCounter())));
+                            this.pe = new ProcessingException(el, e);
+                            // Next statement is a hack.  Previous statement sets EPC register to ProgramCounter-4
+                            // because it assumes the bad address comes from an operand so the ProgramCounter has already been
+                            // incremented.  In this case, bad address is the instruction fetch itself so Program Counter has
+                            // not yet been incremented.  We'll setStatusMenu the EPC directly here.  DPS 8-July-2013
+                            Coprocessor0.updateRegister(Coprocessor0.EPC, RegisterFile.getProgramCounter());
+                            this.constructReturnReason = EXCEPTION;
+                            this.done = true;
+                            SystemIO.resetFiles(); // close any files opened in MIPS program
+                            Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
+                            return done;
+                        }
+                    } while (statement != null && epoch < epochLength && !endOfEpoch);
+                }// end synchronized block
 
                 // schedule GUI update only if:
                 //  - there is in fact a GUI
                 //  - using Run, not Step (maxSteps > 1)
                 //  - running slowly enough for GUI to keep up
-                double executionSpeed = RunSpeedPanel.getInstance().getRunSpeed();
-                if (Main.getGUI() != null && maxSteps != 1
-                        && executionSpeed < RunSpeedPanel.UNLIMITED_SPEED) {
+                if (timed) {
                     EventQueue.invokeLater(Main.getGUI()::simUpdate);
                     try {
                         // make sure it's never zero!
@@ -446,26 +562,6 @@ public class Simulator extends Observable {
                     }
 
                 }
-
-                // Get next instruction in preparation for next iteration.
-                try {
-                    statement = Main.memory.getStatement(RegisterFile.getProgramCounter());
-                }
-                catch (AddressErrorException e) {
-                    ErrorList el = new ErrorList();
-                    el.add(new ErrorMessage((MIPSprogram) null, 0, 0, "invalid program counter value: " + Binary.intToHexString(RegisterFile.getProgramCounter())));
-                    this.pe = new ProcessingException(el, e);
-                    // Next statement is a hack.  Previous statement sets EPC register to ProgramCounter-4
-                    // because it assumes the bad address comes from an operand so the ProgramCounter has already been
-                    // incremented.  In this case, bad address is the instruction fetch itself so Program Counter has
-                    // not yet been incremented.  We'll setStatusMenu the EPC directly here.  DPS 8-July-2013
-                    Coprocessor0.updateRegister(Coprocessor0.EPC, RegisterFile.getProgramCounter());
-                    this.constructReturnReason = EXCEPTION;
-                    this.done = true;
-                    SystemIO.resetFiles(); // close any files opened in MIPS program
-                    Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                    return done;
-                }
             }
             // DPS July 2007.  This "if" statement is needed for correct program
             // termination if delayed branching on and last statement in
@@ -479,7 +575,7 @@ public class Simulator extends Observable {
             this.constructReturnReason = CLIFF_TERMINATION;
             this.done = true;
             SystemIO.resetFiles(); // close any files opened in MIPS program
-            Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+            Simulator.this.notifyObserversOfExecutionStop(maxSteps, pc);
             return done; // true;  // execution completed
         }
 
@@ -495,7 +591,8 @@ public class Simulator extends Observable {
         @Override
         public void finished() {
             // If running from the command-line, then there is no GUI to update.
-            if (Main.getGUI() == null)
+            // Neither is there when going back in time, see ReverseExecution.
+            if (Main.getGUI() == null || starter == null)
                 return;
             String starterName = (String) starter.getValue(AbstractAction.NAME);
             if (starterName.equals("Step"))
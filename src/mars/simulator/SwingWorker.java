@@ -1,6 +1,7 @@
 package mars.simulator;
 
 import javax.swing.SwingUtilities;
+import mars.MachineContext;
 
 /*-----------------------------------------------------
  * This file downloaded from the Sun Microsystems URL given below.
@@ -128,8 +129,9 @@ public abstract class SwingWorker {
             else doFinished.run();
         };
 
-        // Thread that represents executing MIPS program...
-        Thread t = new Thread(doConstruct, "MIPS");
+        // Thread that represents executing MIPS program, in the machine of the caller
+        MachineContext context = MachineContext.current();
+        Thread t = new Thread(() -> context.run(doConstruct), "MIPS");
 
         //t.setPriority(Thread.NORM_PRIORITY-1);//******************
         threadVar = new ThreadVar(t);
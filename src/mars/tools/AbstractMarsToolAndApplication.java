@@ -477,7 +477,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 * Override this method to process a received notice from MIPS Observable (memory or register)
    	 * It will only be called if the notice was generated as the result of MIPS instruction execution.
    	 * By default it does nothing. After this method is complete, the updateDisplay() method will be 
-   	 * invoked automatically.
+   	 * invoked automatically.  A tool that keeps no reference to the notice once this method
+   	 * returns may implement TransientNoticeObserver to receive reused memory notices.
    	 */
        protected void processMIPSUpdate(Observable resource, AccessNotice notice) {
       }
@@ -521,7 +522,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        protected void addAsObserver(int lowEnd, int highEnd) {
          String errorMessage = "Error connecting to MIPS memory";
          try {
-            Main.memory.addObserver(thisMarsApp,lowEnd, highEnd);
+            Memory.getInstance().addObserver(thisMarsApp,lowEnd, highEnd);
          } 
              catch (AddressErrorException aee) {
                if (this.isBeingUsedAsAMarsTool) {
@@ -553,7 +554,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */		 
    	 
        protected void deleteAsObserver() {
-         Main.memory.deleteObserver(thisMarsApp);
+         Memory.getInstance().deleteObserver(thisMarsApp);
       }
    
       /**
@@ -707,7 +708,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             Thread.currentThread().setPriority(Thread.NORM_PRIORITY-1);
             Thread.yield();
             MIPSprogram program = new MIPSprogram();
-            mars.Main.program = program; // Shouldn't have to do this...
+            Main.setProgram(program); // Shouldn't have to do this...
             String fileToAssemble = mostRecentlyOpenedFile.getPath();
             ArrayList filesToAssemble = null;
             if (multiFileAssemble) {// setting (check box in file open dialog) calls for multiple file assembly 
@@ -39,6 +39,7 @@ import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.MemoryAccessNotice;
 import mars.mips.hardware.RegisterFile;
+import mars.mips.hardware.TransientNoticeObserver;
 //import mars.tools.bhtsim.BHTSimGUI;
 //import mars.tools.bhtsim.BHTableModel;
 
@@ -59,7 +60,7 @@ import mars.mips.hardware.RegisterFile;
  * @author ingo.kofler@itec.uni-klu.ac.at
  */
 //@SuppressWarnings("serial")
-public class BHTSimulator extends AbstractMarsToolAndApplication implements ActionListener {
+public class BHTSimulator extends AbstractMarsToolAndApplication implements ActionListener, TransientNoticeObserver {
 	
 	
 	/** constant for the default size of the BHT */
@@ -11,6 +11,7 @@ import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.hardware.TransientNoticeObserver;
 import mars.simulator.Exceptions;
 @SuppressWarnings("serial")
 /* Add these two lines in exceptions.java file
@@ -22,7 +23,7 @@ import mars.simulator.Exceptions;
  * Didier Teifreto LIFC Université de franche-Comté www.lifc.univ-fcomte.fr/~teifreto
  * didier.teifreto@univ-fcomte.fr
  */
-public class DigitalLabSim extends AbstractMarsToolAndApplication {
+public class DigitalLabSim extends AbstractMarsToolAndApplication implements TransientNoticeObserver {
 	private static String heading =  "Digital Lab Sim";
 	private static String version = " Version 1.0 (Didier Teifreto)";
 	private static final int IN_ADRESS_DISPLAY_1=Memory.memoryMapBaseAddress+0x10;
@@ -108,7 +109,7 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
         if (!this.isBeingUsedAsAMarsTool || (this.isBeingUsedAsAMarsTool && connectButton.isConnected())) {
            synchronized (Main.memoryAndRegistersLock) {
               try {
-              		Main.memory.setByte(dataAddr, dataValue);
+              		Memory.getInstance().setByte(dataAddr, dataValue);
               } 
                   catch (AddressErrorException aee) {
                     System.out.println("Tool author specified incorrect MMIO address!"+aee);
@@ -42,6 +42,7 @@ import mars.mips.hardware.AccessNotice;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.hardware.TransientNoticeObserver;
 import mars.mips.instructions.BasicInstruction;
 import mars.mips.instructions.BasicInstructionFormat;
 
@@ -56,7 +57,7 @@ import mars.mips.instructions.BasicInstructionFormat;
  *
  */
 //@SuppressWarnings("serial")
-public class InstructionCounter extends AbstractMarsToolAndApplication {
+public class InstructionCounter extends AbstractMarsToolAndApplication implements TransientNoticeObserver {
     private static String name    = "Instruction Counter";
     private static String version = "Version 1.0 (Felipe Lessa)";
     private static String heading = "Counting the number of instructions executed";
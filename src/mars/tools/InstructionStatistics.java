@@ -43,6 +43,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    import mars.mips.hardware.AddressErrorException;
    import mars.mips.hardware.Memory;
    import mars.mips.hardware.MemoryAccessNotice;
+   import mars.mips.hardware.TransientNoticeObserver;
 
 
 /**
@@ -55,7 +56,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  *
  */
    // @SuppressWarnings("serial")
-    public class InstructionStatistics extends AbstractMarsToolAndApplication {
+    public class InstructionStatistics extends AbstractMarsToolAndApplication implements TransientNoticeObserver {
     
    /** name of the tool */
       private static String NAME    = "Instruction Statistics";
@@ -66,7 +66,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     *    position of a virtual text-based terminal.  X represents column, Y represents row.
 	 */
     
-   public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication {
+   public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication implements TransientNoticeObserver {
    
       private static String version = "Version 1.4";
       private static String heading =  "Keyboard and Display MMIO Simulator";
@@ -705,8 +705,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (!this.isBeingUsedAsAMarsTool || (this.isBeingUsedAsAMarsTool && connectButton.isConnected())) {
             synchronized (Main.memoryAndRegistersLock) {
                try {
-                  Main.memory.setRawWord(controlAddr, controlValue);
-                  if (!controlOnly) Main.memory.setRawWord(dataAddr, dataValue);
+                  Memory.getInstance().setRawWord(controlAddr, controlValue);
+                  if (!controlOnly) Memory.getInstance().setRawWord(dataAddr, dataValue);
                }
                   catch (AddressErrorException aee) {
                      System.out.println("Tool author specified incorrect MMIO address!"+aee);
@@ -730,7 +730,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      // Have to preserve the value of Interrupt Enable bit (bit 1)
       private static boolean isReadyBitSet(int mmioControlRegister) {
          try {
-            return (Main.memory.get(mmioControlRegister, Memory.WORD_LENGTH_BYTES) & 1) == 1;
+            return (Memory.getInstance().get(mmioControlRegister, Memory.WORD_LENGTH_BYTES) & 1) == 1;
          }
             catch (AddressErrorException aee) {
                System.out.println("Tool author specified incorrect MMIO address!"+aee);
@@ -745,7 +745,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      // Have to preserve the value of Interrupt Enable bit (bit 1)
       private static int readyBitSet(int mmioControlRegister) {
          try {
-            return Main.memory.get(mmioControlRegister, Memory.WORD_LENGTH_BYTES) | 1;
+            return Memory.getInstance().get(mmioControlRegister, Memory.WORD_LENGTH_BYTES) | 1;
          }
             catch (AddressErrorException aee) {
                System.out.println("Tool author specified incorrect MMIO address!"+aee);
@@ -759,7 +759,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      // Have to preserve the value of Interrupt Enable bit (bit 1). Bits 2 and higher don't matter.
       private static int readyBitCleared(int mmioControlRegister) {
          try {
-            return Main.memory.get(mmioControlRegister, Memory.WORD_LENGTH_BYTES) & 2;
+            return Memory.getInstance().get(mmioControlRegister, Memory.WORD_LENGTH_BYTES) & 2;
          }
             catch (AddressErrorException aee) {
                System.out.println("Tool author specified incorrect MMIO address!"+aee);
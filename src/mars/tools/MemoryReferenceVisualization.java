@@ -42,7 +42,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	 * maximum use of methods inherited from its abstract superclass AbstractMarsToolAndApplication.
 	 * Pete Sanderson, verison 1.0, 14 November 2006.
 	 */
-    public class MemoryReferenceVisualization extends AbstractMarsToolAndApplication {
+    public class MemoryReferenceVisualization extends AbstractMarsToolAndApplication implements TransientNoticeObserver {
    
       private static String version = "Version 1.0";
       private static String heading =  "Visualizing memory reference patterns";
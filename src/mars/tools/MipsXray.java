@@ -63,6 +63,7 @@ import mars.mips.hardware.AccessNotice;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.hardware.TransientNoticeObserver;
 import mars.mips.instructions.BasicInstruction;
 import mars.mips.instructions.BasicInstructionFormat;
 //import mars.venus.RunAssembleAction;
@@ -70,7 +71,7 @@ import mars.venus.RunBackstepAction;
 import mars.venus.RunStepAction;
 import mars.venus.VenusUI;
 
-public class MipsXray extends AbstractMarsToolAndApplication{
+public class MipsXray extends AbstractMarsToolAndApplication implements TransientNoticeObserver {
 	private static final long serialVersionUID = -1L;
     private static String heading =  "MIPS X-Ray - Animation of MIPS Datapath";
 	private static String version = " Version 2.0";
@@ -451,7 +451,7 @@
         // Register as observer for a particular MIPS data range. Other ranges
         // are not used by this Tool.
          try {
-            Main.memory.addObserver(this, 0xffff8000, 0xfffffff0);  // must be on word boundaries
+            Memory.getInstance().addObserver(this, 0xffff8000, 0xfffffff0);  // must be on word boundaries
          }
              catch (AddressErrorException e)
             {
@@ -761,7 +761,7 @@
          SetWordCounter++;
       
          try {
-            Main.memory.setWord(address, data); // Write
+            Memory.getInstance().setWord(address, data); // Write
          }
              catch ( AddressErrorException e) {
                System.out.println("ScavengerHunt.toolSetWord: deliberate exit on AEE exception.");
@@ -816,7 +816,7 @@
            Binary.intToHexString(Globals.memory.getWord(address)) +
            " which is at MIPS Memory[" + Binary.intToHexString(address) + "]" );
          */
-            returnValue = Main.memory.getWord(address);
+            returnValue = Memory.getInstance().getWord(address);
          
          /*
          System.out.println("ScavengerHunt.toolGetWord: Mem[" +
@@ -1,16 +1,26 @@
 package mars.util;
 
 import java.io.BufferedReader;
-import java.io.Closeable;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.InvalidPathException;
+import java.nio.file.OpenOption;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import mars.MachineContext;
 import mars.Main;
+import mars.mips.hardware.Memory;
 import mars.settings.BooleanSettings;
+import mars.simulator.ReverseExecution;
 
 /*
  Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
@@ -57,12 +67,9 @@ public class SystemIO {
     /**
      * Maximum number of files that can be open
      */
-    public static final int SYSCALL_MAXFILES = 32;
-    /**
-     * String used for description of file error
-     */
-    public static String fileErrorString = "File operation OK";
-
+    public static final int SYSCALL_MAXFILES = 1024;
+    // Number of file descriptors each machine has room for at first
+    private static final int INITIAL_FILES = 32;
     private static final int O_RDONLY = 0x00000000;
     private static final int O_WRONLY = 0x00000001;
     private static final int O_RDWR = 0x00000002;
@@ -76,6 +83,17 @@ public class SystemIO {
     private static final int STDOUT = 1;
     private static final int STDERR = 2;
 
+    // origins of seekFile offsets
+    private static final int SEEK_SET = 0;
+    private static final int SEEK_CUR = 1;
+    private static final int SEEK_END = 2;
+
+    // Output of the print syscalls is handed on in chunks of at most this many
+    // characters, and at the latest this many milliseconds after it was printed.
+    // See OutputBuffer below.
+    private static final int OUTPUT_BUFFER_LIMIT = 8192;
+    private static final long OUTPUT_FLUSH_DELAY = 100;
+
     // Will use one buffered reader for all keyboard/redirected/piped input.
     // Added by DPS 28 Feb 2008.  See getInputReader() below.
     private static BufferedReader inputReader = null;
@@ -88,18 +106,7 @@ public class SystemIO {
      * @return int value corresponding to user input
      */
     public static int readInteger(int serviceNumber) {
-        String input = "0";
-        if (Main.getGUI() == null)
-            try {
-                input = getInputReader().readLine();
-            }
-            catch (IOException e) {
-            }
-        else if (BooleanSettings.POPUP_SYSCALL_INPUT.isSet())
-            input = (Main.getGUI().messagesPane).getInputString(
-                    "Enter an integer value (syscall " + serviceNumber + ")");
-        else
-            input = (Main.getGUI().messagesPane).getInputString(-1);
+        String input = readInput("0", "Enter an integer value (syscall " + serviceNumber + ")", -1);
 
         // Client is responsible for catching NumberFormatException
         return Integer.parseInt(input.trim());
@@ -114,18 +121,7 @@ public class SystemIO {
      * @return float value corresponding to user input Feb 14 2005 Ken Vollmar
      */
     public static float readFloat(int serviceNumber) {
-        String input = "0";
-        if (Main.getGUI() == null)
-            try {
-                input = getInputReader().readLine();
-            }
-            catch (IOException e) {
-            }
-        else if (BooleanSettings.POPUP_SYSCALL_INPUT.isSet())
-            input = (Main.getGUI().messagesPane).getInputString(
-                    "Enter a float value (syscall " + serviceNumber + ")");
-        else
-            input = (Main.getGUI().messagesPane).getInputString(-1);
+        String input = readInput("0", "Enter a float value (syscall " + serviceNumber + ")", -1);
         return Float.parseFloat(input.trim());
 
     }
@@ -140,19 +136,7 @@ public class SystemIO {
      * Ken Vollmar's readFloat
      */
     public static double readDouble(int serviceNumber) {
-        String input = "0";
-        if (Main.getGUI() == null)
-            try {
-                input = getInputReader().readLine();
-            }
-            catch (IOException e) {
-            }
-
-        else if (BooleanSettings.POPUP_SYSCALL_INPUT.isSet())
-            input = Main.getGUI().messagesPane.getInputString(
-                    "Enter a double value (syscall " + serviceNumber + ")");
-        else
-            input = Main.getGUI().messagesPane.getInputString(-1);
+        String input = readInput("0", "Enter a double value (syscall " + serviceNumber + ")", -1);
         return Double.parseDouble(input.trim());
 
     }
@@ -163,11 +147,41 @@ public class SystemIO {
      * @param string
      */
     public static void printString(String string) {
-        if (Main.getGUI() == null)
-            System.out.print(string);
-        else
-            Main.getGUI().messagesPane.postRunMessage(string);
+        if (!ReverseExecution.isReplaying())
+            files().output.append(string);
+    }
 
+    /**
+     * Implements syscall having 4 in $v0, to print a string, given as the
+     * bytes of its characters.
+     *
+     * @param bytes array holding the characters, one per byte (ISO 8859-1)
+     * @param offset index in bytes of the first character
+     * @param length number of characters
+     */
+    public static void printString(byte[] bytes, int offset, int length) {
+        if (!ReverseExecution.isReplaying())
+            files().output.append(bytes, offset, length);
+    }
+
+    /**
+     * Implements syscall having 11 in $v0, to print a character.
+     *
+     * @param ch the character
+     */
+    public static void printChar(char ch) {
+        if (!ReverseExecution.isReplaying())
+            files().output.append(ch);
+    }
+
+    /**
+     * Passes on all output of the print syscalls that is still buffered. This
+     * happens by itself before input is taken and before anything else is
+     * written to STDOUT or STDERR; the simulator calls it whenever execution
+     * stops.
+     */
+    public static void flushOutput() {
+        files().output.flush();
     }
 
     /**
@@ -179,22 +193,11 @@ public class SystemIO {
      * @return the entered string, truncated to maximum length if necessary
      */
     public static String readString(int serviceNumber, int maxLength) {
-        String input = "";
-        if (Main.getGUI() == null)
-            try {
-                input = getInputReader().readLine();
-            }
-            catch (IOException e) {
-            }
-        else if (BooleanSettings.POPUP_SYSCALL_INPUT.isSet())
-            input = (Main.getGUI().messagesPane).getInputString(
-                    "Enter a string of maximum length " + maxLength
-                    + " (syscall " + serviceNumber + ")");
-        else {
-            input = (Main.getGUI().messagesPane).getInputString(maxLength);
-            if (input.endsWith("\n"))
-                input = input.substring(0, input.length() - 1);
-        }
+        String input = readInput("", "Enter a string of maximum length " + maxLength
+                + " (syscall " + serviceNumber + ")", maxLength);
+        // the Run I/O window includes the newline
+        if (input.endsWith("\n"))
+            input = input.substring(0, input.length() - 1);
 
         if (input.length() > maxLength)
             // Modified DPS 13-July-2011.  Originally: return input.substring(0, maxLength);
@@ -211,19 +214,8 @@ public class SystemIO {
      * @return int value with lowest byte corresponding to user input
      */
     public static int readChar(int serviceNumber) {
-        String input = "0";
+        String input = readInput("0", "Enter a character value (syscall " + serviceNumber + ")", 1);
         int returnValue = 0;
-        if (Main.getGUI() == null)
-            try {
-                input = getInputReader().readLine();
-            }
-            catch (IOException e) {
-            }
-        else if (BooleanSettings.POPUP_SYSCALL_INPUT.isSet())
-            input = (Main.getGUI().messagesPane).getInputString(
-                    "Enter a character value (syscall " + serviceNumber + ")");
-        else
-            input = (Main.getGUI().messagesPane).getInputString(1);
         // The whole try-catch is not really necessary in this case since I'm
         // just propagating the runtime exception (the default behavior), but 
         // I want to make it explicit.  The client needs to catch it.
@@ -248,49 +240,48 @@ public class SystemIO {
      * @return number of bytes written, or -1 on error
      */
     public static int writeToFile(int fd, byte[] myBuffer, int lengthRequested) {
+        if (fd == STDOUT || fd == STDERR)
+            flushOutput();
+        return ReverseExecution.input(() -> write(fd, myBuffer, lengthRequested));
+    }
+
+    private static int write(int fd, byte[] myBuffer, int lengthRequested) {
+        if (lengthRequested < 0 || lengthRequested > myBuffer.length) {
+            files().errorString = "Invalid length " + lengthRequested + " on write of file with fd " + fd;
+            return -1;
+        }
         /////////////// DPS 8-Jan-2013  ////////////////////////////////////////////////////
         /// Write to STDOUT or STDERR file descriptor while using IDE - write to Messages pane. 
         if ((fd == STDOUT || fd == STDERR) && Main.getGUI() != null) {
-            String data = new String(myBuffer);
-            Main.getGUI().messagesPane.postRunMessage(data);
-            return data.length();
+            Main.getGUI().messagesPane.postRunMessage(new String(myBuffer, 0, lengthRequested));
+            return lengthRequested;
         }
         ///////////////////////////////////////////////////////////////////////////////////
-        //// When running in command mode, code below works for either regular file or STDOUT/STDERR
+        //// When running in command mode, STDOUT and STDERR are the console.
+        if (fd == STDOUT || fd == STDERR) {
+            PrintStream console = (fd == STDOUT) ? System.out : System.err;
+            console.write(myBuffer, 0, lengthRequested);
+            console.flush();
+            return lengthRequested;
+        }
 
-        if (!FileIOData.fdInUse(fd, 1)) // Check the existence of the "write" fd
+        if (!files().fdInUse(fd, O_WRONLY)) // Check the existence of the "write" fd
         {
-            fileErrorString = "File descriptor " + fd + " is not open for writing";
+            files().errorString = "File descriptor " + fd + " is not open for writing";
             return -1;
         }
-        // retrieve FileOutputStream from storage
-        OutputStream outputStream = (OutputStream) FileIOData.getStreamInUse(fd);
+        // All bytes requested are written, null bytes included (see Ken Vollmar's
+        // observation of Oct. 9 2005 in earlier versions).
+        FileChannel channel = files().getChannelInUse(fd);
+        ByteBuffer source = ByteBuffer.wrap(myBuffer, 0, lengthRequested);
         try {
-            // Oct. 9 2005 Ken Vollmar
-            // Observation: made a call to outputStream.write(myBuffer, 0, lengthRequested)
-            //     with myBuffer containing 6(ten) 32-bit-words <---> 24(ten) bytes, where the
-            //     words are MIPS integers with values such that many of the bytes are ZEROES.
-            //     The effect is apparently that the write stops after encountering a zero-valued
-            //     byte. (The method write does not return a value and so this can't be verified
-            //     by the return value.)
-            // Writes up to lengthRequested bytes of data to this output stream from an array of bytes.
-            // outputStream.write(myBuffer, 0, lengthRequested); // write is a void method -- no verification value returned
-
-            // Oct. 9 2005 Ken Vollmar  Force the write statement to write exactly
-            // the number of bytes requested, even though those bytes include many ZERO values.
-            for (int ii = 0; ii < lengthRequested; ii++)
-                outputStream.write(myBuffer[ii]);
-            outputStream.flush();// DPS 7-Jan-2013
+            while (source.hasRemaining())
+                channel.write(source);
         }
         catch (IOException e) {
-            fileErrorString = "IO Exception on write of file with fd " + fd;
+            files().errorString = "IO Exception on write of file with fd " + fd;
             return -1;
         }
-        catch (IndexOutOfBoundsException e) {
-            fileErrorString = "IndexOutOfBoundsException on write of file with fd" + fd;
-            return -1;
-        }
-
         return lengthRequested;
 
     } // end writeToFile
@@ -304,7 +295,24 @@ public class SystemIO {
      * @return number of bytes read, 0 on EOF, or -1 on error
      */
     public static int readFromFile(int fd, byte[] myBuffer, int lengthRequested) {
-        int retValue;
+        if (fd == STDIN)
+            flushOutput();
+        // Replays get the bytes read, null standing for an error
+        byte[] bytesRead = ReverseExecution.input(() -> {
+            int count = read(fd, myBuffer, lengthRequested);
+            return count < 0 ? null : Arrays.copyOf(myBuffer, count);
+        });
+        if (bytesRead == null)
+            return -1;
+        System.arraycopy(bytesRead, 0, myBuffer, 0, bytesRead.length);
+        return bytesRead.length;
+    }
+
+    private static int read(int fd, byte[] myBuffer, int lengthRequested) {
+        if (lengthRequested < 0 || lengthRequested > myBuffer.length) {
+            files().errorString = "Invalid length " + lengthRequested + " on read of file with fd " + fd;
+            return -1;
+        }
         /////////////// DPS 8-Jan-2013  //////////////////////////////////////////////////
         /// Read from STDIN file descriptor while using IDE - get input from Messages pane. 
         if (fd == STDIN && Main.getGUI() != null) {
@@ -315,85 +323,208 @@ public class SystemIO {
             return Math.min(myBuffer.length, bytesRead.length);
         }
         ////////////////////////////////////////////////////////////////////////////////////
-        //// When running in command mode, code below works for either regular file or STDIN
+        //// When running in command mode, STDIN is the console.
+        if (fd == STDIN)
+            try {
+                // System.in returns -1 upon EOF, but our spec says that negative
+                // value represents an error, so we return 0 for EOF.  DPS 10-July-2008.
+                return Math.max(System.in.read(myBuffer, 0, lengthRequested), 0);
+            }
+            catch (IOException e) {
+                files().errorString = "IO Exception on read of file with fd " + fd;
+                return -1;
+            }
 
-        if (!FileIOData.fdInUse(fd, 0)) // Check the existence of the "read" fd
+        if (!files().fdInUse(fd, O_RDONLY)) // Check the existence of the "read" fd
         {
-            fileErrorString = "File descriptor " + fd + " is not open for reading";
+            files().errorString = "File descriptor " + fd + " is not open for reading";
             return -1;
         }
-        // retrieve FileInputStream from storage
-        InputStream InputStream = (InputStream) FileIOData.getStreamInUse(fd);
+        // Fill the buffer as far as the file goes, so that a short count means EOF
+        FileChannel channel = files().getChannelInUse(fd);
+        ByteBuffer destination = ByteBuffer.wrap(myBuffer, 0, lengthRequested);
         try {
-            // Reads up to lengthRequested bytes of data from this Input stream into an array of bytes.
-            retValue = InputStream.read(myBuffer, 0, lengthRequested);
-            // This method will return -1 upon EOF, but our spec says that negative
-            // value represents an error, so we return 0 for EOF.  DPS 10-July-2008.
-            if (retValue == -1)
-                retValue = 0;
+            while (destination.hasRemaining() && channel.read(destination) >= 0) {
+            }
         }
         catch (IOException e) {
-            fileErrorString = "IO Exception on read of file with fd " + fd;
+            files().errorString = "IO Exception on read of file with fd " + fd;
             return -1;
         }
-        catch (IndexOutOfBoundsException e) {
-            fileErrorString = "IndexOutOfBoundsException on read of file with fd" + fd;
+        return destination.position();
+
+    } // end readFromFile
+
+    /**
+     * Move the read/write position of a file.
+     *
+     * @param fd file descriptor
+     * @param offset byte offset, relative to where whence says
+     * @param whence 0 for the start of the file, 1 for the current position,
+     * 2 for the end of the file
+     * @return the new position, or -1 if error
+     */
+    public static int seekFile(int fd, int offset, int whence) {
+        return ReverseExecution.input(() -> seek(fd, offset, whence));
+    }
+
+    private static int seek(int fd, int offset, int whence) {
+        if (fd <= STDERR || (!files().fdInUse(fd, O_RDONLY) && !files().fdInUse(fd, O_WRONLY))) {
+            files().errorString = "File descriptor " + fd + " is not open for seeking";
             return -1;
         }
-        return retValue;
+        FileChannel channel = files().getChannelInUse(fd);
+        try {
+            long position;
+            switch (whence) {
+                case SEEK_SET:
+                    position = offset;
+                    break;
+                case SEEK_CUR:
+                    position = channel.position() + offset;
+                    break;
+                case SEEK_END:
+                    position = channel.size() + offset;
+                    break;
+                default:
+                    files().errorString = "Unknown seek origin " + whence + " for file with fd " + fd;
+                    return -1;
+            }
+            if (position < 0 || position > Integer.MAX_VALUE) {
+                files().errorString = "Seek position " + position + " out of range for file with fd " + fd;
+                return -1;
+            }
+            channel.position(position);
+            return (int) position;
+        }
+        catch (IOException e) {
+            files().errorString = "IO Exception on seek of file with fd " + fd;
+            return -1;
+        }
+    }
 
-    } // end readFromFile
+    /**
+     * Map part of a file into the heap. The file is read as the program
+     * accesses the mapping. If the file is open for reading and writing, the
+     * changes made by the program are written back when unmapping and when
+     * the program ends; if it is open for reading only, they are not.
+     *
+     * @param fd file descriptor
+     * @param length number of bytes to map; those past the end of file read
+     * as zero and are not written back
+     * @param offset position in the file of the first byte to map
+     * @return address of the mapping, or -1 if error
+     */
+    public static int mapFile(int fd, int length, int offset) {
+        if (length <= 0 || offset < 0) {
+            files().errorString = "Invalid length " + length + " or offset " + offset + " on mapping of file with fd " + fd;
+            return -1;
+        }
+        // Replays get the same mapping, null standing for an error
+        MappedFile file = ReverseExecution.input(() -> map(fd, length, offset));
+        if (file == null)
+            return -1;
+        try {
+            return Memory.getInstance().mapFile(file.buffer, length, !file.buffer.isReadOnly(), file.pagesRead);
+        }
+        catch (IllegalArgumentException e) {
+            files().errorString = "Mapping of file with fd " + fd + ": " + e.getMessage();
+            return -1;
+        }
+    }
+
+    private static MappedFile map(int fd, int length, int offset) {
+        if (fd <= STDERR || !files().fdInUse(fd, O_RDONLY)) {
+            files().errorString = "File descriptor " + fd + " is not open for reading";
+            return null;
+        }
+        FileChannel channel = files().getChannelInUse(fd);
+        try {
+            // Mapping past the end would extend the file
+            long size = Math.max(0, Math.min(length, channel.size() - offset));
+            return new MappedFile(channel.map(files().fdInUse(fd, O_WRONLY) ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    offset, size));
+        }
+        catch (IOException e) {
+            files().errorString = "IO Exception on mapping of file with fd " + fd;
+            return null;
+        }
+    }
+
+    // A file mapped for the program.  With reverse execution, the pages read in
+    // are kept as first read, for replays to read the same: writing the changes
+    // back, or writes to the file through a descriptor, alter the buffer.
+    private static final class MappedFile {
+
+        final ByteBuffer buffer;
+        final HashMap<Integer, int[]> pagesRead;
+
+        MappedFile(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.pagesRead = BooleanSettings.REVERSE_EXECUTION.isSet() ? new HashMap<>() : null;
+        }
+    }
 
     /**
-     * Open a file for either reading or writing. Note that read/write flag is
-     * NOT IMPLEMENTED. Also note that file permission modes are also NOT
-     * IMPLEMENTED.
+     * Remove a mapping made by {@link #mapFile(int, int, int)}, writing back
+     * the changes made to it if the file was open for writing too.
+     *
+     * @param address address of the mapping
+     * @return 0, or -1 if error
+     */
+    public static int unmapFile(int address) {
+        if (Memory.getInstance().unmapFile(address, !ReverseExecution.isReplaying()))
+            return 0;
+        files().errorString = "No file mapping at address " + Binary.intToHexString(address);
+        return -1;
+    }
+
+    /**
+     * Open a file for reading, writing or both. Note that file permission
+     * modes are NOT IMPLEMENTED.
      *
      * @param filename string containing filename
-     * @param flag 0 for read, 1 for write
+     * @param flag 0 for read, 1 for write, 9 for append, 2 for read and write
      * @return file descriptor in the range 0 to SYSCALL_MAXFILES-1, or -1 if
      * error
      * @author Ken Vollmar
      */
     public static int openFile(String filename, int flag) {
+        return ReverseExecution.input(() -> open(filename, flag));
+    }
+
+    private static int open(String filename, int flag) {
         // Internally, a "file descriptor" is an index into a table
-        // of the filename, flag, and the File???putStream associated with
+        // of the filename, flag, and the FileChannel associated with
         // that file descriptor.
 
-        int retValue;
-        FileInputStream inputStream;
-        FileOutputStream outputStream;
-        int fdToUse;
-
         // Check internal plausibility of opening this file
-        fdToUse = FileIOData.nowOpening(filename, flag);
-        retValue = fdToUse; // return value is the fd
+        int fdToUse = files().nowOpening(filename, flag);
         if (fdToUse < 0)
-            return -1;   // fileErrorString would have been set
+            return -1;   // error string would have been set
 
+        Set<OpenOption> options = new HashSet<>();
         if (flag == O_RDONLY) // Open for reading only
-
-            try {
-                // Set up input stream from disk file
-                inputStream = new FileInputStream(filename);
-                FileIOData.setStreamInUse(fdToUse, inputStream); // Save stream for later use
-            }
-            catch (FileNotFoundException e) {
-                fileErrorString = "File " + filename + " not found, open for input.";
-                retValue = -1;
-            }
-        else if ((flag & O_WRONLY) != 0) // Open for writing only
-
-            // Set up output stream to disk file
-            try {
-                outputStream = new FileOutputStream(filename, ((flag & O_APPEND) != 0));
-                FileIOData.setStreamInUse(fdToUse, outputStream); // Save stream for later use
-            }
-            catch (FileNotFoundException e) {
-                fileErrorString = "File " + filename + " not found, open for output.";
-                retValue = -1;
-            }
-        return retValue; // return the "file descriptor"
+            options.add(StandardOpenOption.READ);
+        else if (flag == O_RDWR) { // Open existing file for reading and writing
+            options.add(StandardOpenOption.READ);
+            options.add(StandardOpenOption.WRITE);
+        }
+        else { // Open for writing only, creating the file if need be
+            options.add(StandardOpenOption.WRITE);
+            options.add(StandardOpenOption.CREATE);
+            options.add(((flag & O_APPEND) != 0) ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        try {
+            files().setChannelInUse(fdToUse, FileChannel.open(Paths.get(filename), options)); // Save channel for later use
+        }
+        catch (IOException | InvalidPathException | UnsupportedOperationException | SecurityException e) {
+            files().close(fdToUse);
+            files().errorString = "File " + filename + " not found, open for "
+                    + ((flag == O_RDONLY) ? "input." : (flag == O_RDWR) ? "input and output." : "output.");
+            return -1;
+        }
+        return fdToUse; // return the "file descriptor"
 
     }
 
@@ -403,14 +534,18 @@ public class SystemIO {
      * @param fd the file descriptor of an open file
      */
     public static void closeFile(int fd) {
-        FileIOData.close(fd);
+        if (!ReverseExecution.isReplaying())
+            files().close(fd);
     }
 
     /**
-     * Reset all files -- clears out the file descriptor table.
+     * Reset all files -- clears out the file descriptor table. The changes
+     * made to file mappings are written back first.
      */
     public static void resetFiles() {
-        FileIOData.resetFiles();
+        if (!ReverseExecution.isReplaying())
+            Memory.getInstance().flushFileMappings();
+        files().resetFiles();
     }
 
     /**
@@ -419,7 +554,28 @@ public class SystemIO {
      * @return string containing message
      */
     public static String getFileErrorMessage() {
-        return fileErrorString;
+        return files().errorString;
+    }
+
+    // Takes a line of input from the keyboard or redirected input, or from the
+    // Run I/O window or a popup dialog with the given prompt when using the IDE.
+    // Replays of the program get the input logged, see ReverseExecution.
+    private static String readInput(String defaultInput, String prompt, int maxLength) {
+        flushOutput();
+        return ReverseExecution.input(() -> {
+            String input = defaultInput;
+            if (Main.getGUI() == null)
+                try {
+                    input = getInputReader().readLine();
+                }
+                catch (IOException e) {
+                }
+            else if (BooleanSettings.POPUP_SYSCALL_INPUT.isSet())
+                input = Main.getGUI().messagesPane.getInputString(prompt);
+            else
+                input = Main.getGUI().messagesPane.getInputString(maxLength);
+            return input;
+        });
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -433,134 +589,193 @@ public class SystemIO {
         return inputReader;
     }
 
+    private static FileIOData files() {
+        return MachineContext.current().getFiles();
+    }
+
+    // //////////////////////////////////////////////////////////////////////////////
+    // Collects the output of the print syscalls, so that it reaches System.out or the
+    // Run I/O window in chunks rather than a call (and in the IDE an event on the
+    // event dispatch thread) per item printed.  A flush is scheduled on a shared timer
+    // thread when the buffer stops being empty, hence the synchronization.
+    private static final class OutputBuffer {
+
+        private static Timer timer;
+
+        private final StringBuilder text = new StringBuilder();
+        private boolean flushScheduled = false;
+
+        synchronized void append(String string) {
+            text.append(string);
+            appended();
+        }
+
+        synchronized void append(char ch) {
+            text.append(ch);
+            appended();
+        }
+
+        synchronized void append(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++)
+                text.append((char) (bytes[i] & 0xFF));
+            appended();
+        }
+
+        private void appended() {
+            if (text.length() >= OUTPUT_BUFFER_LIMIT)
+                flush();
+            else if (!flushScheduled && text.length() > 0) {
+                flushScheduled = true;
+                synchronized (OutputBuffer.class) {
+                    if (timer == null)
+                        timer = new Timer("MARS output", true);
+                    timer.schedule(new TimerTask() {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    }, OUTPUT_FLUSH_DELAY);
+                }
+            }
+        }
+
+        synchronized void flush() {
+            flushScheduled = false;
+            if (text.length() == 0)
+                return;
+            String string = text.toString();
+            text.setLength(0);
+            if (Main.getGUI() == null)
+                System.out.print(string);
+            else
+                Main.getGUI().messagesPane.postRunMessage(string);
+        }
+    }
+
     // //////////////////////////////////////////////////////////////////////////////
     // Maintain information on files in use. The index to the arrays is the "file descriptor."
     // Ken Vollmar, August 2005
-    private static class FileIOData {
+    // One table per machine, see mars.MachineContext; opaque outside of this class.
+    // The table starts with room for INITIAL_FILES descriptors and doubles as needed,
+    // up to SYSCALL_MAXFILES.
+    public static final class FileIOData {
 
-        private static String[] fileNames = new String[SYSCALL_MAXFILES]; // The filenames in use. Null if file descriptor i is not in use.
-        private static int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
-        private static Closeable[] streams = new Closeable[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
+        private String[] fileNames = new String[INITIAL_FILES]; // The filenames in use. Null if file descriptor i is not in use.
+        private int[] fileFlags = new int[INITIAL_FILES]; // The flags of this file, 0=READ, 1=WRITE, 2=READ/WRITE. Invalid if this file descriptor is not in use.
+        private FileChannel[] channels = new FileChannel[INITIAL_FILES]; // The channels in use, associated with the filenames; none for STDIN, STDOUT and STDERR
+        private String errorString = "File operation OK"; // Description of last file error
+        private final OutputBuffer output = new OutputBuffer(); // Output of the print syscalls, to STDOUT
 
         // Reset all file information. Closes any open files and resets the arrays
-        private static void resetFiles() {
-            for (int i = 0; i < SYSCALL_MAXFILES; i++)
+        private void resetFiles() {
+            for (int i = 0; i < fileNames.length; i++)
                 close(i);
             setupStdio();
         }
 
         // DPS 8-Jan-2013
-        private static void setupStdio() {
+        private void setupStdio() {
             fileNames[STDIN] = "STDIN";
             fileNames[STDOUT] = "STDOUT";
             fileNames[STDERR] = "STDERR";
             fileFlags[STDIN] = O_RDONLY;
             fileFlags[STDOUT] = O_WRONLY;
             fileFlags[STDERR] = O_WRONLY;
-            streams[STDIN] = System.in;
-            streams[STDOUT] = System.out;
-            streams[STDERR] = System.err;
+            output.flush();
             System.out.flush();
             System.err.flush();
         }
 
-        // Preserve a stream that is in use
-        private static void setStreamInUse(int fd, Closeable s) {
-            streams[fd] = s;
-
+        // Preserve a channel that is in use
+        private void setChannelInUse(int fd, FileChannel channel) {
+            channels[fd] = channel;
         }
 
-        // Retrieve a stream for use
-        private static Closeable getStreamInUse(int fd) {
-            return streams[fd];
-
+        // Retrieve a channel for use
+        private FileChannel getChannelInUse(int fd) {
+            return channels[fd];
         }
 
         // Determine whether a given filename is already in use.
-        private static boolean filenameInUse(String requestedFilename) {
-            for (int i = 0; i < SYSCALL_MAXFILES; i++)
-                if (fileNames[i] != null
-                        && fileNames[i].equals(requestedFilename))
-                    // System.out.println("Mars.SystemIO.FileIOData.filenameInUse: rtng TRUE for " + requestedFilename);
+        private boolean filenameInUse(String requestedFilename) {
+            for (String fileName : fileNames)
+                if (fileName != null && fileName.equals(requestedFilename))
                     return true;
-
-            // System.out.println("Mars.SystemIO.FileIOData.filenameInUse: rtng TRUE for " + requestedFilename);
             return false;
-
         }
 
-        // Determine whether a given fd is already in use with the given flag.
-        private static boolean fdInUse(int fd, int flag) {
-            if (fd < 0 || fd >= SYSCALL_MAXFILES)
+        // Determine whether a given fd is open for reading (flag O_RDONLY)
+        // or for writing (flag O_WRONLY).
+        private boolean fdInUse(int fd, int flag) {
+            if (fd < 0 || fd >= fileNames.length || fileNames[fd] == null)
                 return false;
-            else if (fileNames[fd] != null && fileFlags[fd] == 0 && flag == 0) // O_RDONLY read-only
+            if (fileFlags[fd] == O_RDWR)
                 return true;
-            else if (fileNames[fd] != null && ((fileFlags[fd] & flag & O_WRONLY) == O_WRONLY))  // O_WRONLY write-only
-                return true;
-            return false;
-
+            if (flag == O_RDONLY)
+                return fileFlags[fd] == O_RDONLY;
+            return (fileFlags[fd] & O_WRONLY) == O_WRONLY;
         }
 
         // Close the file with file descriptor fd. No errors are recoverable -- if the user's
         // made an error in the call, it will come back to him.
-        private static void close(int fd) {
+        private void close(int fd) {
             // Can't close STDIN, STDOUT, STDERR, or invalid fd
-            if (fd <= STDERR || fd >= SYSCALL_MAXFILES)
+            if (fd <= STDERR || fd >= fileNames.length)
                 return;
 
             fileNames[fd] = null;
+            fileFlags[fd] = -1;
             // All this code will be executed only if the descriptor is open.
-            if (streams[fd] != null) {
-                int keepFlag = fileFlags[fd];
-                Object keepStream = streams[fd];
-                fileFlags[fd] = -1;
-                streams[fd] = null;
+            if (channels[fd] != null) {
+                FileChannel keepChannel = channels[fd];
+                channels[fd] = null;
                 try {
-                    if (keepFlag == O_RDONLY)
-                        ((FileInputStream) keepStream).close();
-                    else
-                        ((FileOutputStream) keepStream).close();
+                    keepChannel.close();
                 }
                 catch (IOException ioe) {
                     // not concerned with this exception
                 }
             }
-            else
-                fileFlags[fd] = -1; // just to be sure... streams[fd] known to be null
         }
 
         // Attempt to open a new file with the given flag, using the lowest available file descriptor.
         // Check that filename is not in use, flag is reasonable, and there is an available file descriptor.
         // Return: file descriptor in 0...(SYSCALL_MAXFILES-1), or -1 if error
-        private static int nowOpening(String filename, int flag) {
+        private int nowOpening(String filename, int flag) {
             int i = 0;
             if (filenameInUse(filename)) {
-                fileErrorString = "File name " + filename + " is already open.";
+                errorString = "File name " + filename + " is already open.";
                 return -1;
             }
 
-            if (flag != O_RDONLY && flag != O_WRONLY && flag != (O_WRONLY | O_APPEND)) // Only read and write are implemented
+            if (flag != O_RDONLY && flag != O_WRONLY && flag != (O_WRONLY | O_APPEND) && flag != O_RDWR) // Only read, write and read/write are implemented
             {
-                fileErrorString = "File name " + filename
+                errorString = "File name " + filename
                         + " has unknown requested opening flag";
                 return -1;
             }
 
-            while (fileNames[i] != null && i < SYSCALL_MAXFILES)
+            while (i < fileNames.length && fileNames[i] != null)
                 i++; // Attempt to find available file descriptor
 
-            if (i >= SYSCALL_MAXFILES) // no available file descriptors
-            {
-                fileErrorString = "File name " + filename
-                        + " exceeds maximum open file limit of "
-                        + SYSCALL_MAXFILES;
-                return -1;
+            if (i == fileNames.length) {
+                if (i >= SYSCALL_MAXFILES) // no available file descriptors
+                {
+                    errorString = "File name " + filename
+                            + " exceeds maximum open file limit of "
+                            + SYSCALL_MAXFILES;
+                    return -1;
+                }
+                int size = Math.min(2 * fileNames.length, SYSCALL_MAXFILES);
+                fileNames = Arrays.copyOf(fileNames, size);
+                fileFlags = Arrays.copyOf(fileFlags, size);
+                channels = Arrays.copyOf(channels, size);
             }
 
             // Must be OK -- put filename in table
             fileNames[i] = filename; // our table has its own copy of filename
             fileFlags[i] = flag;
-            fileErrorString = "File operation OK";
+            errorString = "File operation OK";
             return i;
 
         }
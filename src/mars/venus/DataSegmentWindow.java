@@ -441,7 +441,7 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
             dataData[row][ADDRESS_COLUMN] = NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase);
             for (int column = 1; column < NUMBER_OF_COLUMNS; column++) {
                 try {
-                    dataData[row][column] = NumberDisplayBaseChooser.formatNumber(Main.memory.getRawWord(address), valueBase);
+                    dataData[row][column] = NumberDisplayBaseChooser.formatNumber(Memory.getInstance().getRawWord(address), valueBase);
                 }
                 catch (AddressErrorException aee) {
                     dataData[row][column] = NumberDisplayBaseChooser.formatNumber(0, valueBase);
@@ -534,7 +534,7 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
             ((DataTableModel) dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase), row, ADDRESS_COLUMN);
             for (int column = 1; column < NUMBER_OF_COLUMNS; column++) {
                 try {
-                    ((DataTableModel) dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(Main.memory.getWordNoNotify(address), valueBase), row, column);
+                    ((DataTableModel) dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(Memory.getInstance().getWordNoNotify(address), valueBase), row, column);
                 }
                 catch (AddressErrorException aee) {
                     // Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
@@ -546,7 +546,7 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
                         if (!BooleanSettings.SELF_MODIFYING_CODE.isSet()) {
                             BooleanSettings.SELF_MODIFYING_CODE.setNoPersist(true);
                             try {
-                                displayValue = Main.memory.getWordNoNotify(address);
+                                displayValue = Memory.getInstance().getWordNoNotify(address);
                             }
                             catch (AddressErrorException e) {
                                 // Still got an exception?  Doesn't seem possible but if we drop through it will write default value 0.
@@ -954,7 +954,7 @@ public class DataSegmentWindow extends JInternalFrame implements Observer {
             //  occur only between MIPS instructions.
             synchronized (Main.memoryAndRegistersLock) {
                 try {
-                    Main.memory.setRawWord(address, val);
+                    Memory.getInstance().setRawWord(address, val);
                 }
                 // somehow, user was able to display out-of-range address.  Most likely to occur between
                 // stack base and Kernel.  Also text segment with self-modifying-code setting off.
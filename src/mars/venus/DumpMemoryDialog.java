@@ -79,7 +79,7 @@ final class DumpMemoryDialog extends JDialog {
             int[] bounds = Memory.getSegmentBounds(segmentName);
             int upperBound;
             try {
-                upperBound = Main.memory.getAddressOfFirstNull(bounds[0], bounds[1]);
+                upperBound = Memory.getInstance().getAddressOfFirstNull(bounds[0], bounds[1]);
             }
             catch (AddressErrorException aee) {
                 upperBound = bounds[0];
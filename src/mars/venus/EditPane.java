@@ -118,9 +118,9 @@ public class EditPane extends JPanel implements Observer {
                 : new JEditBasedTextArea(this, lineNumbers);
 
         if (source.getRoot() != null) {
-            Main.program = new MIPSprogram();
+            Main.setProgram(new MIPSprogram());
             try {
-                Main.program.readSource(source.toString());
+                Main.getProgram().readSource(source.toString());
             }
             catch (ProcessingException pe) {
             }
@@ -128,7 +128,7 @@ public class EditPane extends JPanel implements Observer {
 
         sourceCode.setSourceCode(source.getRoot() == null
                 ? ""
-                : Main.program.getSourceList()
+                : Main.getProgram().getSourceList()
                 .stream()
                 .reduce((s, t) -> s + newline + t)
                 .get(), true);
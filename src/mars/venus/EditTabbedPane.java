@@ -24,6 +24,7 @@ import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.filechooser.FileFilter;
 import mars.Main;
+import mars.assembler.Tokenizer;
 import mars.mips.hardware.RegisterFile;
 import mars.settings.BooleanSettings;
 import mars.settings.StringSettings;
@@ -115,6 +116,14 @@ public final class EditTabbedPane extends JTabbedPane implements Iterable<EditPa
         Main.getSettings().addObserver((EditPane) component);
     }
 
+    @Override
+    public void removeTabAt(int index) {
+        EditPane tab = getComponentAt(index);
+        super.removeTabAt(index);
+        // The file won't be reassembled from this tab anymore
+        Tokenizer.forgetFile(tab.getPath().toString());
+    }
+
     /**
      * Standard iterator, {@link Iterator#remove()} is implemented.
      *
@@ -85,9 +85,9 @@ class ExecuteAction extends AbstractAction {
                 return false;
         }
 
-        Main.program = new MIPSprogram();
+        Main.setProgram(new MIPSprogram());
         try {
-            MIPSprogramsToAssemble = Main.program.prepareFilesForAssembly(
+            MIPSprogramsToAssemble = Main.getProgram().prepareFilesForAssembly(
                     BooleanSettings.ASSEMBLE_ALL.isSet()
                             ? FilenameFinder.getFilenameList(current.getPath().getParent().toString(), Main.fileExtensions)
                             : Collections.singletonList(current.getPath().toString()),
@@ -106,7 +106,7 @@ class ExecuteAction extends AbstractAction {
                                 : ", ") + t;
                     }).get() + "\n\n");
 
-            ErrorList warnings = Main.program.assemble(MIPSprogramsToAssemble, extendedAssemblerEnabled, warningsAreErrors);
+            ErrorList warnings = Main.getProgram().assemble(MIPSprogramsToAssemble, extendedAssemblerEnabled, warningsAreErrors);
             if (warnings.warningsOccurred())
                 Main.getGUI().messagesPane.postMarsMessage(warnings.generateWarningReport());
         }
@@ -160,7 +160,7 @@ class ExecuteAction extends AbstractAction {
         // I am choosing the second approach although it will slow down the reset
         // operation.  The first approach requires additional Memory class methods.
         try {
-            Main.program.assemble(MIPSprogramsToAssemble,
+            Main.getProgram().assemble(MIPSprogramsToAssemble,
                     extendedAssemblerEnabled,
                     warningsAreErrors);
         }
@@ -7,9 +7,13 @@ import java.util.function.BiConsumer;
 import javax.swing.AbstractAction;
 import javax.swing.ImageIcon;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import mars.MachineContext;
 import mars.Main;
 import mars.settings.BooleanSettings;
+import mars.simulator.ReverseExecution;
 import mars.simulator.Simulator;
 
 /*
@@ -186,6 +190,74 @@ class GuiAction extends AbstractAction {
         Main.getGUI().textSegment.toggleBreakpoints();
     }
 
+    /**
+     * Take the program back by the number of instructions the user enters.
+     */
+    void stepBack(ActionEvent event) {
+        String input = JOptionPane.showInputDialog(Main.getGUI().mainFrame,
+                "Number of instructions to step back:", "Step back", JOptionPane.QUESTION_MESSAGE);
+        if (input == null)
+            return;
+        long steps;
+        try {
+            steps = Long.parseLong(input.trim());
+        }
+        catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(Main.getGUI().mainFrame, "Not a number of instructions: " + input);
+            return;
+        }
+        goBack(() -> ReverseExecution.getInstance().stepBack(steps));
+    }
+
+    /**
+     * Take the program back to the latest point it met a breakpoint.
+     */
+    void runBackToBreakpoint(ActionEvent event) {
+        goBack(ReverseExecution.getInstance()::runBackToBreakpoint);
+    }
+
+    /**
+     * Take the program back in time, see {@link ReverseExecution}. Going back
+     * replays the program, which is done on a thread of its own with the GUI
+     * in the running state, so that it can be paused or stopped like a run.
+     * The execute pane is updated once done.
+     *
+     * @param going what to do on that thread
+     */
+    static void goBack(Runnable going) {
+        VenusUI.setStarted(true);
+        Main.getGUI().messagesPane.setSelectedComponent(Main.getGUI().messagesPane.runTab);
+        Main.getGUI().textSegment.setCodeHighlighting(false);
+        Main.getGUI().textSegment.unhighlightAllSteps();
+        Main.getGUI().setMenuStateRunning();
+        MachineContext context = MachineContext.current();
+        new Thread(() -> context.run(() -> {
+            try {
+                going.run();
+            }
+            finally {
+                SwingUtilities.invokeLater(GuiAction::showAfterGoingBack);
+            }
+        }), "MIPS").start();
+    }
+
+    /**
+     * Update the execute pane after the program went back in time, see
+     * {@link ReverseExecution}.
+     */
+    static void showAfterGoingBack() {
+        VenusUI.setStarted(true);
+        Main.getGUI().messagesPane.setSelectedComponent(Main.getGUI().messagesPane.runTab);
+        Main.getGUI().registersTab.updateRegisters();
+        Main.getGUI().coprocessor1Tab.updateRegisters();
+        Main.getGUI().coprocessor0Tab.updateRegisters();
+        Main.getGUI().dataSegment.updateValues();
+        Main.getGUI().textSegment.setCodeHighlighting(true);
+        Main.getGUI().textSegment.highlightStepAtPC();
+        Main.getGUI().setMenuStateRunnable();
+        VenusUI.setReset(false);
+    }
+
     void toggleWarningsAreErrors(ActionEvent e) {
         BooleanSettings.WARNINGS_ARE_ERRORS.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
     }
@@ -207,6 +279,22 @@ class GuiAction extends AbstractAction {
         BooleanSettings.SELF_MODIFYING_CODE.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
     }
 
+    void togglePredecodedExecution(ActionEvent e) {
+        BooleanSettings.PREDECODED_EXECUTION.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
+    }
+
+    void toggleBlockCompilation(ActionEvent e) {
+        BooleanSettings.BLOCK_COMPILATION.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
+    }
+
+    void toggleUnlimitedBacksteps(ActionEvent e) {
+        BooleanSettings.UNLIMITED_BACKSTEPS.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
+    }
+
+    void toggleReverseExecution(ActionEvent e) {
+        BooleanSettings.REVERSE_EXECUTION.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
+    }
+
     void toggleExtendedInstructionSet(ActionEvent e) {
         BooleanSettings.EXTENDED_ASSEMBLER.set(((JCheckBoxMenuItem) e.getSource()).isSelected());
     }
@@ -308,7 +308,7 @@ public class LabelsWindow extends JInternalFrame {
         // Associated MIPSprogram object.  If null, this represents global symbol table.
         public JSymbolTable(MIPSprogram program) {
             symbolTable = (program == null)
-                    ? Main.symbolTable
+                    ? Main.getSymbolTable()
                     : program.getLocalSymbolTable();
             tableName = (program == null)
                     ? "[Global]"
@@ -154,7 +154,7 @@ final class MemoryConfigurationDialog extends JDialog implements ActionListener
             namesPanel.add(nameDisplay[i]);
             valuesPanel.add(addressDisplay[i]);
         }
-        setConfigDisplay(Main.memory.getCurrentConfig());
+        setConfigDisplay(Memory.getInstance().getCurrentConfig());
         Box columns = Box.createHorizontalBox();
         columns.add(valuesPanel);
         columns.add(Box.createHorizontalStrut(6));
@@ -172,7 +172,7 @@ final class MemoryConfigurationDialog extends JDialog implements ActionListener
     }
 
     private void applyConfig() {
-        if (Main.memory.configure(selectedConfig.getConfiguration())) {
+        if (Memory.getInstance().configure(selectedConfig.getConfiguration())) {
             StringSettings.MEMORY_CONFIGURATION.set(selectedConfig.getConfiguration().getID());
             Main.getGUI().registersTab.clearHighlighting();
             Main.getGUI().registersTab.updateRegisters();
@@ -221,7 +221,7 @@ final class MemoryConfigurationDialog extends JDialog implements ActionListener
         private final Memory.Configuration configuration;
 
         public ConfigurationButton(Memory.Configuration config) {
-            super(config.getName(), config == Main.memory.getCurrentConfig());
+            super(config.getName(), config == Memory.getInstance().getCurrentConfig());
             this.configuration = config;
         }
 
@@ -8,26 +8,24 @@ import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
 import javax.swing.Box;
 import javax.swing.JButton;
 import javax.swing.JDialog;
+import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 import javax.swing.ScrollPaneConstants;
-import javax.swing.SwingUtilities;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
+import javax.swing.Timer;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.NavigationFilter;
-import javax.swing.text.NavigationFilter.FilterBypass;
-import javax.swing.text.Position.Bias;
-import javax.swing.undo.UndoableEdit;
 import mars.ErrorList;
 import mars.Main;
+import mars.settings.StringSettings;
 import mars.simulator.Simulator;
 
 /*
@@ -65,7 +63,8 @@ import mars.simulator.Simulator;
  */
 public class MessagesPane extends JTabbedPane {
 
-    JTextArea assembleArea, runArea;
+    JTextArea assembleArea;
+    RunIOView runArea;
     public JPanel assembleTab, runTab;
     // These constants are designed to keep scrolled contents of the 
     // two message areas from becoming overwhelmingly large (which
@@ -75,6 +74,12 @@ public class MessagesPane extends JTabbedPane {
     // must obviously be smaller than the former.
     public static final int MAXIMUM_SCROLLED_CHARACTERS = Main.maximumMessageCharacters;
     public static final int NUMBER_OF_CHARACTERS_TO_CUT = Main.maximumMessageCharacters / 10; // 10%
+    // Run output is gathered here by postRunMessage, and shown at most this
+    // many milliseconds later, so that the Run I/O tab is updated once per
+    // frame however often a running program prints.
+    private static final int RUN_OUTPUT_DELAY = 1000 / 60;
+    private final StringBuilder pendingRunOutput = new StringBuilder();
+    private final Timer runOutputTimer = new Timer(RUN_OUTPUT_DELAY, (ActionEvent e) -> showRunOutput());
 
     /**
      * Constructor for the class, sets up two fresh tabbed text areas for
@@ -84,15 +89,16 @@ public class MessagesPane extends JTabbedPane {
         super();
         setMinimumSize(new Dimension(0, 0));
         assembleArea = new JTextArea();
-        runArea = new JTextArea();
+        // The Run I/O area keeps the latest MessageLimit characters only,
+        // and paints the lines in view only.
+        runArea = new RunIOView(MAXIMUM_SCROLLED_CHARACTERS, Main.spillRunOutput);
+        runOutputTimer.setRepeats(false);
         assembleArea.setEditable(false);
-        runArea.setEditable(false);
         // Set both text areas to mono font.  For assembleArea pane, will make
         // messages more readable.  For runArea pane, will allow properly aligned
         // "text graphics" - DPS 15 Dec 2008
         Font monoFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
         assembleArea.setFont(monoFont);
-        runArea.setFont(monoFont);
 
         JButton assembleTabClearButton = new JButton("Clear");
         assembleTabClearButton.setToolTipText("Clear the Mars Messages area");
@@ -169,10 +175,16 @@ public class MessagesPane extends JTabbedPane {
         JButton runTabClearButton = new JButton("Clear");
         runTabClearButton.setToolTipText("Clear the Run I/O area");
         runTabClearButton.addActionListener((ActionEvent e) -> {
-            runArea.setText("");
+            showRunOutput();
+            runArea.clear();
+        });
+        JButton runTabSaveButton = new JButton("Save...");
+        runTabSaveButton.setToolTipText("Save the Run I/O area to a file");
+        runTabSaveButton.addActionListener((ActionEvent e) -> {
+            saveRunOutput();
         });
         runTab = new JPanel(new BorderLayout());
-        runTab.add(createBoxForButton(runTabClearButton), BorderLayout.WEST);
+        runTab.add(createBoxForButton(runTabClearButton, runTabSaveButton), BorderLayout.WEST);
         runTab.add(new JScrollPane(runArea, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED,
                 ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED), BorderLayout.CENTER);
         this.addTab("Mars Messages", assembleTab);
@@ -181,19 +193,46 @@ public class MessagesPane extends JTabbedPane {
         this.setToolTipTextAt(1, "Simulated MIPS console input and output");
     }
 
-    // Center given button in a box, centered vertically and 6 pixels on left and right
-    private Box createBoxForButton(JButton button) {
-        Box buttonRow = Box.createHorizontalBox();
-        buttonRow.add(Box.createHorizontalStrut(6));
-        buttonRow.add(button);
-        buttonRow.add(Box.createHorizontalStrut(6));
+    // Center given buttons in a box, stacked vertically and 6 pixels on left and right
+    private Box createBoxForButton(JButton... buttons) {
         Box buttonBox = Box.createVerticalBox();
         buttonBox.add(Box.createVerticalGlue());
-        buttonBox.add(buttonRow);
+        for (JButton button : buttons) {
+            Box buttonRow = Box.createHorizontalBox();
+            buttonRow.add(Box.createHorizontalStrut(6));
+            buttonRow.add(button);
+            buttonRow.add(Box.createHorizontalStrut(6));
+            buttonBox.add(buttonRow);
+        }
         buttonBox.add(Box.createVerticalGlue());
         return buttonBox;
     }
 
+    // User has clicked the "Save..." button of the Run I/O tab, so launch a
+    // file chooser and write the whole run output to the chosen file.
+    private void saveRunOutput() {
+        showRunOutput();
+        JFileChooser saveDialog = new JFileChooser(StringSettings.SAVE_DIRECTORY.get());
+        saveDialog.setDialogTitle("Save Run I/O");
+        while (saveDialog.showSaveDialog(Main.getGUI().mainFrame) == JFileChooser.APPROVE_OPTION) {
+            File theFile = saveDialog.getSelectedFile();
+            if (theFile.exists()) {
+                int overwrite = JOptionPane.showConfirmDialog(Main.getGUI().mainFrame, "File " + theFile.getName() + " already exists.  Do you wish to overwrite it?", "Overwrite existing file?", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (overwrite == JOptionPane.NO_OPTION)
+                    continue;
+                if (overwrite != JOptionPane.YES_OPTION)
+                    return;
+            }
+            try {
+                runArea.save(theFile);
+            }
+            catch (IOException e) {
+                JOptionPane.showMessageDialog(Main.getGUI().mainFrame, "Error writing " + theFile.getName() + ": " + e.getMessage(), "MARS", JOptionPane.ERROR_MESSAGE);
+            }
+            return;
+        }
+    }
+
     /**
      * Will select the Mars Messages tab error message that matches the given
      * specifications, if it is found. Matching is done by constructing a string
@@ -252,27 +291,32 @@ public class MessagesPane extends JTabbedPane {
      *
      * @param message String to append to runtime display text
      */
-    // The work of this method is done by "invokeLater" because
-    // its JTextArea is maintained by the main event thread
-    // but also used, via this method, by the execution thread for 
-    // "print" syscalls. "invokeLater" schedules the code to be
-    // runArea under the event-processing thread no matter what.
+    // The work of this method is done later, on the event-processing thread,
+    // because runArea is maintained by that thread but also used, via this
+    // method, by the execution thread for "print" syscalls. Messages posted
+    // within RUN_OUTPUT_DELAY of each other are appended at once.
     // DPS, 23 Aug 2005.
     public void postRunMessage(final String message) {
-        SwingUtilities.invokeLater(() -> {
-            setSelectedComponent(runTab);
-            runArea.append(message);
-            // can do some crude cutting here.  If the document gets "very large",
-            // let's cut off the oldest text. This will limit scrolling but the limit
-            // can be set reasonably high.
-            if (runArea.getDocument().getLength() > MAXIMUM_SCROLLED_CHARACTERS)
-                try {
-                    runArea.getDocument().remove(0, NUMBER_OF_CHARACTERS_TO_CUT);
-                }
-                catch (BadLocationException ble) {
-                    // only if NUMBER_OF_CHARACTERS_TO_CUT > MAXIMUM_SCROLLED_CHARACTERS
-                }
-        });
+        synchronized (pendingRunOutput) {
+            boolean idle = pendingRunOutput.length() == 0;
+            pendingRunOutput.append(message);
+            if (idle)
+                runOutputTimer.start();
+        }
+    }
+
+    // Appends the run output posted so far to runArea. Must be invoked from
+    // the GUI thread.
+    private void showRunOutput() {
+        String output;
+        synchronized (pendingRunOutput) {
+            output = pendingRunOutput.toString();
+            pendingRunOutput.setLength(0);
+        }
+        if (output.isEmpty())
+            return;
+        setSelectedComponent(runTab);
+        runArea.append(output);
     }
 
     /**
@@ -338,95 +382,25 @@ public class MessagesPane extends JTabbedPane {
     class Asker implements Runnable {
 
         ArrayBlockingQueue<String> resultQueue = new ArrayBlockingQueue<>(1);
-        int initialPos;
         int maxLen;
 
         Asker(int maxLen) {
             this.maxLen = maxLen;
-            // initialPos will be set in runArea()
         }
-        final DocumentListener listener = new DocumentListener() {
-            @Override
-            public void insertUpdate(final DocumentEvent e) {
-                EventQueue.invokeLater(() -> {
-                    try {
-                        String inserted = e.getDocument().getText(e.getOffset(), e.getLength());
-                        int i = inserted.indexOf('\n');
-                        if (i >= 0) {
-                            int offset = e.getOffset() + i;
-                            if (offset + 1 == e.getDocument().getLength())
-                                returnResponse();
-                            else {
-                                // remove the '\n' and put it at the end
-                                e.getDocument().remove(offset, 1);
-                                e.getDocument().insertString(e.getDocument().getLength(), "\n", null);
-                                // insertUpdate will be called again, since we have inserted the '\n' at the end
-                            }
-                        }
-                        else if (maxLen >= 0 && e.getDocument().getLength() - initialPos >= maxLen)
-                            returnResponse();
-                    }
-                    catch (BadLocationException ex) {
-                        returnResponse();
-                    }
-                });
-            }
-
-            @Override
-            public void removeUpdate(final DocumentEvent e) {
-                EventQueue.invokeLater(() -> {
-                    if ((e.getDocument().getLength() < initialPos || e.getOffset() < initialPos) && e instanceof UndoableEdit) {
-                        ((UndoableEdit) e).undo();
-                        runArea.setCaretPosition(e.getOffset() + e.getLength());
-                    }
-                });
-            }
-
-            @Override
-            public void changedUpdate(DocumentEvent e) {
-            }
-        };
-        final NavigationFilter navigationFilter = new NavigationFilter() {
-            @Override
-            public void moveDot(FilterBypass fb, int dot, Bias bias) {
-                if (dot < initialPos)
-                    dot = Math.min(initialPos, runArea.getDocument().getLength());
-                fb.moveDot(dot, bias);
-            }
-
-            @Override
-            public void setDot(FilterBypass fb, int dot, Bias bias) {
-                if (dot < initialPos)
-                    dot = Math.min(initialPos, runArea.getDocument().getLength());
-                fb.setDot(dot, bias);
-            }
-        };
         final Simulator.StopListener stopListener = (Simulator s) -> {
-            returnResponse();
+            EventQueue.invokeLater(runArea::finishInput);
         };
 
         @Override
         public void run() { // must be invoked from the GUI thread
+            showRunOutput();
             setSelectedComponent(runTab);
-            runArea.setEditable(true);
-            runArea.requestFocusInWindow();
-            runArea.setCaretPosition(runArea.getDocument().getLength());
-            initialPos = runArea.getCaretPosition();
-            runArea.setNavigationFilter(navigationFilter);
-            runArea.getDocument().addDocumentListener(listener);
             Simulator.getInstance().addStopListener(stopListener);
+            runArea.beginInput(maxLen, this::returnResponse);
         }
 
-        void returnResponse() {
-            try {
-                int p = Math.min(initialPos, runArea.getDocument().getLength());
-                int l = Math.min(runArea.getDocument().getLength() - p, maxLen >= 0 ? maxLen : Integer.MAX_VALUE);
-                resultQueue.offer(runArea.getText(p, l));
-            }
-            catch (BadLocationException ex) {
-                // this cannot happen
-                resultQueue.offer("");
-            }
+        void returnResponse(String response) {
+            resultQueue.offer(response);
         }
 
         String response() {
@@ -439,10 +413,7 @@ public class MessagesPane extends JTabbedPane {
             }
             finally {
                 EventQueue.invokeLater(() -> {
-                    runArea.getDocument().removeDocumentListener(listener);
-                    runArea.setEditable(false);
-                    runArea.setNavigationFilter(null);
-                    runArea.setCaretPosition(runArea.getDocument().getLength());
+                    runArea.finishInput();
                     Simulator.getInstance().removeStopListener(stopListener);
                 });
             }
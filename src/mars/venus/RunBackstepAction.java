@@ -11,6 +11,7 @@ import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Coprocessor1;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.RegisterFile;
+import mars.simulator.ReverseExecution;
 
 /*
  Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
@@ -66,17 +67,21 @@ public class RunBackstepAction extends AbstractAction {
             JOptionPane.showMessageDialog(Main.getGUI().mainFrame, "The program must be assembled before it can be run.");
             return;
         }
+        // With an execution history, going back by replaying keeps it in step
+        if (ReverseExecution.getInstance().canStepBack()) {
+            GuiAction.goBack(() -> ReverseExecution.getInstance().stepBack(1));
+            return;
+        }
         VenusUI.setStarted(true);
         Main.getGUI().messagesPane.setSelectedComponent(Main.getGUI().messagesPane.runTab);
         Main.getGUI().textSegment.setCodeHighlighting(true);
-
         if (Main.isBackSteppingEnabled()) {
-            boolean inDelaySlot = Main.program.getBackStepper().inDelaySlot(); // Added 25 June 2007
+            boolean inDelaySlot = Main.getProgram().getBackStepper().inDelaySlot(); // Added 25 June 2007
             Memory.getInstance().addObserver(Main.getGUI().dataSegment);
             RegisterFile.addRegistersObserver(Main.getGUI().registersTab);
             Coprocessor0.addRegistersObserver(Main.getGUI().coprocessor0Tab);
             Coprocessor1.addRegistersObserver(Main.getGUI().coprocessor1Tab);
-            Main.program.getBackStepper().backStep();
+            Main.getProgram().getBackStepper().backStep();
             Memory.getInstance().deleteObserver(Main.getGUI().dataSegment);
             RegisterFile.deleteRegistersObserver(Main.getGUI().registersTab);
             Main.getGUI().registersTab.updateRegisters();
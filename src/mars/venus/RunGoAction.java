@@ -78,7 +78,7 @@ public class RunGoAction extends AbstractAction {
                 Main.getGUI().textSegment.unhighlightAllSteps();
                 Main.getGUI().setMenuStateRunning();
                 try {
-                    Main.program.simulateFromPC(
+                    Main.getProgram().simulateFromPC(
                             Main.getGUI().textSegment.getSortedBreakPointsArray(),
                             maxSteps,
                             this);
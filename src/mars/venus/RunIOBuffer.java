@@ -0,0 +1,235 @@
+package mars.venus;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * The text of the Run I/O tab, as a list of lines. Only the latest
+ * characters, up to a limit, are retained: complete lines are kept in a ring,
+ * so that dropping the oldest ones costs no copying. Dropped lines can be
+ * spilled to a temporary file, so that the whole text can still be saved.
+ * <p>
+ * The last line is the one being written to; there is always one, possibly
+ * empty. Used on the event dispatch thread only.
+ *
+ * @see RunIOView
+ */
+final class RunIOBuffer {
+
+    /**
+     * Tab stops are this many columns apart, as in a JTextArea.
+     */
+    static final int TAB_SIZE = 8;
+
+    private final int characterLimit;
+    private final boolean spilling;
+    private String[] lines = new String[64]; // ring of complete lines
+    private int first = 0; // index in lines of the oldest line
+    private int count = 0; // number of complete lines
+    private final StringBuilder lastLine = new StringBuilder();
+    private int lastLineColumns = 0;
+    private long characters = 0; // retained, counting line ends
+    private int longestLine = 0; // in columns; dropping lines does not shorten it
+    private File spillFile;
+    private Writer spill;
+
+    /**
+     * @param characterLimit number of characters retained, line ends included
+     * @param spilling whether dropped text is to be kept in a temporary file
+     */
+    RunIOBuffer(int characterLimit, boolean spilling) {
+        this.characterLimit = Math.max(characterLimit, 1);
+        this.spilling = spilling;
+    }
+
+    /**
+     * Number of lines, the last one included.
+     */
+    int getLineCount() {
+        return count + 1;
+    }
+
+    /**
+     * The line with the given index, the oldest line retained being 0.
+     */
+    String getLine(int index) {
+        return (index == count) ? lastLine.toString() : lines[(first + index) % lines.length];
+    }
+
+    /**
+     * Number of columns taken by the longest line, tabs expanded.
+     */
+    int getLongestLine() {
+        return longestLine;
+    }
+
+    /**
+     * Number of columns taken by the last line, tabs expanded.
+     */
+    int getLastLineColumns() {
+        return lastLineColumns;
+    }
+
+    /**
+     * Appends text, which may contain any number of line ends, then drops the
+     * oldest text while over the limit.
+     *
+     * @return number of complete lines dropped
+     */
+    int append(String text) {
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+            lastLine.append(text, start, end);
+            lastLineColumns = columns(lastLineColumns, text, start, end);
+            push(lastLine.toString());
+            lastLine.setLength(0);
+            lastLineColumns = 0;
+            start = end + 1;
+        }
+        lastLine.append(text, start, text.length());
+        lastLineColumns = columns(lastLineColumns, text, start, text.length());
+        longestLine = Math.max(longestLine, lastLineColumns);
+        characters += text.length();
+        return trim();
+    }
+
+    /**
+     * Drops all text, spilled text included.
+     */
+    void clear() {
+        lines = new String[64];
+        first = count = 0;
+        lastLine.setLength(0);
+        lastLineColumns = longestLine = 0;
+        characters = 0;
+        closeSpill();
+        if (spillFile != null)
+            spillFile.delete();
+        spillFile = null;
+    }
+
+    /**
+     * Writes the whole text to the given file: what was spilled, followed by
+     * the lines retained.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void save(File file) throws IOException {
+        if (spill != null)
+            spill.flush();
+        if (spillFile != null)
+            Files.copy(spillFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (Writer out = new BufferedWriter(new FileWriter(file, spillFile != null))) {
+            for (int i = 0; i < count; i++)
+                out.write(getLine(i) + "\n");
+            out.write(lastLine.toString());
+        }
+    }
+
+    /**
+     * Column reached by the given part of a line, starting from the given
+     * column, tabs expanded.
+     */
+    static int columns(int column, CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++)
+            column = (text.charAt(i) == '\t') ? (column / TAB_SIZE + 1) * TAB_SIZE : column + 1;
+        return column;
+    }
+
+    private void push(String line) {
+        longestLine = Math.max(longestLine, lastLineColumns);
+        if (count == lines.length) {
+            String[] grown = new String[lines.length * 2];
+            for (int i = 0; i < count; i++)
+                grown[i] = lines[(first + i) % lines.length];
+            lines = grown;
+            first = 0;
+        }
+        lines[(first + count) % lines.length] = line;
+        count++;
+    }
+
+    private int trim() {
+        int dropped = 0;
+        while (characters > characterLimit && count > 0) {
+            String line = lines[first];
+            lines[first] = null;
+            first = (first + 1) % lines.length;
+            count--;
+            dropped++;
+            characters -= line.length() + 1;
+            spill(line + "\n");
+        }
+        if (characters > characterLimit) {
+            // a single line longer than the limit
+            int excess = (int) (characters - characterLimit);
+            spill(lastLine.substring(0, excess));
+            lastLine.delete(0, excess);
+            lastLineColumns = columns(0, lastLine, 0, lastLine.length());
+            characters = characterLimit;
+        }
+        return dropped;
+    }
+
+    private void spill(String text) {
+        if (!spilling)
+            return;
+        try {
+            if (spill == null) {
+                if (spillFile == null) {
+                    spillFile = File.createTempFile("mars-runio", ".txt");
+                    spillFile.deleteOnExit();
+                }
+                spill = new BufferedWriter(new FileWriter(spillFile, true));
+            }
+            spill.write(text);
+        }
+        catch (IOException e) {
+            // Keep going without the spill file, the text retained is still shown.
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        if (spill != null)
+            try {
+                spill.close();
+            }
+            catch (IOException e) {
+                // nothing more to save
+            }
+        spill = null;
+    }
+}
@@ -0,0 +1,466 @@
+package mars.venus;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.UIManager;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * The text area of the Run I/O tab. Text is kept in a {@link RunIOBuffer}
+ * and only the lines in view are painted, so that appending costs the same
+ * however much text is already shown. Supports selecting and copying text,
+ * and typing the input asked for by a running program.
+ * <p>
+ * To be placed in a {@link javax.swing.JScrollPane}, and used on the event
+ * dispatch thread only.
+ */
+final class RunIOView extends JComponent implements Scrollable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RunIOBuffer buffer;
+    private final int lineHeight, charWidth, ascent;
+    // Selection ends, as line index and character offset in the line
+    private int anchorLine, anchorOffset, leadLine, leadOffset;
+    // Input being typed, if asked for
+    private StringBuilder input;
+    private int inputLimit;
+    private Consumer<String> inputDone;
+
+    /**
+     * @param characterLimit number of characters retained
+     * @param spilling whether text no longer retained is to be kept in a
+     * temporary file, for {@link #save(File)}
+     */
+    RunIOView(int characterLimit, boolean spilling) {
+        buffer = new RunIOBuffer(characterLimit, spilling);
+        Font monoFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+        setFont(monoFont);
+        FontMetrics metrics = getFontMetrics(monoFont);
+        lineHeight = metrics.getHeight();
+        charWidth = metrics.charWidth('m');
+        ascent = metrics.getAscent();
+        setOpaque(true);
+        setBackground(uiColor("TextArea.background", Color.WHITE));
+        setForeground(uiColor("TextArea.foreground", Color.BLACK));
+        setFocusable(true);
+        setAutoscrolls(true);
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                Point position = positionAt(e.getPoint());
+                leadLine = position.y;
+                leadOffset = position.x;
+                if (!e.isShiftDown()) {
+                    anchorLine = leadLine;
+                    anchorOffset = leadOffset;
+                }
+                repaint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                Point position = positionAt(e.getPoint());
+                leadLine = position.y;
+                leadOffset = position.x;
+                scrollRectToVisible(new Rectangle(e.getX(), e.getY(), 1, 1));
+                repaint();
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if ((e.getModifiersEx() & Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()) == 0)
+                    return;
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_C:
+                        copy();
+                        break;
+                    case KeyEvent.VK_A:
+                        selectAll();
+                        break;
+                    case KeyEvent.VK_V:
+                        paste();
+                        break;
+                }
+            }
+
+            @Override
+            public void keyTyped(KeyEvent e) {
+                if (input != null && !e.isMetaDown())
+                    type(e.getKeyChar());
+            }
+        });
+        addFocusListener(new FocusListener() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                repaint();
+            }
+
+            @Override
+            public void focusLost(FocusEvent e) {
+                repaint();
+            }
+        });
+    }
+
+    /**
+     * Appends text to the end, scrolling along if the end was in view.
+     */
+    void append(String text) {
+        if (text.isEmpty())
+            return;
+        boolean following = isEndInView();
+        int dropped = buffer.append(text);
+        if (dropped > 0) {
+            anchorLine -= dropped;
+            leadLine -= dropped;
+            if (anchorLine < 0) {
+                anchorLine = 0;
+                anchorOffset = 0;
+            }
+            if (leadLine < 0) {
+                leadLine = 0;
+                leadOffset = 0;
+            }
+        }
+        contentChanged(following, dropped);
+    }
+
+    /**
+     * Removes all text. Input being typed is kept.
+     */
+    void clear() {
+        buffer.clear();
+        anchorLine = anchorOffset = leadLine = leadOffset = 0;
+        contentChanged(true, 0);
+    }
+
+    /**
+     * Writes all text to the given file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void save(File file) throws IOException {
+        buffer.save(file);
+    }
+
+    /**
+     * Lets the user type input after the last line. Input ends when Enter is
+     * pressed or when the given number of characters has been typed; then
+     * it is added to the text and passed to the given callback, with a
+     * trailing line end in the former case.
+     *
+     * @param maxLength maximum number of characters, -1 for no limit
+     * @param done receives the input
+     */
+    void beginInput(int maxLength, Consumer<String> done) {
+        input = new StringBuilder();
+        inputLimit = maxLength;
+        inputDone = done;
+        requestFocusInWindow();
+        contentChanged(true, 0);
+        if (inputLimit == 0)
+            finishInput();
+    }
+
+    /**
+     * Ends the input being typed, if any, as if its maximum length had been
+     * reached.
+     */
+    void finishInput() {
+        if (input != null)
+            endInput(input.toString());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Scrollable
+
+    @Override
+    public Dimension getPreferredSize() {
+        Insets insets = getInsets();
+        int columns = buffer.getLongestLine();
+        if (input != null)
+            columns = Math.max(columns, RunIOBuffer.columns(buffer.getLastLineColumns(), input, 0, input.length()));
+        return new Dimension((columns + 1) * charWidth + insets.left + insets.right,
+                buffer.getLineCount() * lineHeight + insets.top + insets.bottom);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return (orientation == SwingConstants.VERTICAL) ? lineHeight : charWidth;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return (orientation == SwingConstants.VERTICAL) ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Painting
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        if (hints instanceof Map)
+            ((Graphics2D) g).addRenderingHints((Map<?, ?>) hints);
+        else
+            ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(getFont());
+
+        Insets insets = getInsets();
+        int lastLine = buffer.getLineCount() - 1;
+        int fromLine = Math.max(0, (clip.y - insets.top) / lineHeight);
+        int toLine = Math.min(lastLine, (clip.y + clip.height - insets.top) / lineHeight);
+        int fromColumn = Math.max(0, (clip.x - insets.left) / charWidth);
+        int toColumn = (clip.x + clip.width - insets.left) / charWidth + 1;
+        boolean selecting = anchorLine != leadLine || anchorOffset != leadOffset;
+        boolean startFirst = anchorLine < leadLine || (anchorLine == leadLine && anchorOffset < leadOffset);
+        int startLine = startFirst ? anchorLine : leadLine;
+        int startOffset = startFirst ? anchorOffset : leadOffset;
+        int endLine = startFirst ? leadLine : anchorLine;
+        int endOffset = startFirst ? leadOffset : anchorOffset;
+        Color selectionColor = uiColor("TextArea.selectionBackground", new Color(184, 207, 229));
+
+        for (int i = fromLine; i <= toLine; i++) {
+            String line = buffer.getLine(i);
+            int y = insets.top + i * lineHeight;
+            if (selecting && i >= startLine && i <= endLine) {
+                int from = (i == startLine) ? RunIOBuffer.columns(0, line, 0, Math.min(startOffset, line.length())) : 0;
+                int to = (i == endLine)
+                        ? RunIOBuffer.columns(0, line, 0, Math.min(endOffset, line.length()))
+                        : RunIOBuffer.columns(0, line, 0, line.length()) + 1;
+                g.setColor(selectionColor);
+                g.fillRect(insets.left + from * charWidth, y, (to - from) * charWidth, lineHeight);
+            }
+            g.setColor(getForeground());
+            if (i == lastLine && input != null)
+                line += input;
+            String shown = expandTabs(line);
+            if (fromColumn < shown.length())
+                g.drawString(shown.substring(fromColumn, Math.min(toColumn, shown.length())),
+                        insets.left + fromColumn * charWidth, y + ascent);
+            if (i == lastLine && input != null && isFocusOwner())
+                g.fillRect(insets.left + shown.length() * charWidth, y, 1, lineHeight);
+        }
+    }
+
+    private static String expandTabs(String line) {
+        if (line.indexOf('\t') < 0)
+            return line;
+        StringBuilder expanded = new StringBuilder(line.length() + RunIOBuffer.TAB_SIZE);
+        for (int i = 0; i < line.length(); i++)
+            if (line.charAt(i) == '\t')
+                do
+                    expanded.append(' ');
+                while (expanded.length() % RunIOBuffer.TAB_SIZE != 0);
+            else
+                expanded.append(line.charAt(i));
+        return expanded.toString();
+    }
+
+    private static Color uiColor(String key, Color fallback) {
+        Color color = UIManager.getColor(key);
+        return (color == null) ? fallback : color;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Selection and input
+
+    // Line index (y) and character offset (x) nearest to the given point
+    private Point positionAt(Point point) {
+        Insets insets = getInsets();
+        int line = Math.max(0, Math.min(buffer.getLineCount() - 1, (point.y - insets.top) / lineHeight));
+        String text = buffer.getLine(line);
+        int column = Math.max(0, (point.x - insets.left + charWidth / 2) / charWidth);
+        int offset = 0;
+        for (int reached = 0; offset < text.length(); offset++) {
+            reached = RunIOBuffer.columns(reached, text, offset, offset + 1);
+            if (reached > column)
+                break;
+        }
+        return new Point(offset, line);
+    }
+
+    private String getSelectedText() {
+        boolean startFirst = anchorLine < leadLine || (anchorLine == leadLine && anchorOffset < leadOffset);
+        int startLine = startFirst ? anchorLine : leadLine;
+        int startOffset = startFirst ? anchorOffset : leadOffset;
+        int endLine = startFirst ? leadLine : anchorLine;
+        int endOffset = startFirst ? leadOffset : anchorOffset;
+        StringBuilder selected = new StringBuilder();
+        for (int i = startLine; i <= endLine && i < buffer.getLineCount(); i++) {
+            String line = buffer.getLine(i);
+            int from = (i == startLine) ? Math.min(startOffset, line.length()) : 0;
+            int to = (i == endLine) ? Math.min(endOffset, line.length()) : line.length();
+            selected.append(line, from, Math.max(from, to));
+            if (i < endLine)
+                selected.append('\n');
+        }
+        return selected.toString();
+    }
+
+    private void selectAll() {
+        anchorLine = anchorOffset = 0;
+        leadLine = buffer.getLineCount() - 1;
+        leadOffset = buffer.getLine(leadLine).length();
+        repaint();
+    }
+
+    private void copy() {
+        String selected = getSelectedText();
+        if (!selected.isEmpty())
+            getToolkit().getSystemClipboard().setContents(new StringSelection(selected), null);
+    }
+
+    private void paste() {
+        if (input == null)
+            return;
+        String pasted;
+        try {
+            pasted = (String) getToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+        }
+        catch (UnsupportedFlavorException | IOException | IllegalStateException e) {
+            return;
+        }
+        for (int i = 0; i < pasted.length() && input != null; i++)
+            if (pasted.charAt(i) != '\r')
+                type(pasted.charAt(i));
+    }
+
+    private void type(char c) {
+        if (c == '\n')
+            endInput(input + "\n");
+        else if (c == '\b') {
+            if (input.length() > 0)
+                input.setLength(input.length() - 1);
+            contentChanged(true, 0);
+        }
+        else if (c == '\t' || (c >= ' ' && c != KeyEvent.VK_DELETE && c != KeyEvent.CHAR_UNDEFINED)) {
+            input.append(c);
+            if (inputLimit >= 0 && input.length() >= inputLimit)
+                endInput(input.toString());
+            else
+                contentChanged(true, 0);
+        }
+    }
+
+    private void endInput(String response) {
+        Consumer<String> done = inputDone;
+        input = null;
+        inputDone = null;
+        append(response);
+        done.accept(response);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Scrolling
+
+    private boolean isEndInView() {
+        if (!(getParent() instanceof JViewport))
+            return true;
+        JViewport viewport = (JViewport) getParent();
+        return viewport.getViewPosition().y + viewport.getExtentSize().height >= getHeight() - lineHeight;
+    }
+
+    // Resizes after text was appended or removed. If following, scrolls to
+    // the end of the last line; else keeps the lines in view in place while
+    // the given number of lines drops off the top.
+    private void contentChanged(boolean following, int dropped) {
+        revalidate();
+        repaint();
+        if (!(getParent() instanceof JViewport))
+            return;
+        JViewport viewport = (JViewport) getParent();
+        viewport.getParent().validate();
+        if (following) {
+            int columns = buffer.getLastLineColumns();
+            if (input != null)
+                columns = RunIOBuffer.columns(columns, input, 0, input.length());
+            Insets insets = getInsets();
+            scrollRectToVisible(new Rectangle(insets.left + columns * charWidth, insets.top + (buffer.getLineCount() - 1) * lineHeight,
+                    charWidth, lineHeight));
+        }
+        else if (dropped > 0) {
+            Point position = viewport.getViewPosition();
+            position.y = Math.max(0, position.y - dropped * lineHeight);
+            viewport.setViewPosition(position);
+        }
+    }
+}
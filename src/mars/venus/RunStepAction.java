@@ -78,7 +78,7 @@ public class RunStepAction extends AbstractAction {
             Main.getGUI().messagesPane.setSelectedComponent(Main.getGUI().messagesPane.runTab);
             Main.getGUI().textSegment.setCodeHighlighting(true);
             try {
-                Main.program.simulateStepAtPC(this);
+                Main.getProgram().simulateStepAtPC(this);
             }
             catch (ProcessingException ev) {
             }
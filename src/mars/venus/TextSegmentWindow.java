@@ -152,7 +152,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
         int addressBase = Main.getGUI().dataSegment.getAddressDisplayBase();
         codeHighlighting = true;
         breakpointsEnabled = true;
-        ArrayList<ProgramStatement> sourceStatementList = Main.program.getMachineList();
+        ArrayList<ProgramStatement> sourceStatementList = Main.getProgram().getMachineList();
         data = new Object[sourceStatementList.size()][columnNames.length];
         intAddresses = new int[data.length];
         addressRows = new Hashtable<>(data.length);
@@ -310,7 +310,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
     public void updateBasicStatements() {
         if (contentPane.getComponentCount() == 0)
             return; // ignore if no content to change
-        ArrayList<ProgramStatement> sourceStatementList = Main.program.getMachineList();
+        ArrayList<ProgramStatement> sourceStatementList = Main.getProgram().getMachineList();
         for (int i = 0; i < sourceStatementList.size(); i++)
             // Loop has been extended to cover self-modifying code.  If code at this memory location has been
             // modified at runtime, construct a ProgramStatement from the current address and binary code
@@ -769,6 +769,11 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
         public void setValueAt(Object value, int row, int col) {
             if (col != CODE_COLUMN) {
                 data[row][col] = value;
+                // Memory holds the breakpoints the simulator actually uses,
+                // possibly while running
+                if (col == BREAK_COLUMN)
+                    Memory.getInstance().setBreakpoint(intAddresses[row],
+                            breakpointsEnabled && ((Boolean) value).booleanValue());
                 fireTableCellUpdated(row, col);
                 return;
             }
@@ -797,7 +802,7 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
             //  occur only between MIPS instructions.
             synchronized (Main.memoryAndRegistersLock) {
                 try {
-                    Main.memory.setRawWord(address, val);
+                    Memory.getInstance().setRawWord(address, val);
                 }
                 // somehow, user was able to display out-of-range address.  Most likely to occur between
                 // stack base and Kernel.  
@@ -1096,6 +1101,9 @@ public class TextSegmentWindow extends JInternalFrame implements Observer {
                         JCheckBox check = ((JCheckBox) ((DefaultCellEditor) table.getCellEditor(0, index)).getComponent());
                         breakpointsEnabled = !breakpointsEnabled;
                         check.setEnabled(breakpointsEnabled);
+                        for (int i = 0; i < data.length; i++)
+                            if (((Boolean) data[i][BREAK_COLUMN]).booleanValue())
+                                Memory.getInstance().setBreakpoint(intAddresses[i], breakpointsEnabled);
                         table.tableChanged(new TableModelEvent(tableModel, 0, data.length - 1, BREAK_COLUMN));
                     }
                 }
@@ -33,6 +33,7 @@ import javax.swing.WindowConstants;
 import mars.Main;
 import mars.mips.dump.DumpFormatLoader;
 import mars.settings.BooleanSettings;
+import mars.simulator.ReverseExecution;
 
 /*
  Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
@@ -109,11 +110,14 @@ public final class VenusUI {
             editFindReplaceAction, editSelectAllAction;
     private final AbstractAction runGoAction, runStepAction, runBackstepAction, runResetAction,
             runStopAction, runPauseAction, runToggleBreakpointsAction, runDumpMemoryAction;
+    private final GuiAction runStepBackAction, runBackToBreakpointAction;
     private final GuiAction settingsLabelAction, settingsPopupInputAction, settingsValueDisplayBaseAction, settingsAddressDisplayBaseAction,
             settingsExtendedAction, settingsAssembleOnOpenAction, settingsAssembleAllAction,
             settingsWarningsAreErrorsAction, settingsStartAtMainAction, settingsProgramArgumentsAction,
             settingsDelayedBranchingAction, settingsExceptionHandlerAction, settingsEditorAction,
-            settingsHighlightingAction, settingsMemoryConfigurationAction, settingsSelfModifyingCodeAction;
+            settingsHighlightingAction, settingsMemoryConfigurationAction, settingsSelfModifyingCodeAction,
+            settingsPredecodedExecutionAction, settingsBlockCompilationAction, settingsUnlimitedBackstepsAction,
+            settingsReverseExecutionAction;
     private final GuiAction helpHelpAction;
     private final RunClearBreakpointsAction runClearBreakpointsAction;
 
@@ -327,6 +331,12 @@ public final class VenusUI {
         runGoAction = new RunGoAction();
         runStepAction = new RunStepAction();
         runBackstepAction = new RunBackstepAction();
+        runStepBackAction = new GuiAction("Step back...",
+                "Take the program back by a number of instructions (needs reverse execution)",
+                GuiAction::stepBack);
+        runBackToBreakpointAction = new GuiAction("Run back to breakpoint",
+                "Take the program back to the latest breakpoint it met (needs reverse execution)",
+                GuiAction::runBackToBreakpoint);
         runPauseAction = new RunPauseAction();
         runStopAction = new RunStopAction();
         runResetAction = new ExecuteAction();
@@ -381,6 +391,18 @@ public final class VenusUI {
         settingsSelfModifyingCodeAction = new GuiAction("Self-modifying code",
                 "If set, the MIPS program can write and branch to both text and data segments.",
                 GuiAction::toggleSelfModifyingCode);
+        settingsPredecodedExecutionAction = new GuiAction("Predecoded execution",
+                "If set, runs at unlimited speed use a faster engine for common integer instructions.",
+                GuiAction::togglePredecodedExecution);
+        settingsBlockCompilationAction = new GuiAction("Compile frequently executed code",
+                "If set, runs at unlimited speed also compile frequently executed code to JVM code. Implies predecoded execution.",
+                GuiAction::toggleBlockCompilation);
+        settingsUnlimitedBackstepsAction = new GuiAction("Unlimited backstepping",
+                "If set, all steps of a run can be undone, not only the latest ones. Older steps are kept in a temporary file. Takes effect on next assembly.",
+                GuiAction::toggleUnlimitedBacksteps);
+        settingsReverseExecutionAction = new GuiAction("Reverse execution",
+                "If set, runs keep checkpoints and a log of inputs, to step back any number of instructions or run back to a breakpoint. Takes effect on next run.",
+                GuiAction::toggleReverseExecution);
 
         settingsEditorAction = new GuiAction("Editor...",
                 "View and modify text editor settings.",
@@ -453,6 +475,8 @@ public final class VenusUI {
         run.add(new JMenuItem(runGoAction));
         run.add(new JMenuItem(runStepAction));
         run.add(new JMenuItem(runBackstepAction));
+        run.add(new JMenuItem(runStepBackAction));
+        run.add(new JMenuItem(runBackToBreakpointAction));
         run.add(new JMenuItem(runPauseAction));
         run.add(new JMenuItem(runStopAction));
         run.add(new JMenuItem(runResetAction));
@@ -474,6 +498,14 @@ public final class VenusUI {
         settingsDelayedBranching.setSelected(BooleanSettings.DELAYED_BRANCHING.isSet());
         JCheckBoxMenuItem settingsSelfModifyingCode = new JCheckBoxMenuItem(settingsSelfModifyingCodeAction);
         settingsSelfModifyingCode.setSelected(BooleanSettings.SELF_MODIFYING_CODE.isSet());
+        JCheckBoxMenuItem settingsPredecodedExecution = new JCheckBoxMenuItem(settingsPredecodedExecutionAction);
+        settingsPredecodedExecution.setSelected(BooleanSettings.PREDECODED_EXECUTION.isSet());
+        JCheckBoxMenuItem settingsBlockCompilation = new JCheckBoxMenuItem(settingsBlockCompilationAction);
+        settingsBlockCompilation.setSelected(BooleanSettings.BLOCK_COMPILATION.isSet());
+        JCheckBoxMenuItem settingsUnlimitedBacksteps = new JCheckBoxMenuItem(settingsUnlimitedBackstepsAction);
+        settingsUnlimitedBacksteps.setSelected(BooleanSettings.UNLIMITED_BACKSTEPS.isSet());
+        JCheckBoxMenuItem settingsReverseExecution = new JCheckBoxMenuItem(settingsReverseExecutionAction);
+        settingsReverseExecution.setSelected(BooleanSettings.REVERSE_EXECUTION.isSet());
         JCheckBoxMenuItem settingsAssembleOnOpen = new JCheckBoxMenuItem(settingsAssembleOnOpenAction);
         settingsAssembleOnOpen.setSelected(BooleanSettings.ASSEMBLE_ON_OPEN.isSet());
         JCheckBoxMenuItem settingsAssembleAll = new JCheckBoxMenuItem(settingsAssembleAllAction);
@@ -499,6 +531,10 @@ public final class VenusUI {
         settings.add(settingsExtended);
         settings.add(settingsDelayedBranching);
         settings.add(settingsSelfModifyingCode);
+        settings.add(settingsPredecodedExecution);
+        settings.add(settingsBlockCompilation);
+        settings.add(settingsUnlimitedBacksteps);
+        settings.add(settingsReverseExecution);
         settings.addSeparator();
         settings.add(new JMenuItem(settingsEditorAction));
         settings.add(new JMenuItem(settingsHighlightingAction));
@@ -663,6 +699,8 @@ public final class VenusUI {
         runGoAction.setEnabled(false);
         runStepAction.setEnabled(false);
         runBackstepAction.setEnabled(false);
+        runStepBackAction.setEnabled(false);
+        runBackToBreakpointAction.setEnabled(false);
         runResetAction.setEnabled(false);
         runStopAction.setEnabled(false);
         runPauseAction.setEnabled(false);
@@ -691,8 +729,11 @@ public final class VenusUI {
         runGoAction.setEnabled(true);
         runStepAction.setEnabled(true);
         runBackstepAction.setEnabled(
-                Main.isBackSteppingEnabled() && !Main.program.getBackStepper().empty()
+                Main.isBackSteppingEnabled() && !Main.getProgram().getBackStepper().empty()
+                || ReverseExecution.getInstance().canStepBack()
         );
+        runStepBackAction.setEnabled(ReverseExecution.getInstance().canStepBack());
+        runBackToBreakpointAction.setEnabled(ReverseExecution.getInstance().canStepBack());
         runResetAction.setEnabled(true);
         runStopAction.setEnabled(false);
         runPauseAction.setEnabled(false);
@@ -720,6 +761,8 @@ public final class VenusUI {
         runGoAction.setEnabled(false);
         runStepAction.setEnabled(false);
         runBackstepAction.setEnabled(false);
+        runStepBackAction.setEnabled(false);
+        runBackToBreakpointAction.setEnabled(false);
         runResetAction.setEnabled(false);
         runStopAction.setEnabled(true);
         runPauseAction.setEnabled(true);
@@ -747,8 +790,11 @@ public final class VenusUI {
         runGoAction.setEnabled(false);
         runStepAction.setEnabled(false);
         runBackstepAction.setEnabled(
-                Main.isBackSteppingEnabled() && !Main.program.getBackStepper().empty()
+                Main.isBackSteppingEnabled() && !Main.getProgram().getBackStepper().empty()
+                || ReverseExecution.getInstance().canStepBack()
         );
+        runStepBackAction.setEnabled(ReverseExecution.getInstance().canStepBack());
+        runBackToBreakpointAction.setEnabled(ReverseExecution.getInstance().canStepBack());
         runResetAction.setEnabled(true);
         runStopAction.setEnabled(false);
         runPauseAction.setEnabled(false);
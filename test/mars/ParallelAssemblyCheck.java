@@ -0,0 +1,197 @@
+package mars;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import mars.assembler.Tokenizer;
+import mars.mips.dump.ElfDumpFormat;
+import mars.util.FilenameFinder;
+
+/*
+ Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+ Developed by Pete Sanderson (psanderson@otterbein.edu)
+ and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+ Permission is hereby granted, free of charge, to any person obtaining
+ a copy of this software and associated documentation files (the
+ "Software"), to deal in the Software without restriction, including
+ without limitation the rights to use, copy, modify, merge, publish,
+ distribute, sublicense, and/or sell copies of the Software, and to
+ permit persons to whom the Software is furnished to do so, subject
+ to the following conditions:
+
+ The above copyright notice and this permission notice shall be
+ included in all copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+ CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+ (MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+/**
+ * Regression check for {@link MIPSprogram#prepareFilesForAssembly}, which
+ * reads and tokenizes the files of a project in parallel. The project is
+ * assembled once that way and once with its files read and tokenized one
+ * after another, as MARS used to, and the two results are compared: the
+ * memory image, as written by {@link ElfDumpFormat} with the global symbols,
+ * and the address, machine code and source line of every statement.
+ * <p>
+ * Run by the check-assembly build target. The arguments are the files of the
+ * project, or directories holding them, the main file first. Without any, a
+ * generated project of several files is checked, which uses .globl labels
+ * across files, .extern, .include and .eqv. Exits with status 1 if the results
+ * differ, 2 if the project does not assemble.
+ */
+public class ParallelAssemblyCheck {
+
+    private static final int GENERATED_FILES = 12;
+    private static final int GENERATED_BLOCKS = 200; // per file
+    private static final int IMAGE_LINE = 32; // bytes
+
+    public static void main(String[] args) throws Exception {
+        Main.initialize();
+        List<String> files = args.length == 0 ? generateProject() : listFiles(args);
+        String[] parallel, sequential;
+        try {
+            parallel = assemble(files, true);
+            sequential = assemble(files, false);
+        }
+        catch (ProcessingException e) {
+            System.out.print(e.errors().generateErrorReport());
+            System.exit(2);
+            return;
+        }
+        for (int i = 0; i < Math.max(parallel.length, sequential.length); i++)
+            if (i >= parallel.length || i >= sequential.length || !parallel[i].equals(sequential[i])) {
+                System.out.println("Parallel and sequential assembly differ, first at:");
+                System.out.println("  parallel:   " + (i < parallel.length ? parallel[i] : "(end)"));
+                System.out.println("  sequential: " + (i < sequential.length ? sequential[i] : "(end)"));
+                System.exit(1);
+            }
+        System.out.println("Parallel and sequential assembly agree: " + files.size() + " files, "
+                + Main.getProgram().getMachineList().size() + " statements");
+    }
+
+    // The files to assemble, main file first
+    private static List<String> listFiles(String[] args) {
+        ArrayList<String> files = new ArrayList<>();
+        for (String arg : args)
+            if (new File(arg).isDirectory()) {
+                for (String file : FilenameFinder.getFilenameList(arg, Main.fileExtensions))
+                    if (!files.contains(file))
+                        files.add(file);
+            }
+            else if (!files.contains(new File(arg).getAbsolutePath()))
+                files.add(new File(arg).getAbsolutePath());
+        return files;
+    }
+
+    // Assembles the project and returns its memory image, as lines of hex
+    // digits, followed by a line for each statement
+    private static String[] assemble(List<String> files, boolean parallel)
+            throws ProcessingException, IOException, mars.mips.hardware.AddressErrorException {
+        for (String file : files)
+            Tokenizer.forgetFile(file); // no tokens carried over from the other run
+        String lead = files.get(0);
+        MIPSprogram program = new MIPSprogram();
+        Main.setProgram(program);
+        ArrayList<MIPSprogram> programs;
+        if (parallel)
+            programs = program.prepareFilesForAssembly(new ArrayList<>(files), lead, null);
+        else {
+            programs = new ArrayList<>();
+            for (String file : files) {
+                MIPSprogram preparee = file.equals(lead) ? program : new MIPSprogram();
+                preparee.readSource(file);
+                preparee.tokenize();
+                programs.add(preparee);
+            }
+        }
+        program.assemble(programs, true, false);
+
+        ArrayList<String> result = new ArrayList<>();
+        Path image = Files.createTempFile("mars", ".elf");
+        try {
+            new ElfDumpFormat().dumpMemoryRange(image.toFile(), 0, 0);
+            byte[] bytes = Files.readAllBytes(image);
+            for (int offset = 0; offset < bytes.length; offset += IMAGE_LINE) {
+                StringBuilder hex = new StringBuilder(String.format("image %06x ", offset));
+                for (int i = offset; i < Math.min(offset + IMAGE_LINE, bytes.length); i++)
+                    hex.append(String.format("%02x", bytes[i]));
+                result.add(hex.toString());
+            }
+        }
+        finally {
+            Files.delete(image);
+        }
+        for (ProgramStatement statement : program.getMachineList())
+            result.add(String.format("%08x %08x %s:%d %s", statement.getAddress(), statement.getBinaryStatement(),
+                    statement.getSourceMIPSprogram() == null ? "" : statement.getSourceMIPSprogram().getFilename(),
+                    statement.getSourceLine(), statement.getSource()));
+        return result.toArray(new String[0]);
+    }
+
+    // Writes a project of several files referring to each other's labels to a
+    // temporary directory, to be deleted on exit
+    private static List<String> generateProject() throws IOException {
+        Path directory = Files.createTempDirectory("mars");
+        directory.toFile().deleteOnExit();
+        Path common = directory.resolve("common.inc");
+        Files.write(common, Arrays.asList(
+                ".eqv WORD 4",
+                ".eqv LIMIT 0x12345"), StandardCharsets.UTF_8);
+        common.toFile().deleteOnExit();
+        ArrayList<String> files = new ArrayList<>();
+        for (int i = 0; i < GENERATED_FILES; i++) {
+            int next = (i + 1) % GENERATED_FILES;
+            ArrayList<String> lines = new ArrayList<>();
+            lines.add(".include \"common.inc\"");
+            lines.add(".eqv STEP " + (i + 1));
+            lines.add(".globl f" + i + ", d" + i);
+            if (i == 0)
+                lines.add(".globl main");
+            lines.add(".extern e" + i + " " + (4 * (i + 1)));
+            lines.add(".data");
+            lines.add("d" + i + ": .word " + i + ", STEP, d" + i + ", f" + i);
+            lines.add("s" + i + ": .asciiz \"file " + i + "\"");
+            lines.add(".align 2");
+            lines.add("h" + i + ": .half " + i + ", -" + i);
+            lines.add(".text");
+            if (i == 0)
+                lines.add("main:");
+            lines.add("f" + i + ":");
+            for (int block = 0; block < GENERATED_BLOCKS; block++) {
+                String label = "l" + i + "_" + block;
+                lines.add(label + ":  addi $sp, $sp, -WORD");
+                lines.add("  sw $ra, 0($sp)");
+                lines.add("  la $t0, d" + next);
+                lines.add("  lw $t1, 4($t0)");
+                lines.add("  addi $t1, $t1, STEP");
+                lines.add("  sw $t1, e" + i);
+                lines.add("  li $t2, LIMIT");
+                lines.add("  addi $t2, $t2, " + block);
+                lines.add("  blt $t1, $t2, " + label);
+                lines.add("  jal f" + next);
+                lines.add("  lw $ra, 0($sp)   # block " + block);
+                lines.add("  addi $sp, $sp, WORD");
+            }
+            lines.add("  jr $ra");
+            Path file = directory.resolve("file" + i + ".asm");
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            file.toFile().deleteOnExit();
+            files.add(file.toString());
+        }
+        return files;
+    }
+}